@@ -20,14 +20,18 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 
+import com.google.android.gms.location.Geofence;
 import com.google.android.gms.location.GeofencingEvent;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class PlacesGeofenceBroadcastReceiver extends BroadcastReceiver {
     static final String ACTION_GEOFENCE_UPDATE =
             "com.adobe.marketing.mobile.PlacesGeofenceBroadcastReceiver.geofenceUpdates";
 
     @Override
-    public void onReceive(Context context, Intent intent) {
+    public void onReceive(Context context, final Intent intent) {
         if (intent == null) {
             Log.error(PlacesMonitorConstants.LOG_TAG,"Cannot process the geofence trigger, The received intent from the geofence broadcast receiver is null.");
             return;
@@ -39,6 +43,17 @@ public class PlacesGeofenceBroadcastReceiver extends BroadcastReceiver {
             return;
         }
 
+        // parse and dispatch the event on the worker thread, off the main thread
+        final PendingResult pendingResult = goAsync();
+        PlacesMonitorBroadcastWorker.execute(pendingResult, new Runnable() {
+            @Override
+            public void run() {
+                processGeofenceIntent(intent);
+            }
+        });
+    }
+
+    private static void processGeofenceIntent(final Intent intent) {
         GeofencingEvent geofencingEvent = GeofencingEvent.fromIntent(intent);
         if (geofencingEvent.hasError()) {
             Log.error(PlacesMonitorConstants.LOG_TAG, "Cannot process the geofence trigger, Geofencing event has error. Ignoring region event.");
@@ -52,7 +67,39 @@ public class PlacesGeofenceBroadcastReceiver extends BroadcastReceiver {
             return;
         }
 
-        PlacesMonitorDispatcher.dispatchRegionEvent(geofencingEvent.getTriggeringGeofences(), regionEventType);
+        // the refresh boundary is not a region, its exit requests a new location
+        final List<Geofence> regionGeofences = new ArrayList<>();
+        boolean refreshBoundaryExited = false;
+        final List<Geofence> triggeringGeofences = geofencingEvent.getTriggeringGeofences();
+
+        if (triggeringGeofences != null) {
+            for (Geofence geofence : triggeringGeofences) {
+                if (PlacesMonitorConstants.RefreshBoundary.IDENTIFIER.equals(geofence.getRequestId())) {
+                    refreshBoundaryExited = PlacesMonitorConstants.EventDataKeys.GEOFENCE_TYPE_EXIT.equals(regionEventType);
+                    continue;
+                }
+
+                regionGeofences.add(geofence);
+            }
+        }
+
+        if (refreshBoundaryExited) {
+            Log.debug(PlacesMonitorConstants.LOG_TAG, "Device exited the refresh boundary, requesting a location update");
+            PlacesMonitorDispatcher.dispatchRefreshBoundaryExit();
+        }
+
+        // the inside state of a region follows it when it is handed over to the software geofencer
+        final List<String> regionIdentifiers = new ArrayList<>();
+
+        for (Geofence geofence : regionGeofences) {
+            regionIdentifiers.add(geofence.getRequestId());
+        }
+
+        PlacesMonitorSoftwareGeofencer.getSharedInstance().onOSRegionEvents(regionIdentifiers, regionEventType);
+
+        if (triggeringGeofences == null || !regionGeofences.isEmpty()) {
+            PlacesMonitorDispatcher.dispatchRegionEvent(regionGeofences, regionEventType);
+        }
     }
 
 
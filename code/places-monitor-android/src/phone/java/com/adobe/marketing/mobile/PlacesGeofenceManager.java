@@ -16,23 +16,14 @@
 
 package com.adobe.marketing.mobile;
 
-import android.Manifest;
-import android.app.PendingIntent;
 import android.content.Context;
-import android.content.Intent;
 import android.content.SharedPreferences;
-import android.content.pm.PackageManager;
-import android.support.v4.app.ActivityCompat;
 
 import com.google.android.gms.location.Geofence;
-import com.google.android.gms.location.GeofencingClient;
 import com.google.android.gms.location.GeofencingRequest;
-import com.google.android.gms.location.LocationServices;
-import com.google.android.gms.tasks.OnFailureListener;
-import com.google.android.gms.tasks.OnSuccessListener;
-import com.google.android.gms.tasks.Task;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -43,65 +34,190 @@ class PlacesGeofenceManager {
 
     static private String MONITOR_SHARED_PREFERENCE_KEY = "com.adobe.placesMonitor";
     static private String MONITORING_FENCES_KEY = "monitoringFences";
-    private final String FINE_LOCATION = Manifest.permission.ACCESS_FINE_LOCATION;
-    private PendingIntent geofencePendingIntent;
-    private Set<String> monitoringFences;
-    private GeofencingClient geofencingClient;
+    static private String MONITORING_FENCE_HASHES_KEY = "monitoringFenceHashes";
+    private final PlacesMonitorFenceStore fenceStore;
+    private PlacesMonitorGeofencingBackend backend;
+    private volatile Long appliedFingerprint; // fingerprint of the nearby POIs matching the monitored fences, null if unknown
+    private int skippedReconcileCount;
 
     PlacesGeofenceManager() {
-        monitoringFences = new HashSet<String>();
+        fenceStore = new PlacesMonitorFenceStore(new PlacesMonitorFenceStore.Listener() {
+            @Override
+            public void onFencesChanged(final Map<String, String> fences) {
+                saveMonitoringFences(fences);
+            }
+        });
     }
 
     void startMonitoringFences(List<PlacesMonitorPOI> nearByPOIs) {
+        startMonitoringFences(nearByPOIs, Collections.<String>emptySet());
+    }
+
+    /**
+     * Starts monitoring the given POIs, the device being inside of the given regions already.
+     * <p>
+     * The geofences of the regions the device is inside of are registered without an initial trigger, so a region handed
+     * over by the {@link PlacesMonitorSoftwareGeofencer} is not entered again. The OS still reports its exit.
+     *
+     * @param nearByPOIs    the {@code List} of {@link PlacesMonitorPOI}s to be monitored
+     * @param insideRegions the {@code Set} of the identifiers of the regions the device is inside of
+     */
+    void startMonitoringFences(List<PlacesMonitorPOI> nearByPOIs, final Set<String> insideRegions) {
         if (nearByPOIs == null || nearByPOIs.isEmpty()) {
             Log.debug(PlacesMonitorConstants.LOG_TAG, "Places Extension responded with no regions around the current location to be monitored. Removing all the currently monitored geofence.");
             nearByPOIs = new ArrayList<PlacesMonitorPOI>();
         }
 
-        GeofencingClient geofencingClient = getGeofencingClient();
+        PlacesMonitorGeofencingBackend backend = getBackend();
 
-        if (geofencingClient == null) {
+        if (backend == null) {
             Log.warning(PlacesMonitorConstants.LOG_TAG,
-                    "Unable to start monitoring geofences, geofencingClient instance is null");
+                    "Unable to start monitoring geofences, geofencing backend is null");
+            return;
+        }
+
+        // a stationary device mostly receives the same POIs again, skip the reconcile when they are already monitored
+        final long fingerprint = PlacesMonitorFenceDiff.fingerprint(nearByPOIs);
+
+        if (appliedFingerprint != null && appliedFingerprint == fingerprint) {
+            skippedReconcileCount++;
+            Log.debug(PlacesMonitorConstants.LOG_TAG, "The nearby POIs are already monitored, skipping the reconcile");
+            return;
+        }
+
+        final Map<String, String> monitoredFences = fenceStore.getSnapshot();
+        final PlacesMonitorFenceDiff diff = PlacesMonitorFenceDiff.compute(monitoredFences, nearByPOIs);
+
+        if (diff.isEmpty()) {
+            appliedFingerprint = fingerprint;
+            Log.debug(PlacesMonitorConstants.LOG_TAG, "The nearby POIs are already monitored");
+            return;
+        }
+
+        // the fingerprint is recorded on the next reconcile that finds no changes, after the changes are applied
+        appliedFingerprint = null;
+
+        // the OS rejects a request going past the geofence limit as a whole, the refresh boundary may hold one more slot
+        if (monitoredFences.size() + diff.getAdded().size() + 1 > PlacesMonitorConstants.MAX_GEOFENCES_COUNT) {
+            removeNonNeabyFences(backend, diff);
+            addNearbyFences(backend, diff, insideRegions);
             return;
         }
 
-        addNearbyFences(nearByPOIs);
-        removeNonNeabyFences(nearByPOIs);
+        addNearbyFences(backend, diff, insideRegions);
+        removeNonNeabyFences(backend, diff);
+    }
+
+    /**
+     * Sets the {@link PlacesMonitorGeofencingBackend} the geofences are registered with, in place of the
+     * {@code GeofencingClient} of Google Play services.
+     * <p>
+     * The monitored fences are forgotten, as they are not registered with the new backend.
+     *
+     * @param backend the {@link PlacesMonitorGeofencingBackend} to be used
+     */
+    void setBackend(final PlacesMonitorGeofencingBackend backend) {
+        this.backend = backend;
+        appliedFingerprint = null;
+        fenceStore.clear();
+    }
+
+    /**
+     * Returns the number of times {@link #startMonitoringFences(List)} was skipped because the nearby POIs were
+     * already monitored.
+     *
+     * @return the number of skipped reconciles
+     */
+    int getSkippedReconcileCount() {
+        return skippedReconcileCount;
     }
 
     void stopMonitoringFences() {
 
-        GeofencingClient geofencingClient = getGeofencingClient();
+        PlacesMonitorGeofencingBackend backend = getBackend();
 
-        if (geofencingClient == null) {
+        if (backend == null) {
             Log.warning(PlacesMonitorConstants.LOG_TAG,
-                    "Unable to stop monitoring geofences, geofencingClient instance is null");
+                    "Unable to stop monitoring geofences, geofencing backend is null");
             return;
         }
 
-        PendingIntent geofenceIntent = getGeofencePendingIntent();
+        backend.removeAllGeofences(new PlacesMonitorGeofencingBackend.Callback() {
+            @Override
+            public void onSuccess() {
+                appliedFingerprint = null;
+                fenceStore.clear();
+                Log.debug(PlacesMonitorConstants.LOG_TAG, "Successfully stopped monitoring geofences");
+            }
 
-        if (geofenceIntent == null) {
+            @Override
+            public void onFailure(final int statusCode, final String message) {
+                Log.debug(PlacesMonitorConstants.LOG_TAG, "Failed to stop monitoring geofences " + message);
+            }
+        });
+    }
+
+    /**
+     * Starts monitoring the exit of the refresh boundary geofence.
+     * <p>
+     * The refresh boundary is a synthetic geofence around the currently monitored set of regions, its exit
+     * triggers a single location update and a new nearby POI query. It is registered with a fixed identifier,
+     * hence registering it again replaces the previous boundary. The boundary is not part of the {@link #fenceStore}.
+     *
+     * @param latitude  the latitude of the center of the boundary
+     * @param longitude the longitude of the center of the boundary
+     * @param radius    the radius of the boundary in meters
+     */
+    void startMonitoringRefreshBoundary(final double latitude, final double longitude, final float radius) {
+        PlacesMonitorGeofencingBackend backend = getBackend();
+
+        if (backend == null) {
             Log.warning(PlacesMonitorConstants.LOG_TAG,
-                    "Unable to stop monitoring geofences, Places Geofence Broadcast Receiver was never initialized");
+                    "Unable to monitor the refresh boundary, geofencing backend is null");
             return;
         }
 
+        final List<PlacesMonitorGeofencingBackend.Fence> boundary = new ArrayList<>();
+        boundary.add(new PlacesMonitorGeofencingBackend.Fence(PlacesMonitorConstants.RefreshBoundary.IDENTIFIER,
+                     latitude, longitude, radius, Geofence.GEOFENCE_TRANSITION_EXIT));
 
-        Task<Void> task = geofencingClient.removeGeofences(geofenceIntent);
-        task.addOnSuccessListener(new OnSuccessListener<Void>() {
+        // trigger immediately if the device has already left the boundary
+        backend.addGeofences(boundary, GeofencingRequest.INITIAL_TRIGGER_EXIT, new PlacesMonitorGeofencingBackend.Callback() {
             @Override
-            public void onSuccess(Void aVoid) {
-                monitoringFences.clear();
-                saveMonitoringFences();
-                Log.debug(PlacesMonitorConstants.LOG_TAG, "Successfully stopped monitoring geofences");
+            public void onSuccess() {
+                Log.debug(PlacesMonitorConstants.LOG_TAG, "Successfully added the refresh boundary with radius " + radius);
+            }
+
+            @Override
+            public void onFailure(final int statusCode, final String message) {
+                Log.debug(PlacesMonitorConstants.LOG_TAG, "Error in adding the refresh boundary " + message);
             }
         });
-        task.addOnFailureListener(new OnFailureListener() {
+    }
+
+    /**
+     * Stops monitoring the refresh boundary geofence, if one is registered.
+     */
+    void stopMonitoringRefreshBoundary() {
+        PlacesMonitorGeofencingBackend backend = getBackend();
+
+        if (backend == null) {
+            Log.warning(PlacesMonitorConstants.LOG_TAG,
+                    "Unable to remove the refresh boundary, geofencing backend is null");
+            return;
+        }
+
+        final List<String> toBeRemoved = new ArrayList<>();
+        toBeRemoved.add(PlacesMonitorConstants.RefreshBoundary.IDENTIFIER);
+
+        backend.removeGeofences(toBeRemoved, new PlacesMonitorGeofencingBackend.Callback() {
+            @Override
+            public void onSuccess() {
+            }
+
             @Override
-            public void onFailure(Exception e) {
-                Log.debug(PlacesMonitorConstants.LOG_TAG, "Failed to stop monitoring geofences");
+            public void onFailure(final int statusCode, final String message) {
+                Log.debug(PlacesMonitorConstants.LOG_TAG, "Error in removing the refresh boundary " + message);
             }
         });
     }
@@ -110,6 +226,14 @@ class PlacesGeofenceManager {
     // Load/Save Monitored Fences to persistence
     // ========================================================================================
 
+    /**
+     * Loads the monitored fences and their geometry hashes from persistence.
+     * <p>
+     * Each persisted entry is the {@value PlacesMonitorFenceDiff#GEOMETRY_HASH_LENGTH} characters geometry hash followed by
+     * the fence identifier. Fences persisted by a previous version without their geometry hash are loaded with
+     * {@link PlacesMonitorFenceDiff#UNKNOWN_GEOMETRY_HASH}, so that they are replaced once with their current geometry
+     * and are persisted in the same format as the other fences until then.
+     */
     void loadMonitoringFences() {
         SharedPreferences sharedPreferences = getSharedPreference();
         if (sharedPreferences == null) {
@@ -117,10 +241,39 @@ class PlacesGeofenceManager {
             return;
         }
 
-        monitoringFences = sharedPreferences.getStringSet(MONITORING_FENCES_KEY, new HashSet<String>());
+        final Map<String, String> loadedFences = new HashMap<String, String>();
+        final Set<String> fenceEntries = sharedPreferences.getStringSet(MONITORING_FENCE_HASHES_KEY, null);
+
+        if (fenceEntries != null) {
+            for (String entry : fenceEntries) {
+                if (entry == null || entry.length() <= PlacesMonitorFenceDiff.GEOMETRY_HASH_LENGTH) {
+                    continue;
+                }
+
+                loadedFences.put(entry.substring(PlacesMonitorFenceDiff.GEOMETRY_HASH_LENGTH),
+                                 entry.substring(0, PlacesMonitorFenceDiff.GEOMETRY_HASH_LENGTH));
+            }
+        } else {
+            final Set<String> legacyFences = sharedPreferences.getStringSet(MONITORING_FENCES_KEY, new HashSet<String>());
+
+            for (String identifier : legacyFences) {
+                loadedFences.put(identifier, PlacesMonitorFenceDiff.UNKNOWN_GEOMETRY_HASH);
+            }
+        }
+
+        fenceStore.load(loadedFences);
+        appliedFingerprint = null;
     }
 
     void saveMonitoringFences() {
+        saveMonitoringFences(fenceStore.getSnapshot());
+    }
+
+    // ========================================================================================
+    // private methods
+    // ========================================================================================
+
+    private void saveMonitoringFences(final Map<String, String> fences) {
         SharedPreferences sharedPreferences = getSharedPreference();
         if (sharedPreferences == null) {
             Log.warning(PlacesMonitorConstants.LOG_TAG, "Unable to save monitoring geofences from persistence, sharedPreference is null");
@@ -133,123 +286,97 @@ class PlacesGeofenceManager {
             return;
         }
 
-        editor.putStringSet(MONITORING_FENCES_KEY, monitoringFences);
-        editor.commit();
-    }
-
-    // ========================================================================================
-    // private methods
-    // ========================================================================================
-
-    private void addNearbyFences(final List<PlacesMonitorPOI> nearByPOIs) {
-        // List of geofence to be added
-        final List<Geofence> geofences = new ArrayList<>();
-
-        if (!checkPermissions()) {
-            Log.warning(PlacesMonitorConstants.LOG_TAG, "Unable to monitor geofences, App permission to use FINE_LOCATION is not granted.");
-            return;
-        }
-
-        PendingIntent geofenceIntent = getGeofencePendingIntent();
+        final Set<String> fenceEntries = new HashSet<String>();
 
-        if (geofenceIntent == null) {
-            Log.warning(PlacesMonitorConstants.LOG_TAG,
-                    "Unable to stop monitoring geofences, Places Geofence Broadcast Receiver was never initialized");
-            return;
+        for (Map.Entry<String, String> fence : fences.entrySet()) {
+            fenceEntries.add(fence.getValue() + fence.getKey());
         }
 
+        editor.putStringSet(MONITORING_FENCE_HASHES_KEY, fenceEntries);
+        editor.remove(MONITORING_FENCES_KEY);
+        editor.commit();
+    }
 
-        for (PlacesMonitorPOI poi : nearByPOIs) {
-            if (monitoringFences.contains(poi.getIdentifier())) {
-                continue;
-            }
-
-            final Geofence fence = new Geofence.Builder()
-                    .setRequestId(poi.getIdentifier())
-                    .setCircularRegion(poi.getLatitude(), poi.getLongitude(), poi.getRadius())
-                    .setExpirationDuration(Geofence.NEVER_EXPIRE)
-                    .setTransitionTypes(Geofence.GEOFENCE_TRANSITION_ENTER |
-                            Geofence.GEOFENCE_TRANSITION_EXIT)
-                    .build();
+    private void addNearbyFences(final PlacesMonitorGeofencingBackend backend, final PlacesMonitorFenceDiff diff,
+                                 final Set<String> insideRegions) {
+        // List of geofence to be added or replaced, the backend replaces a fence registered with the same identifier
+        final List<PlacesMonitorGeofencingBackend.Fence> geofences = new ArrayList<>();
+        final List<PlacesMonitorGeofencingBackend.Fence> insideGeofences = new ArrayList<>();
+        final Map<String, String> geometryHashes = new HashMap<String, String>();
+        final Map<String, String> insideGeometryHashes = new HashMap<String, String>();
+
+        final List<PlacesMonitorPOI> poisToBeAdded = new ArrayList<PlacesMonitorPOI>(diff.getAdded());
+        poisToBeAdded.addAll(diff.getReplaced());
+
+        for (PlacesMonitorPOI poi : poisToBeAdded) {
+            final PlacesMonitorGeofencingBackend.Fence fence = new PlacesMonitorGeofencingBackend.Fence(poi.getIdentifier(),
+                    poi.getLatitude(), poi.getLongitude(), poi.getRadius(),
+                    Geofence.GEOFENCE_TRANSITION_ENTER | Geofence.GEOFENCE_TRANSITION_EXIT);
             Log.debug(PlacesMonitorConstants.LOG_TAG, "Monitoring location with id " + poi.getIdentifier() +
                     " name " + poi.getName() +
                     " latitude " + poi.getLatitude() +
                     " longitude " + poi.getLongitude());
-            geofences.add(fence);
+
+            if (insideRegions.contains(poi.getIdentifier())) {
+                insideGeofences.add(fence);
+                insideGeometryHashes.put(poi.getIdentifier(), PlacesMonitorFenceDiff.geometryHash(poi));
+            } else {
+                geofences.add(fence);
+                geometryHashes.put(poi.getIdentifier(), PlacesMonitorFenceDiff.geometryHash(poi));
+            }
         }
 
-        if (geofences.isEmpty()) {
+        if (geofences.isEmpty() && insideGeofences.isEmpty()) {
             Log.debug(PlacesMonitorConstants.LOG_TAG, "There are no new geofences that needs to be monitored");
             return;
         }
 
+        if (!geofences.isEmpty()) {
+            addFences(backend, geofences, geometryHashes, GeofencingRequest.INITIAL_TRIGGER_ENTER);
+        }
 
-
-        GeofencingRequest.Builder builder = new GeofencingRequest.Builder();
-        builder.setInitialTrigger(GeofencingRequest.INITIAL_TRIGGER_ENTER);
-        builder.addGeofences(geofences);
-
-        try {
-            Task<Void> task = geofencingClient.addGeofences(builder.build(), getGeofencePendingIntent());
-            task.addOnSuccessListener(new OnSuccessListener<Void>() {
-                @Override
-                public void onSuccess(Void aVoid) {
-                    for (Geofence eachgeofence : geofences) {
-                        monitoringFences.add(eachgeofence.getRequestId());
-                    }
-                    saveMonitoringFences();
-                    Log.debug(PlacesMonitorConstants.LOG_TAG, "Successfully added " + geofences.size() + " fences for monitoring");
-                }
-            });
-            task.addOnFailureListener(new OnFailureListener() {
-                @Override
-                public void onFailure(Exception e) {
-                    Log.debug(PlacesMonitorConstants.LOG_TAG, "Error in adding fences for monitoring " + e.getMessage());
-
-                }
-            });
-        } catch (SecurityException e) {
-            Log.debug(PlacesMonitorConstants.LOG_TAG, "Add Geofence: SecurityException: " + e.getMessage());
+        // the device is already inside of these regions, their entry was reported
+        if (!insideGeofences.isEmpty()) {
+            addFences(backend, insideGeofences, insideGeometryHashes, 0);
         }
     }
 
-    private void removeNonNeabyFences(final List<PlacesMonitorPOI> nearbyPOI) {
-        // List of geofence be removed
-        final List<String> toBeRemoved = new ArrayList<>();
-
-        // convert list into a hashMap for convenience
-        Map<String, PlacesMonitorPOI> poisMap = new HashMap<String, PlacesMonitorPOI>();
-        for (PlacesMonitorPOI i : nearbyPOI) poisMap.put(i.getIdentifier(), i);
+    private void addFences(final PlacesMonitorGeofencingBackend backend, final List<PlacesMonitorGeofencingBackend.Fence> geofences,
+                           final Map<String, String> geometryHashes, final int initialTrigger) {
+        backend.addGeofences(geofences, initialTrigger, new PlacesMonitorGeofencingBackend.Callback() {
+            @Override
+            public void onSuccess() {
+                fenceStore.put(geometryHashes);
+                Log.debug(PlacesMonitorConstants.LOG_TAG, "Successfully added or replaced " + geofences.size() +
+                        " fences for monitoring");
+            }
 
-        for (String eachID : monitoringFences) {
-            if (poisMap.containsKey(eachID)) {
-                continue;
+            @Override
+            public void onFailure(final int statusCode, final String message) {
+                Log.debug(PlacesMonitorConstants.LOG_TAG, "Error in adding fences for monitoring " + message);
             }
+        });
+    }
 
-            toBeRemoved.add(eachID);
-        }
+    private void removeNonNeabyFences(final PlacesMonitorGeofencingBackend backend, final PlacesMonitorFenceDiff diff) {
+        // List of geofence be removed
+        final List<String> toBeRemoved = new ArrayList<>(diff.getRemoved());
 
         if (toBeRemoved.isEmpty()) {
             Log.debug(PlacesMonitorConstants.LOG_TAG, "There are no geofences that needs to be removed");
             return;
         }
 
-        Task<Void> task = geofencingClient.removeGeofences(toBeRemoved);
-        task.addOnSuccessListener(new OnSuccessListener<Void>() {
+        backend.removeGeofences(toBeRemoved, new PlacesMonitorGeofencingBackend.Callback() {
             @Override
-            public void onSuccess(Void aVoid) {
-                for (String eachgeofence : toBeRemoved) {
-                    monitoringFences.remove(eachgeofence);
-                }
-                saveMonitoringFences();
+            public void onSuccess() {
+                fenceStore.remove(toBeRemoved);
                 Log.debug(PlacesMonitorConstants.LOG_TAG, "Successfully removed " + toBeRemoved.size() + " fences for monitoring");
             }
-        });
-        task.addOnFailureListener(new OnFailureListener() {
-            @Override
-            public void onFailure(Exception e) {
-                Log.debug(PlacesMonitorConstants.LOG_TAG, "Error in adding fences for monitoring " + e.getMessage());
 
+            @Override
+            public void onFailure(final int statusCode, final String message) {
+                Log.debug(PlacesMonitorConstants.LOG_TAG, "Error in removing fences for monitoring " + message);
             }
         });
 
@@ -257,61 +384,25 @@ class PlacesGeofenceManager {
 
 
     // ========================================================================================
-    // Getters for intent and geofencingClient
+    // Getter for the geofencing backend
     // ========================================================================================
 
     /**
-     * Returns a {@code PendingIntent} instance for getting the Geofence triggers
+     * Returns the {@code PlacesMonitorGeofencingBackend} instance
      * <p>
-     * Returns the existing {@link #geofencePendingIntent} instance if its not null.
-     * Else attempts to create a new Pending Intent
-     * Returns null if the app context is not available.
-     *
-     * @return a {@code PendingIntent} instance
-     */
-    private PendingIntent getGeofencePendingIntent() {
-        // Reuse the PendingIntent if we already have it.
-        if (geofencePendingIntent != null) {
-            return geofencePendingIntent;
-        }
-
-        Context context = App.getAppContext();
-
-        if (context == null) {
-            Log.warning(PlacesMonitorConstants.LOG_TAG,
-                    "Unable to create an intent to receive location updates, App Context not available");
-            return null;
-        }
-
-        Intent intent = new Intent(context, PlacesGeofenceBroadcastReceiver.class);
-        intent.setAction(PlacesGeofenceBroadcastReceiver.ACTION_GEOFENCE_UPDATE);
-        geofencePendingIntent = PendingIntent.getBroadcast(App.getAppContext(), 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
-        return geofencePendingIntent;
-    }
-
-    /**
-     * Returns the {@code GeofencingClient} instance
-     * <p>
-     * Returns the existing {@link #geofencingClient} instance if its not null.
-     * Else attempts to create a new instance of {@link GeofencingClient}.
+     * Returns the existing {@link #backend} instance if its not null.
+     * Else attempts to create a {@link PlacesMonitorGmsGeofencingBackend} with the {@code GeofencingClient} of the app.
      * Returns null if the app context is not available
      *
-     * @return a {@code GeofencingClient} instance
+     * @return a {@code PlacesMonitorGeofencingBackend} instance
      */
-    private GeofencingClient getGeofencingClient() {
-        if (geofencingClient != null) {
-            return geofencingClient;
+    private PlacesMonitorGeofencingBackend getBackend() {
+        if (backend != null) {
+            return backend;
         }
 
-        Context context = App.getAppContext();
-
-        if (context == null) {
-            Log.warning(PlacesMonitorConstants.LOG_TAG, "Places Geofence Services not initialized, App Context not available");
-            return null;
-        }
-
-        geofencingClient = LocationServices.getGeofencingClient(context);
-        return geofencingClient;
+        backend = PlacesMonitorGmsGeofencingBackend.create();
+        return backend;
     }
 
     private SharedPreferences getSharedPreference() {
@@ -322,18 +413,4 @@ class PlacesGeofenceManager {
         }
         return appContext.getSharedPreferences(MONITOR_SHARED_PREFERENCE_KEY, 0);
     }
-
-
-    private boolean checkPermissions() {
-        Context context = App.getAppContext();
-
-        if (context == null) {
-            Log.warning(PlacesMonitorConstants.LOG_TAG, "Unable to check location permission, App context is not available");
-            return false;
-        }
-
-        int permissionState = ActivityCompat.checkSelfPermission(context,
-                FINE_LOCATION);
-        return permissionState == PackageManager.PERMISSION_GRANTED;
-    }
 }
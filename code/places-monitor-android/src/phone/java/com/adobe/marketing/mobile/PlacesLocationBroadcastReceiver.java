@@ -23,6 +23,7 @@ import android.location.Location;
 
 import com.google.android.gms.location.LocationResult;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class PlacesLocationBroadcastReceiver extends BroadcastReceiver {
@@ -30,7 +31,7 @@ public class PlacesLocationBroadcastReceiver extends BroadcastReceiver {
 		"com.adobe.marketing.mobile.PlacesLocationBroadcastReceiver.locationUpdates";
 
 	@Override
-	public void onReceive(Context context, Intent intent) {
+	public void onReceive(Context context, final Intent intent) {
 		if (intent == null) {
 			Log.error(PlacesMonitorConstants.LOG_TAG,"Cannot process the location update, The received intent from the location broadcast receiver  is null");
 			return;
@@ -42,33 +43,135 @@ public class PlacesLocationBroadcastReceiver extends BroadcastReceiver {
 			return;
 		}
 
+		// parse and dispatch the location on the worker thread, off the main thread, the next fix supersedes it
+		final PendingResult pendingResult = goAsync();
+		PlacesMonitorBroadcastWorker.executeSheddable(pendingResult, new Runnable() {
+			@Override
+			public void run() {
+				processLocationIntent(intent);
+			}
+		});
+	}
+
+	private static void processLocationIntent(final Intent intent) {
 		LocationResult result = LocationResult.extractResult(intent);
 		if (result == null) {
 			Log.error(PlacesMonitorConstants.LOG_TAG,"Cannot process the location update, Received location result is null");
 			return;
 		}
 
-		List<Location> locations = result.getLocations();
+		processLocations(result.getLocations());
+	}
+
+	/**
+	 * Processes the location fixes delivered by a {@link PlacesMonitorLocationSource}.
+	 * <p>
+	 * The best fix is fed to the {@link PlacesMonitorLocationPolicy}. Every fix is then run through the
+	 * {@link PlacesMonitorLocationFilter}, the best of the accepted fixes is dispatched to the Places extension and
+	 * the accepted fixes are evaluated against the software geofences.
+	 *
+	 * @param locations the {@code List} of location fixes, from the oldest to the most recent
+	 */
+	static void processLocations(final List<Location> locations) {
 		if (locations == null || locations.isEmpty()) {
 			Log.error(PlacesMonitorConstants.LOG_TAG,"Cannot process the location update, Received location result is null");
 			return;
 		}
 
-		Location location = locations.get(0);
+		// a batched result holds several fixes, from the oldest to the most recent
+		Location location = selectBestLocation(locations);
 		if (location == null) {
 			Log.error(PlacesMonitorConstants.LOG_TAG, "Cannot process the location update, Received location is null");
 			return;
 		}
 
 		String locationLog = "Location Received: Accuracy: " + location.getAccuracy() + " lat: " + location.getLatitude() + " lon: " +
-									location.getLongitude();
+									location.getLongitude() + " batch size: " + locations.size();
 		Log.debug(PlacesMonitorConstants.LOG_TAG, locationLog);
 
 
-		// Dispatch the given location to Places Extension
-		LocalNotification.sendNotification("Monitor Location Update Received", locationLog);
-		PlacesMonitorDispatcher.dispatchLocation(location);
+		// the location request follows the distance to the nearest fence
+		PlacesMonitorLocationPolicy.getSharedInstance().onLocation(location);
+
+		// a stale fix or a jump is kept out of both the Places extension and the software geofences
+		final PlacesMonitorLocationFilter locationFilter = PlacesMonitorLocationFilter.getSharedInstance();
+		final List<Location> acceptedLocations = new ArrayList<Location>();
+
+		for (Location fix : locations) {
+			final Location filteredFix = locationFilter.filter(fix);
+
+			if (filteredFix != null) {
+				acceptedLocations.add(filteredFix);
+			}
+		}
+
+		// Dispatch the best accepted location to Places Extension; a dropped refresh boundary fix is retried
+		PlacesMonitorDiagnostics.record("Monitor Location Update Received", locationLog);
+		final Location filteredLocation = selectBestLocation(acceptedLocations);
+
+		if (filteredLocation != null) {
+			PlacesMonitorDispatcher.dispatchLocation(filteredLocation);
+		} else {
+			PlacesMonitorDispatcher.dispatchDroppedLocation(location);
+		}
+
+		// evaluate the regions that are not monitored by the OS along the whole trajectory of the batch,
+		// so a region crossed between two broadcasts is not missed
+		final PlacesMonitorSoftwareGeofencer softwareGeofencer = PlacesMonitorSoftwareGeofencer.getSharedInstance();
+
+		for (Location fix : acceptedLocations) {
+			final PlacesMonitorSoftwareGeofencer.Transitions transitions = softwareGeofencer.evaluate(fix.getLatitude(),
+					fix.getLongitude(), fix.hasAccuracy() ? fix.getAccuracy() : -1);
+			PlacesMonitorDispatcher.dispatchRegionEvents(transitions.getExited(), PlacesMonitorConstants.EventDataKeys.GEOFENCE_TYPE_EXIT);
+			PlacesMonitorDispatcher.dispatchRegionEvents(transitions.getEntered(), PlacesMonitorConstants.EventDataKeys.GEOFENCE_TYPE_ENTRY);
+		}
+
+	}
+
+	/**
+	 * Selects the location to be dispatched out of a batch of location fixes.
+	 * <p>
+	 * The most accurate fix is selected among the fixes at most {@link PlacesMonitorConstants.Location#BEST_FIX_MAX_AGE}
+	 * older than the most recent fix, so a stale fix is never preferred for its accuracy alone. Between equally
+	 * accurate fixes the most recent one is selected. Fixes without accuracy are only selected if no other fix is available.
+	 *
+	 * @param locations the {@code List} of location fixes, may contain null elements
+	 * @return the selected {@link Location}, or null if the list holds no location
+	 */
+	static Location selectBestLocation(final List<Location> locations) {
+		long mostRecentTime = Long.MIN_VALUE;
+
+		for (Location location : locations) {
+			if (location != null) {
+				mostRecentTime = Math.max(mostRecentTime, location.getTime());
+			}
+		}
+
+		Location bestLocation = null;
+
+		for (Location location : locations) {
+			if (location == null || location.getTime() < mostRecentTime - PlacesMonitorConstants.Location.BEST_FIX_MAX_AGE) {
+				continue;
+			}
+
+			if (bestLocation == null || isBetterLocation(location, bestLocation)) {
+				bestLocation = location;
+			}
+		}
+
+		return bestLocation;
+	}
+
+	private static boolean isBetterLocation(final Location location, final Location currentBest) {
+		if (location.hasAccuracy() != currentBest.hasAccuracy()) {
+			return location.hasAccuracy();
+		}
+
+		if (location.hasAccuracy() && location.getAccuracy() != currentBest.getAccuracy()) {
+			return location.getAccuracy() < currentBest.getAccuracy();
+		}
 
+		return location.getTime() > currentBest.getTime();
 	}
 
 }
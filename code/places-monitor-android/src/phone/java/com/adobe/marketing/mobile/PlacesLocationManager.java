@@ -23,12 +23,16 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.location.Location;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v4.app.ActivityCompat;
 
 
 import com.google.android.gms.common.api.ApiException;
 import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
 import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.location.LocationSettingsRequest;
 import com.google.android.gms.location.LocationSettingsResponse;
@@ -40,7 +44,11 @@ import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.gms.tasks.Task;
 
 
-class PlacesLocationManager {
+/**
+ * The {@link PlacesMonitorLocationSource} backed by the fused location provider, the location fixes are delivered to
+ * the {@link PlacesLocationBroadcastReceiver}.
+ */
+class PlacesLocationManager implements PlacesMonitorLocationSource {
 
 
     private static final int REQUEST_PERMISSIONS_REQUEST_CODE = 34;
@@ -48,10 +56,21 @@ class PlacesLocationManager {
     private final String FINE_LOCATION = Manifest.permission.ACCESS_FINE_LOCATION;
     private FusedLocationProviderClient fusedLocationClient;
     private Boolean isRequestingLocationUpdates = false;
+    private boolean refreshBoundaryEnabled = false;
+    private long maxWaitTime = 0;
+    private boolean adaptiveLocationEnabled = false;
+    private long freshFixMaxAge = PlacesMonitorConstants.Location.FRESH_FIX_MAX_AGE;
+    private long singleFixTimeout = PlacesMonitorConstants.Location.SINGLE_FIX_TIMEOUT;
     private PendingIntent locationPendingIntent;
 
+    // the pending fresh location request of updateLocation, guarded by this
+    private LocationCallback freshFixCallback;
+    private Runnable freshFixTimeoutRunnable;
+    private Handler mainHandler;
 
-    void startMonitoring() {
+
+    @Override
+    public void startMonitoring() {
         if (!checkPermissions()) {
             Log.debug(PlacesMonitorConstants.LOG_TAG, "Requesting permission to monitor fine location");
             requestPermissions();
@@ -91,6 +110,13 @@ class PlacesLocationManager {
 
                 isRequestingLocationUpdates = true;
                 Log.debug(PlacesMonitorConstants.LOG_TAG, "All location settings are satisfied to monitor location");
+
+                if (refreshBoundaryEnabled) {
+                    // location is only fixed on start and on exit of the refresh boundary
+                    fusedLocationProviderClient.requestLocationUpdates(getSingleLocationRequest(), locationIntent);
+                    return;
+                }
+
                 fusedLocationProviderClient.requestLocationUpdates(locationRequest,
                         locationIntent);
 
@@ -117,19 +143,111 @@ class PlacesLocationManager {
     }
 
 
+    @Override
     public void stopMonitoring() {
+        cancelFreshLocationRequest();
         stopLocationUpdates();
     }
 
 
+    /**
+     * Enables or disables the refresh boundary mode.
+     * <p>
+     * In refresh boundary mode the continuous location updates are turned off, a single location fix is requested
+     * when the monitoring starts and on every {@link #updateLocation()} call, which happens when the device exits the
+     * refresh boundary geofence. When the mode changes while monitoring, the location request is replaced accordingly.
+     *
+     * @param enabled true to enable the refresh boundary mode
+     */
+    @Override
+    public void setRefreshBoundaryEnabled(final boolean enabled) {
+        if (refreshBoundaryEnabled == enabled) {
+            return;
+        }
+
+        refreshBoundaryEnabled = enabled;
+
+        if (isRequestingLocationUpdates) {
+            startMonitoring();
+        }
+    }
+
+
+    /**
+     * Sets the maximum time the location updates may be batched for.
+     * <p>
+     * With a maximum wait time greater than the update interval, the fused location provider delivers several
+     * location fixes per broadcast, waking the app up less often. When the wait time changes while monitoring, the
+     * location request is replaced accordingly. It has no effect in refresh boundary mode, which requests single fixes.
+     *
+     * @param maxWaitTime the maximum wait time in milliseconds, 0 to deliver every location fix right away
+     */
+    @Override
+    public void setMaxWaitTime(final long maxWaitTime) {
+        if (this.maxWaitTime == maxWaitTime) {
+            return;
+        }
+
+        this.maxWaitTime = maxWaitTime;
+
+        if (isRequestingLocationUpdates && !refreshBoundaryEnabled) {
+            startMonitoring();
+        }
+    }
+
+
+    /**
+     * Enables or disables the adaptive location request.
+     * <p>
+     * When enabled, the priority, interval and smallest displacement of the continuous location updates follow the
+     * tier selected by the {@link PlacesMonitorLocationPolicy}, and the location request is replaced whenever the tier
+     * changes. It has no effect in refresh boundary mode, which requests single fixes.
+     *
+     * @param enabled true to enable the adaptive location request
+     */
+    @Override
+    public void setAdaptiveLocationEnabled(final boolean enabled) {
+        if (adaptiveLocationEnabled == enabled) {
+            return;
+        }
+
+        adaptiveLocationEnabled = enabled;
+
+        if (isRequestingLocationUpdates && !refreshBoundaryEnabled) {
+            startMonitoring();
+        }
+    }
+
+
+    /**
+     * Sets the freshness budget of {@link #updateLocation()}.
+     *
+     * @param maxAge  the maximum age of the last known location in milliseconds, older locations are fixed again
+     * @param timeout the time in milliseconds a single location fix is waited for
+     */
+    @Override
+    public void setFreshFixBudget(final long maxAge, final long timeout) {
+        freshFixMaxAge = maxAge;
+        singleFixTimeout = timeout;
+    }
+
+
+    /**
+     * Dispatches the current location of the device.
+     * <p>
+     * The last known location is used if it is at most {@link #freshFixMaxAge} old, otherwise a single accurate location
+     * fix is requested and waited for at most {@link #singleFixTimeout}. In refresh boundary mode a single location fix
+     * is always requested, since the last known location predates the exit of the refresh boundary.
+     */
+    @Override
     public void updateLocation() {
         if (!isRequestingLocationUpdates) {
-            Log.debug(PlacesMonitorConstants.LOG_TAG,
+            Log.warning(PlacesMonitorConstants.LOG_TAG,
                     "Location updates are stopped or never started. Please start monitoring to get the location update");
             return;
         }
 
-        FusedLocationProviderClient fusedLocationProviderClient = getFusedLocationClient();
+        final FusedLocationProviderClient fusedLocationProviderClient = getFusedLocationClient();
 
         if (fusedLocationProviderClient == null) {
             Log.warning(PlacesMonitorConstants.LOG_TAG, "Unable to update location, fusedLocationProviderClient instance is null");
@@ -137,22 +255,30 @@ class PlacesLocationManager {
         }
 
 
+        if (refreshBoundaryEnabled) {
+            requestSingleLocationUpdate(fusedLocationProviderClient);
+            return;
+        }
+
         Task<Location> task = fusedLocationProviderClient.getLastLocation();
         task.addOnFailureListener(new OnFailureListener() {
             @Override
             public void onFailure(Exception e) {
                 Log.debug(PlacesMonitorConstants.LOG_TAG, "Failed to get location" + e.getLocalizedMessage());
+                requestFreshLocation(fusedLocationProviderClient);
             }
         });
         task.addOnSuccessListener(new OnSuccessListener<Location>() {
             @Override
             public void onSuccess(Location location) {
-                if (location == null) {
+                if (location == null || !isFresh(location)) {
+                    Log.debug(PlacesMonitorConstants.LOG_TAG, "Last known location is not available or too old, requesting a new location");
+                    requestFreshLocation(fusedLocationProviderClient);
                     return;
                 }
 
                 Log.debug(PlacesMonitorConstants.LOG_TAG, "New location obtained: " + location.getLatitude() + location.getLongitude());
-                PlacesMonitorDispatcher.dispatchLocation(location);
+                dispatchFilteredLocation(location);
             }
         });
     }
@@ -215,6 +341,173 @@ class PlacesLocationManager {
         }
     }
 
+    /**
+     * Requests a single fresh location fix, delivered to the {@link PlacesLocationBroadcastReceiver}.
+     * <p>
+     * The last known location cannot be used here, since it predates the exit of the refresh boundary.
+     *
+     * @param fusedLocationProviderClient the {@link FusedLocationProviderClient} instance
+     */
+    private void requestSingleLocationUpdate(final FusedLocationProviderClient fusedLocationProviderClient) {
+        PendingIntent locationIntent = getPendingIntent();
+
+        if (locationIntent == null) {
+            Log.warning(PlacesMonitorConstants.LOG_TAG,
+                    "Unable to update location, Places Location Broadcast Receiver cannot be initialized");
+            return;
+        }
+
+        try {
+            fusedLocationProviderClient.requestLocationUpdates(getSingleLocationRequest(), locationIntent);
+        } catch (SecurityException e) {
+            Log.debug(PlacesMonitorConstants.LOG_TAG, "Update location: SecurityException: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces the location request with the one of the newly selected tier. The location settings were already
+     * checked when the monitoring started, so the request is replaced right away.
+     *
+     * @param tier the selected {@link PlacesMonitorLocationPolicy.Tier}
+     */
+    @Override
+    public void onLocationTierChanged(final PlacesMonitorLocationPolicy.Tier tier) {
+        if (!adaptiveLocationEnabled || !isRequestingLocationUpdates || refreshBoundaryEnabled) {
+            return;
+        }
+
+        FusedLocationProviderClient fusedLocationProviderClient = getFusedLocationClient();
+        PendingIntent locationIntent = getPendingIntent();
+
+        if (fusedLocationProviderClient == null || locationIntent == null) {
+            Log.warning(PlacesMonitorConstants.LOG_TAG, "Unable to replace the location request for the new location tier");
+            return;
+        }
+
+        try {
+            fusedLocationProviderClient.requestLocationUpdates(getLocationRequest(), locationIntent);
+        } catch (SecurityException e) {
+            Log.debug(PlacesMonitorConstants.LOG_TAG, "Replace location request: SecurityException: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Requests a single accurate location fix for {@link #updateLocation()}, delivered to a callback so it neither
+     * replaces the continuous location request nor outlives the {@link #singleFixTimeout}. A request that is still
+     * pending is not requested again.
+     *
+     * @param fusedLocationProviderClient the {@link FusedLocationProviderClient} instance
+     */
+    private void requestFreshLocation(final FusedLocationProviderClient fusedLocationProviderClient) {
+        final LocationCallback callback;
+        final Runnable timeoutRunnable;
+
+        synchronized (this) {
+            if (freshFixCallback != null) {
+                Log.debug(PlacesMonitorConstants.LOG_TAG, "A new location is already requested");
+                return;
+            }
+
+            callback = new LocationCallback() {
+                @Override
+                public void onLocationResult(final LocationResult locationResult) {
+                    if (!finishFreshLocationRequest(this)) {
+                        return;
+                    }
+
+                    final Location location = locationResult == null ? null : locationResult.getLastLocation();
+
+                    if (location != null) {
+                        Log.debug(PlacesMonitorConstants.LOG_TAG, "New location obtained: " + location.getLatitude() + location.getLongitude());
+                        dispatchFilteredLocation(location);
+                    }
+                }
+            };
+            timeoutRunnable = new Runnable() {
+                @Override
+                public void run() {
+                    if (finishFreshLocationRequest(callback)) {
+                        Log.debug(PlacesMonitorConstants.LOG_TAG, "Update location: no location fixed within " + singleFixTimeout + " ms");
+                    }
+                }
+            };
+            freshFixCallback = callback;
+            freshFixTimeoutRunnable = timeoutRunnable;
+        }
+
+        try {
+            fusedLocationProviderClient.requestLocationUpdates(getSingleLocationRequest(), callback, Looper.getMainLooper());
+        } catch (SecurityException e) {
+            Log.debug(PlacesMonitorConstants.LOG_TAG, "Update location: SecurityException: " + e.getMessage());
+            finishFreshLocationRequest(callback);
+            return;
+        }
+
+        getMainHandler().postDelayed(timeoutRunnable, singleFixTimeout);
+    }
+
+    /**
+     * Removes the given fresh location request, if it is still the pending one.
+     *
+     * @param callback the {@link LocationCallback} of the request
+     * @return true if the request was pending
+     */
+    private boolean finishFreshLocationRequest(final LocationCallback callback) {
+        final Runnable timeoutRunnable;
+
+        synchronized (this) {
+            if (callback == null || freshFixCallback != callback) {
+                return false;
+            }
+
+            timeoutRunnable = freshFixTimeoutRunnable;
+            freshFixCallback = null;
+            freshFixTimeoutRunnable = null;
+        }
+
+        getMainHandler().removeCallbacks(timeoutRunnable);
+
+        final FusedLocationProviderClient fusedLocationProviderClient = getFusedLocationClient();
+
+        if (fusedLocationProviderClient != null) {
+            fusedLocationProviderClient.removeLocationUpdates(callback);
+        }
+
+        return true;
+    }
+
+    private void cancelFreshLocationRequest() {
+        final LocationCallback callback;
+
+        synchronized (this) {
+            callback = freshFixCallback;
+        }
+
+        finishFreshLocationRequest(callback);
+    }
+
+    private boolean isFresh(final Location location) {
+        final long age = PlacesMonitorLocationFilter.getAge(location);
+        // a location without timestamp cannot be told apart, it is left to the location filter
+        return age < 0 || age <= freshFixMaxAge;
+    }
+
+    private void dispatchFilteredLocation(final Location location) {
+        final Location filteredLocation = PlacesMonitorLocationFilter.getSharedInstance().filter(location);
+
+        if (filteredLocation != null) {
+            PlacesMonitorDispatcher.dispatchLocation(filteredLocation);
+        }
+    }
+
+    private synchronized Handler getMainHandler() {
+        if (mainHandler == null) {
+            mainHandler = new Handler(Looper.getMainLooper());
+        }
+
+        return mainHandler;
+    }
+
     private void stopLocationUpdates() {
 
         FusedLocationProviderClient fusedLocationProviderClient = getFusedLocationClient();
@@ -305,15 +598,44 @@ class PlacesLocationManager {
 
     /**
      * Return the {@code LocationRequest} instance with indicating the distance and time frequency of the
-     * location request.
+     * location request, batched up to the {@link #maxWaitTime} if set. With the adaptive location request enabled,
+     * the parameters are the ones of the tier selected by the {@link PlacesMonitorLocationPolicy}.
      *
      * @return A valid {@link LocationRequest} instance
      */
     private LocationRequest getLocationRequest() {
         LocationRequest locationRequest = LocationRequest.create();
-        locationRequest.setInterval(PlacesMonitorConstants.Location.REQUEST_INTERVAL);
-        locationRequest.setFastestInterval(PlacesMonitorConstants.Location.REQUEST_FASTEST_INTERVAL);
-        locationRequest.setSmallestDisplacement(PlacesMonitorConstants.Location.REQUEST_SMALLEST_DISPLACEMENT);
+
+        if (adaptiveLocationEnabled) {
+            final PlacesMonitorLocationPolicy.Tier tier = PlacesMonitorLocationPolicy.getSharedInstance().getTier();
+            locationRequest.setInterval(tier.getInterval());
+            locationRequest.setFastestInterval(tier.getFastestInterval());
+            locationRequest.setSmallestDisplacement(tier.getSmallestDisplacement());
+            locationRequest.setPriority(tier.getPriority());
+        } else {
+            locationRequest.setInterval(PlacesMonitorConstants.Location.REQUEST_INTERVAL);
+            locationRequest.setFastestInterval(PlacesMonitorConstants.Location.REQUEST_FASTEST_INTERVAL);
+            locationRequest.setSmallestDisplacement(PlacesMonitorConstants.Location.REQUEST_SMALLEST_DISPLACEMENT);
+            locationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
+        }
+
+        if (maxWaitTime > 0) {
+            locationRequest.setMaxWaitTime(maxWaitTime);
+        }
+
+        return locationRequest;
+    }
+
+    /**
+     * Return the {@code LocationRequest} instance for a single location fix, used in refresh boundary mode and when
+     * the last known location is too old.
+     *
+     * @return A valid {@link LocationRequest} instance
+     */
+    private LocationRequest getSingleLocationRequest() {
+        LocationRequest locationRequest = LocationRequest.create();
+        locationRequest.setNumUpdates(1);
+        locationRequest.setExpirationDuration(singleFixTimeout);
         locationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
         return locationRequest;
     }
@@ -0,0 +1,292 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorBroadcastWorker.java
+//
+
+package com.adobe.marketing.mobile;
+
+import android.content.BroadcastReceiver;
+import android.os.Build;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the work of the broadcast receivers off the main thread.
+ * <p>
+ * The receivers call {@link BroadcastReceiver#goAsync()} and hand the parsing and dispatching of the intent to
+ * {@link #execute(BroadcastReceiver.PendingResult, Runnable)}. The work runs on a single background thread, so the
+ * broadcasts are still processed in the order they were received. The {@code PendingResult} is finished once the
+ * work completes, or after {@link PlacesMonitorConstants.BroadcastWorker#TIMEOUT} milliseconds at the latest, so the
+ * system never considers the broadcast as hung.
+ * <p>
+ * The location broadcasts are sheddable, the next fix supersedes them. At most
+ * {@link PlacesMonitorConstants.BroadcastWorker#QUEUE_CAPACITY} broadcasts wait for the worker before a new location
+ * broadcast is dropped and finished right away, the calling thread is the main thread and must not run the work
+ * itself. A geofence broadcast is never dropped: it takes the place of the oldest queued location broadcast, or waits
+ * beyond the capacity when only geofence broadcasts are queued.
+ */
+final class PlacesMonitorBroadcastWorker {
+
+    private static final Object mutex = new Object();
+    private static final Object queueMutex = new Object();
+    private static final AtomicInteger timedOutCount = new AtomicInteger();
+    private static final AtomicInteger droppedCount = new AtomicInteger();
+    private static Executor executor;
+    private static ScheduledExecutorService watchdog;
+
+    /**
+     * Runs the given work on the worker thread and finishes the {@code PendingResult} when done.
+     *
+     * @param pendingResult the {@link BroadcastReceiver.PendingResult} returned by {@code goAsync()}, may be null
+     * @param work          the processing of the broadcast
+     */
+    static void execute(final BroadcastReceiver.PendingResult pendingResult, final Runnable work) {
+        execute(pendingResult, work, PlacesMonitorConstants.BroadcastWorker.TIMEOUT);
+    }
+
+    /**
+     * Runs the given work on the worker thread and finishes the {@code PendingResult} when done, or after the given
+     * timeout at the latest.
+     *
+     * @param pendingResult the {@link BroadcastReceiver.PendingResult} returned by {@code goAsync()}, may be null
+     * @param work          the processing of the broadcast
+     * @param timeout       the time in milliseconds after which the {@code PendingResult} is finished anyway
+     */
+    static void execute(final BroadcastReceiver.PendingResult pendingResult, final Runnable work, final long timeout) {
+        execute(pendingResult, work, timeout, false);
+    }
+
+    /**
+     * Runs the given work on the worker thread and finishes the {@code PendingResult} when done, unless the queue of
+     * the worker is full. The work is also dropped when a broadcast that cannot be shed needs its place in the queue.
+     *
+     * @param pendingResult the {@link BroadcastReceiver.PendingResult} returned by {@code goAsync()}, may be null
+     * @param work          the processing of the broadcast, superseded by the next broadcast of the same kind
+     */
+    static void executeSheddable(final BroadcastReceiver.PendingResult pendingResult, final Runnable work) {
+        execute(pendingResult, work, PlacesMonitorConstants.BroadcastWorker.TIMEOUT, true);
+    }
+
+    private static void execute(final BroadcastReceiver.PendingResult pendingResult, final Runnable work,
+                                final long timeout, final boolean sheddable) {
+        final Handoff handoff = new Handoff(pendingResult);
+
+        if (pendingResult != null) {
+            handoff.timeout = getWatchdog().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (handoff.finish()) {
+                        timedOutCount.incrementAndGet();
+                        Log.warning(PlacesMonitorConstants.LOG_TAG, "Broadcast processing exceeded " + timeout
+                                    + " ms, finishing the broadcast");
+                    }
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+        }
+
+        final Task task = new Task(work, handoff, sheddable);
+        final Executor currentExecutor = getExecutor();
+
+        synchronized (queueMutex) {
+            if (currentExecutor instanceof ThreadPoolExecutor && !makeRoom((ThreadPoolExecutor) currentExecutor, task)) {
+                drop(task);
+                return;
+            }
+
+            try {
+                currentExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                drop(task);
+            }
+        }
+    }
+
+    /**
+     * Replaces the executor running the work, null restores the default worker thread.
+     *
+     * @param newExecutor the {@link Executor} to be used
+     */
+    static void setExecutor(final Executor newExecutor) {
+        synchronized (mutex) {
+            executor = newExecutor;
+        }
+    }
+
+    /**
+     * @return the number of broadcasts finished by the watchdog before their work completed
+     */
+    static int getTimedOutCount() {
+        return timedOutCount.get();
+    }
+
+    /**
+     * @return the number of broadcasts dropped because the queue of the worker was full
+     */
+    static int getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    // ========================================================================================
+    // private methods
+    // ========================================================================================
+
+    /**
+     * Makes room in the queue of the worker for the given task, the caller holds the queue mutex.
+     *
+     * @param threadPoolExecutor the {@link ThreadPoolExecutor} running the work
+     * @param task               the {@link Task} to be queued
+     * @return false if the task is to be dropped
+     */
+    private static boolean makeRoom(final ThreadPoolExecutor threadPoolExecutor, final Task task) {
+        final BlockingQueue<Runnable> queue = threadPoolExecutor.getQueue();
+
+        if (queue.size() < PlacesMonitorConstants.BroadcastWorker.QUEUE_CAPACITY) {
+            return true;
+        }
+
+        if (task.sheddable) {
+            return false;
+        }
+
+        // the oldest location broadcast gives its place to the geofence broadcast
+        for (Runnable queued : queue) {
+            if (queued instanceof Task && ((Task) queued).sheddable && queue.remove(queued)) {
+                drop((Task) queued);
+                break;
+            }
+        }
+
+        return true;
+    }
+
+    private static void drop(final Task task) {
+        droppedCount.incrementAndGet();
+        Log.warning(PlacesMonitorConstants.LOG_TAG, "Broadcast worker queue is full, dropping the broadcast");
+        task.handoff.finish();
+    }
+
+    private static Executor getExecutor() {
+        synchronized (mutex) {
+            if (executor == null) {
+                // unbounded, the capacity is only enforced on the sheddable broadcasts
+                executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread = new Thread(runnable, "PlacesMonitorBroadcastWorker");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+
+            return executor;
+        }
+    }
+
+    private static ScheduledExecutorService getWatchdog() {
+        synchronized (mutex) {
+            if (watchdog == null) {
+                final ScheduledThreadPoolExecutor scheduledExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread = new Thread(runnable, "PlacesMonitorBroadcastWatchdog");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+
+                // the timeout of nearly every broadcast is cancelled, do not keep it queued until it expires
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                    scheduledExecutor.setRemoveOnCancelPolicy(true);
+                }
+
+                watchdog = scheduledExecutor;
+            }
+
+            return watchdog;
+        }
+    }
+
+    private PlacesMonitorBroadcastWorker() {
+    }
+
+    /**
+     * The work of a broadcast queued for the worker thread.
+     */
+    private static final class Task implements Runnable {
+        private final Runnable work;
+        private final Handoff handoff;
+        private final boolean sheddable;
+
+        Task(final Runnable work, final Handoff handoff, final boolean sheddable) {
+            this.work = work;
+            this.handoff = handoff;
+            this.sheddable = sheddable;
+        }
+
+        @Override
+        public void run() {
+            try {
+                work.run();
+            } catch (Exception e) {
+                Log.error(PlacesMonitorConstants.LOG_TAG, "Failed to process the broadcast: " + e.getMessage());
+            } finally {
+                handoff.finish();
+            }
+        }
+    }
+
+    /**
+     * Finishes a {@code PendingResult} exactly once, either when the work completes or when the watchdog fires.
+     */
+    private static class Handoff {
+        private final BroadcastReceiver.PendingResult pendingResult;
+        private final AtomicBoolean finished = new AtomicBoolean(false);
+        private volatile Future<?> timeout;
+
+        Handoff(final BroadcastReceiver.PendingResult pendingResult) {
+            this.pendingResult = pendingResult;
+        }
+
+        boolean finish() {
+            if (!finished.compareAndSet(false, true)) {
+                return false;
+            }
+
+            final Future<?> pendingTimeout = timeout;
+
+            if (pendingTimeout != null) {
+                pendingTimeout.cancel(false);
+            }
+
+            if (pendingResult != null) {
+                pendingResult.finish();
+            }
+
+            return true;
+        }
+    }
+}
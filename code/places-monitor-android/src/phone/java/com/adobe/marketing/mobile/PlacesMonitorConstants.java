@@ -27,17 +27,156 @@ final class PlacesMonitorConstants {
 	static final String EVENTNAME_START = "start monitoring";
 	static final String EVENTNAME_STOP = "stop monitoring";
 	static final String EVENTNAME_UPDATE = "update location";
+	static final String EVENTNAME_CACHED_NEARBY_PLACES = "cached nearby places";
 	static final int NEARBY_GEOFENCES_COUNT = 20;
+	static final int MAX_GEOFENCES_COUNT = 100;		// limit of geofences per app on Android
 
 	static final class Location {
 		static final int REQUEST_INTERVAL = 3600;				// 1 hour
 		static final int REQUEST_FASTEST_INTERVAL = 1800;    	// 30 minutes
 		static final int REQUEST_SMALLEST_DISPLACEMENT = 2000;   // 2 kilometer
+		static final long SINGLE_FIX_TIMEOUT = 60 * 1000;		// 1 minute
+		static final long MIN_SINGLE_FIX_TIMEOUT = 5 * 1000;	// 5 seconds
+		static final long MAX_SINGLE_FIX_TIMEOUT = 5 * 60 * 1000;	// 5 minutes
+		static final long FRESH_FIX_MAX_AGE = 2 * 60 * 1000;	// 2 minutes, older last known locations are fixed again
+		static final long MAX_BATCH_WAIT_TIME = 60 * 60 * 1000;	// 1 hour, upper bound of the configured batching
+		static final long BEST_FIX_MAX_AGE = 2 * 60 * 1000;		// 2 minutes older than the most recent fix of a batch
 
 		private Location() {
 		}
 	}
 
+	static final class Configuration {
+		static final String GEOFENCE_COUNT = "placesmonitor.geofencecount";
+		static final String REFRESH_BOUNDARY = "placesmonitor.refreshboundary";
+		static final String SOFTWARE_GEOFENCING = "placesmonitor.softwaregeofencing";
+		static final String COALESCING_WINDOW = "placesmonitor.coalescingwindow";
+		// opt-in, the batched region events need a Places extension that processes them
+		static final String BATCH_REGION_EVENTS = "placesmonitor.batchregionevents";
+		static final String DIAGNOSTIC_SINKS = "placesmonitor.diagnosticsinks";
+		static final String LOCATION_MAX_WAIT_TIME = "placesmonitor.locationmaxwaittime";
+		static final String LOCATION_MAX_ACCURACY = "placesmonitor.locationmaxaccuracy";
+		static final String LOCATION_MAX_AGE = "placesmonitor.locationmaxage";
+		static final String LOCATION_MAX_SPEED = "placesmonitor.locationmaxspeed";
+		static final String LOCATION_SMOOTHING = "placesmonitor.locationsmoothing";
+		static final String ADAPTIVE_LOCATION = "placesmonitor.adaptivelocation";
+		static final String LOCATION_FRESHNESS = "placesmonitor.locationfreshness";
+		static final String LOCATION_TIMEOUT = "placesmonitor.locationtimeout";
+
+		private Configuration() {
+		}
+	}
+
+	static final class RefreshBoundary {
+		static final String IDENTIFIER = "com.adobe.placesMonitor.refreshBoundary";
+		static final float MIN_RADIUS = 200;		// 200 meters, smaller boundaries are not used
+		static final float RESPONSIVENESS_MARGIN = 100;	// 100 meters, covers the delay of the exit transition
+		static final float MAX_RADIUS = 2000;		// 2 kilometer, same as the smallest displacement of the location updates
+		static final int MAX_DROPPED_FIX_RETRIES = 2;	// new fixes requested before a dropped fix is dispatched anyway
+
+		private RefreshBoundary() {
+		}
+	}
+
+	static final class SoftwareGeofencing {
+		static final double MIN_HYSTERESIS = 25;			// 25 meters
+		static final double HYSTERESIS_RATIO = 0.1;			// 10 percent of the region radius
+		static final float MAX_ACCURACY = 500;				// 500 meters
+		static final float UNKNOWN_ACCURACY = 100;			// 100 meters, assumed for a location without accuracy
+
+		private SoftwareGeofencing() {
+		}
+	}
+
+	static final class Coalescing {
+		static final long DEFAULT_WINDOW = 0;				// reconcile each response right away
+		static final long MAX_WINDOW = 30 * 1000;			// 30 seconds
+
+		private Coalescing() {
+		}
+	}
+
+	static final class Diagnostics {
+		static final String SINK_NOTIFICATION = "notification";
+		static final String SINK_RING_BUFFER = "ringbuffer";
+		static final String SINK_FILE = "file";
+		static final int QUEUE_CAPACITY = 256;
+		static final int RING_BUFFER_CAPACITY = 200;
+		static final String FILE_NAME = "placesmonitor_diagnostics.log";
+		static final long MAX_FILE_SIZE = 256 * 1024;			// 256 kilobytes
+
+		private Diagnostics() {
+		}
+	}
+
+	static final class LocationFilter {
+		static final float DEFAULT_MAX_ACCURACY = 1000;				// 1 kilometer
+		static final long DEFAULT_MAX_AGE = 10 * 60 * 1000;			// 10 minutes
+		static final float DEFAULT_MAX_SPEED = 100;					// 360 kilometer per hour
+		static final int MAX_CONSECUTIVE_OUTLIERS = 3;
+		static final float MIN_ACCURACY = 1;						// 1 meter, lower bound of the smoother measurement noise
+		static final float SMOOTHING_SPEED = 3;					// 3 meters per second, the expected movement between fixes
+
+		private LocationFilter() {
+		}
+	}
+
+	static final class LocationPolicy {
+		static final double NEAR_DISTANCE = 1000;					// 1 kilometer to the edge of the nearest fence
+		static final double APPROACHING_DISTANCE = 5000;			// 5 kilometer to the edge of the nearest fence
+		static final double HYSTERESIS_RATIO = 1.25;				// a tier is left 25 percent past its distance
+		static final long NEAR_INTERVAL = 2 * 60 * 1000;			// 2 minutes
+		static final long NEAR_FASTEST_INTERVAL = 30 * 1000;		// 30 seconds
+		static final float NEAR_SMALLEST_DISPLACEMENT = 50;			// 50 meters
+		static final long APPROACHING_INTERVAL = 10 * 60 * 1000;	// 10 minutes
+		static final long APPROACHING_FASTEST_INTERVAL = 2 * 60 * 1000;	// 2 minutes
+		static final float APPROACHING_SMALLEST_DISPLACEMENT = 250;	// 250 meters
+		static final long FAR_INTERVAL = 60 * 60 * 1000;			// 1 hour
+		static final long FAR_FASTEST_INTERVAL = 15 * 60 * 1000;	// 15 minutes
+		static final float FAR_SMALLEST_DISPLACEMENT = 1000;		// 1 kilometer
+		static final float FAR_MAX_ACCURACY = 5000;					// 5 kilometer, low power fixes are only city level
+
+		private LocationPolicy() {
+		}
+	}
+
+	static final class TraceReplay {
+		static final String PROVIDER = "trace";
+		static final long DEFAULT_FIX_INTERVAL = 1000;				// 1 second between the fixes without time
+
+		private TraceReplay() {
+		}
+	}
+
+	static final class EventQueue {
+		static final int CONTROL_CAPACITY = 16;
+		static final int RESPONSE_CAPACITY = 64;
+
+		private EventQueue() {
+		}
+	}
+
+	static final class BroadcastWorker {
+		static final int QUEUE_CAPACITY = 64;
+		static final long TIMEOUT = 8 * 1000;						// 8 seconds, below the 10 seconds broadcast limit
+
+		private BroadcastWorker() {
+		}
+	}
+
+	static final class POICache {
+		static final int GEOHASH_PRECISION = 6;						// cells of about 1.2 x 0.6 kilometer
+		static final int MAX_CACHED_POIS = 2000;
+		static final int MAX_CACHED_CELLS = 4096;
+		static final double MAX_COVERAGE_RADIUS = 10000;			// 10 kilometer
+		static final long COVERAGE_TTL = 24 * 60 * 60 * 1000;		// 24 hours
+		static final long QUERY_TIMEOUT = 60 * 1000;				// 1 minute
+		static final double COVERAGE_SAFETY_FACTOR = 0.5;			// a location within half of the last coverage radius is skipped
+
+		private POICache() {
+		}
+	}
+
 	static final class EventSource {
 		static final String RESPONSE_CONTENT 	= "com.adobe.eventsource.responsecontent";
 		static final String REQUEST_CONTENT = "com.adobe.eventsource.requestcontent";
@@ -53,6 +192,7 @@ final class PlacesMonitorConstants {
 		static final String REQUEST_TYPE = "requesttype";
 		static final String REQUEST_TYPE_GET_NEARBY_PLACES = "requestgetnearbyplaces";
 		static final String REQUEST_TYPE_PROCESS_REGION_EVENT = "requestprocessregionevent";
+		static final String REQUEST_TYPE_PROCESS_REGION_EVENTS = "requestprocessregionevents";
 
 		static final String PLACES_COUNT = "count";
 		static final String LATITUDE = "latitude";
@@ -63,6 +203,7 @@ final class PlacesMonitorConstants {
 		static final String GEOFENCE_TYPE_EXIT  = "exit";
 
 		static final String REGION_ID = "regionid";
+		static final String REGION_IDS = "regionids";
 		static final String REGION_EVENT_TYPE = "regioneventtype";
 
 		private EventDataKeys() {
@@ -0,0 +1,284 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorDiagnostics.java
+//
+
+package com.adobe.marketing.mobile;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers the diagnostic messages of the extension to the configured {@link Sink}s.
+ * <p>
+ * No sink is configured by default, in which case {@link #record(String, String)} returns right away. The sinks are
+ * configured with a comma separated list of sink names under the
+ * {@link PlacesMonitorConstants.Configuration#DIAGNOSTIC_SINKS} configuration key.
+ * <p>
+ * The messages are delivered on a background thread, so the broadcast receivers never wait for a sink. At most
+ * {@link PlacesMonitorConstants.Diagnostics#QUEUE_CAPACITY} messages wait for delivery, further messages are dropped.
+ */
+final class PlacesMonitorDiagnostics {
+
+    /**
+     * A destination of the diagnostic messages.
+     */
+    interface Sink {
+        /**
+         * Called on the diagnostics thread for each recorded message.
+         *
+         * @param timestamp the time the message was recorded, in milliseconds since epoch
+         * @param title     the title of the message
+         * @param message   the message
+         */
+        void onDiagnostic(final long timestamp, final String title, final String message);
+    }
+
+    private static final Object mutex = new Object();
+    private static final AtomicInteger droppedCount = new AtomicInteger();
+    private static volatile List<Sink> sinks = Collections.emptyList();
+    private static String sinksConfiguration = "";
+    private static ThreadPoolExecutor executor;
+
+    /**
+     * Records a diagnostic message, to be delivered asynchronously to the configured sinks.
+     *
+     * @param title   the title of the message
+     * @param message the message
+     */
+    static void record(final String title, final String message) {
+        final List<Sink> currentSinks = sinks;
+
+        if (currentSinks.isEmpty()) {
+            return;
+        }
+
+        final long timestamp = System.currentTimeMillis();
+
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                for (Sink sink : currentSinks) {
+                    try {
+                        sink.onDiagnostic(timestamp, title, message);
+                    } catch (Exception e) {
+                        Log.debug(PlacesMonitorConstants.LOG_TAG, "Diagnostics sink failed: " + e.getMessage());
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Configures the sinks from a comma separated list of sink names.
+     * <p>
+     * The known names are {@value PlacesMonitorConstants.Diagnostics#SINK_NOTIFICATION},
+     * {@value PlacesMonitorConstants.Diagnostics#SINK_RING_BUFFER} and {@value PlacesMonitorConstants.Diagnostics#SINK_FILE},
+     * unknown names are ignored. The sinks are kept as long as the configuration does not change.
+     *
+     * @param configuration the comma separated sink names, null or empty to disable the diagnostics
+     */
+    static void configureSinks(final String configuration) {
+        final String normalizedConfiguration = configuration == null ? "" : configuration.trim();
+
+        synchronized (mutex) {
+            if (normalizedConfiguration.equals(sinksConfiguration)) {
+                return;
+            }
+
+            sinksConfiguration = normalizedConfiguration;
+
+            final List<Sink> configuredSinks = new ArrayList<Sink>();
+
+            for (String name : normalizedConfiguration.split(",")) {
+                final String sinkName = name.trim();
+
+                if (PlacesMonitorConstants.Diagnostics.SINK_NOTIFICATION.equalsIgnoreCase(sinkName)) {
+                    configuredSinks.add(new LocalNotificationSink());
+                } else if (PlacesMonitorConstants.Diagnostics.SINK_RING_BUFFER.equalsIgnoreCase(sinkName)) {
+                    configuredSinks.add(new RingBufferSink(PlacesMonitorConstants.Diagnostics.RING_BUFFER_CAPACITY));
+                } else if (PlacesMonitorConstants.Diagnostics.SINK_FILE.equalsIgnoreCase(sinkName)) {
+                    final File file = getDiagnosticsFile();
+
+                    if (file != null) {
+                        configuredSinks.add(new FileSink(file, PlacesMonitorConstants.Diagnostics.MAX_FILE_SIZE));
+                    }
+                } else if (!sinkName.isEmpty()) {
+                    Log.debug(PlacesMonitorConstants.LOG_TAG, "Ignoring unknown diagnostics sink " + sinkName);
+                }
+            }
+
+            setSinks(configuredSinks);
+        }
+    }
+
+    /**
+     * Replaces the sinks the messages are delivered to.
+     *
+     * @param newSinks the {@code List} of {@link Sink}s, empty to disable the diagnostics
+     */
+    static void setSinks(final List<Sink> newSinks) {
+        sinks = newSinks == null ? Collections.<Sink>emptyList() :
+                Collections.unmodifiableList(new ArrayList<Sink>(newSinks));
+    }
+
+    static List<Sink> getSinks() {
+        return sinks;
+    }
+
+    /**
+     * @return the number of messages dropped because the delivery queue was full
+     */
+    static int getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    // ========================================================================================
+    // private methods
+    // ========================================================================================
+
+    private static ThreadPoolExecutor getExecutor() {
+        synchronized (mutex) {
+            if (executor == null) {
+                executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<Runnable>(PlacesMonitorConstants.Diagnostics.QUEUE_CAPACITY),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread = new Thread(runnable, "PlacesMonitorDiagnostics");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }, new RejectedExecutionHandler() {
+                    @Override
+                    public void rejectedExecution(final Runnable runnable, final ThreadPoolExecutor threadPoolExecutor) {
+                        droppedCount.incrementAndGet();
+                    }
+                });
+            }
+
+            return executor;
+        }
+    }
+
+    private static File getDiagnosticsFile() {
+        final Context context = App.getAppContext();
+
+        if (context == null) {
+            Log.warning(PlacesMonitorConstants.LOG_TAG, "Unable to create the diagnostics file sink, App Context not available");
+            return null;
+        }
+
+        return new File(context.getFilesDir(), PlacesMonitorConstants.Diagnostics.FILE_NAME);
+    }
+
+    private static String format(final long timestamp, final String title, final String message) {
+        return timestamp + " " + title + ": " + message;
+    }
+
+    private PlacesMonitorDiagnostics() {
+    }
+
+    // ========================================================================================
+    // Sinks
+    // ========================================================================================
+
+    /**
+     * Shows each message as a local notification, this is meant for field testing only.
+     */
+    static class LocalNotificationSink implements Sink {
+        @Override
+        public void onDiagnostic(final long timestamp, final String title, final String message) {
+            LocalNotification.sendNotification(title, message);
+        }
+    }
+
+    /**
+     * Keeps the most recent messages in memory.
+     */
+    static class RingBufferSink implements Sink {
+        private final int capacity;
+        private final ArrayDeque<String> entries;
+
+        RingBufferSink(final int capacity) {
+            this.capacity = Math.max(1, capacity);
+            this.entries = new ArrayDeque<String>(this.capacity);
+        }
+
+        @Override
+        public synchronized void onDiagnostic(final long timestamp, final String title, final String message) {
+            if (entries.size() == capacity) {
+                entries.pollFirst();
+            }
+
+            entries.addLast(format(timestamp, title, message));
+        }
+
+        /**
+         * @return the retained messages, from the oldest to the most recent
+         */
+        synchronized List<String> getEntries() {
+            return new ArrayList<String>(entries);
+        }
+    }
+
+    /**
+     * Appends each message to a file, the file is started over once it reaches its maximum size.
+     */
+    static class FileSink implements Sink {
+        private final File file;
+        private final long maxSize;
+
+        FileSink(final File file, final long maxSize) {
+            this.file = file;
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public synchronized void onDiagnostic(final long timestamp, final String title, final String message) {
+            final boolean append = file.length() < maxSize;
+            Writer writer = null;
+
+            try {
+                writer = new FileWriter(file, append);
+                writer.write(format(timestamp, title, message));
+                writer.write('\n');
+            } catch (IOException e) {
+                Log.debug(PlacesMonitorConstants.LOG_TAG, "Unable to write the diagnostics file: " + e.getMessage());
+            } finally {
+                if (writer != null) {
+                    try {
+                        writer.close();
+                    } catch (IOException e) {
+                        Log.debug(PlacesMonitorConstants.LOG_TAG, "Unable to close the diagnostics file: " + e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+}
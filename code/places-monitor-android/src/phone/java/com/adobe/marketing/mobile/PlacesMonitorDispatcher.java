@@ -18,21 +18,158 @@ package com.adobe.marketing.mobile;
 import android.location.Location;
 import com.google.android.gms.location.Geofence;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 class PlacesMonitorDispatcher {
 
+    /**
+     * Receives the events of the monitor in place of {@code MobileCore}, such as a local stand-in for the Places
+     * extension in a simulation.
+     */
+    interface EventDispatcher {
+        /**
+         * Called with each event dispatched by the monitor.
+         *
+         * @param event         the {@link Event} to be dispatched
+         * @param errorCallback the {@link ExtensionErrorCallback} notified of a dispatch error
+         */
+        void dispatchEvent(final Event event, final ExtensionErrorCallback<ExtensionError> errorCallback);
+    }
+
+    private static volatile EventDispatcher eventDispatcher;
+    private static volatile int nearbyPlacesCount = PlacesMonitorConstants.NEARBY_GEOFENCES_COUNT;
+    private static volatile boolean regionEventBatchingEnabled = false;
+    private static volatile boolean coverageSkipEnabled = true;
+    private static final AtomicInteger droppedFixRetryCount = new AtomicInteger();
+
+    /**
+     * Sets the number of nearby POIs requested for each location, as configured for the extension.
+     *
+     * @param count the number of nearby POIs to be requested
+     */
+    static void setNearbyPlacesCount(final int count) {
+        nearbyPlacesCount = count;
+    }
+
+    static int getNearbyPlacesCount() {
+        return nearbyPlacesCount;
+    }
+
+    /**
+     * Sets whether the regions triggered together are dispatched in a single batched region event.
+     * <p>
+     * Disabled by default: one region event is dispatched for each region, in the format every Places extension
+     * processes. Enable it only with a Places extension that processes the {@code requestprocessregionevents} request,
+     * an older one ignores the batched event and the regions are lost.
+     *
+     * @param enabled true to dispatch batched region events
+     */
+    static void setRegionEventBatchingEnabled(final boolean enabled) {
+        regionEventBatchingEnabled = enabled;
+    }
+
+    static boolean isRegionEventBatchingEnabled() {
+        return regionEventBatchingEnabled;
+    }
+
+    /**
+     * Sets whether the locations inside the coverage of the last nearby response are skipped.
+     * <p>
+     * It is disabled in refresh boundary mode, where a location is only received once the device exited the
+     * refresh boundary, which needs a nearby response to be placed again.
+     *
+     * @param enabled true to skip the locations inside the last coverage
+     */
+    static void setCoverageSkipEnabled(final boolean enabled) {
+        coverageSkipEnabled = enabled;
+        droppedFixRetryCount.set(0);
+    }
+
+    static boolean isCoverageSkipEnabled() {
+        return coverageSkipEnabled;
+    }
+
+    /**
+     * Handles a location fix dropped by the {@link PlacesMonitorLocationFilter}.
+     * <p>
+     * In refresh boundary mode the fix is the single fix requested on exit of the refresh boundary, without a nearby
+     * response no boundary is placed again and the monitoring would stall. A new fix is requested up to
+     * {@link PlacesMonitorConstants.RefreshBoundary#MAX_DROPPED_FIX_RETRIES} times, then the dropped fix is dispatched
+     * anyway so the Places extension is queried. Otherwise the next location update replaces the fix.
+     *
+     * @param location the dropped {@link Location}
+     */
+    static void dispatchDroppedLocation(final Location location) {
+        // the coverage skip is only disabled in refresh boundary mode
+        if (location == null || coverageSkipEnabled) {
+            return;
+        }
+
+        if (droppedFixRetryCount.incrementAndGet() <= PlacesMonitorConstants.RefreshBoundary.MAX_DROPPED_FIX_RETRIES) {
+            Log.debug(PlacesMonitorConstants.LOG_TAG, "The refresh boundary location was dropped, requesting a new location");
+            dispatchRefreshBoundaryExit();
+            return;
+        }
+
+        Log.debug(PlacesMonitorConstants.LOG_TAG, "The refresh boundary locations keep being dropped, dispatching the location");
+        dispatchLocation(location);
+    }
+
+    /**
+     * Sets the {@link EventDispatcher} receiving the events of the monitor.
+     *
+     * @param dispatcher the {@link EventDispatcher}, or null to dispatch the events through {@code MobileCore}
+     */
+    static void setEventDispatcher(final EventDispatcher dispatcher) {
+        eventDispatcher = dispatcher;
+    }
+
     static void dispatchLocation(final Location location) {
         if(location == null) {
             Log.warning(PlacesMonitorConstants.LOG_TAG, "Location is null, Ignoring to dispatch Places Monitor Location event");
             return;
         }
 
+        droppedFixRetryCount.set(0);
+
+        dispatchLocation(location.getLatitude(), location.getLongitude());
+    }
+
+    /**
+     * Dispatches a nearby places request for the given location, unless it is inside the coverage of the last nearby
+     * response or answered by the cached POIs.
+     *
+     * @param latitude  the latitude of the location
+     * @param longitude the longitude of the location
+     */
+    static void dispatchLocation(final double latitude, final double longitude) {
+        final PlacesMonitorPOICache poiCache = PlacesMonitorPOICache.getSharedInstance();
+
+        // no POI missing from the last matched response is centered near the device while it stays inside its coverage
+        if (coverageSkipEnabled && poiCache.isInsideLastCoverage(latitude, longitude)) {
+            Log.debug(PlacesMonitorConstants.LOG_TAG, "Location is inside the coverage of the last nearby places, skipping the location");
+            return;
+        }
+
+        // answer the nearby query locally when the location is covered by the cached POIs
+        final List<PlacesMonitorPOI> cachedPOIs = poiCache.getNearbyPOIs(latitude, longitude,
+                nearbyPlacesCount);
+
+        if (cachedPOIs != null) {
+            Log.debug(PlacesMonitorConstants.LOG_TAG, "Location is covered by the cached POIs, skipping the nearby places request");
+            dispatchCachedNearbyPlaces(cachedPOIs, latitude, longitude);
+            return;
+        }
+
+        // the query is recorded as pending by the monitor when it hears the request event, see recordNearbyQuery
+
         // create event data
         EventData eventData = new EventData();
-        eventData.putDouble(PlacesMonitorConstants.EventDataKeys.LATITUDE, location.getLatitude());
-        eventData.putDouble(PlacesMonitorConstants.EventDataKeys.LONGITUDE, location.getLongitude());
-        eventData.putInteger(PlacesMonitorConstants.EventDataKeys.PLACES_COUNT, PlacesMonitorConstants.NEARBY_GEOFENCES_COUNT);
+        eventData.putDouble(PlacesMonitorConstants.EventDataKeys.LATITUDE, latitude);
+        eventData.putDouble(PlacesMonitorConstants.EventDataKeys.LONGITUDE, longitude);
+        eventData.putInteger(PlacesMonitorConstants.EventDataKeys.PLACES_COUNT, nearbyPlacesCount);
         eventData.putString(PlacesMonitorConstants.EventDataKeys.REQUEST_TYPE,
                 PlacesMonitorConstants.EventDataKeys.REQUEST_TYPE_GET_NEARBY_PLACES);
 
@@ -50,7 +187,53 @@ class PlacesMonitorDispatcher {
             }
         };
 
-        MobileCore.dispatchEvent(event, extensionErrorCallback);
+        dispatchEvent(event, extensionErrorCallback);
+    }
+
+    static void dispatchCachedNearbyPlaces(final List<PlacesMonitorPOI> pois, final double latitude, final double longitude) {
+        // create event data
+        EventData eventData = new EventData();
+        eventData.putDouble(PlacesMonitorConstants.EventDataKeys.LATITUDE, latitude);
+        eventData.putDouble(PlacesMonitorConstants.EventDataKeys.LONGITUDE, longitude);
+        eventData.putTypedList(PlacesMonitorConstants.EventDataKeys.NEAR_BY_PLACES_LIST, pois, new PlacesMonitorPOIVariantSerializer());
+
+        final Event event = new Event.Builder(PlacesMonitorConstants.EVENTNAME_CACHED_NEARBY_PLACES,
+                PlacesMonitorConstants.EventType.MONITOR, PlacesMonitorConstants.EventSource.REQUEST_CONTENT)
+                .setData(eventData)
+                .build();
+
+        ExtensionErrorCallback<ExtensionError> extensionErrorCallback = new ExtensionErrorCallback<ExtensionError>() {
+            @Override
+            public void error(final ExtensionError extensionError) {
+                if (extensionError != null) {
+                    Log.error(PlacesMonitorConstants.LOG_TAG, String.format("An error occurred dispatching event '%s', %s", event.getName(),
+                            extensionError.getErrorName()));
+                }
+            }
+        };
+
+        dispatchEvent(event, extensionErrorCallback);
+    }
+
+    /**
+     * Dispatches an update location request to the Places Monitor extension, on exit of the refresh boundary geofence.
+     */
+    static void dispatchRefreshBoundaryExit() {
+        final Event event = new Event.Builder(PlacesMonitorConstants.EVENTNAME_UPDATE,
+                PlacesMonitorConstants.EventType.MONITOR, PlacesMonitorConstants.EventSource.REQUEST_CONTENT)
+                .build();
+
+        ExtensionErrorCallback<ExtensionError> extensionErrorCallback = new ExtensionErrorCallback<ExtensionError>() {
+            @Override
+            public void error(final ExtensionError extensionError) {
+                if (extensionError != null) {
+                    Log.error(PlacesMonitorConstants.LOG_TAG, String.format("An error occurred dispatching event '%s', %s", event.getName(),
+                            extensionError.getErrorName()));
+                }
+            }
+        };
+
+        dispatchEvent(event, extensionErrorCallback);
     }
 
     static void dispatchRegionEvent(final List<Geofence> geofences, final String regionEventType) {
@@ -59,36 +242,103 @@ class PlacesMonitorDispatcher {
             return;
         }
 
+        final List<String> regionIds = new ArrayList<String>(geofences.size());
+
         for (Geofence geofence : geofences) {
             if (geofence == null) {
                 continue;
             }
 
-            EventData eventData = new EventData();
-            eventData.putString(PlacesMonitorConstants.EventDataKeys.REGION_ID, geofence.getRequestId());
-            eventData.putString(PlacesMonitorConstants.EventDataKeys.REGION_EVENT_TYPE, regionEventType);
-            eventData.putString(PlacesMonitorConstants.EventDataKeys.REQUEST_TYPE,
-                    PlacesMonitorConstants.EventDataKeys.REQUEST_TYPE_PROCESS_REGION_EVENT);
-
-            Log.debug(PlacesMonitorConstants.LOG_TAG, "Places Monitor recorded a geofence event " + regionEventType +
-                    " for id " + geofence.getRequestId());
-            // TODO : Remove before release
-            LocalNotification.sendNotification("Places Monitor Geofence event","Recorded a geofence event " + regionEventType +
-                    " for id " + geofence.getRequestId());
-            final Event event = new Event.Builder("Places Monitor Region Event", EventType.PLACES, EventSource.REQUEST_CONTENT)
-                    .setData(eventData)
-                    .build();
-
-            ExtensionErrorCallback<ExtensionError> extensionErrorCallback = new ExtensionErrorCallback<ExtensionError>() {
-                @Override
-                public void error(final ExtensionError extensionError) {
-                    if (extensionError != null){
-                        Log.error(PlacesMonitorConstants.LOG_TAG, String.format("An error occurred dispatching event '%s', %s", event.getName(),
-                                extensionError.getErrorName()));
-                    }
+            regionIds.add(geofence.getRequestId());
+        }
+
+        dispatchRegionEvents(regionIds, regionEventType);
+    }
+
+    /**
+     * Dispatches the region events of the given regions.
+     * <p>
+     * With region event batching enabled, all the regions are dispatched in a single event. Otherwise one event is
+     * dispatched for each region.
+     *
+     * @param regionIds       the identifiers of the regions
+     * @param regionEventType the region event type, entry or exit
+     */
+    static void dispatchRegionEvents(final List<String> regionIds, final String regionEventType) {
+        if (regionIds == null || regionIds.isEmpty()) {
+            return;
+        }
+
+        if (regionEventBatchingEnabled) {
+            dispatchBatchedRegionEvent(regionIds, regionEventType);
+            return;
+        }
+
+        for (String regionId : regionIds) {
+            dispatchSingleRegionEvent(regionId, regionEventType);
+        }
+    }
+
+    private static void dispatchBatchedRegionEvent(final List<String> regionIds, final String regionEventType) {
+        EventData eventData = new EventData();
+        eventData.putStringList(PlacesMonitorConstants.EventDataKeys.REGION_IDS, regionIds);
+        eventData.putString(PlacesMonitorConstants.EventDataKeys.REGION_EVENT_TYPE, regionEventType);
+        eventData.putString(PlacesMonitorConstants.EventDataKeys.REQUEST_TYPE,
+                PlacesMonitorConstants.EventDataKeys.REQUEST_TYPE_PROCESS_REGION_EVENTS);
+
+        final String regionEventLog = "Recorded a geofence event " + regionEventType + " for ids " + regionIds;
+        Log.debug(PlacesMonitorConstants.LOG_TAG, "Places Monitor " + regionEventLog);
+        PlacesMonitorDiagnostics.record("Places Monitor Geofence event", regionEventLog);
+        final Event event = new Event.Builder("Places Monitor Region Events", EventType.PLACES, EventSource.REQUEST_CONTENT)
+                .setData(eventData)
+                .build();
+
+        ExtensionErrorCallback<ExtensionError> extensionErrorCallback = new ExtensionErrorCallback<ExtensionError>() {
+            @Override
+            public void error(final ExtensionError extensionError) {
+                if (extensionError != null){
+                    Log.error(PlacesMonitorConstants.LOG_TAG, String.format("An error occurred dispatching event '%s', %s", event.getName(),
+                            extensionError.getErrorName()));
                 }
-            };
-            MobileCore.dispatchEvent(event, extensionErrorCallback);
+            }
+        };
+        dispatchEvent(event, extensionErrorCallback);
+    }
+
+    private static void dispatchSingleRegionEvent(final String regionId, final String regionEventType) {
+        EventData eventData = new EventData();
+        eventData.putString(PlacesMonitorConstants.EventDataKeys.REGION_ID, regionId);
+        eventData.putString(PlacesMonitorConstants.EventDataKeys.REGION_EVENT_TYPE, regionEventType);
+        eventData.putString(PlacesMonitorConstants.EventDataKeys.REQUEST_TYPE,
+                PlacesMonitorConstants.EventDataKeys.REQUEST_TYPE_PROCESS_REGION_EVENT);
+
+        final String regionEventLog = "Recorded a geofence event " + regionEventType + " for id " + regionId;
+        Log.debug(PlacesMonitorConstants.LOG_TAG, "Places Monitor " + regionEventLog);
+        PlacesMonitorDiagnostics.record("Places Monitor Geofence event", regionEventLog);
+        final Event event = new Event.Builder("Places Monitor Region Event", EventType.PLACES, EventSource.REQUEST_CONTENT)
+                .setData(eventData)
+                .build();
+
+        ExtensionErrorCallback<ExtensionError> extensionErrorCallback = new ExtensionErrorCallback<ExtensionError>() {
+            @Override
+            public void error(final ExtensionError extensionError) {
+                if (extensionError != null){
+                    Log.error(PlacesMonitorConstants.LOG_TAG, String.format("An error occurred dispatching event '%s', %s", event.getName(),
+                            extensionError.getErrorName()));
+                }
+            }
+        };
+        dispatchEvent(event, extensionErrorCallback);
+    }
+
+    private static void dispatchEvent(final Event event, final ExtensionErrorCallback<ExtensionError> extensionErrorCallback) {
+        final EventDispatcher dispatcher = eventDispatcher;
+
+        if (dispatcher != null) {
+            dispatcher.dispatchEvent(event, extensionErrorCallback);
+            return;
         }
+
+        MobileCore.dispatchEvent(event, extensionErrorCallback);
     }
 }
@@ -0,0 +1,242 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorEventLane.java
+//
+
+package com.adobe.marketing.mobile;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.ListIterator;
+
+/**
+ * A bounded queue of the events waiting to be processed by {@link PlacesMonitorInternal}, processed in the order they
+ * were queued.
+ * <p>
+ * The monitor queues the control requests and the POI responses in separate lanes, so a response waiting for its
+ * configuration shared state does not hold up a control request queued after it. The entries are numbered across the
+ * lanes in the order they were queued.
+ * <p>
+ * A lane holds at most its capacity, for example while the configuration shared state never arrives. An entry added to a
+ * full lane supersedes the queued entries with the same shedding key, the newest wins. When no queued entry has its key
+ * the oldest entry of the lane is dropped.
+ * <p>
+ * An entry can also be folded into a queued entry with the same key, which it supersedes: the queued entry is removed
+ * and the new entry is queued at the end of the lane, so the entries queued in between keep running before it. The
+ * monitor folds the pending start, stop and update requests this way.
+ */
+class PlacesMonitorEventLane {
+
+    /**
+     * An event queued in a lane.
+     */
+    static final class Entry {
+        private final Event event;
+        private final PlacesMonitorEventRouter.Destination destination;
+        private final String sheddingKey;
+        private final int configurationVersion;
+        private final long sequence;
+
+        /**
+         * @param event                the queued {@link Event}
+         * @param sheddingKey          the key of the entries superseded by this one, may be null
+         * @param configurationVersion the version of the configuration when the event was queued
+         * @param sequence             the number of the event in the order the events were queued, across the lanes
+         */
+        Entry(final Event event, final String sheddingKey, final int configurationVersion, final long sequence) {
+            this(event, null, sheddingKey, configurationVersion, sequence);
+        }
+
+        /**
+         * @param event                the queued {@link Event}
+         * @param destination          the {@link PlacesMonitorEventRouter.Destination} the event was routed to when it
+         *                             was queued, null if no destination is registered for it
+         * @param sheddingKey          the key of the entries superseded by this one, may be null
+         * @param configurationVersion the version of the configuration when the event was queued
+         * @param sequence             the number of the event in the order the events were queued, across the lanes
+         */
+        Entry(final Event event, final PlacesMonitorEventRouter.Destination destination, final String sheddingKey,
+              final int configurationVersion, final long sequence) {
+            this.event = event;
+            this.destination = destination;
+            this.sheddingKey = sheddingKey;
+            this.configurationVersion = configurationVersion;
+            this.sequence = sequence;
+        }
+
+        Event getEvent() {
+            return event;
+        }
+
+        PlacesMonitorEventRouter.Destination getDestination() {
+            return destination;
+        }
+
+        String getSheddingKey() {
+            return sheddingKey;
+        }
+
+        int getConfigurationVersion() {
+            return configurationVersion;
+        }
+
+        long getSequence() {
+            return sequence;
+        }
+    }
+
+    private final LinkedList<Entry> entries = new LinkedList<Entry>();
+    private final int capacity;
+    private int droppedCount;
+    private int foldedCount;
+
+    /**
+     * @param capacity the maximum number of queued entries
+     */
+    PlacesMonitorEventLane(final int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * Adds the given entry at the end of the lane, dropping older entries if the lane is full.
+     *
+     * @param entry the {@link Entry} to be queued
+     * @return the number of entries dropped to make room
+     */
+    synchronized int add(final Entry entry) {
+        int shedCount = 0;
+
+        if (entries.size() >= capacity) {
+            shedCount = removeSheddingKey(entry.getSheddingKey());
+
+            if (shedCount == 0) {
+                entries.pollFirst();
+                shedCount = 1;
+            }
+
+            droppedCount += shedCount;
+        }
+
+        entries.addLast(entry);
+        return shedCount;
+    }
+
+    /**
+     * Removes the newest queued entry with the same shedding key as the given entry and queues the given entry at the
+     * end of the lane, in the order it was queued. The entries queued before an entry with the barrier key are not
+     * replaced.
+     *
+     * @param entry      the {@link Entry} to be queued
+     * @param barrierKey the shedding key of the entries the given entry cannot be moved across, may be null
+     * @return true if a queued entry was replaced, false if the given entry was not queued
+     */
+    synchronized boolean fold(final Entry entry, final String barrierKey) {
+        final String sheddingKey = entry.getSheddingKey();
+
+        if (sheddingKey == null) {
+            return false;
+        }
+
+        for (ListIterator<Entry> iterator = entries.listIterator(entries.size()); iterator.hasPrevious();) {
+            final String queuedKey = iterator.previous().getSheddingKey();
+
+            if (sheddingKey.equals(queuedKey)) {
+                iterator.remove();
+                entries.addLast(entry);
+                foldedCount++;
+                return true;
+            }
+
+            if (barrierKey != null && barrierKey.equals(queuedKey)) {
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the oldest {@link Entry} of the lane, or null if the lane is empty
+     */
+    synchronized Entry peek() {
+        return entries.peekFirst();
+    }
+
+    /**
+     * Removes the oldest entry of the lane.
+     *
+     * @return the removed {@link Entry}, or null if the lane is empty
+     */
+    synchronized Entry poll() {
+        return entries.pollFirst();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * @return the number of entries dropped because the lane was full
+     */
+    synchronized int getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * @return the number of entries replaced by a newer entry folded into the lane
+     */
+    synchronized int getFoldedCount() {
+        return foldedCount;
+    }
+
+    /**
+     * Removes the entries queued before the given sequence number, such as the responses made stale by a stop request.
+     *
+     * @param sequence the sequence number of the first entry to be kept
+     * @return the number of removed entries
+     */
+    synchronized int removeOlderThan(final long sequence) {
+        int removedCount = 0;
+
+        for (Iterator<Entry> iterator = entries.iterator(); iterator.hasNext();) {
+            if (iterator.next().getSequence() < sequence) {
+                iterator.remove();
+                removedCount++;
+            }
+        }
+
+        return removedCount;
+    }
+
+    private int removeSheddingKey(final String sheddingKey) {
+        if (sheddingKey == null) {
+            return 0;
+        }
+
+        int removedCount = 0;
+
+        for (Iterator<Entry> iterator = entries.iterator(); iterator.hasNext();) {
+            if (sheddingKey.equals(iterator.next().getSheddingKey())) {
+                iterator.remove();
+                removedCount++;
+            }
+        }
+
+        return removedCount;
+    }
+}
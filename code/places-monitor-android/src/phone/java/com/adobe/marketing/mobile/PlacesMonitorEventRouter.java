@@ -0,0 +1,213 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorEventRouter.java
+//
+
+package com.adobe.marketing.mobile;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Routing table of the events processed by {@link PlacesMonitorInternal}, from the type, source and name of an event to
+ * its {@link Destination}: the {@link Handler}, the {@link PlacesMonitorEventLane} the event waits in and its shedding
+ * key. An event is looked up once when it is queued, the destination is kept with the queued entry.
+ * <p>
+ * The table is a map of the event types to a map of the event sources to a {@link Route}, which maps the event names to
+ * the destinations. Routing an event costs three hash lookups on strings that cache their hash code, it does not allocate.
+ * The types and sources are matched ignoring case, as the hub does. They are stored in lower case at registration, and
+ * an event whose type or source is not in lower case is looked up again in lower case. The names are matched exactly.
+ * <p>
+ * The handlers are registered when the extension is registered and the events are routed on the extension thread, the
+ * table is not synchronized.
+ */
+class PlacesMonitorEventRouter {
+
+    /**
+     * Processes the events of a route.
+     */
+    interface Handler {
+        void handle(final Event event);
+    }
+
+    /**
+     * Where the events of a route are queued and how they are processed.
+     */
+    static final class Destination {
+        private final Handler handler;
+        private final PlacesMonitorEventLane lane;
+        private final String sheddingKey;
+
+        private Destination(final Handler handler, final PlacesMonitorEventLane lane, final String sheddingKey) {
+            this.handler = handler;
+            this.lane = lane;
+            this.sheddingKey = sheddingKey;
+        }
+
+        Handler getHandler() {
+            return handler;
+        }
+
+        /**
+         * @return the {@link PlacesMonitorEventLane} the events wait in, or null if the registration did not set one
+         */
+        PlacesMonitorEventLane getLane() {
+            return lane;
+        }
+
+        /**
+         * Returns the key of the queued events superseded by the given event.
+         *
+         * @param event the routed {@link Event}
+         * @return the registered shedding key, or the name of the event if none was registered
+         */
+        String getSheddingKey(final Event event) {
+            return sheddingKey != null ? sheddingKey : event.getName();
+        }
+    }
+
+    /**
+     * The destinations of the events with the same type and source.
+     */
+    private static final class Route {
+        private final Map<String, Destination> destinationsByName = new HashMap<String, Destination>();
+        private Destination defaultDestination;
+    }
+
+    private final Map<String, Map<String, Route>> routesByType = new HashMap<String, Map<String, Route>>();
+
+    /**
+     * Registers the handler of the events with the given type, source and name, replacing the handler already registered
+     * for them.
+     *
+     * @param type    the event type
+     * @param source  the event source
+     * @param name    the event name, or null for the events of the type and source without a handler of their own
+     * @param handler the {@link Handler} of the events
+     * @return the registered {@link Destination}, or null if the registration is invalid
+     */
+    Destination register(final String type, final String source, final String name, final Handler handler) {
+        return register(type, source, name, null, null, handler);
+    }
+
+    /**
+     * Registers the handler of the events with the given type, source and name and the lane they are queued in,
+     * replacing the destination already registered for them.
+     *
+     * @param type        the event type
+     * @param source      the event source
+     * @param name        the event name, or null for the events of the type and source without a destination of their
+     *                    own
+     * @param lane        the {@link PlacesMonitorEventLane} the events are queued in, may be null
+     * @param sheddingKey the key of the queued events superseded by these events, or null for the event name
+     * @param handler     the {@link Handler} of the events
+     * @return the registered {@link Destination}, or null if the registration is invalid
+     */
+    Destination register(final String type, final String source, final String name, final PlacesMonitorEventLane lane,
+                         final String sheddingKey, final Handler handler) {
+        if (type == null || source == null || handler == null) {
+            return null;
+        }
+
+        final String normalizedType = normalize(type);
+        Map<String, Route> routesBySource = routesByType.get(normalizedType);
+
+        if (routesBySource == null) {
+            routesBySource = new HashMap<String, Route>();
+            routesByType.put(normalizedType, routesBySource);
+        }
+
+        final String normalizedSource = normalize(source);
+        Route route = routesBySource.get(normalizedSource);
+
+        if (route == null) {
+            route = new Route();
+            routesBySource.put(normalizedSource, route);
+        }
+
+        final Destination destination = new Destination(handler, lane, sheddingKey);
+
+        if (name == null) {
+            route.defaultDestination = destination;
+        } else {
+            route.destinationsByName.put(name, destination);
+        }
+
+        return destination;
+    }
+
+    /**
+     * Returns the handler of the given event.
+     *
+     * @param event the {@link Event} to be routed
+     * @return the {@link Handler} registered for the event, or null if no handler is registered for it
+     */
+    Handler route(final Event event) {
+        final Destination destination = find(event);
+        return destination == null ? null : destination.handler;
+    }
+
+    /**
+     * Returns the destination of the given event.
+     *
+     * @param event the {@link Event} to be routed
+     * @return the {@link Destination} registered for the event, or null if none is registered for it
+     */
+    Destination find(final Event event) {
+        if (event == null || event.getType() == null || event.getSource() == null) {
+            return null;
+        }
+
+        Route route = findRoute(event.getType(), event.getSource());
+
+        if (route == null) {
+            route = findRoute(normalize(event.getType()), normalize(event.getSource()));
+        }
+
+        if (route == null) {
+            return null;
+        }
+
+        final String name = event.getName();
+        final Destination destination = name == null ? null : route.destinationsByName.get(name);
+        return destination != null ? destination : route.defaultDestination;
+    }
+
+    /**
+     * Routes the given event to its handler.
+     *
+     * @param event the {@link Event} to be processed
+     * @return true if a handler processed the event
+     */
+    boolean dispatch(final Event event) {
+        final Handler handler = route(event);
+
+        if (handler == null) {
+            return false;
+        }
+
+        handler.handle(event);
+        return true;
+    }
+
+    private Route findRoute(final String type, final String source) {
+        final Map<String, Route> routesBySource = routesByType.get(type);
+        return routesBySource == null ? null : routesBySource.get(source);
+    }
+
+    private static String normalize(final String value) {
+        return value.toLowerCase(Locale.US);
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorFenceDiff.java
+//
+
+package com.adobe.marketing.mobile;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The changes needed to go from the monitored geofences to the nearby POIs.
+ * <p>
+ * Each monitored geofence is known by its identifier and the hash of its geometry, so a POI whose center or radius
+ * changed on the server is replaced instead of being kept with its stale geometry.
+ */
+final class PlacesMonitorFenceDiff {
+
+    static final int GEOMETRY_HASH_LENGTH = 16;
+    // the hash of a geofence persisted without its geometry, not a hex string so it never matches a geometry hash
+    static final String UNKNOWN_GEOMETRY_HASH = "????????????????";
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final List<PlacesMonitorPOI> added;
+    private final List<PlacesMonitorPOI> replaced;
+    private final List<String> removed;
+
+    private PlacesMonitorFenceDiff(final List<PlacesMonitorPOI> added, final List<PlacesMonitorPOI> replaced,
+                                   final List<String> removed) {
+        this.added = added;
+        this.replaced = replaced;
+        this.removed = removed;
+    }
+
+    /**
+     * Computes the geofences to be added, replaced and removed.
+     * <p>
+     * Null POIs and POIs without an identifier are ignored. When an identifier appears more than once in the nearby POIs,
+     * only its first occurrence is considered.
+     *
+     * @param monitoredFences the identifiers of the monitored geofences, mapped to their geometry hash
+     * @param nearbyPOIs      the {@code List} of {@link PlacesMonitorPOI}s to be monitored
+     * @return the {@link PlacesMonitorFenceDiff} between the monitored geofences and the nearby POIs
+     */
+    static PlacesMonitorFenceDiff compute(final Map<String, String> monitoredFences, final List<PlacesMonitorPOI> nearbyPOIs) {
+        final List<PlacesMonitorPOI> added = new ArrayList<PlacesMonitorPOI>();
+        final List<PlacesMonitorPOI> replaced = new ArrayList<PlacesMonitorPOI>();
+        final List<String> removed = new ArrayList<String>();
+        final Set<String> nearbyIdentifiers = new HashSet<String>();
+
+        if (nearbyPOIs != null) {
+            for (PlacesMonitorPOI poi : nearbyPOIs) {
+                if (poi == null || poi.getIdentifier() == null || !nearbyIdentifiers.add(poi.getIdentifier())) {
+                    continue;
+                }
+
+                final String monitoredHash = monitoredFences.get(poi.getIdentifier());
+
+                if (monitoredHash == null) {
+                    added.add(poi);
+                } else if (!monitoredHash.equals(geometryHash(poi))) {
+                    replaced.add(poi);
+                }
+            }
+        }
+
+        for (String identifier : monitoredFences.keySet()) {
+            if (!nearbyIdentifiers.contains(identifier)) {
+                removed.add(identifier);
+            }
+        }
+
+        return new PlacesMonitorFenceDiff(added, replaced, removed);
+    }
+
+    /**
+     * Returns the hash of the geometry of the given POI, a {@value #GEOMETRY_HASH_LENGTH} characters hex string.
+     *
+     * @param poi the {@link PlacesMonitorPOI}
+     * @return the 64-bit FNV-1a hash of the latitude, longitude and radius of the POI
+     */
+    static String geometryHash(final PlacesMonitorPOI poi) {
+        final String hex = Long.toHexString(hashGeometry(FNV_OFFSET_BASIS, poi));
+        final StringBuilder builder = new StringBuilder(GEOMETRY_HASH_LENGTH);
+
+        for (int i = hex.length(); i < GEOMETRY_HASH_LENGTH; i++) {
+            builder.append('0');
+        }
+
+        return builder.append(hex).toString();
+    }
+
+    /**
+     * Returns a fingerprint of the identifiers and geometries of the given POIs.
+     * <p>
+     * The fingerprint does not depend on the order of the POIs, so the same set of POIs returned in a different order
+     * has the same fingerprint. Null POIs and POIs without an identifier are ignored.
+     *
+     * @param pois the {@code List} of {@link PlacesMonitorPOI}s
+     * @return the fingerprint of the POIs
+     */
+    static long fingerprint(final List<PlacesMonitorPOI> pois) {
+        long sum = 0;
+        long xor = 0;
+        int count = 0;
+
+        if (pois != null) {
+            for (PlacesMonitorPOI poi : pois) {
+                if (poi == null || poi.getIdentifier() == null) {
+                    continue;
+                }
+
+                long hash = FNV_OFFSET_BASIS;
+                final String identifier = poi.getIdentifier();
+
+                for (int i = 0; i < identifier.length(); i++) {
+                    hash = hashLong(hash, identifier.charAt(i));
+                }
+
+                hash = hashGeometry(hash, poi);
+
+                // sum and xor are both commutative, combining the two makes collisions between sets less likely
+                sum += hash;
+                xor ^= Long.rotateLeft(hash, 31);
+                count++;
+            }
+        }
+
+        return hashLong(hashLong(hashLong(FNV_OFFSET_BASIS, sum), xor), count);
+    }
+
+    /**
+     * @return the POIs that are not monitored yet
+     */
+    List<PlacesMonitorPOI> getAdded() {
+        return added;
+    }
+
+    /**
+     * @return the POIs that are monitored with a different geometry
+     */
+    List<PlacesMonitorPOI> getReplaced() {
+        return replaced;
+    }
+
+    /**
+     * @return the identifiers of the monitored geofences that are no longer nearby
+     */
+    List<String> getRemoved() {
+        return removed;
+    }
+
+    boolean isEmpty() {
+        return added.isEmpty() && replaced.isEmpty() && removed.isEmpty();
+    }
+
+    private static long hashGeometry(final long hash, final PlacesMonitorPOI poi) {
+        long result = hashLong(hash, Double.doubleToLongBits(poi.getLatitude()));
+        result = hashLong(result, Double.doubleToLongBits(poi.getLongitude()));
+        return hashLong(result, poi.getRadius());
+    }
+
+    private static long hashLong(final long hash, final long value) {
+        long result = hash;
+
+        for (int shift = 0; shift < 64; shift += 8) {
+            result ^= (value >>> shift) & 0xff;
+            result *= FNV_PRIME;
+        }
+
+        return result;
+    }
+}
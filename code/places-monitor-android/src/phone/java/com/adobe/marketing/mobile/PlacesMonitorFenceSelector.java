@@ -0,0 +1,141 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorFenceSelector.java
+//
+
+package com.adobe.marketing.mobile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+final class PlacesMonitorFenceSelector {
+
+    /**
+     * Selects the {@code count} POIs whose region edge is nearest to the given location.
+     * <p>
+     * The candidates are ranked by their distance to the edge of the region, so that a large region close by is preferred
+     * over a small region with a closer center. The selection keeps a bounded max-heap of {@code count} entries,
+     * which makes it O(n log count) for n candidates.
+     * <p>
+     * Null candidates are ignored. The returned list is ordered from the nearest to the farthest region.
+     *
+     * @param candidates the {@code List} of candidate {@link PlacesMonitorPOI}s
+     * @param latitude   the latitude of the current location
+     * @param longitude  the longitude of the current location
+     * @param count      the maximum number of POIs to be selected
+     * @return the selected {@code List} of {@link PlacesMonitorPOI}s
+     */
+    static List<PlacesMonitorPOI> selectNearest(final List<PlacesMonitorPOI> candidates, final double latitude,
+                                                final double longitude, final int count) {
+        final List<PlacesMonitorPOI> selected = new ArrayList<PlacesMonitorPOI>();
+
+        if (candidates == null || count <= 0) {
+            return selected;
+        }
+
+        // max-heap on the edge distance, the head is the farthest of the currently selected regions
+        final PriorityQueue<RankedPOI> heap = new PriorityQueue<RankedPOI>(count, new Comparator<RankedPOI>() {
+            @Override
+            public int compare(final RankedPOI poi1, final RankedPOI poi2) {
+                return Double.compare(poi2.edgeDistance, poi1.edgeDistance);
+            }
+        });
+
+        for (PlacesMonitorPOI candidate : candidates) {
+            if (candidate == null) {
+                continue;
+            }
+
+            final double edgeDistance = PlacesMonitorGeoUtil.distanceToEdgeInMeters(latitude, longitude, candidate);
+
+            if (heap.size() < count) {
+                heap.add(new RankedPOI(candidate, edgeDistance));
+            } else if (edgeDistance < heap.peek().edgeDistance) {
+                heap.poll();
+                heap.add(new RankedPOI(candidate, edgeDistance));
+            }
+        }
+
+        final List<RankedPOI> ranked = new ArrayList<RankedPOI>(heap);
+        Collections.sort(ranked, new Comparator<RankedPOI>() {
+            @Override
+            public int compare(final RankedPOI poi1, final RankedPOI poi2) {
+                return Double.compare(poi1.edgeDistance, poi2.edgeDistance);
+            }
+        });
+
+        for (RankedPOI rankedPOI : ranked) {
+            selected.add(rankedPOI.poi);
+        }
+
+        return selected;
+    }
+
+    /**
+     * Returns the radius of the refresh boundary geofence for the given monitored POIs.
+     * <p>
+     * The boundary is centered on the location the POIs were selected for. Every unmonitored POI is ranked behind the
+     * monitored ones by {@link #selectNearest(List, double, double, int)}, so its region edge is at least as far as the
+     * edge of the farthest monitored region. The boundary extends to that edge, less
+     * {@link PlacesMonitorConstants.RefreshBoundary#RESPONSIVENESS_MARGIN} for the delay of the OS exit transition,
+     * and is bounded by {@link PlacesMonitorConstants.RefreshBoundary#MAX_RADIUS}.
+     * <p>
+     * When the boundary would be smaller than {@link PlacesMonitorConstants.RefreshBoundary#MIN_RADIUS}, its exit could
+     * not be detected in time and 0 is returned, the location has to be followed by the location updates instead.
+     *
+     * @param monitoredPOIs the {@code List} of monitored {@link PlacesMonitorPOI}s
+     * @param latitude      the latitude of the location the POIs were selected for
+     * @param longitude     the longitude of the location the POIs were selected for
+     * @return the radius of the refresh boundary in meters, or 0 if the refresh boundary is not usable
+     */
+    static float refreshBoundaryRadius(final List<PlacesMonitorPOI> monitoredPOIs, final double latitude,
+                                       final double longitude) {
+        double farthestEdgeDistance = Double.NEGATIVE_INFINITY;
+
+        if (monitoredPOIs != null) {
+            for (PlacesMonitorPOI poi : monitoredPOIs) {
+                if (poi != null) {
+                    farthestEdgeDistance = Math.max(farthestEdgeDistance,
+                                                    PlacesMonitorGeoUtil.distanceToEdgeInMeters(latitude, longitude, poi));
+                }
+            }
+        }
+
+        if (farthestEdgeDistance == Double.NEGATIVE_INFINITY) {
+            // no regions around, re-query only after the same displacement as the location updates
+            return PlacesMonitorConstants.RefreshBoundary.MAX_RADIUS;
+        }
+
+        final double radius = Math.min(farthestEdgeDistance - PlacesMonitorConstants.RefreshBoundary.RESPONSIVENESS_MARGIN,
+                                       PlacesMonitorConstants.RefreshBoundary.MAX_RADIUS);
+
+        return radius < PlacesMonitorConstants.RefreshBoundary.MIN_RADIUS ? 0 : (float) radius;
+    }
+
+    private static class RankedPOI {
+        final PlacesMonitorPOI poi;
+        final double edgeDistance;
+
+        RankedPOI(final PlacesMonitorPOI poi, final double edgeDistance) {
+            this.poi = poi;
+            this.edgeDistance = edgeDistance;
+        }
+    }
+
+    private PlacesMonitorFenceSelector() {
+    }
+}
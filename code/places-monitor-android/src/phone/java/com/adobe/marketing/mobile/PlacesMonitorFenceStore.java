@@ -0,0 +1,196 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorFenceStore.java
+//
+
+package com.adobe.marketing.mobile;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Owns the state of the monitored geofences, the identifier of each fence mapped to the hash of its geometry.
+ * <p>
+ * The fences are read from the extension thread and modified from the geofencing client callbacks on the main thread.
+ * All the modifications are queued in a mailbox and applied by a single writer at a time: the thread that submits a
+ * modification drains the mailbox, unless another thread is already draining it, in which case that thread applies the
+ * modification as well. After each drain a new immutable snapshot is published, so readers never lock and never see a
+ * partially applied modification.
+ * <p>
+ * The {@link Listener} is notified of each published snapshot by the writer, hence the notifications are never
+ * concurrent and arrive in the order the snapshots were published.
+ */
+class PlacesMonitorFenceStore {
+
+    /**
+     * Listener notified when the monitored fences change.
+     */
+    interface Listener {
+        /**
+         * Called by the writer after a modification of the fences was published.
+         *
+         * @param fences the immutable snapshot of the monitored fences
+         */
+        void onFencesChanged(final Map<String, String> fences);
+    }
+
+    private final AtomicReference<Map<String, String>> snapshot;
+    private final Queue<Command> mailbox;
+    private final AtomicBoolean draining;
+    private final Listener listener;
+
+    PlacesMonitorFenceStore(final Listener listener) {
+        this.snapshot = new AtomicReference<Map<String, String>>(Collections.<String, String>emptyMap());
+        this.mailbox = new ConcurrentLinkedQueue<Command>();
+        this.draining = new AtomicBoolean(false);
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the current snapshot of the monitored fences.
+     *
+     * @return the immutable {@code Map} of fence identifiers to geometry hashes
+     */
+    Map<String, String> getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Adds the given fences, or updates their geometry hash if they are already monitored.
+     *
+     * @param fences the fence identifiers mapped to their geometry hash
+     */
+    void put(final Map<String, String> fences) {
+        submit(new Command(Command.PUT, new HashMap<String, String>(fences), null));
+    }
+
+    /**
+     * Removes the given fences.
+     *
+     * @param identifiers the identifiers of the fences to be removed
+     */
+    void remove(final Collection<String> identifiers) {
+        submit(new Command(Command.REMOVE, null, new ArrayList<String>(identifiers)));
+    }
+
+    /**
+     * Removes all the fences.
+     */
+    void clear() {
+        submit(new Command(Command.CLEAR, null, null));
+    }
+
+    /**
+     * Replaces all the fences with the given fences, without notifying the {@link Listener}.
+     * <p>
+     * This is used to restore the fences from persistence.
+     *
+     * @param fences the fence identifiers mapped to their geometry hash
+     */
+    void load(final Map<String, String> fences) {
+        submit(new Command(Command.LOAD, new HashMap<String, String>(fences), null));
+    }
+
+    // ========================================================================================
+    // private methods
+    // ========================================================================================
+
+    private void submit(final Command command) {
+        mailbox.offer(command);
+
+        // a command offered while another thread releases the ownership is picked up by the next loop
+        while (!mailbox.isEmpty() && draining.compareAndSet(false, true)) {
+            try {
+                drain();
+            } finally {
+                draining.set(false);
+            }
+        }
+    }
+
+    private void drain() {
+        Map<String, String> fences = null;
+        boolean notify = false;
+        Command command;
+
+        while ((command = mailbox.poll()) != null) {
+            if (fences == null) {
+                fences = new HashMap<String, String>(snapshot.get());
+            }
+
+            switch (command.type) {
+                case Command.PUT:
+                    fences.putAll(command.fences);
+                    notify = true;
+                    break;
+
+                case Command.REMOVE:
+                    for (String identifier : command.identifiers) {
+                        fences.remove(identifier);
+                    }
+
+                    notify = true;
+                    break;
+
+                case Command.CLEAR:
+                    fences.clear();
+                    notify = true;
+                    break;
+
+                case Command.LOAD:
+                    fences.clear();
+                    fences.putAll(command.fences);
+                    break;
+
+                default:
+                    break;
+            }
+        }
+
+        if (fences == null) {
+            return;
+        }
+
+        final Map<String, String> published = Collections.unmodifiableMap(fences);
+        snapshot.set(published);
+
+        if (notify && listener != null) {
+            listener.onFencesChanged(published);
+        }
+    }
+
+    private static class Command {
+        static final int PUT = 0;
+        static final int REMOVE = 1;
+        static final int CLEAR = 2;
+        static final int LOAD = 3;
+
+        final int type;
+        final Map<String, String> fences;
+        final Collection<String> identifiers;
+
+        Command(final int type, final Map<String, String> fences, final Collection<String> identifiers) {
+            this.type = type;
+            this.fences = fences;
+            this.identifiers = identifiers;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorGeoUtil.java
+//
+
+package com.adobe.marketing.mobile;
+
+final class PlacesMonitorGeoUtil {
+
+    private static final double EARTH_RADIUS_METERS = 6371008.8;
+
+    /**
+     * Returns the great-circle distance between the two given coordinates using the haversine formula.
+     * <p>
+     * This is used instead of {@code android.location.Location#distanceBetween} so that the distance
+     * computations can be used from any thread and verified in plain JVM unit tests.
+     *
+     * @param latitude1  latitude of the first coordinate in degrees
+     * @param longitude1 longitude of the first coordinate in degrees
+     * @param latitude2  latitude of the second coordinate in degrees
+     * @param longitude2 longitude of the second coordinate in degrees
+     * @return the distance between the two coordinates in meters
+     */
+    static double distanceInMeters(final double latitude1, final double longitude1,
+                                   final double latitude2, final double longitude2) {
+        final double deltaLatitude = Math.toRadians(latitude2 - latitude1);
+        final double deltaLongitude = Math.toRadians(longitude2 - longitude1);
+        final double sinLatitude = Math.sin(deltaLatitude / 2);
+        final double sinLongitude = Math.sin(deltaLongitude / 2);
+        final double a = sinLatitude * sinLatitude +
+                Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2)) * sinLongitude * sinLongitude;
+        return 2 * EARTH_RADIUS_METERS * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    /**
+     * Returns the distance from the given coordinate to the edge of the given POI's circular region.
+     * <p>
+     * The returned value is negative when the coordinate lies inside the region.
+     *
+     * @param latitude  latitude of the coordinate in degrees
+     * @param longitude longitude of the coordinate in degrees
+     * @param poi       the {@link PlacesMonitorPOI} to measure against
+     * @return the distance to the region's edge in meters
+     */
+    static double distanceToEdgeInMeters(final double latitude, final double longitude, final PlacesMonitorPOI poi) {
+        return distanceInMeters(latitude, longitude, poi.getLatitude(), poi.getLongitude()) - poi.getRadius();
+    }
+
+    private PlacesMonitorGeoUtil() {
+    }
+}
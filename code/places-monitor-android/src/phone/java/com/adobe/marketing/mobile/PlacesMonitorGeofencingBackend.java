@@ -0,0 +1,118 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorGeofencingBackend.java
+//
+
+package com.adobe.marketing.mobile;
+
+import java.util.List;
+
+/**
+ * Registers the geofences of {@link PlacesGeofenceManager} with the OS.
+ * <p>
+ * The requests complete asynchronously through a {@link Callback}, the failures are reported with the
+ * {@code GeofenceStatusCodes} of the geofencing API. {@link PlacesMonitorGmsGeofencingBackend} implements it with the
+ * {@code GeofencingClient} of Google Play services, {@link PlacesMonitorSimulatedGeofencingBackend} simulates it in memory.
+ */
+interface PlacesMonitorGeofencingBackend {
+
+    /**
+     * The result of a geofencing request.
+     */
+    interface Callback {
+        /**
+         * Called when the request succeeded.
+         */
+        void onSuccess();
+
+        /**
+         * Called when the request failed.
+         *
+         * @param statusCode the {@code GeofenceStatusCodes} or {@code CommonStatusCodes} of the failure
+         * @param message    the description of the failure
+         */
+        void onFailure(final int statusCode, final String message);
+    }
+
+    /**
+     * A circular geofence to be registered.
+     */
+    final class Fence {
+        private final String identifier;
+        private final double latitude;
+        private final double longitude;
+        private final float radius;
+        private final int transitionTypes;
+
+        /**
+         * @param identifier      the request identifier of the geofence
+         * @param latitude        the latitude of the center of the geofence
+         * @param longitude       the longitude of the center of the geofence
+         * @param radius          the radius of the geofence in meters
+         * @param transitionTypes the {@code Geofence} transition types to be notified of
+         */
+        Fence(final String identifier, final double latitude, final double longitude, final float radius,
+              final int transitionTypes) {
+            this.identifier = identifier;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.radius = radius;
+            this.transitionTypes = transitionTypes;
+        }
+
+        String getIdentifier() {
+            return identifier;
+        }
+
+        double getLatitude() {
+            return latitude;
+        }
+
+        double getLongitude() {
+            return longitude;
+        }
+
+        float getRadius() {
+            return radius;
+        }
+
+        int getTransitionTypes() {
+            return transitionTypes;
+        }
+    }
+
+    /**
+     * Registers the given geofences, a geofence registered with the same identifier is replaced.
+     *
+     * @param fences         the {@code List} of {@link Fence}s to be registered
+     * @param initialTrigger the {@code GeofencingRequest} initial trigger of the geofences
+     * @param callback       the {@link Callback} notified of the result
+     */
+    void addGeofences(final List<Fence> fences, final int initialTrigger, final Callback callback);
+
+    /**
+     * Removes the geofences with the given identifiers.
+     *
+     * @param identifiers the {@code List} of the identifiers of the geofences to be removed
+     * @param callback    the {@link Callback} notified of the result
+     */
+    void removeGeofences(final List<String> identifiers, final Callback callback);
+
+    /**
+     * Removes all the geofences registered by the monitor.
+     *
+     * @param callback the {@link Callback} notified of the result
+     */
+    void removeAllGeofences(final Callback callback);
+}
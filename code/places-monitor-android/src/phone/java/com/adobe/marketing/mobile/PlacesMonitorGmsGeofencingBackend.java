@@ -0,0 +1,192 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorGmsGeofencingBackend.java
+//
+
+package com.adobe.marketing.mobile;
+
+import android.Manifest;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.support.v4.app.ActivityCompat;
+
+import com.google.android.gms.common.api.ApiException;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.location.GeofenceStatusCodes;
+import com.google.android.gms.location.GeofencingClient;
+import com.google.android.gms.location.GeofencingRequest;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link PlacesMonitorGeofencingBackend} registering the geofences with the {@code GeofencingClient} of Google Play
+ * services, the transitions are broadcast to {@link PlacesGeofenceBroadcastReceiver}.
+ */
+class PlacesMonitorGmsGeofencingBackend implements PlacesMonitorGeofencingBackend {
+
+    private final String FINE_LOCATION = Manifest.permission.ACCESS_FINE_LOCATION;
+    private final GeofencingClient geofencingClient;
+    private PendingIntent geofencePendingIntent;
+
+    PlacesMonitorGmsGeofencingBackend(final GeofencingClient geofencingClient) {
+        this.geofencingClient = geofencingClient;
+    }
+
+    /**
+     * Creates a backend with the {@code GeofencingClient} of the app.
+     *
+     * @return a {@link PlacesMonitorGmsGeofencingBackend} instance, or null if the app context is not available
+     */
+    static PlacesMonitorGmsGeofencingBackend create() {
+        Context context = App.getAppContext();
+
+        if (context == null) {
+            Log.warning(PlacesMonitorConstants.LOG_TAG, "Places Geofence Services not initialized, App Context not available");
+            return null;
+        }
+
+        final GeofencingClient geofencingClient = LocationServices.getGeofencingClient(context);
+
+        if (geofencingClient == null) {
+            return null;
+        }
+
+        return new PlacesMonitorGmsGeofencingBackend(geofencingClient);
+    }
+
+    @Override
+    public void addGeofences(final List<Fence> fences, final int initialTrigger, final Callback callback) {
+        if (!checkPermissions()) {
+            callback.onFailure(GeofenceStatusCodes.GEOFENCE_NOT_AVAILABLE, "App permission to use FINE_LOCATION is not granted");
+            return;
+        }
+
+        PendingIntent geofenceIntent = getGeofencePendingIntent();
+
+        if (geofenceIntent == null) {
+            callback.onFailure(GeofenceStatusCodes.GEOFENCE_NOT_AVAILABLE,
+                               "Places Geofence Broadcast Receiver was never initialized");
+            return;
+        }
+
+        final List<Geofence> geofences = new ArrayList<Geofence>(fences.size());
+
+        for (Fence fence : fences) {
+            geofences.add(new Geofence.Builder()
+                          .setRequestId(fence.getIdentifier())
+                          .setCircularRegion(fence.getLatitude(), fence.getLongitude(), fence.getRadius())
+                          .setExpirationDuration(Geofence.NEVER_EXPIRE)
+                          .setTransitionTypes(fence.getTransitionTypes())
+                          .build());
+        }
+
+        GeofencingRequest.Builder builder = new GeofencingRequest.Builder();
+        builder.setInitialTrigger(initialTrigger);
+        builder.addGeofences(geofences);
+
+        try {
+            complete(geofencingClient.addGeofences(builder.build(), geofenceIntent), callback);
+        } catch (SecurityException e) {
+            callback.onFailure(CommonStatusCodes.ERROR, "SecurityException: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void removeGeofences(final List<String> identifiers, final Callback callback) {
+        complete(geofencingClient.removeGeofences(identifiers), callback);
+    }
+
+    @Override
+    public void removeAllGeofences(final Callback callback) {
+        PendingIntent geofenceIntent = getGeofencePendingIntent();
+
+        if (geofenceIntent == null) {
+            callback.onFailure(GeofenceStatusCodes.GEOFENCE_NOT_AVAILABLE,
+                               "Places Geofence Broadcast Receiver was never initialized");
+            return;
+        }
+
+        complete(geofencingClient.removeGeofences(geofenceIntent), callback);
+    }
+
+    // ========================================================================================
+    // private methods
+    // ========================================================================================
+
+    private static void complete(final Task<Void> task, final Callback callback) {
+        task.addOnSuccessListener(new OnSuccessListener<Void>() {
+            @Override
+            public void onSuccess(Void aVoid) {
+                callback.onSuccess();
+            }
+        });
+        task.addOnFailureListener(new OnFailureListener() {
+            @Override
+            public void onFailure(Exception e) {
+                final int statusCode = e instanceof ApiException ? ((ApiException) e).getStatusCode() : CommonStatusCodes.ERROR;
+                callback.onFailure(statusCode, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Returns a {@code PendingIntent} instance for getting the Geofence triggers
+     * <p>
+     * Returns the existing {@link #geofencePendingIntent} instance if its not null.
+     * Else attempts to create a new Pending Intent
+     * Returns null if the app context is not available.
+     *
+     * @return a {@code PendingIntent} instance
+     */
+    private PendingIntent getGeofencePendingIntent() {
+        // Reuse the PendingIntent if we already have it.
+        if (geofencePendingIntent != null) {
+            return geofencePendingIntent;
+        }
+
+        Context context = App.getAppContext();
+
+        if (context == null) {
+            Log.warning(PlacesMonitorConstants.LOG_TAG,
+                    "Unable to create an intent to receive location updates, App Context not available");
+            return null;
+        }
+
+        Intent intent = new Intent(context, PlacesGeofenceBroadcastReceiver.class);
+        intent.setAction(PlacesGeofenceBroadcastReceiver.ACTION_GEOFENCE_UPDATE);
+        geofencePendingIntent = PendingIntent.getBroadcast(App.getAppContext(), 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+        return geofencePendingIntent;
+    }
+
+    private boolean checkPermissions() {
+        Context context = App.getAppContext();
+
+        if (context == null) {
+            Log.warning(PlacesMonitorConstants.LOG_TAG, "Unable to check location permission, App context is not available");
+            return false;
+        }
+
+        int permissionState = ActivityCompat.checkSelfPermission(context,
+                FINE_LOCATION);
+        return permissionState == PackageManager.PERMISSION_GRANTED;
+    }
+}
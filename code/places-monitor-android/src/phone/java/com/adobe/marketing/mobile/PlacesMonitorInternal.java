@@ -16,21 +16,67 @@
 
 package com.adobe.marketing.mobile;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 class PlacesMonitorInternal extends Extension {
 
 
-	private ConcurrentLinkedQueue<Event> eventQueue;
-	private PlacesLocationManager locationManager;
+	// the start, stop and update requests go ahead of the POI responses, the expired timers in between
+	private PlacesMonitorEventLane controlLane;
+	private PlacesMonitorEventLane responseLane;
+	private ConcurrentLinkedQueue<Runnable> timerLane;
+	private final AtomicLong eventSequence = new AtomicLong();
+	private final PlacesMonitorEventRouter eventRouter = new PlacesMonitorEventRouter();
+	private PlacesMonitorEventRouter.Destination startDestination;
+	private PlacesMonitorEventRouter.Destination stopDestination;
+	private PlacesMonitorEventRouter.Destination updateDestination;
+	private volatile PlacesMonitorLocationSource locationManager; // read by the policy listener on the receiver thread
 	private PlacesGeofenceManager geofenceManager;
+	private PlacesMonitorPOICache poiCache;
+	private PlacesMonitorSoftwareGeofencer softwareGeofencer;
+	private PlacesMonitorLocationFilter locationFilter;
+	private PlacesMonitorLocationPolicy locationPolicy;
+	private int geofenceCount = PlacesMonitorConstants.NEARBY_GEOFENCES_COUNT;
+	private boolean refreshBoundaryEnabled = false;
+	private boolean refreshBoundaryActive = false; // false while the monitored regions are too close for a usable boundary
+	private boolean softwareGeofencingEnabled = false;
+	private volatile boolean adaptiveLocationEnabled = false;
+	private long coalescingWindow = PlacesMonitorConstants.Coalescing.DEFAULT_WINDOW;
+	private PendingReconcile pendingReconcile;
+	private ScheduledFuture<?> pendingReconcileFlush;
+	private long reconcileWindowCount; // the windows opened so far, a timer of a cancelled window flushes nothing
+	private int coalescedResponseCount;
 	private ExecutorService executorService;
+	private ScheduledExecutorService scheduledExecutorService;
 	private final Object executorMutex = new Object();
 
+	// the configuration shared state is looked up again only for the events queued after a configuration change
+	private final AtomicInteger configurationVersion = new AtomicInteger();
+	private Map<String, Object> configurationSnapshot;
+	private int configurationSnapshotVersion;
+	private final ExtensionErrorCallback<ExtensionError> configurationErrorCallback = new ExtensionErrorCallback<ExtensionError>() {
+		@Override
+		public void error(final ExtensionError extensionError) {
+			if (extensionError != null){
+				Log.error(PlacesMonitorConstants.LOG_TAG,
+						String.format("Could not process event, an error occurred while retrieving configuration shared state: %s",
+								extensionError.getErrorName()));
+			}
+		}
+	};
+
 	protected PlacesMonitorInternal(final ExtensionApi extensionApi) {
 		super(extensionApi);
 
@@ -62,6 +108,20 @@ class PlacesMonitorInternal extends Extension {
 					}
 				});
 
+		// register a listener for places request events, the nearby queries of the monitor and of the app
+		extensionApi.registerEventListener(
+				PlacesMonitorConstants.EventType.PLACES,
+				PlacesMonitorConstants.EventSource.REQUEST_CONTENT,
+				PlacesMonitorListenerPlacesRequestContent.class,  new ExtensionErrorCallback<ExtensionError>() {
+					@Override
+					public void error(ExtensionError extensionError) {
+						if(extensionError != null) {
+							Log.debug("There was an error registering PlacesMonitorListenerPlacesRequestContent for Places request events: %s",
+									extensionError.getErrorName());
+						}
+					}
+				});
+
 		// register a listener for monitor request events
 		extensionApi.registerEventListener(
 				PlacesMonitorConstants.EventType.MONITOR,
@@ -77,10 +137,26 @@ class PlacesMonitorInternal extends Extension {
 				});
 
 		// initialize location, geofence Manager and the events queue
+		// the fused location provider, unless replaced by setLocationSource
 		locationManager = new PlacesLocationManager();
 		geofenceManager = new PlacesGeofenceManager();
 		geofenceManager.loadMonitoringFences();
-		eventQueue = new ConcurrentLinkedQueue<>();
+		poiCache = PlacesMonitorPOICache.getSharedInstance();
+		softwareGeofencer = PlacesMonitorSoftwareGeofencer.getSharedInstance();
+		locationFilter = PlacesMonitorLocationFilter.getSharedInstance();
+		locationPolicy = PlacesMonitorLocationPolicy.getSharedInstance();
+		// the tier changes are handled here for every location source, so the filter has a single writer
+		locationPolicy.setListener(new PlacesMonitorLocationPolicy.Listener() {
+			@Override
+			public void onTierChanged(final PlacesMonitorLocationPolicy.Tier tier) {
+				updateTierMaxAccuracy();
+				locationManager.onLocationTierChanged(tier);
+			}
+		});
+		controlLane = new PlacesMonitorEventLane(PlacesMonitorConstants.EventQueue.CONTROL_CAPACITY);
+		responseLane = new PlacesMonitorEventLane(PlacesMonitorConstants.EventQueue.RESPONSE_CAPACITY);
+		timerLane = new ConcurrentLinkedQueue<>();
+		registerEventHandlers();
 	}
 
 	@Override
@@ -97,69 +173,326 @@ class PlacesMonitorInternal extends Extension {
 	protected void onUnregistered() {
 		super.onUnregistered();
 		getApi().clearSharedEventStates(null);
+
+		// the pending flush is cancelled with the scheduler
+		synchronized (executorMutex) {
+			if (scheduledExecutorService != null) {
+				scheduledExecutorService.shutdownNow();
+				scheduledExecutorService = null;
+			}
+		}
 	}
 
 
 	void queueEvent(final Event event) {
+		queueEvent(event, configurationVersion.get());
+	}
+
+	/**
+	 * Queues the given event with the configuration version of the time it was heard. The listeners read the version
+	 * when they hear the event, on the thread that also hears the configuration changes, so an event heard before a
+	 * configuration change does not get the version of the new configuration.
+	 *
+	 * @param event                the {@link Event} to be queued
+	 * @param configurationVersion the value of {@link #getConfigurationVersion()} when the event was heard
+	 */
+	void queueEvent(final Event event, final int configurationVersion) {
 		if (event == null) {
 			return;
 		}
 
-		eventQueue.add(event);
+		// the event is routed once, its lane, shedding key and handler are kept with the entry
+		final PlacesMonitorEventRouter.Destination destination = eventRouter.find(event);
+		final PlacesMonitorEventLane lane = destination == null || destination.getLane() == null ? responseLane :
+											destination.getLane();
+		final PlacesMonitorEventLane.Entry entry = new PlacesMonitorEventLane.Entry(event, destination,
+				destination == null ? event.getName() : destination.getSheddingKey(event), configurationVersion,
+				eventSequence.incrementAndGet());
+
+		if (foldControlEvent(entry)) {
+			Log.debug(PlacesMonitorConstants.LOG_TAG, "Folded the " + event.getName() + " request into a pending request");
+			return;
+		}
+
+		final int droppedCount = lane.add(entry);
+
+		if (droppedCount > 0) {
+			Log.warning(PlacesMonitorConstants.LOG_TAG, "Event queue is full, dropped " + droppedCount + " queued events");
+		}
+	}
+
+	/**
+	 * Discards the configuration snapshot for the events queued from now on, called when a new configuration is shared.
+	 * The events already queued keep using the snapshot of their configuration version.
+	 */
+	void invalidateConfigurationSnapshot() {
+		configurationVersion.incrementAndGet();
+	}
+
+	/**
+	 * @return the version of the configuration, incremented by {@link #invalidateConfigurationSnapshot()}
+	 */
+	int getConfigurationVersion() {
+		return configurationVersion.get();
 	}
 
 
 	void processEvents() {
-		while (!eventQueue.isEmpty()) {
-			Event eventToProcess = eventQueue.peek();
-
-			ExtensionErrorCallback<ExtensionError> extensionErrorCallback = new ExtensionErrorCallback<ExtensionError>() {
-				@Override
-				public void error(final ExtensionError extensionError) {
-					if (extensionError != null){
-						Log.error(PlacesMonitorConstants.LOG_TAG,
-								String.format("Could not process event, an error occurred while retrieving configuration shared state: %s",
-										extensionError.getErrorName()));
-					}
-				}
-			};
-			Map<String, Object> configSharedState = getApi().getSharedEventState(PlacesMonitorConstants.SharedState.CONFIGURATION,
-					eventToProcess, extensionErrorCallback);
+		// the control requests go first, then the expired timers and the responses
+		while (processNextEvent(controlLane) || runNextTimer() || processNextEvent(responseLane)) {
+			// drain until every lane is empty or waiting for the configuration shared state
+		}
+	}
+
+	/**
+	 * Processes the oldest event of the given lane, unless it is waiting for the configuration shared state.
+	 *
+	 * @param lane the {@link PlacesMonitorEventLane} to be processed
+	 * @return true if an event was processed
+	 */
+	private boolean processNextEvent(final PlacesMonitorEventLane lane) {
+		final PlacesMonitorEventLane.Entry entry = lane.peek();
+
+		if (entry == null) {
+			return false;
+		}
+
+		final PlacesMonitorEventRouter.Destination destination = entry.getDestination();
+		final boolean stopEvent = destination != null && destination == stopDestination;
+
+		// NOTE: configuration is mandatory processing the event, so if shared state is null (pending) the lane waits.
+		// Stopping does not depend on the configuration.
+		if (!updateConfiguration(entry) && !stopEvent) {
+			Log.debug(PlacesMonitorConstants.LOG_TAG, "Could not process event, configuration shared state is pending");
+			return false;
+		}
 
-			// NOTE: configuration is mandatory processing the event, so if shared state is null (pending) stop processing events
-			if (configSharedState == null) {
-				Log.debug(PlacesMonitorConstants.LOG_TAG, "Could not process event, configuration shared state is pending");
-				return;
+		lane.poll();
+
+		if (stopEvent) {
+			// the responses queued before the stop request would monitor the fences again
+			final int staleCount = responseLane.removeOlderThan(entry.getSequence());
+
+			if (staleCount > 0) {
+				Log.debug(PlacesMonitorConstants.LOG_TAG, "Dropping " + staleCount + " responses queued before the stop request");
 			}
+		}
+
+		if (destination != null) {
+			destination.getHandler().handle(entry.getEvent());
+		}
+
+		return true;
+	}
+
+	/**
+	 * Registers the handler of the events with the given type, source and name, queued in the response lane and
+	 * processed after the configuration shared state is available.
+	 *
+	 * @param type    the event type
+	 * @param source  the event source
+	 * @param name    the event name, or null for the events of the type and source without a handler of their own
+	 * @param handler the {@link PlacesMonitorEventRouter.Handler} of the events
+	 */
+	void registerEventHandler(final String type, final String source, final String name,
+							  final PlacesMonitorEventRouter.Handler handler) {
+		eventRouter.register(type, source, name, responseLane, null, handler);
+	}
+
+	private boolean runNextTimer() {
+		final Runnable timer = timerLane.poll();
+
+		if (timer == null) {
+			return false;
+		}
 
-			if (PlacesMonitorConstants.EventType.MONITOR.equalsIgnoreCase(eventToProcess.getType()) &&
-					PlacesMonitorConstants.EventSource.REQUEST_CONTENT.equalsIgnoreCase(eventToProcess.getSource())) {
-				// handle the places monitor request event
-				processMonitorRequestEvent(eventToProcess);
+		timer.run();
+		return true;
+	}
+
+	/**
+	 * Applies the configuration shared state of the given entry. The shared state is looked up again only if the entry
+	 * was queued after the configuration of the last lookup changed.
+	 *
+	 * @param entry the {@link PlacesMonitorEventLane.Entry} to be processed
+	 * @return false if the configuration shared state is pending
+	 */
+	private boolean updateConfiguration(final PlacesMonitorEventLane.Entry entry) {
+		// the lanes are not processed in the queue order, an older event gets the newer configuration
+		if (configurationSnapshot != null && entry.getConfigurationVersion() <= configurationSnapshotVersion) {
+			return true;
+		}
+
+		final Map<String, Object> configSharedState = getApi().getSharedEventState(
+					PlacesMonitorConstants.SharedState.CONFIGURATION, entry.getEvent(), configurationErrorCallback);
+
+		if (configSharedState == null) {
+			return false;
+		}
+
+		configurationSnapshot = configSharedState;
+		configurationSnapshotVersion = entry.getConfigurationVersion();
+		processConfiguration(configSharedState);
+		return true;
+	}
+
+	/**
+	 * Folds the given control request into the pending requests, so they reach the same monitoring state with the fewest
+	 * calls to the location and geofencing services. A start or stop request replaces the pending start or stop request,
+	 * start-stop-start becomes a single start. An update request replaces a pending update request, unless a start or
+	 * stop request is queued after it. The folded request is queued after the pending requests, start-update-stop
+	 * becomes update-stop, never stop-update.
+	 *
+	 * @param entry the {@link PlacesMonitorEventLane.Entry} of the control request
+	 * @return true if the request was folded into a pending request
+	 */
+	private boolean foldControlEvent(final PlacesMonitorEventLane.Entry entry) {
+		final PlacesMonitorEventRouter.Destination destination = entry.getDestination();
+
+		if (destination == null) {
+			return false;
+		}
+
+		if (destination == startDestination || destination == stopDestination) {
+			return controlLane.fold(entry, null);
+		}
+
+		if (destination == updateDestination) {
+			return controlLane.fold(entry, PlacesMonitorConstants.EVENTNAME_START);
+		}
+
+		return false;
+	}
+
+	/**
+	 * Registers the handlers of the events processed by the monitor. The start, stop and update requests go in the
+	 * control lane, the cached nearby places requests and the Places responses in the response lane.
+	 * <p>
+	 * The shedding key supersedes the queued events when a lane is full: the newest Places response and the newest
+	 * update request win, and only the last of the start and stop requests is kept.
+	 */
+	private void registerEventHandlers() {
+		startDestination = registerMonitorRequestHandler(PlacesMonitorConstants.EVENTNAME_START, controlLane,
+						   PlacesMonitorConstants.EVENTNAME_START, new PlacesMonitorEventRouter.Handler() {
+			@Override
+			public void handle(final Event event) {
+				startMonitoring();
+			}
+		});
+		stopDestination = registerMonitorRequestHandler(PlacesMonitorConstants.EVENTNAME_STOP, controlLane,
+						  PlacesMonitorConstants.EVENTNAME_START, new PlacesMonitorEventRouter.Handler() {
+			@Override
+			public void handle(final Event event) {
+				stopMonitoring();
+			}
+		});
+		updateDestination = registerMonitorRequestHandler(PlacesMonitorConstants.EVENTNAME_UPDATE, controlLane,
+							PlacesMonitorConstants.EVENTNAME_UPDATE, new PlacesMonitorEventRouter.Handler() {
+			@Override
+			public void handle(final Event event) {
+				updateLocation();
+			}
+		});
+		registerMonitorRequestHandler(PlacesMonitorConstants.EVENTNAME_CACHED_NEARBY_PLACES, responseLane,
+									  PlacesMonitorConstants.EVENTNAME_CACHED_NEARBY_PLACES,
+		new PlacesMonitorEventRouter.Handler() {
+			@Override
+			public void handle(final Event event) {
+				processCachedNearbyPlacesEvent(event);
 			}
+		});
+		registerMonitorRequestHandler(null, controlLane, null, new PlacesMonitorEventRouter.Handler() {
+			@Override
+			public void handle(final Event event) {
+				Log.debug(PlacesMonitorConstants.LOG_TAG, "Could not process places monitor request event, Invalid/Unknown event name");
+			}
+		});
+
+		// every Places response is checked for nearby POIs
+		registerEventHandler(PlacesMonitorConstants.EventType.PLACES, PlacesMonitorConstants.EventSource.RESPONSE_CONTENT, null,
+		new PlacesMonitorEventRouter.Handler() {
+			@Override
+			public void handle(final Event event) {
+				processPlacesResponseEvent(event);
+			}
+		});
+	}
+
+	private PlacesMonitorEventRouter.Destination registerMonitorRequestHandler(final String eventName,
+			final PlacesMonitorEventLane lane, final String sheddingKey, final PlacesMonitorEventRouter.Handler handler) {
+		return eventRouter.register(PlacesMonitorConstants.EventType.MONITOR,
+									PlacesMonitorConstants.EventSource.REQUEST_CONTENT, eventName, lane, sheddingKey, handler);
+	}
+
+	private void processConfiguration(final Map<String, Object> configSharedState) {
+		final int configuredCount = optInteger(configSharedState, PlacesMonitorConstants.Configuration.GEOFENCE_COUNT,
+				PlacesMonitorConstants.NEARBY_GEOFENCES_COUNT);
+		final boolean configuredRefreshBoundary = optBoolean(configSharedState,
+				PlacesMonitorConstants.Configuration.REFRESH_BOUNDARY, false);
 
-			else if (PlacesMonitorConstants.EventType.PLACES.equalsIgnoreCase(eventToProcess.getType()) &&
-					PlacesMonitorConstants.EventSource.RESPONSE_CONTENT.equalsIgnoreCase(eventToProcess.getSource())) {
-				processPlacesResponseEvent(eventToProcess);
+		if (configuredRefreshBoundary != refreshBoundaryEnabled) {
+			refreshBoundaryEnabled = configuredRefreshBoundary;
+			setRefreshBoundaryActive(refreshBoundaryEnabled);
+
+			if (!refreshBoundaryEnabled) {
+				geofenceManager.stopMonitoringRefreshBoundary();
 			}
+		}
 
-			// event processed, remove it from the queue
-			eventQueue.poll();
+		final long configuredMaxWaitTime = optLong(configSharedState, PlacesMonitorConstants.Configuration.LOCATION_MAX_WAIT_TIME,
+				0);
+		locationManager.setMaxWaitTime(Math.max(0, Math.min(configuredMaxWaitTime,
+				PlacesMonitorConstants.Location.MAX_BATCH_WAIT_TIME)));
+
+		locationFilter.configure((float) optDouble(configSharedState, PlacesMonitorConstants.Configuration.LOCATION_MAX_ACCURACY,
+								 PlacesMonitorConstants.LocationFilter.DEFAULT_MAX_ACCURACY),
+								 optLong(configSharedState, PlacesMonitorConstants.Configuration.LOCATION_MAX_AGE,
+										 PlacesMonitorConstants.LocationFilter.DEFAULT_MAX_AGE),
+								 (float) optDouble(configSharedState, PlacesMonitorConstants.Configuration.LOCATION_MAX_SPEED,
+										 PlacesMonitorConstants.LocationFilter.DEFAULT_MAX_SPEED),
+								 optBoolean(configSharedState, PlacesMonitorConstants.Configuration.LOCATION_SMOOTHING, false));
+
+		final long configuredFreshness = optLong(configSharedState, PlacesMonitorConstants.Configuration.LOCATION_FRESHNESS,
+				PlacesMonitorConstants.Location.FRESH_FIX_MAX_AGE);
+		final long configuredTimeout = optLong(configSharedState, PlacesMonitorConstants.Configuration.LOCATION_TIMEOUT,
+				PlacesMonitorConstants.Location.SINGLE_FIX_TIMEOUT);
+		locationManager.setFreshFixBudget(Math.max(0, configuredFreshness),
+				Math.max(PlacesMonitorConstants.Location.MIN_SINGLE_FIX_TIMEOUT,
+						 Math.min(configuredTimeout, PlacesMonitorConstants.Location.MAX_SINGLE_FIX_TIMEOUT)));
+
+		adaptiveLocationEnabled = optBoolean(configSharedState, PlacesMonitorConstants.Configuration.ADAPTIVE_LOCATION, false);
+		locationManager.setAdaptiveLocationEnabled(adaptiveLocationEnabled);
+		updateTierMaxAccuracy();
+
+		final boolean configuredSoftwareGeofencing = optBoolean(configSharedState,
+				PlacesMonitorConstants.Configuration.SOFTWARE_GEOFENCING, false);
+
+		if (configuredSoftwareGeofencing != softwareGeofencingEnabled) {
+			softwareGeofencingEnabled = configuredSoftwareGeofencing;
+
+			if (!softwareGeofencingEnabled) {
+				softwareGeofencer.clear();
+			}
 		}
-	}
 
+		// the refresh boundary takes one of the geofences available to the app
+		final int maxGeofenceCount = refreshBoundaryEnabled ? PlacesMonitorConstants.MAX_GEOFENCES_COUNT - 1 :
+									 PlacesMonitorConstants.MAX_GEOFENCES_COUNT;
+		geofenceCount = Math.max(1, Math.min(configuredCount, maxGeofenceCount));
+		PlacesMonitorDispatcher.setNearbyPlacesCount(geofenceCount);
 
-	private void processMonitorRequestEvent(final Event event) {
-		final String eventName = event.getName();
+		PlacesMonitorDispatcher.setRegionEventBatchingEnabled(optBoolean(configSharedState,
+				PlacesMonitorConstants.Configuration.BATCH_REGION_EVENTS, false));
+		PlacesMonitorDiagnostics.configureSinks(optString(configSharedState,
+				PlacesMonitorConstants.Configuration.DIAGNOSTIC_SINKS, null));
 
-		if (PlacesMonitorConstants.EVENTNAME_START.equals(eventName)) {
-			startMonitoring();
-		} else if (PlacesMonitorConstants.EVENTNAME_STOP.equals(eventName)) {
-			stopMonitoring();
-		} else if (PlacesMonitorConstants.EVENTNAME_UPDATE.equals(eventName)) {
-			updateLocation();
-		} else {
-			Log.debug(PlacesMonitorConstants.LOG_TAG, "Could not process places monitor request event, Invalid/Unknown event name");
+		final long configuredWindow = optLong(configSharedState, PlacesMonitorConstants.Configuration.COALESCING_WINDOW,
+				PlacesMonitorConstants.Coalescing.DEFAULT_WINDOW);
+		coalescingWindow = Math.max(0, Math.min(configuredWindow, PlacesMonitorConstants.Coalescing.MAX_WINDOW));
+
+		if (coalescingWindow == 0) {
+			// coalescing got disabled while a reconcile was pending
+			flushPendingReconcile();
 		}
 	}
 
@@ -174,35 +507,323 @@ class PlacesMonitorInternal extends Extension {
 	private void stopMonitoring() {
 		locationManager.stopMonitoring();
 		geofenceManager.stopMonitoringFences();
+		softwareGeofencer.clear();
+		locationFilter.reset();
+		locationPolicy.reset();
+		updateTierMaxAccuracy();
+		// the fences are removed, the next location has to be queried again
+		poiCache.clearLastCoverage();
+		cancelPendingReconcile();
 	}
 
 	private void updateLocation() {
 		locationManager.updateLocation();
 	}
 
+	/**
+	 * Lets the location filter accept the accuracy expected from the location request of the selected tier, when the
+	 * adaptive location request is enabled.
+	 */
+	private void updateTierMaxAccuracy() {
+		locationFilter.setTierMaxAccuracy(adaptiveLocationEnabled ? locationPolicy.getTier().getMaxAccuracy() : 0);
+	}
+
+	/**
+	 * Replaces the source of the location fixes, such as a {@link PlacesMonitorTraceLocationSource} replaying a recorded
+	 * trajectory. The current source is stopped, the new one is started by the next start monitoring request.
+	 *
+	 * @param locationSource the new {@link PlacesMonitorLocationSource}
+	 */
+	void setLocationSource(final PlacesMonitorLocationSource locationSource) {
+		if (locationSource == null || locationSource == locationManager) {
+			return;
+		}
+
+		locationManager.stopMonitoring();
+		locationManager = locationSource;
+		locationManager.setRefreshBoundaryEnabled(refreshBoundaryActive);
+	}
+
+	/**
+	 * Replaces the backend the geofences are registered with, such as a {@link PlacesMonitorSimulatedGeofencingBackend}.
+	 * The geofences registered with the current backend are not removed, the backend is expected to be set before
+	 * monitoring starts.
+	 *
+	 * @param backend the new {@link PlacesMonitorGeofencingBackend}
+	 */
+	void setGeofencingBackend(final PlacesMonitorGeofencingBackend backend) {
+		if (backend == null) {
+			return;
+		}
+
+		geofenceManager.setBackend(backend);
+	}
+
 
 	// ========================================================================================
 	// Location, Geofence updates handler method
 	// ========================================================================================
 
 	private void processPlacesResponseEvent(final Event event) {
+		final List<PlacesMonitorPOI> pois = getNearbyPOIs(event);
+
+		if (pois == null) {
+			return;
+		}
+
+		final double[] queryLocation = poiCache.getLastQueryLocation();
+		poiCache.cachePOIs(pois);
+		startMonitoringNearestFences(pois, queryLocation);
+	}
+
+	/**
+	 * Records the nearby places query of the given Places request event as pending, so its response can be matched to
+	 * it. Called on the thread that hears the events, before the response of the query is heard.
+	 *
+	 * @param event the Places request {@link Event}, sent by the monitor or by the app
+	 */
+	void recordNearbyQuery(final Event event) {
+		final EventData eventData = event.getData();
+
+		if (eventData == null || !PlacesMonitorConstants.EventDataKeys.REQUEST_TYPE_GET_NEARBY_PLACES.equals(
+					eventData.optString(PlacesMonitorConstants.EventDataKeys.REQUEST_TYPE, null))) {
+			return;
+		}
+
+		final double latitude = eventData.optDouble(PlacesMonitorConstants.EventDataKeys.LATITUDE, Double.NaN);
+		final double longitude = eventData.optDouble(PlacesMonitorConstants.EventDataKeys.LONGITUDE, Double.NaN);
+
+		if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+			return;
+		}
+
+		// the cache is shared, it may be used before the constructor assigned it
+		PlacesMonitorPOICache.getSharedInstance().addPendingQuery(latitude, longitude);
+	}
+
+	private void processCachedNearbyPlacesEvent(final Event event) {
+		final List<PlacesMonitorPOI> pois = getNearbyPOIs(event);
+
+		if (pois == null) {
+			return;
+		}
+
+		final double latitude = event.getData().optDouble(PlacesMonitorConstants.EventDataKeys.LATITUDE, Double.NaN);
+		final double longitude = event.getData().optDouble(PlacesMonitorConstants.EventDataKeys.LONGITUDE, Double.NaN);
+		final boolean hasLocation = !Double.isNaN(latitude) && !Double.isNaN(longitude);
+		startMonitoringNearestFences(pois, hasLocation ? new double[] {latitude, longitude} : null);
+	}
+
+	/**
+	 * Starts monitoring the nearest POIs, once the {@link #coalescingWindow} has elapsed.
+	 * <p>
+	 * Without a coalescing window the POIs are monitored right away. Otherwise the first response starts the window and
+	 * every response that arrives inside the window replaces the pending one, so a burst of responses results in a single
+	 * reconcile with the newest POIs. The window is not extended by the later responses, hence a steady stream of responses
+	 * still gets reconciled once per window.
+	 *
+	 * @param pois the {@code List} of candidate {@link PlacesMonitorPOI}s
+	 * @param location an array with the latitude and longitude of the current location, or null if unknown
+	 */
+	private void startMonitoringNearestFences(final List<PlacesMonitorPOI> pois, final double[] location) {
+		if (coalescingWindow <= 0) {
+			monitorNearestFences(pois, location);
+			return;
+		}
+
+		final boolean windowOpen = pendingReconcile != null;
+		pendingReconcile = new PendingReconcile(pois, location);
+
+		if (windowOpen) {
+			coalescedResponseCount++;
+			Log.debug(PlacesMonitorConstants.LOG_TAG, "Coalescing the nearby POIs with the pending reconcile");
+			return;
+		}
+
+		final long reconcileWindow = ++reconcileWindowCount;
+		pendingReconcileFlush = getScheduledExecutor().schedule(new Runnable() {
+			@Override
+			public void run() {
+				timerLane.add(new Runnable() {
+					@Override
+					public void run() {
+						if (reconcileWindow == reconcileWindowCount) {
+							flushPendingReconcile();
+						}
+					}
+				});
+
+				// the pending reconcile is owned by the extension thread
+				getExecutor().execute(new Runnable() {
+					@Override
+					public void run() {
+						processEvents();
+					}
+				});
+			}
+		}, coalescingWindow, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Monitors the POIs of the pending reconcile, if any, and cancels its scheduled flush.
+	 */
+	void flushPendingReconcile() {
+		final PendingReconcile reconcile = pendingReconcile;
+		cancelPendingReconcile();
+
+		if (reconcile != null) {
+			monitorNearestFences(reconcile.pois, reconcile.location);
+		}
+	}
+
+	/**
+	 * Drops the pending reconcile and cancels its scheduled flush, a flush timer already queued does nothing.
+	 */
+	private void cancelPendingReconcile() {
+		pendingReconcile = null;
+		reconcileWindowCount++;
+
+		if (pendingReconcileFlush != null) {
+			pendingReconcileFlush.cancel(false);
+			pendingReconcileFlush = null;
+		}
+	}
+
+	/**
+	 * Starts monitoring the {@link #geofenceCount} POIs whose regions are the nearest to the given location.
+	 * <p>
+	 * When the location is not known, the first {@link #geofenceCount} POIs are monitored in the order they were received.
+	 * In refresh boundary mode, the boundary is moved around the location together with the monitored POIs.
+	 * With software geofencing enabled, the rest of the cached POIs are handed to the {@link PlacesMonitorSoftwareGeofencer}.
+	 *
+	 * @param pois the {@code List} of candidate {@link PlacesMonitorPOI}s
+	 * @param location an array with the latitude and longitude of the current location, or null if unknown
+	 */
+	private void monitorNearestFences(final List<PlacesMonitorPOI> pois, final double[] location) {
+		final List<PlacesMonitorPOI> selectedPOIs;
+
+		if (location == null) {
+			selectedPOIs = pois.size() > geofenceCount ? new ArrayList<PlacesMonitorPOI>(pois.subList(0, geofenceCount)) : pois;
+		} else {
+			selectedPOIs = PlacesMonitorFenceSelector.selectNearest(pois, location[0], location[1], geofenceCount);
+		}
+
+		// the software geofences are updated first, to hand the inside state of the regions over to the OS
+		if (softwareGeofencingEnabled) {
+			updateSoftwareGeofences(selectedPOIs);
+			geofenceManager.startMonitoringFences(selectedPOIs, softwareGeofencer.getOSInsideRegions());
+		} else {
+			geofenceManager.startMonitoringFences(selectedPOIs);
+		}
+
+		if (refreshBoundaryEnabled) {
+			monitorRefreshBoundary(selectedPOIs, location);
+		}
+
+		// the regions geofenced in software need accurate fixes as much as the ones monitored by the OS
+		locationPolicy.setFences(softwareGeofencingEnabled ? poiCache.getPOIs() : selectedPOIs);
+	}
+
+	/**
+	 * Moves the refresh boundary around the given location, or falls back to the location updates for this response
+	 * when the monitored regions leave no room for a usable boundary.
+	 *
+	 * @param selectedPOIs the {@code List} of monitored {@link PlacesMonitorPOI}s
+	 * @param location an array with the latitude and longitude of the current location, or null if unknown
+	 */
+	private void monitorRefreshBoundary(final List<PlacesMonitorPOI> selectedPOIs, final double[] location) {
+		final float radius = location == null ? 0 :
+							 PlacesMonitorFenceSelector.refreshBoundaryRadius(selectedPOIs, location[0], location[1]);
+
+		if (radius > 0) {
+			geofenceManager.startMonitoringRefreshBoundary(location[0], location[1], radius);
+			setRefreshBoundaryActive(true);
+			return;
+		}
+
+		if (refreshBoundaryActive) {
+			Log.debug(PlacesMonitorConstants.LOG_TAG, "Monitored regions are too close for a refresh boundary, following the location updates");
+			geofenceManager.stopMonitoringRefreshBoundary();
+			setRefreshBoundaryActive(false);
+		}
+	}
+
+	/**
+	 * Switches the location source between the single fixes of the refresh boundary and the continuous location updates.
+	 * The locations inside the last coverage are skipped only while following the location updates.
+	 *
+	 * @param active true to request the location only on exit of the refresh boundary
+	 */
+	private void setRefreshBoundaryActive(final boolean active) {
+		refreshBoundaryActive = active;
+		locationManager.setRefreshBoundaryEnabled(active);
+		PlacesMonitorDispatcher.setCoverageSkipEnabled(!active);
+	}
+
+	private void updateSoftwareGeofences(final List<PlacesMonitorPOI> osMonitoredPOIs) {
+		final Set<String> osMonitoredIdentifiers = new HashSet<String>();
+
+		for (PlacesMonitorPOI poi : osMonitoredPOIs) {
+			if (poi != null) {
+				osMonitoredIdentifiers.add(poi.getIdentifier());
+			}
+		}
+
+		final List<PlacesMonitorPOI> softwarePOIs = new ArrayList<PlacesMonitorPOI>();
+
+		for (PlacesMonitorPOI poi : poiCache.getPOIs()) {
+			if (!osMonitoredIdentifiers.contains(poi.getIdentifier())) {
+				softwarePOIs.add(poi);
+			}
+		}
+
+		softwareGeofencer.setPOIs(softwarePOIs, osMonitoredIdentifiers);
+		Log.debug(PlacesMonitorConstants.LOG_TAG, "Software geofencing " + softwarePOIs.size() + " cached regions");
+	}
+
+	private List<PlacesMonitorPOI> getNearbyPOIs(final Event event) {
 		EventData eventData = event.getData();
 
 		if (eventData == null || eventData.isEmpty()) {
 			Log.warning(PlacesMonitorConstants.LOG_TAG, "Places Response has invalid event data");
-			return;
+			return null;
 		}
 
 		try {
-			List<PlacesMonitorPOI> pois = eventData.getTypedList(PlacesMonitorConstants.EventDataKeys.NEAR_BY_PLACES_LIST,
+			return eventData.getTypedList(PlacesMonitorConstants.EventDataKeys.NEAR_BY_PLACES_LIST,
 					new PlacesMonitorPOIVariantSerializer());
-			geofenceManager.startMonitoringFences(pois);
 		} catch (VariantException exp) {
 			Log.warning(PlacesMonitorConstants.LOG_TAG, "Places Response has invalid event data");
+			return null;
 		}
 	}
 
 
+	private static boolean optBoolean(final Map<String, Object> map, final String key, final boolean defaultValue) {
+		final Object value = map.get(key);
+		return value instanceof Boolean ? (Boolean) value : defaultValue;
+	}
+
+	private static String optString(final Map<String, Object> map, final String key, final String defaultValue) {
+		final Object value = map.get(key);
+		return value instanceof String ? (String) value : defaultValue;
+	}
+
+	private static double optDouble(final Map<String, Object> map, final String key, final double defaultValue) {
+		final Object value = map.get(key);
+		return value instanceof Number ? ((Number) value).doubleValue() : defaultValue;
+	}
+
+	private static long optLong(final Map<String, Object> map, final String key, final long defaultValue) {
+		final Object value = map.get(key);
+		return value instanceof Number ? ((Number) value).longValue() : defaultValue;
+	}
+
+	private static int optInteger(final Map<String, Object> map, final String key, final int defaultValue) {
+		final Object value = map.get(key);
+		return value instanceof Number ? ((Number) value).intValue() : defaultValue;
+	}
+
 	// ========================================================================================
 	// Getters for private members
 	// ========================================================================================
@@ -217,7 +838,63 @@ class PlacesMonitorInternal extends Extension {
 		}
 	}
 
-	ConcurrentLinkedQueue<Event> getEventQueue() {
-		return eventQueue;
+	ScheduledExecutorService getScheduledExecutor() {
+		synchronized (executorMutex) {
+			if (scheduledExecutorService == null) {
+				scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+			}
+
+			return scheduledExecutorService;
+		}
+	}
+
+	ScheduledFuture<?> getPendingReconcileFlush() {
+		return pendingReconcileFlush;
+	}
+
+	PlacesMonitorEventLane getControlLane() {
+		return controlLane;
+	}
+
+	PlacesMonitorEventLane getResponseLane() {
+		return responseLane;
+	}
+
+	/**
+	 * @return the number of events waiting in the lanes
+	 */
+	int getQueuedEventCount() {
+		return controlLane.size() + responseLane.size();
+	}
+
+	/**
+	 * @return the number of events dropped because their lane was full
+	 */
+	int getDroppedEventCount() {
+		return controlLane.getDroppedCount() + responseLane.getDroppedCount();
+	}
+
+	/**
+	 * @return the number of control requests folded into a newer request
+	 */
+	int getFoldedRequestCount() {
+		return controlLane.getFoldedCount();
+	}
+
+	/**
+	 * @return the number of responses that were coalesced into a pending reconcile
+	 */
+	int getCoalescedResponseCount() {
+		return coalescedResponseCount;
+	}
+
+	private static class PendingReconcile {
+		final List<PlacesMonitorPOI> pois;
+		final double[] location;
+
+		PendingReconcile(final List<PlacesMonitorPOI> pois, final double[] location) {
+			this.pois = pois;
+			this.location = location;
+		}
 	}
 }
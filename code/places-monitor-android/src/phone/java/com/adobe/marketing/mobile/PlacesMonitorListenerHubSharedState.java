@@ -38,6 +38,8 @@ class PlacesMonitorListenerHubSharedState extends ExtensionListener {
 				null);
 
 		if(PlacesMonitorConstants.SharedState.CONFIGURATION.equals(sharedStateOwner)){
+			// the events queued from now on may follow the new configuration
+			parentExtension.invalidateConfigurationSnapshot();
 			parentExtension.getExecutor().execute(new Runnable() {
 				@Override
 				public void run() {
@@ -35,11 +35,14 @@ class PlacesMonitorListenerMonitorRequestContent extends ExtensionListener {
 			return;
 		}
 
+		// read on the thread that hears the configuration changes, see PlacesMonitorInternal.queueEvent
+		final int configurationVersion = parentExtension.getConfigurationVersion();
+
 		parentExtension.getExecutor().execute(new Runnable() {
 			@Override
 			public void run() {
 				// handle places monitor request event
-				parentExtension.queueEvent(event);
+				parentExtension.queueEvent(event, configurationVersion);
 				parentExtension.processEvents();
 			}
 		});
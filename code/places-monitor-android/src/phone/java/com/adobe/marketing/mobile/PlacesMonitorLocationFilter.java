@@ -0,0 +1,380 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorLocationFilter.java
+//
+
+package com.adobe.marketing.mobile;
+
+import android.location.Location;
+import android.os.Build;
+import android.os.SystemClock;
+
+/**
+ * Filters the location fixes before they are dispatched to the Places extension, where each fix may cost a nearby
+ * places request to the server.
+ * <p>
+ * A fix is dropped when:
+ * <ul>
+ *     <li>its accuracy is worse than the configured maximum accuracy, or than the expected accuracy of the active
+ *     location request tier when that is coarser,</li>
+ *     <li>it is older than the configured maximum age,</li>
+ *     <li>reaching it from the last accepted fix requires a speed above the configured maximum speed, taking the
+ *     accuracy of both fixes into account. After {@link PlacesMonitorConstants.LocationFilter#MAX_CONSECUTIVE_OUTLIERS}
+ *     consecutive outliers the next fix is accepted anyway, since the device most likely did move that fast.</li>
+ * </ul>
+ * The accepted fixes can optionally be smoothed with a lightweight Kalman filter, which uses the accuracy of each fix as
+ * its measurement noise.
+ * <p>
+ * The times of the filter state are in elapsed realtime, a fix that only has a wall clock time is moved to elapsed
+ * realtime through its age, so the fixes of both kinds can be compared. Fixes without accuracy or timestamp skip the
+ * checks that need them. The filter is shared between the location receiver, the location manager and the extension
+ * thread, hence all the access is synchronized.
+ */
+class PlacesMonitorLocationFilter {
+
+    /**
+     * The fix is accepted.
+     */
+    static final int ACCEPTED = 0;
+    /**
+     * The fix is dropped because of its accuracy.
+     */
+    static final int DROPPED_INACCURATE = 1;
+    /**
+     * The fix is dropped because of its age.
+     */
+    static final int DROPPED_STALE = 2;
+    /**
+     * The fix is dropped as a jump from the last accepted fix.
+     */
+    static final int DROPPED_OUTLIER = 3;
+
+    private static final PlacesMonitorLocationFilter sharedInstance = new PlacesMonitorLocationFilter();
+
+    private float maxAccuracy = PlacesMonitorConstants.LocationFilter.DEFAULT_MAX_ACCURACY;
+    private float tierMaxAccuracy = 0;
+    private long maxAge = PlacesMonitorConstants.LocationFilter.DEFAULT_MAX_AGE;
+    private float maxSpeed = PlacesMonitorConstants.LocationFilter.DEFAULT_MAX_SPEED;
+    private boolean smoothingEnabled = false;
+
+    // last accepted fix
+    private boolean hasLastFix;
+    private double lastLatitude;
+    private double lastLongitude;
+    private float lastAccuracy;
+    private long lastTime;
+    private int consecutiveOutliers;
+
+    // state of the smoother, the variance is in square meters and negative until the first fix
+    private double smoothedLatitude;
+    private double smoothedLongitude;
+    private double smoothedVariance = -1;
+    private long smoothedTime;
+
+    private int acceptedCount;
+    private int inaccurateCount;
+    private int staleCount;
+    private int outlierCount;
+
+    /**
+     * Returns the {@code PlacesMonitorLocationFilter} instance shared by the location sources and the extension.
+     *
+     * @return the shared {@link PlacesMonitorLocationFilter} instance
+     */
+    static PlacesMonitorLocationFilter getSharedInstance() {
+        return sharedInstance;
+    }
+
+    /**
+     * Configures the thresholds of the filter, the state of the filter is reset when the configuration changes.
+     *
+     * @param maxAccuracy      the worst accepted accuracy in meters, 0 or less to accept any accuracy
+     * @param maxAge           the maximum age of a fix in milliseconds, 0 or less to accept any age
+     * @param maxSpeed         the maximum plausible speed in meters per second, 0 or less to disable the outlier check
+     * @param smoothingEnabled true to smooth the accepted fixes
+     */
+    synchronized void configure(final float maxAccuracy, final long maxAge, final float maxSpeed,
+                                final boolean smoothingEnabled) {
+        if (this.maxAccuracy == maxAccuracy && this.maxAge == maxAge && this.maxSpeed == maxSpeed
+                && this.smoothingEnabled == smoothingEnabled) {
+            return;
+        }
+
+        this.maxAccuracy = maxAccuracy;
+        this.maxAge = maxAge;
+        this.maxSpeed = maxSpeed;
+        this.smoothingEnabled = smoothingEnabled;
+        reset();
+    }
+
+    /**
+     * Sets the worst accuracy expected from the fixes of the active location request tier. A coarser tier than the
+     * configured maximum accuracy loosens the accuracy check, so its fixes are not all dropped, it never tightens it.
+     *
+     * @param tierMaxAccuracy the accuracy in meters of {@link PlacesMonitorLocationPolicy.Tier#getMaxAccuracy()}, 0 or
+     *                        less to use the configured maximum accuracy
+     */
+    synchronized void setTierMaxAccuracy(final float tierMaxAccuracy) {
+        this.tierMaxAccuracy = tierMaxAccuracy;
+    }
+
+    /**
+     * Returns the accuracy threshold of the accuracy check.
+     *
+     * @return the worst accepted accuracy in meters, 0 or less if any accuracy is accepted
+     */
+    synchronized float getEffectiveMaxAccuracy() {
+        return maxAccuracy > 0 && tierMaxAccuracy > maxAccuracy ? tierMaxAccuracy : maxAccuracy;
+    }
+
+    /**
+     * Forgets the last accepted fix and the state of the smoother, used when the monitoring stops.
+     */
+    synchronized void reset() {
+        hasLastFix = false;
+        consecutiveOutliers = 0;
+        smoothedVariance = -1;
+    }
+
+    /**
+     * Filters the given location.
+     *
+     * @param location the {@link Location} to be filtered
+     * @return the accepted {@code Location}, a smoothed copy if smoothing is enabled, or null if the fix was dropped
+     */
+    Location filter(final Location location) {
+        if (location == null) {
+            return null;
+        }
+
+        final long elapsedRealtimeNanos = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 ?
+                                          location.getElapsedRealtimeNanos() : 0;
+        long now = SystemClock.elapsedRealtime();
+        long fixTime = toElapsedRealtime(elapsedRealtimeNanos, location.getTime(), now, System.currentTimeMillis());
+
+        if (fixTime <= 0 && location.getTime() > 0) {
+            // the fix predates the boot, it is placed at the boot and the current time moved along to keep its age
+            now += 1 - fixTime;
+            fixTime = 1;
+        }
+
+        final float accuracy = location.hasAccuracy() ? location.getAccuracy() : -1;
+
+        synchronized (this) {
+            final int verdict = filter(location.getLatitude(), location.getLongitude(), accuracy, fixTime, now);
+
+            if (verdict != ACCEPTED) {
+                Log.debug(PlacesMonitorConstants.LOG_TAG, "Location dropped by the filter, " + describe(verdict));
+                return null;
+            }
+
+            if (!smoothingEnabled || accuracy < 0 || smoothedVariance < 0) {
+                return location;
+            }
+
+            final Location smoothedLocation = new Location(location);
+            smoothedLocation.setLatitude(smoothedLatitude);
+            smoothedLocation.setLongitude(smoothedLongitude);
+            smoothedLocation.setAccuracy((float) Math.sqrt(smoothedVariance));
+            return smoothedLocation;
+        }
+    }
+
+    /**
+     * Returns the age of the given location, measured in elapsed realtime when available so it is not affected by
+     * changes of the wall clock.
+     *
+     * @param location the {@link Location} to be measured
+     * @return the age in milliseconds, or a negative value if the location has no timestamp
+     */
+    static long getAge(final Location location) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 && location.getElapsedRealtimeNanos() > 0) {
+            return SystemClock.elapsedRealtime() - location.getElapsedRealtimeNanos() / 1000000;
+        }
+
+        return location.getTime() > 0 ? System.currentTimeMillis() - location.getTime() : -1;
+    }
+
+    /**
+     * Returns the time of a fix in elapsed realtime, the time base of the filter state.
+     * <p>
+     * A fix without elapsed realtime is moved from the wall clock through its age, a fix older than the boot of the
+     * device ends up at 0 or less.
+     *
+     * @param elapsedRealtimeNanos the elapsed realtime of the fix in nanoseconds, 0 or less if unknown
+     * @param time                 the wall clock time of the fix in milliseconds, 0 or less if unknown
+     * @param now                  the current elapsed realtime in milliseconds
+     * @param currentTime          the current wall clock time in milliseconds
+     * @return the elapsed realtime of the fix in milliseconds, 0 if the fix has no timestamp
+     */
+    static long toElapsedRealtime(final long elapsedRealtimeNanos, final long time, final long now, final long currentTime) {
+        if (elapsedRealtimeNanos > 0) {
+            return elapsedRealtimeNanos / 1000000;
+        }
+
+        if (time <= 0) {
+            return 0;
+        }
+
+        return now - (currentTime - time);
+    }
+
+    /**
+     * Filters the given fix.
+     *
+     * @param latitude  the latitude of the fix
+     * @param longitude the longitude of the fix
+     * @param accuracy  the accuracy of the fix in meters, negative if unknown
+     * @param fixTime   the elapsed realtime of the fix in milliseconds, 0 or less if unknown
+     * @param now       the current elapsed realtime in milliseconds
+     * @return {@link #ACCEPTED}, or the reason the fix was dropped
+     */
+    synchronized int filter(final double latitude, final double longitude, final float accuracy, final long fixTime,
+                            final long now) {
+        final float effectiveMaxAccuracy = getEffectiveMaxAccuracy();
+
+        if (effectiveMaxAccuracy > 0 && accuracy > effectiveMaxAccuracy) {
+            inaccurateCount++;
+            return DROPPED_INACCURATE;
+        }
+
+        if (maxAge > 0 && fixTime > 0 && now - fixTime > maxAge) {
+            staleCount++;
+            return DROPPED_STALE;
+        }
+
+        if (isOutlier(latitude, longitude, accuracy, fixTime)) {
+            consecutiveOutliers++;
+            outlierCount++;
+            return DROPPED_OUTLIER;
+        }
+
+        if (consecutiveOutliers >= PlacesMonitorConstants.LocationFilter.MAX_CONSECUTIVE_OUTLIERS) {
+            // the device did move that fast, the smoothed estimate starts over from this fix
+            smoothedVariance = -1;
+        }
+
+        consecutiveOutliers = 0;
+        hasLastFix = true;
+        lastLatitude = latitude;
+        lastLongitude = longitude;
+        lastAccuracy = Math.max(0, accuracy);
+        lastTime = fixTime;
+        acceptedCount++;
+
+        if (smoothingEnabled) {
+            smooth(latitude, longitude, accuracy, fixTime);
+        }
+
+        return ACCEPTED;
+    }
+
+    synchronized double getSmoothedLatitude() {
+        return smoothedLatitude;
+    }
+
+    synchronized double getSmoothedLongitude() {
+        return smoothedLongitude;
+    }
+
+    /**
+     * @return the accuracy of the smoothed location in meters, negative before the first smoothed fix
+     */
+    synchronized float getSmoothedAccuracy() {
+        return smoothedVariance < 0 ? -1 : (float) Math.sqrt(smoothedVariance);
+    }
+
+    synchronized int getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    synchronized int getInaccurateCount() {
+        return inaccurateCount;
+    }
+
+    synchronized int getStaleCount() {
+        return staleCount;
+    }
+
+    synchronized int getOutlierCount() {
+        return outlierCount;
+    }
+
+    // ========================================================================================
+    // private methods
+    // ========================================================================================
+
+    private static String describe(final int verdict) {
+        switch (verdict) {
+            case DROPPED_INACCURATE:
+                return "accuracy is too low";
+
+            case DROPPED_STALE:
+                return "location is too old";
+
+            case DROPPED_OUTLIER:
+                return "location is too far from the previous location";
+
+            default:
+                return "accepted";
+        }
+    }
+
+    private boolean isOutlier(final double latitude, final double longitude, final float accuracy, final long fixTime) {
+        if (maxSpeed <= 0 || !hasLastFix || fixTime <= 0 || lastTime <= 0 || fixTime <= lastTime) {
+            return false;
+        }
+
+        if (consecutiveOutliers >= PlacesMonitorConstants.LocationFilter.MAX_CONSECUTIVE_OUTLIERS) {
+            return false;
+        }
+
+        // the distance that is certainly travelled, given the accuracy of both fixes
+        final double distance = PlacesMonitorGeoUtil.distanceInMeters(lastLatitude, lastLongitude, latitude, longitude)
+                                - lastAccuracy - Math.max(0, accuracy);
+        final double seconds = (fixTime - lastTime) / 1000.0;
+        return distance / seconds > maxSpeed;
+    }
+
+    private void smooth(final double latitude, final double longitude, final float accuracy, final long fixTime) {
+        if (accuracy < 0) {
+            // without accuracy the fix cannot be weighted
+            return;
+        }
+
+        final double measurementVariance = Math.max(accuracy, PlacesMonitorConstants.LocationFilter.MIN_ACCURACY)
+                                           * Math.max(accuracy, PlacesMonitorConstants.LocationFilter.MIN_ACCURACY);
+
+        if (smoothedVariance < 0) {
+            smoothedLatitude = latitude;
+            smoothedLongitude = longitude;
+            smoothedVariance = measurementVariance;
+            smoothedTime = fixTime;
+            return;
+        }
+
+        // the device may have moved since the previous fix, which adds to the uncertainty of the estimate
+        if (fixTime > smoothedTime) {
+            final double seconds = (fixTime - smoothedTime) / 1000.0;
+            final double processNoise = PlacesMonitorConstants.LocationFilter.SMOOTHING_SPEED;
+            smoothedVariance += seconds * processNoise * processNoise;
+            smoothedTime = fixTime;
+        }
+
+        final double gain = smoothedVariance / (smoothedVariance + measurementVariance);
+        smoothedLatitude += gain * (latitude - smoothedLatitude);
+        smoothedLongitude += gain * (longitude - smoothedLongitude);
+        smoothedVariance = (1 - gain) * smoothedVariance;
+    }
+}
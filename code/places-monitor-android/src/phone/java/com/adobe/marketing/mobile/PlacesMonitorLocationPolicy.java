@@ -0,0 +1,357 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorLocationPolicy.java
+//
+
+package com.adobe.marketing.mobile;
+
+import android.app.ActivityManager;
+import android.location.Location;
+import android.os.Build;
+
+import com.google.android.gms.location.LocationRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Selects the priority, interval and smallest displacement of the continuous location updates out of a few tiers,
+ * based on the distance to the nearest monitored fence, the speed of the device and whether the app is in the foreground.
+ * <p>
+ * Far from any fence the location is fixed with {@link LocationRequest#PRIORITY_LOW_POWER} and rarely, close to a
+ * fence with {@link LocationRequest#PRIORITY_HIGH_ACCURACY} and often. A device fast enough to reach the nearest fence
+ * before the next update of its tier, or an app in the foreground far from any fence, gets the next tier up.
+ * A tier is only left for a lower one once the device is clearly past its distance, so the location request is not
+ * replaced back and forth on the edge of a tier.
+ * <p>
+ * The device may be anywhere within the accuracy of a fix, so a tier is entered on the nearest possible distance to the
+ * fence. The accuracy counted is capped at the smallest displacement of the current tier, a coarse low power fix
+ * would otherwise select a higher tier that the next accurate fix leaves again. A tier is left on the distance of the
+ * fix itself.
+ * <p>
+ * Until the fences are known the {@link #APPROACHING} tier is used, which fixes the location accurately enough to
+ * query the nearby places. The {@link Listener} is notified when the tier changes, so the location request is
+ * only replaced then.
+ */
+class PlacesMonitorLocationPolicy {
+
+    /**
+     * Gets notified when the selected tier changes.
+     */
+    interface Listener {
+        void onTierChanged(Tier tier);
+    }
+
+    /**
+     * The parameters of the location request of a tier.
+     */
+    static final class Tier {
+        private final String name;
+        private final int level;
+        private final int priority;
+        private final long interval;
+        private final long fastestInterval;
+        private final float smallestDisplacement;
+        private final float maxAccuracy;
+
+        private Tier(final String name, final int level, final int priority, final long interval,
+                     final long fastestInterval, final float smallestDisplacement, final float maxAccuracy) {
+            this.name = name;
+            this.level = level;
+            this.priority = priority;
+            this.interval = interval;
+            this.fastestInterval = fastestInterval;
+            this.smallestDisplacement = smallestDisplacement;
+            this.maxAccuracy = maxAccuracy;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        int getPriority() {
+            return priority;
+        }
+
+        long getInterval() {
+            return interval;
+        }
+
+        long getFastestInterval() {
+            return fastestInterval;
+        }
+
+        float getSmallestDisplacement() {
+            return smallestDisplacement;
+        }
+
+        /**
+         * Returns the worst accuracy the fixes of the tier are expected to have, the location filter accepts it even
+         * when it is worse than the configured maximum accuracy.
+         *
+         * @return the accuracy in meters, 0 if the fixes of the tier are held to the configured maximum accuracy
+         */
+        float getMaxAccuracy() {
+            return maxAccuracy;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    static final Tier FAR = new Tier("far", 0, LocationRequest.PRIORITY_LOW_POWER,
+                                     PlacesMonitorConstants.LocationPolicy.FAR_INTERVAL,
+                                     PlacesMonitorConstants.LocationPolicy.FAR_FASTEST_INTERVAL,
+                                     PlacesMonitorConstants.LocationPolicy.FAR_SMALLEST_DISPLACEMENT,
+                                     PlacesMonitorConstants.LocationPolicy.FAR_MAX_ACCURACY);
+    static final Tier APPROACHING = new Tier("approaching", 1, LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY,
+            PlacesMonitorConstants.LocationPolicy.APPROACHING_INTERVAL,
+            PlacesMonitorConstants.LocationPolicy.APPROACHING_FASTEST_INTERVAL,
+            PlacesMonitorConstants.LocationPolicy.APPROACHING_SMALLEST_DISPLACEMENT, 0);
+    static final Tier NEAR = new Tier("near", 2, LocationRequest.PRIORITY_HIGH_ACCURACY,
+                                      PlacesMonitorConstants.LocationPolicy.NEAR_INTERVAL,
+                                      PlacesMonitorConstants.LocationPolicy.NEAR_FASTEST_INTERVAL,
+                                      PlacesMonitorConstants.LocationPolicy.NEAR_SMALLEST_DISPLACEMENT, 0);
+
+    private static final Tier[] TIERS = {FAR, APPROACHING, NEAR};
+
+    private static final PlacesMonitorLocationPolicy sharedInstance = new PlacesMonitorLocationPolicy();
+
+    // null until the nearby places are known
+    private List<PlacesMonitorPOI> fences;
+
+    private boolean hasLocation;
+    private double latitude;
+    private double longitude;
+    private float accuracy;
+    private float speed;
+    private boolean foreground;
+
+    private Tier tier = APPROACHING;
+    private int tierChangeCount;
+    private Listener listener;
+
+    /**
+     * Returns the {@code PlacesMonitorLocationPolicy} instance shared by the location receiver, the location manager
+     * and the extension.
+     *
+     * @return the shared {@link PlacesMonitorLocationPolicy} instance
+     */
+    static PlacesMonitorLocationPolicy getSharedInstance() {
+        return sharedInstance;
+    }
+
+    synchronized void setListener(final Listener listener) {
+        this.listener = listener;
+    }
+
+    synchronized Tier getTier() {
+        return tier;
+    }
+
+    synchronized int getTierChangeCount() {
+        return tierChangeCount;
+    }
+
+    /**
+     * Sets the monitored fences, the tier is selected again against the last known location.
+     *
+     * @param fences the {@code List} of monitored {@link PlacesMonitorPOI}s, empty if there is none nearby
+     */
+    void setFences(final List<PlacesMonitorPOI> fences) {
+        final Tier changedTier;
+
+        synchronized (this) {
+            this.fences = fences == null ? new ArrayList<PlacesMonitorPOI>() : new ArrayList<PlacesMonitorPOI>(fences);
+            changedTier = hasLocation ? updateTier() : null;
+        }
+
+        notifyTierChanged(changedTier);
+    }
+
+    /**
+     * Selects the tier for the given location fix.
+     *
+     * @param location the last {@link Location} of the device
+     */
+    void onLocation(final Location location) {
+        if (location == null) {
+            return;
+        }
+
+        onLocation(location.getLatitude(), location.getLongitude(), location.hasAccuracy() ? location.getAccuracy() : -1,
+                   location.hasSpeed() ? location.getSpeed() : -1, isAppInForeground());
+    }
+
+    /**
+     * Selects the tier for the given location fix.
+     *
+     * @param latitude   the latitude of the fix
+     * @param longitude  the longitude of the fix
+     * @param accuracy   the accuracy of the fix in meters, negative if unknown
+     * @param speed      the speed of the device in meters per second, negative if unknown
+     * @param foreground true if the app is in the foreground
+     */
+    void onLocation(final double latitude, final double longitude, final float accuracy, final float speed,
+                    final boolean foreground) {
+        final Tier changedTier;
+
+        synchronized (this) {
+            this.hasLocation = true;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.accuracy = accuracy;
+            this.speed = speed;
+            this.foreground = foreground;
+            changedTier = updateTier();
+        }
+
+        notifyTierChanged(changedTier);
+    }
+
+    /**
+     * Forgets the fences and the last location, used when the monitoring stops. The listener is not notified.
+     */
+    synchronized void reset() {
+        fences = null;
+        hasLocation = false;
+        tier = APPROACHING;
+    }
+
+    /**
+     * Selects the tier for the given state of the device.
+     *
+     * @param distance    the distance from the fix to the edge of the nearest fence in meters,
+     *                    {@link Double#POSITIVE_INFINITY} if there is no fence nearby
+     * @param accuracy    the accuracy of the fix in meters, negative if unknown
+     * @param speed       the speed of the device in meters per second, negative if unknown
+     * @param foreground  true if the app is in the foreground
+     * @param currentTier the currently selected {@link Tier}
+     * @return the selected {@code Tier}
+     */
+    static Tier selectTier(final double distance, final float accuracy, final float speed, final boolean foreground,
+                           final Tier currentTier) {
+        // the device may be anywhere within the accuracy of the fix, up to the displacement the tier tolerates
+        final double nearestDistance = Math.max(0, distance - Math.min(Math.max(0, accuracy),
+                                                currentTier.smallestDisplacement));
+        int level;
+
+        if (nearestDistance <= PlacesMonitorConstants.LocationPolicy.NEAR_DISTANCE) {
+            level = NEAR.level;
+        } else if (nearestDistance <= PlacesMonitorConstants.LocationPolicy.APPROACHING_DISTANCE) {
+            level = APPROACHING.level;
+        } else {
+            level = FAR.level;
+        }
+
+        // stay in the current tier until the fix is clearly past its distance
+        if (level < currentTier.level
+                && distance <= tierDistance(currentTier) * PlacesMonitorConstants.LocationPolicy.HYSTERESIS_RATIO) {
+            level = currentTier.level;
+        }
+
+        // the device would reach the nearest fence before the next update of the tier
+        if (speed > 0 && level < NEAR.level && nearestDistance / speed < TIERS[level].interval / 1000.0) {
+            level++;
+        }
+
+        // the app is awake anyway, a more accurate fix is cheaper to get
+        if (foreground && level == FAR.level) {
+            level = APPROACHING.level;
+        }
+
+        return TIERS[level];
+    }
+
+    /**
+     * Returns true if the app is in the foreground, or false if unknown.
+     *
+     * @return true if a process of the app is visible to the user
+     */
+    static boolean isAppInForeground() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            return false;
+        }
+
+        final ActivityManager.RunningAppProcessInfo processInfo = new ActivityManager.RunningAppProcessInfo();
+        ActivityManager.getMyMemoryState(processInfo);
+        return processInfo.importance <= ActivityManager.RunningAppProcessInfo.IMPORTANCE_VISIBLE;
+    }
+
+    // ========================================================================================
+    // private methods
+    // ========================================================================================
+
+    private static double tierDistance(final Tier tier) {
+        if (tier.level == NEAR.level) {
+            return PlacesMonitorConstants.LocationPolicy.NEAR_DISTANCE;
+        }
+
+        if (tier.level == APPROACHING.level) {
+            return PlacesMonitorConstants.LocationPolicy.APPROACHING_DISTANCE;
+        }
+
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Selects the tier for the current state, the caller holds the lock.
+     *
+     * @return the new {@link Tier}, or null if it did not change
+     */
+    private Tier updateTier() {
+        if (fences == null) {
+            // the nearby places are not known yet
+            return null;
+        }
+
+        final Tier selectedTier = selectTier(distanceToNearestFence(), accuracy, speed, foreground, tier);
+
+        if (selectedTier == tier) {
+            return null;
+        }
+
+        Log.debug(PlacesMonitorConstants.LOG_TAG, "Location request tier changed from " + tier + " to " + selectedTier);
+        tier = selectedTier;
+        tierChangeCount++;
+        return selectedTier;
+    }
+
+    private double distanceToNearestFence() {
+        double nearestDistance = Double.POSITIVE_INFINITY;
+
+        for (PlacesMonitorPOI fence : fences) {
+            if (fence != null) {
+                nearestDistance = Math.min(nearestDistance,
+                                           PlacesMonitorGeoUtil.distanceToEdgeInMeters(latitude, longitude, fence));
+            }
+        }
+
+        return nearestDistance;
+    }
+
+    private void notifyTierChanged(final Tier changedTier) {
+        final Listener currentListener;
+
+        synchronized (this) {
+            currentListener = listener;
+        }
+
+        if (changedTier != null && currentListener != null) {
+            currentListener.onTierChanged(changedTier);
+        }
+    }
+}
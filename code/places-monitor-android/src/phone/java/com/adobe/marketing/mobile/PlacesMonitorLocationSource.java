@@ -0,0 +1,81 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorLocationSource.java
+//
+
+package com.adobe.marketing.mobile;
+
+/**
+ * Source of the location fixes of the monitor, driven by the extension thread.
+ * <p>
+ * The fixes of a source are handed to {@link PlacesLocationBroadcastReceiver#processLocations(java.util.List)}, which
+ * filters them, dispatches them to the Places extension and evaluates the software geofences.
+ * {@link PlacesLocationManager} implements it with the fused location provider, {@link PlacesMonitorTraceLocationSource}
+ * replays a recorded trajectory.
+ */
+interface PlacesMonitorLocationSource {
+
+    /**
+     * Starts delivering location fixes.
+     */
+    void startMonitoring();
+
+    /**
+     * Stops delivering location fixes.
+     */
+    void stopMonitoring();
+
+    /**
+     * Delivers the current location once, if the source is started.
+     */
+    void updateLocation();
+
+    /**
+     * Enables or disables the refresh boundary mode, in which only single fixes are delivered on start and on
+     * {@link #updateLocation()}.
+     *
+     * @param enabled true to enable the refresh boundary mode
+     */
+    void setRefreshBoundaryEnabled(final boolean enabled);
+
+    /**
+     * Sets the maximum time the location fixes may be batched for.
+     *
+     * @param maxWaitTime the maximum wait time in milliseconds, 0 to deliver every location fix right away
+     */
+    void setMaxWaitTime(final long maxWaitTime);
+
+    /**
+     * Enables or disables the adaptive location request of {@link PlacesMonitorLocationPolicy}.
+     *
+     * @param enabled true to enable the adaptive location request
+     */
+    void setAdaptiveLocationEnabled(final boolean enabled);
+
+    /**
+     * Called when the {@link PlacesMonitorLocationPolicy} selects a new tier, so the adaptive location request can
+     * follow it.
+     *
+     * @param tier the selected {@link PlacesMonitorLocationPolicy.Tier}
+     */
+    void onLocationTierChanged(final PlacesMonitorLocationPolicy.Tier tier);
+
+    /**
+     * Sets the freshness budget of {@link #updateLocation()}.
+     *
+     * @param maxAge  the maximum age of the last known location in milliseconds
+     * @param timeout the time in milliseconds a single location fix is waited for
+     */
+    void setFreshFixBudget(final long maxAge, final long timeout);
+}
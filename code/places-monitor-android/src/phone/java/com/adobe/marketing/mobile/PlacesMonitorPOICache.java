@@ -0,0 +1,594 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorPOICache.java
+//
+
+package com.adobe.marketing.mobile;
+
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * In-memory index of the POIs received from the Places extension, bucketed by geohash cell.
+ * <p>
+ * Every nearby POI response is the complete set of POIs within the distance of its farthest POI from the
+ * location that was queried. Each geohash cell that lies entirely inside that circle is marked as covered, and
+ * a later nearby query for a location inside a covered cell can be answered from the cache without a network
+ * request to the Places Service.
+ * <p>
+ * The responses do not tell which query they answer, so the nearby queries heard on the event hub, the ones of the
+ * monitor and of the app, are kept as pending queries. A response is matched to a query only when it is the single
+ * pending one, the responses that cannot be matched are indexed without covering any cell.
+ * <p>
+ * The coverage times are in elapsed realtime, so a change of the wall clock neither extends nor expires the coverage.
+ * The cache is shared between the location dispatch path and the extension thread, hence all the access is synchronized.
+ */
+class PlacesMonitorPOICache {
+
+    private static final String GEOHASH_BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+    private static final int GEOHASH_BITS = PlacesMonitorConstants.POICache.GEOHASH_PRECISION * 5;
+    private static final int LONGITUDE_BITS = (GEOHASH_BITS + 1) / 2;
+    private static final int LATITUDE_BITS = GEOHASH_BITS / 2;
+    private static final double LATITUDE_STEP = 180.0 / (1 << LATITUDE_BITS);
+    private static final double LONGITUDE_STEP = 360.0 / (1 << LONGITUDE_BITS);
+    private static final double METERS_PER_DEGREE_LATITUDE = 111320.0;
+    // enough rings of the narrowest cells at 80 degrees of latitude to reach the maximum coverage radius
+    private static final int MAX_SEARCH_RINGS = 64;
+
+    private static final PlacesMonitorPOICache sharedInstance = new PlacesMonitorPOICache();
+
+    private final LinkedHashMap<String, Cell> cells;
+    private final Map<String, String> cellByIdentifier;
+    private int poiCount;
+
+    // the nearby queries waiting for their response, oldest first
+    private final LinkedList<PendingQuery> pendingQueries;
+    private double[] lastQueryLocation;
+    private int unmatchedResponseCount;
+
+    // the circle around the query of the last nearby response matched to its query
+    private boolean hasLastCoverage;
+    private double lastCoverageLatitude;
+    private double lastCoverageLongitude;
+    private double lastCoverageRadius;
+    private long lastCoverageTimestamp;
+    private int skippedQueryCount;
+    private long searchedCellCount;
+
+    PlacesMonitorPOICache() {
+        // access ordered, so that the least recently used cells are evicted first
+        cells = new LinkedHashMap<String, Cell>(16, 0.75f, true);
+        cellByIdentifier = new HashMap<String, String>();
+        pendingQueries = new LinkedList<PendingQuery>();
+    }
+
+    /**
+     * Returns the {@code PlacesMonitorPOICache} instance shared by the location dispatcher and the extension.
+     *
+     * @return the shared {@link PlacesMonitorPOICache} instance
+     */
+    static PlacesMonitorPOICache getSharedInstance() {
+        return sharedInstance;
+    }
+
+    /**
+     * Records a nearby POI query sent to the Places extension, by the monitor or by the app.
+     * <p>
+     * The query is pending until a response is matched to it, or until {@link PlacesMonitorConstants.POICache#QUERY_TIMEOUT}
+     * elapsed.
+     *
+     * @param latitude  the latitude of the queried location
+     * @param longitude the longitude of the queried location
+     */
+    synchronized void addPendingQuery(final double latitude, final double longitude) {
+        final long now = SystemClock.elapsedRealtime();
+        removeExpiredQueries(now);
+        pendingQueries.addLast(new PendingQuery(latitude, longitude, now));
+        lastQueryLocation = new double[] {latitude, longitude};
+    }
+
+    /**
+     * Returns the location of the last nearby POI query that was sent to the Places extension.
+     *
+     * @return an array with the latitude and longitude of the last query, or null if no query was recorded
+     */
+    synchronized double[] getLastQueryLocation() {
+        return lastQueryLocation == null ? null : lastQueryLocation.clone();
+    }
+
+    /**
+     * Adds the given nearby POIs to the cache and marks the cells covered by the response.
+     * <p>
+     * The covered area is only computed when the response is matched to the single pending query. With no pending query
+     * the response answers a query that was not heard or that expired, and with several pending queries it may answer
+     * any of them, so the POIs are indexed without extending the coverage and the pending queries are forgotten.
+     *
+     * @param pois the {@code List} of {@link PlacesMonitorPOI} received from the Places extension
+     */
+    synchronized void cachePOIs(final List<PlacesMonitorPOI> pois) {
+        if (pois == null) {
+            return;
+        }
+
+        final long now = SystemClock.elapsedRealtime();
+        final Set<String> responseIdentifiers = new HashSet<String>();
+
+        for (PlacesMonitorPOI poi : pois) {
+            if (poi == null || poi.getIdentifier() == null) {
+                continue;
+            }
+
+            responseIdentifiers.add(poi.getIdentifier());
+            putPOI(poi);
+        }
+
+        final PendingQuery query = takeAnsweredQuery(now);
+
+        if (query != null) {
+            double coverageRadius = 0;
+
+            for (PlacesMonitorPOI poi : pois) {
+                if (poi == null) {
+                    continue;
+                }
+
+                coverageRadius = Math.max(coverageRadius, PlacesMonitorGeoUtil.distanceInMeters(query.latitude, query.longitude,
+                                          poi.getLatitude(), poi.getLongitude()));
+            }
+
+            coverageRadius = Math.min(coverageRadius, PlacesMonitorConstants.POICache.MAX_COVERAGE_RADIUS);
+            markCoveredCells(query, coverageRadius, responseIdentifiers, now);
+
+            hasLastCoverage = true;
+            lastCoverageLatitude = query.latitude;
+            lastCoverageLongitude = query.longitude;
+            lastCoverageRadius = coverageRadius;
+            lastCoverageTimestamp = now;
+        } else {
+            unmatchedResponseCount++;
+        }
+
+        evictIfNeeded();
+    }
+
+    /**
+     * Returns whether the given location is still well inside the area covered by the last nearby response.
+     * <p>
+     * Only a response matched to its own query is recorded as the last coverage, see {@link #cachePOIs(List)}, a
+     * response that cannot be matched leaves the previous coverage in place. The last response holds all the POIs whose center is within the distance of its farthest POI from the queried
+     * location, its coverage radius. As long as the device stays within
+     * {@link PlacesMonitorConstants.POICache#COVERAGE_SAFETY_FACTOR} of that radius, the center of every POI missing
+     * from the response is at least the rest of the radius away from the device, so the query is skipped. A large
+     * region centered beyond that distance may still reach closer to the device than the monitored ones.
+     * Each location inside the coverage is counted as a skipped query.
+     *
+     * @param latitude  the latitude of the location
+     * @param longitude the longitude of the location
+     * @return true if the location is inside the safety margin of the last coverage
+     */
+    synchronized boolean isInsideLastCoverage(final double latitude, final double longitude) {
+        if (!hasLastCoverage || lastCoverageRadius <= 0 ||
+                SystemClock.elapsedRealtime() - lastCoverageTimestamp > PlacesMonitorConstants.POICache.COVERAGE_TTL) {
+            return false;
+        }
+
+        final double distance = PlacesMonitorGeoUtil.distanceInMeters(lastCoverageLatitude, lastCoverageLongitude, latitude,
+                                longitude);
+
+        if (distance > lastCoverageRadius * PlacesMonitorConstants.POICache.COVERAGE_SAFETY_FACTOR) {
+            return false;
+        }
+
+        skippedQueryCount++;
+        return true;
+    }
+
+    /**
+     * Forgets the coverage of the last nearby response, so the next location is queried again.
+     */
+    synchronized void clearLastCoverage() {
+        hasLastCoverage = false;
+    }
+
+    /**
+     * @return the number of locations that were inside the coverage of the last nearby response
+     */
+    synchronized int getSkippedQueryCount() {
+        return skippedQueryCount;
+    }
+
+    /**
+     * @return the number of responses that could not be matched to a pending query
+     */
+    synchronized int getUnmatchedResponseCount() {
+        return unmatchedResponseCount;
+    }
+
+    /**
+     * @return the number of cells visited by {@link #getNearbyPOIs(double, double, int)} so far
+     */
+    synchronized long getSearchedCellCount() {
+        return searchedCellCount;
+    }
+
+    /**
+     * Returns the cached POIs nearest to the given location, if the cache provably holds them.
+     * <p>
+     * The cells are searched ring by ring around the location's cell, as long as every cell of the ring is covered. The
+     * square of covered cells proves that the cache holds every POI within the distance from the location to its nearest
+     * edge. The candidates are kept in a min-heap on their distance, and the ones within that distance are final. The
+     * answer is returned once {@code count} POIs are final, or when that distance reaches
+     * {@link PlacesMonitorConstants.POICache#MAX_COVERAGE_RADIUS}, in which case fewer POIs may be returned. Otherwise the
+     * nearest POIs may lie in a cell that is not covered, and the location has to be queried.
+     *
+     * @param latitude  the latitude of the location
+     * @param longitude the longitude of the location
+     * @param count     the maximum number of POIs to be returned
+     * @return the nearby {@link PlacesMonitorPOI}s ordered by their distance, or null if the cache does not hold them
+     */
+    synchronized List<PlacesMonitorPOI> getNearbyPOIs(final double latitude, final double longitude, final int count) {
+        final int latitudeIndex = latitudeIndex(latitude);
+        final int longitudeIndex = longitudeIndex(longitude);
+        final long now = SystemClock.elapsedRealtime();
+        final PriorityQueue<RankedPOI> candidates = new PriorityQueue<RankedPOI>();
+        final List<PlacesMonitorPOI> nearest = new ArrayList<PlacesMonitorPOI>();
+
+        for (int ring = 0; ring <= MAX_SEARCH_RINGS; ring++) {
+            if (!addRingPOIs(latitude, longitude, latitudeIndex, longitudeIndex, ring, now, candidates)) {
+                return null;
+            }
+
+            final double provenRadius = distanceToBlockEdge(latitude, longitude, latitudeIndex, longitudeIndex, ring);
+            final double finalRadius = provenRadius >= PlacesMonitorConstants.POICache.MAX_COVERAGE_RADIUS ?
+                                       Double.POSITIVE_INFINITY : provenRadius;
+
+            // no POI found in a later ring can be nearer than the proven radius
+            while (nearest.size() < count && !candidates.isEmpty() && candidates.peek().distance <= finalRadius) {
+                nearest.add(candidates.poll().poi);
+            }
+
+            if (nearest.size() >= count || finalRadius == Double.POSITIVE_INFINITY) {
+                return nearest;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Removes all the cached POIs and covered cells.
+     */
+    synchronized void clear() {
+        cells.clear();
+        cellByIdentifier.clear();
+        poiCount = 0;
+        pendingQueries.clear();
+        lastQueryLocation = null;
+        hasLastCoverage = false;
+    }
+
+    /**
+     * Returns all the cached POIs.
+     *
+     * @return a new {@code List} with all the cached {@link PlacesMonitorPOI}s
+     */
+    synchronized List<PlacesMonitorPOI> getPOIs() {
+        final List<PlacesMonitorPOI> pois = new ArrayList<PlacesMonitorPOI>(poiCount);
+
+        for (Cell cell : cells.values()) {
+            pois.addAll(cell.pois.values());
+        }
+
+        return pois;
+    }
+
+    synchronized int getPOICount() {
+        return poiCount;
+    }
+
+    // ========================================================================================
+    // private methods
+    // ========================================================================================
+
+    private void putPOI(final PlacesMonitorPOI poi) {
+        final String cellHash = geohash(latitudeIndex(poi.getLatitude()), longitudeIndex(poi.getLongitude()));
+        final String previousCellHash = cellByIdentifier.get(poi.getIdentifier());
+
+        if (previousCellHash != null && !previousCellHash.equals(cellHash)) {
+            removePOI(poi.getIdentifier(), previousCellHash);
+        }
+
+        Cell cell = cells.get(cellHash);
+
+        if (cell == null) {
+            cell = new Cell();
+            cells.put(cellHash, cell);
+        }
+
+        if (cell.pois.put(poi.getIdentifier(), poi) == null) {
+            poiCount++;
+        }
+
+        cellByIdentifier.put(poi.getIdentifier(), cellHash);
+    }
+
+    private void removePOI(final String identifier, final String cellHash) {
+        final Cell cell = cells.get(cellHash);
+
+        if (cell != null && cell.pois.remove(identifier) != null) {
+            poiCount--;
+        }
+
+        cellByIdentifier.remove(identifier);
+    }
+
+    /**
+     * Removes the expired pending queries and returns the query answered by a response, if it can be told.
+     *
+     * @return the single pending {@link PendingQuery}, or null if there is none or more than one
+     */
+    private PendingQuery takeAnsweredQuery(final long now) {
+        removeExpiredQueries(now);
+
+        if (pendingQueries.size() == 1) {
+            return pendingQueries.pollFirst();
+        }
+
+        if (!pendingQueries.isEmpty()) {
+            Log.debug(PlacesMonitorConstants.LOG_TAG, "Nearby places response may answer any of " + pendingQueries.size()
+                      + " pending queries, not extending the cache coverage");
+            pendingQueries.clear();
+        }
+
+        return null;
+    }
+
+    private void removeExpiredQueries(final long now) {
+        while (!pendingQueries.isEmpty()
+                && now - pendingQueries.peekFirst().timestamp > PlacesMonitorConstants.POICache.QUERY_TIMEOUT) {
+            pendingQueries.pollFirst();
+        }
+    }
+
+    private void markCoveredCells(final PendingQuery query, final double coverageRadius,
+                                  final Set<String> responseIdentifiers, final long now) {
+        if (coverageRadius <= 0) {
+            return;
+        }
+
+        final double latitudeSpan = coverageRadius / METERS_PER_DEGREE_LATITUDE;
+        final double longitudeSpan = latitudeSpan / Math.max(Math.cos(Math.toRadians(query.latitude)), 0.01);
+        final int minLatitudeIndex = latitudeIndex(query.latitude - latitudeSpan);
+        final int maxLatitudeIndex = latitudeIndex(query.latitude + latitudeSpan);
+        final int minLongitudeIndex = (int) Math.floor((query.longitude - longitudeSpan + 180) / LONGITUDE_STEP);
+        final int maxLongitudeIndex = (int) Math.floor((query.longitude + longitudeSpan + 180) / LONGITUDE_STEP);
+
+        for (int latitudeIndex = minLatitudeIndex; latitudeIndex <= maxLatitudeIndex; latitudeIndex++) {
+            for (int longitudeIndex = minLongitudeIndex; longitudeIndex <= maxLongitudeIndex; longitudeIndex++) {
+                if (!isCellInsideCircle(query, latitudeIndex, longitudeIndex, coverageRadius)) {
+                    continue;
+                }
+
+                final String cellHash = geohash(latitudeIndex, longitudeIndex);
+                Cell cell = cells.get(cellHash);
+
+                if (cell == null) {
+                    cell = new Cell();
+                    cells.put(cellHash, cell);
+                }
+
+                // the response is authoritative inside the covered area, drop the POIs that are no longer returned
+                final Iterator<String> identifiers = cell.pois.keySet().iterator();
+
+                while (identifiers.hasNext()) {
+                    final String identifier = identifiers.next();
+
+                    if (!responseIdentifiers.contains(identifier)) {
+                        identifiers.remove();
+                        cellByIdentifier.remove(identifier);
+                        poiCount--;
+                    }
+                }
+
+                cell.coveredUntil = now + PlacesMonitorConstants.POICache.COVERAGE_TTL;
+            }
+        }
+    }
+
+    /**
+     * Adds the POIs of the cells on the given ring around the location's cell to the candidates. Only the cells on the
+     * perimeter of the ring are visited.
+     *
+     * @return false if a cell of the ring is not covered
+     */
+    private boolean addRingPOIs(final double latitude, final double longitude, final int latitudeIndex,
+                                final int longitudeIndex, final int ring, final long now,
+                                final PriorityQueue<RankedPOI> candidates) {
+        for (int i = -ring; i <= ring; i++) {
+            if (!isLatitudeIndexValid(latitudeIndex + i)) {
+                continue;
+            }
+
+            // the top and bottom rows of the ring are full, the rows in between only have their two ends
+            final int step = Math.abs(i) == ring ? 1 : Math.max(1, 2 * ring);
+
+            for (int j = -ring; j <= ring; j += step) {
+                final Cell cell = cells.get(geohash(latitudeIndex + i, longitudeIndex + j));
+                searchedCellCount++;
+
+                if (cell == null || cell.coveredUntil < now) {
+                    return false;
+                }
+
+                for (PlacesMonitorPOI poi : cell.pois.values()) {
+                    candidates.add(new RankedPOI(poi, PlacesMonitorGeoUtil.distanceInMeters(latitude, longitude,
+                                                 poi.getLatitude(), poi.getLongitude())));
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns a lower bound of the distance from the given location to the edge of the square of cells within
+     * {@code ring} cells of the location's cell. The edges beyond a pole are not counted.
+     */
+    private static double distanceToBlockEdge(final double latitude, final double longitude, final int latitudeIndex,
+            final int longitudeIndex, final int ring) {
+        final double south = (latitudeIndex - ring) * LATITUDE_STEP - 90;
+        final double north = (latitudeIndex + ring + 1) * LATITUDE_STEP - 90;
+        final double west = (longitudeIndex - ring) * LONGITUDE_STEP - 180;
+        final double east = (longitudeIndex + ring + 1) * LONGITUDE_STEP - 180;
+
+        // the meridians are closest where the square is farthest from the equator
+        final double farthestLatitude = Math.min(90, Math.max(Math.abs(south), Math.abs(north)));
+        final double metersPerDegreeLongitude = METERS_PER_DEGREE_LATITUDE * Math.cos(Math.toRadians(farthestLatitude));
+
+        double distance = Math.min(longitude - west, east - longitude) * metersPerDegreeLongitude;
+
+        if (south > -90) {
+            distance = Math.min(distance, (latitude - south) * METERS_PER_DEGREE_LATITUDE);
+        }
+
+        if (north < 90) {
+            distance = Math.min(distance, (north - latitude) * METERS_PER_DEGREE_LATITUDE);
+        }
+
+        return Math.max(0, distance);
+    }
+
+    private static boolean isCellInsideCircle(final PendingQuery query, final int latitudeIndex, final int longitudeIndex,
+            final double radius) {
+        final double south = latitudeIndex * LATITUDE_STEP - 90;
+        final double west = longitudeIndex * LONGITUDE_STEP - 180;
+        final double north = south + LATITUDE_STEP;
+        final double east = west + LONGITUDE_STEP;
+
+        // a circle is convex, so the cell is inside the circle when all of its corners are
+        return PlacesMonitorGeoUtil.distanceInMeters(query.latitude, query.longitude, south, west) <= radius &&
+               PlacesMonitorGeoUtil.distanceInMeters(query.latitude, query.longitude, south, east) <= radius &&
+               PlacesMonitorGeoUtil.distanceInMeters(query.latitude, query.longitude, north, west) <= radius &&
+               PlacesMonitorGeoUtil.distanceInMeters(query.latitude, query.longitude, north, east) <= radius;
+    }
+
+    private void evictIfNeeded() {
+        final Iterator<Map.Entry<String, Cell>> iterator = cells.entrySet().iterator();
+
+        while (iterator.hasNext() && (poiCount > PlacesMonitorConstants.POICache.MAX_CACHED_POIS ||
+                                      cells.size() > PlacesMonitorConstants.POICache.MAX_CACHED_CELLS)) {
+            final Cell eldest = iterator.next().getValue();
+
+            for (String identifier : eldest.pois.keySet()) {
+                cellByIdentifier.remove(identifier);
+            }
+
+            poiCount -= eldest.pois.size();
+            iterator.remove();
+        }
+    }
+
+    // ========================================================================================
+    // geohash helpers
+    // ========================================================================================
+
+    private static int latitudeIndex(final double latitude) {
+        final int index = (int) Math.floor((latitude + 90) / LATITUDE_STEP);
+        return Math.max(0, Math.min((1 << LATITUDE_BITS) - 1, index));
+    }
+
+    private static boolean isLatitudeIndexValid(final int latitudeIndex) {
+        return latitudeIndex >= 0 && latitudeIndex < (1 << LATITUDE_BITS);
+    }
+
+    private static int longitudeIndex(final double longitude) {
+        return (int) Math.floor((longitude + 180) / LONGITUDE_STEP);
+    }
+
+    /**
+     * Returns the geohash of the cell with the given grid indices.
+     * <p>
+     * The longitude index wraps around the antimeridian and the latitude index is clamped to the poles.
+     */
+    static String geohash(final int latitudeIndex, final int longitudeIndex) {
+        final int latitudeCells = 1 << LATITUDE_BITS;
+        final int longitudeCells = 1 << LONGITUDE_BITS;
+        final int clampedLatitude = Math.max(0, Math.min(latitudeCells - 1, latitudeIndex));
+        final int wrappedLongitude = ((longitudeIndex % longitudeCells) + longitudeCells) % longitudeCells;
+
+        final char[] hash = new char[PlacesMonitorConstants.POICache.GEOHASH_PRECISION];
+        int latitudeBit = LATITUDE_BITS - 1;
+        int longitudeBit = LONGITUDE_BITS - 1;
+        int character = 0;
+
+        for (int bit = 0; bit < GEOHASH_BITS; bit++) {
+            // geohash interleaves the bits starting with the longitude
+            final int value = (bit % 2 == 0) ? (wrappedLongitude >> longitudeBit--) & 1 : (clampedLatitude >> latitudeBit--) & 1;
+            character = (character << 1) | value;
+
+            if (bit % 5 == 4) {
+                hash[bit / 5] = GEOHASH_BASE32.charAt(character);
+                character = 0;
+            }
+        }
+
+        return new String(hash);
+    }
+
+    static String geohash(final double latitude, final double longitude) {
+        return geohash(latitudeIndex(latitude), longitudeIndex(longitude));
+    }
+
+    private static class PendingQuery {
+        final double latitude;
+        final double longitude;
+        final long timestamp;
+
+        PendingQuery(final double latitude, final double longitude, final long timestamp) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private static class Cell {
+        final Map<String, PlacesMonitorPOI> pois = new HashMap<String, PlacesMonitorPOI>();
+        long coveredUntil;
+    }
+
+    private static class RankedPOI implements Comparable<RankedPOI> {
+        final PlacesMonitorPOI poi;
+        final double distance;
+
+        RankedPOI(final PlacesMonitorPOI poi, final double distance) {
+            this.poi = poi;
+            this.distance = distance;
+        }
+
+        @Override
+        public int compareTo(final RankedPOI other) {
+            return Double.compare(distance, other.distance);
+        }
+    }
+}
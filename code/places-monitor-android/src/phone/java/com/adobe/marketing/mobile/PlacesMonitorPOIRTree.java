@@ -0,0 +1,287 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorPOIRTree.java
+//
+
+package com.adobe.marketing.mobile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Immutable R-tree over {@link PlacesMonitorPOI}s, bulk loaded with the Sort-Tile-Recursive (STR) algorithm.
+ * <p>
+ * The tree is meant for large POI catalogs that are synced to the device as a whole, it is built once with
+ * {@link #build(List)} and replaced when the catalog changes. Bounding boxes are expressed in degrees and do not wrap
+ * around the antimeridian.
+ */
+class PlacesMonitorPOIRTree {
+
+    private static final int NODE_CAPACITY = 16;
+
+    private static final Comparator<Node> LONGITUDE_COMPARATOR = new Comparator<Node>() {
+        @Override
+        public int compare(final Node node1, final Node node2) {
+            return Double.compare(node1.minLongitude + node1.maxLongitude, node2.minLongitude + node2.maxLongitude);
+        }
+    };
+
+    private static final Comparator<Node> LATITUDE_COMPARATOR = new Comparator<Node>() {
+        @Override
+        public int compare(final Node node1, final Node node2) {
+            return Double.compare(node1.minLatitude + node1.maxLatitude, node2.minLatitude + node2.maxLatitude);
+        }
+    };
+
+    private final Node root;
+    private final int size;
+
+    private PlacesMonitorPOIRTree(final Node root, final int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Bulk loads a new {@code PlacesMonitorPOIRTree} with the given POIs.
+     * <p>
+     * Null POIs in the list are ignored.
+     *
+     * @param pois the {@code List} of {@link PlacesMonitorPOI} to be indexed
+     * @return a new {@link PlacesMonitorPOIRTree} instance
+     */
+    static PlacesMonitorPOIRTree build(final List<PlacesMonitorPOI> pois) {
+        List<Node> nodes = new ArrayList<Node>();
+
+        if (pois != null) {
+            for (PlacesMonitorPOI poi : pois) {
+                if (poi != null) {
+                    nodes.add(new Node(poi));
+                }
+            }
+        }
+
+        final int size = nodes.size();
+
+        if (nodes.isEmpty()) {
+            return new PlacesMonitorPOIRTree(null, 0);
+        }
+
+        // pack each level into parent nodes until a single root is left
+        while (nodes.size() > 1) {
+            nodes = packLevel(nodes);
+        }
+
+        return new PlacesMonitorPOIRTree(nodes.get(0), size);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns all the POIs whose center lies within the given bounding box.
+     *
+     * @param minLatitude  the southern edge of the bounding box
+     * @param minLongitude the western edge of the bounding box
+     * @param maxLatitude  the northern edge of the bounding box
+     * @param maxLongitude the eastern edge of the bounding box
+     * @return the {@code List} of {@link PlacesMonitorPOI} within the bounding box
+     */
+    List<PlacesMonitorPOI> search(final double minLatitude, final double minLongitude,
+                                  final double maxLatitude, final double maxLongitude) {
+        final List<PlacesMonitorPOI> result = new ArrayList<PlacesMonitorPOI>();
+
+        if (root == null) {
+            return result;
+        }
+
+        final List<Node> stack = new ArrayList<Node>();
+        stack.add(root);
+
+        while (!stack.isEmpty()) {
+            final Node node = stack.remove(stack.size() - 1);
+
+            if (node.minLatitude > maxLatitude || node.maxLatitude < minLatitude ||
+                    node.minLongitude > maxLongitude || node.maxLongitude < minLongitude) {
+                continue;
+            }
+
+            if (node.poi != null) {
+                result.add(node.poi);
+            } else {
+                stack.addAll(Arrays.asList(node.children));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the {@code count} POIs nearest to the given location, ordered by the distance to their center.
+     * <p>
+     * The tree is traversed best first, using the distance to the nearest point of each node's bounding box as the
+     * lower bound of the distance to the POIs inside the node.
+     *
+     * @param latitude  the latitude of the location
+     * @param longitude the longitude of the location
+     * @param count     the maximum number of POIs to be returned
+     * @return the {@code List} of nearest {@link PlacesMonitorPOI}
+     */
+    List<PlacesMonitorPOI> nearest(final double latitude, final double longitude, final int count) {
+        final List<PlacesMonitorPOI> result = new ArrayList<PlacesMonitorPOI>();
+
+        if (root == null || count <= 0) {
+            return result;
+        }
+
+        final PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>(64, new Comparator<Candidate>() {
+            @Override
+            public int compare(final Candidate candidate1, final Candidate candidate2) {
+                return Double.compare(candidate1.distance, candidate2.distance);
+            }
+        });
+        queue.add(new Candidate(root, root.distanceFrom(latitude, longitude)));
+
+        while (!queue.isEmpty() && result.size() < count) {
+            final Candidate candidate = queue.poll();
+
+            if (candidate.node.poi != null) {
+                // a POI popped from the queue is nearer than any node that is still queued
+                result.add(candidate.node.poi);
+                continue;
+            }
+
+            for (Node child : candidate.node.children) {
+                queue.add(new Candidate(child, child.distanceFrom(latitude, longitude)));
+            }
+        }
+
+        return result;
+    }
+
+    // ========================================================================================
+    // private methods
+    // ========================================================================================
+
+    private static List<Node> packLevel(final List<Node> nodes) {
+        final int parentCount = (int) Math.ceil(nodes.size() / (double) NODE_CAPACITY);
+        final int sliceCount = (int) Math.ceil(Math.sqrt(parentCount));
+        final int sliceSize = sliceCount * NODE_CAPACITY;
+        final List<Node> parents = new ArrayList<Node>(parentCount);
+
+        // sort into vertical slices by longitude, then tile every slice by latitude
+        Collections.sort(nodes, LONGITUDE_COMPARATOR);
+
+        for (int sliceStart = 0; sliceStart < nodes.size(); sliceStart += sliceSize) {
+            final List<Node> slice = nodes.subList(sliceStart, Math.min(sliceStart + sliceSize, nodes.size()));
+            Collections.sort(slice, LATITUDE_COMPARATOR);
+
+            for (int childStart = 0; childStart < slice.size(); childStart += NODE_CAPACITY) {
+                final List<Node> children = slice.subList(childStart, Math.min(childStart + NODE_CAPACITY, slice.size()));
+                parents.add(new Node(children.toArray(new Node[children.size()])));
+            }
+        }
+
+        return parents;
+    }
+
+    private static class Node {
+        final double minLatitude;
+        final double minLongitude;
+        final double maxLatitude;
+        final double maxLongitude;
+        final PlacesMonitorPOI poi;
+        final Node[] children;
+
+        Node(final PlacesMonitorPOI poi) {
+            this.poi = poi;
+            this.children = null;
+            this.minLatitude = poi.getLatitude();
+            this.maxLatitude = poi.getLatitude();
+            this.minLongitude = poi.getLongitude();
+            this.maxLongitude = poi.getLongitude();
+        }
+
+        Node(final Node[] children) {
+            double south = Double.MAX_VALUE;
+            double west = Double.MAX_VALUE;
+            double north = -Double.MAX_VALUE;
+            double east = -Double.MAX_VALUE;
+
+            for (Node child : children) {
+                south = Math.min(south, child.minLatitude);
+                west = Math.min(west, child.minLongitude);
+                north = Math.max(north, child.maxLatitude);
+                east = Math.max(east, child.maxLongitude);
+            }
+
+            this.poi = null;
+            this.children = children;
+            this.minLatitude = south;
+            this.minLongitude = west;
+            this.maxLatitude = north;
+            this.maxLongitude = east;
+        }
+
+        /**
+         * Returns the great circle distance to the nearest point of the bounding box. Clamping the location into the
+         * box is not enough, away from the equator a point of the nearest meridian edge closer to the pole is nearer.
+         */
+        double distanceFrom(final double latitude, final double longitude) {
+            if (poi != null) {
+                return PlacesMonitorGeoUtil.distanceInMeters(latitude, longitude, minLatitude, minLongitude);
+            }
+
+            if (longitude >= minLongitude && longitude <= maxLongitude) {
+                // the nearest point is on the meridian of the location
+                final double nearestLatitude = Math.max(minLatitude, Math.min(maxLatitude, latitude));
+                return PlacesMonitorGeoUtil.distanceInMeters(latitude, longitude, nearestLatitude, longitude);
+            }
+
+            // the nearest point is on the meridian edge with the smallest difference of longitude, at the foot of the
+            // perpendicular from the location to the meridian, or else at an end of the edge
+            final double edgeLongitude = longitudeDifference(longitude, minLongitude)
+                                         <= longitudeDifference(longitude, maxLongitude) ? minLongitude : maxLongitude;
+            final double latitudeRadians = Math.toRadians(latitude);
+            final double footLatitude = Math.toDegrees(Math.atan2(Math.sin(latitudeRadians),
+                                        Math.cos(latitudeRadians) * Math.cos(Math.toRadians(edgeLongitude - longitude))));
+
+            if (footLatitude >= minLatitude && footLatitude <= maxLatitude) {
+                return PlacesMonitorGeoUtil.distanceInMeters(latitude, longitude, footLatitude, edgeLongitude);
+            }
+
+            return Math.min(PlacesMonitorGeoUtil.distanceInMeters(latitude, longitude, minLatitude, edgeLongitude),
+                            PlacesMonitorGeoUtil.distanceInMeters(latitude, longitude, maxLatitude, edgeLongitude));
+        }
+
+        private static double longitudeDifference(final double longitude1, final double longitude2) {
+            final double difference = Math.abs(longitude1 - longitude2) % 360;
+            return difference > 180 ? 360 - difference : difference;
+        }
+    }
+
+    private static class Candidate {
+        final Node node;
+        final double distance;
+
+        Candidate(final Node node, final double distance) {
+            this.node = node;
+            this.distance = distance;
+        }
+    }
+}
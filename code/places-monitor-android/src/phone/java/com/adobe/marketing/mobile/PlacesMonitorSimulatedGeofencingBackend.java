@@ -0,0 +1,407 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorSimulatedGeofencingBackend.java
+//
+
+package com.adobe.marketing.mobile;
+
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.location.GeofenceStatusCodes;
+import com.google.android.gms.location.GeofencingRequest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-memory {@link PlacesMonitorGeofencingBackend} simulating the geofencing of the OS, so the reconcile of the
+ * monitored fences can be load tested without a device.
+ * <p>
+ * At most {@value PlacesMonitorConstants#MAX_GEOFENCES_COUNT} geofences can be registered, a request going past the
+ * quota fails as a whole with {@code GEOFENCE_TOO_MANY_GEOFENCES}. The requests are applied in order, after the
+ * simulated IPC latency on a background thread, or on the calling thread without latency. Failures can be injected
+ * for the next requests or at a random rate.
+ * <p>
+ * The transitions are computed from the locations given to {@link #onLocation(double, double)}, for example by the
+ * {@link PlacesMonitorTraceLocationSource.Listener} of a replayed trajectory. They are handed to the {@link Listener},
+ * or dispatched as the region events of {@link PlacesGeofenceBroadcastReceiver} if none is set.
+ */
+class PlacesMonitorSimulatedGeofencingBackend implements PlacesMonitorGeofencingBackend {
+
+    /**
+     * Receives the simulated geofence transitions.
+     */
+    interface Listener {
+        /**
+         * Called with the geofences triggering a transition.
+         *
+         * @param identifiers the identifiers of the triggering geofences
+         * @param transition  the {@code Geofence} transition type, enter or exit
+         */
+        void onGeofenceTransition(final List<String> identifiers, final int transition);
+    }
+
+    private static final class Registration {
+        private final Fence fence;
+        private final int initialTrigger;
+        private Boolean inside; // null until the device location is known
+
+        private Registration(final Fence fence, final int initialTrigger) {
+            this.fence = fence;
+            this.initialTrigger = initialTrigger;
+        }
+    }
+
+    private final long latency;
+    private final Random random;
+    private ScheduledExecutorService executor;
+
+    // guarded by this
+    private final Map<String, Registration> registrations = new LinkedHashMap<String, Registration>();
+    private Listener listener;
+    private double failureRate;
+    private int failureStatusCode = GeofenceStatusCodes.GEOFENCE_NOT_AVAILABLE;
+    private int failingRequestCount;
+    private int nextFailureStatusCode;
+    private boolean locationKnown;
+    private double latitude;
+    private double longitude;
+    private int requestCount;
+    private int failedRequestCount;
+    private int addedFenceCount;
+    private int removedFenceCount;
+    private int transitionCount;
+
+    /**
+     * @param latency the simulated IPC latency of a request in milliseconds, 0 to complete the requests on the calling thread
+     * @param seed    the seed of the random failures
+     */
+    PlacesMonitorSimulatedGeofencingBackend(final long latency, final long seed) {
+        this.latency = latency;
+        this.random = new Random(seed);
+    }
+
+    synchronized void setListener(final Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Fails a share of the following requests.
+     *
+     * @param rate       the probability of a request to fail, between 0 and 1
+     * @param statusCode the {@code GeofenceStatusCodes} of the failures
+     */
+    synchronized void setFailureRate(final double rate, final int statusCode) {
+        failureRate = rate;
+        failureStatusCode = statusCode;
+    }
+
+    /**
+     * Fails the next requests.
+     *
+     * @param count      the number of requests to fail
+     * @param statusCode the {@code GeofenceStatusCodes} of the failures
+     */
+    synchronized void failNextRequests(final int count, final int statusCode) {
+        failingRequestCount = count;
+        nextFailureStatusCode = statusCode;
+    }
+
+    @Override
+    public void addGeofences(final List<Fence> fences, final int initialTrigger, final Callback callback) {
+        final List<Fence> requested = new ArrayList<Fence>(fences);
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                applyAddGeofences(requested, initialTrigger, callback);
+            }
+        });
+    }
+
+    @Override
+    public void removeGeofences(final List<String> identifiers, final Callback callback) {
+        final List<String> requested = new ArrayList<String>(identifiers);
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                applyRemoveGeofences(requested, callback);
+            }
+        });
+    }
+
+    @Override
+    public void removeAllGeofences(final Callback callback) {
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                applyRemoveGeofences(null, callback);
+            }
+        });
+    }
+
+    /**
+     * Moves the simulated device and notifies the transitions of the registered geofences.
+     *
+     * @param latitude  the latitude of the device
+     * @param longitude the longitude of the device
+     */
+    void onLocation(final double latitude, final double longitude) {
+        final List<String> entered = new ArrayList<String>();
+        final List<String> exited = new ArrayList<String>();
+        final Listener currentListener;
+
+        synchronized (this) {
+            locationKnown = true;
+            this.latitude = latitude;
+            this.longitude = longitude;
+
+            for (Registration registration : registrations.values()) {
+                evaluate(registration, entered, exited);
+            }
+
+            currentListener = listener;
+        }
+
+        notifyTransitions(currentListener, entered, exited);
+    }
+
+    synchronized int getRegisteredCount() {
+        return registrations.size();
+    }
+
+    synchronized boolean isRegistered(final String identifier) {
+        return registrations.containsKey(identifier);
+    }
+
+    /**
+     * @return the number of add and remove requests
+     */
+    synchronized int getRequestCount() {
+        return requestCount;
+    }
+
+    synchronized int getFailedRequestCount() {
+        return failedRequestCount;
+    }
+
+    /**
+     * @return the number of geofences added or replaced by the successful requests
+     */
+    synchronized int getAddedFenceCount() {
+        return addedFenceCount;
+    }
+
+    /**
+     * @return the number of registered geofences removed by the successful requests
+     */
+    synchronized int getRemovedFenceCount() {
+        return removedFenceCount;
+    }
+
+    synchronized int getTransitionCount() {
+        return transitionCount;
+    }
+
+    // ========================================================================================
+    // private methods
+    // ========================================================================================
+
+    private void submit(final Runnable request) {
+        if (latency <= 0) {
+            request.run();
+            return;
+        }
+
+        getExecutor().schedule(request, latency, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized ScheduledExecutorService getExecutor() {
+        if (executor == null) {
+            // a single thread applies the requests in order, it does not keep the app from exiting
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "PlacesMonitorSimulatedGeofencing");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        return executor;
+    }
+
+    private void applyAddGeofences(final List<Fence> fences, final int initialTrigger, final Callback callback) {
+        final List<String> entered = new ArrayList<String>();
+        final List<String> exited = new ArrayList<String>();
+        final Listener currentListener;
+        int failure;
+
+        synchronized (this) {
+            requestCount++;
+            failure = nextFailure();
+
+            if (failure == 0) {
+                int newCount = 0;
+
+                for (Fence fence : fences) {
+                    if (!registrations.containsKey(fence.getIdentifier())) {
+                        newCount++;
+                    }
+                }
+
+                if (registrations.size() + newCount > PlacesMonitorConstants.MAX_GEOFENCES_COUNT) {
+                    failure = GeofenceStatusCodes.GEOFENCE_TOO_MANY_GEOFENCES;
+                }
+            }
+
+            if (failure != 0) {
+                failedRequestCount++;
+            } else {
+                for (Fence fence : fences) {
+                    // a geofence registered again is replaced, its initial trigger applies again
+                    final Registration registration = new Registration(fence, initialTrigger);
+                    registrations.put(fence.getIdentifier(), registration);
+                    addedFenceCount++;
+
+                    if (locationKnown) {
+                        evaluate(registration, entered, exited);
+                    }
+                }
+            }
+
+            currentListener = listener;
+        }
+
+        if (failure != 0) {
+            callback.onFailure(failure, "Simulated geofencing failure " + failure);
+            return;
+        }
+
+        callback.onSuccess();
+        notifyTransitions(currentListener, entered, exited);
+    }
+
+    private void applyRemoveGeofences(final List<String> identifiers, final Callback callback) {
+        int failure;
+
+        synchronized (this) {
+            requestCount++;
+            failure = nextFailure();
+
+            if (failure != 0) {
+                failedRequestCount++;
+            } else if (identifiers == null) {
+                removedFenceCount += registrations.size();
+                registrations.clear();
+            } else {
+                for (String identifier : identifiers) {
+                    if (registrations.remove(identifier) != null) {
+                        removedFenceCount++;
+                    }
+                }
+            }
+        }
+
+        if (failure != 0) {
+            callback.onFailure(failure, "Simulated geofencing failure " + failure);
+            return;
+        }
+
+        callback.onSuccess();
+    }
+
+    /**
+     * Returns the status code of the failure of the next request, the caller holds the lock.
+     *
+     * @return the {@code GeofenceStatusCodes} of the failure, or 0 if the request succeeds
+     */
+    private int nextFailure() {
+        if (failingRequestCount > 0) {
+            failingRequestCount--;
+            return nextFailureStatusCode;
+        }
+
+        if (failureRate > 0 && random.nextDouble() < failureRate) {
+            return failureStatusCode;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Updates the inside state of the registration against the current location, the caller holds the lock.
+     */
+    private void evaluate(final Registration registration, final List<String> entered, final List<String> exited) {
+        final Fence fence = registration.fence;
+        final boolean inside = PlacesMonitorGeoUtil.distanceInMeters(latitude, longitude, fence.getLatitude(),
+                               fence.getLongitude()) <= fence.getRadius();
+        final Boolean wasInside = registration.inside;
+        registration.inside = inside;
+
+        if (wasInside == null) {
+            // the first evaluation notifies the current state only if the initial trigger asks for it
+            final int initialTrigger = inside ? GeofencingRequest.INITIAL_TRIGGER_ENTER : GeofencingRequest.INITIAL_TRIGGER_EXIT;
+
+            if ((registration.initialTrigger & initialTrigger) == 0) {
+                return;
+            }
+        } else if (wasInside == inside) {
+            return;
+        }
+
+        final int transition = inside ? Geofence.GEOFENCE_TRANSITION_ENTER : Geofence.GEOFENCE_TRANSITION_EXIT;
+
+        if ((fence.getTransitionTypes() & transition) == 0) {
+            return;
+        }
+
+        if (inside) {
+            entered.add(fence.getIdentifier());
+        } else {
+            exited.add(fence.getIdentifier());
+        }
+
+        transitionCount++;
+    }
+
+    private static void notifyTransitions(final Listener listener, final List<String> entered, final List<String> exited) {
+        if (listener != null) {
+            if (!exited.isEmpty()) {
+                listener.onGeofenceTransition(exited, Geofence.GEOFENCE_TRANSITION_EXIT);
+            }
+
+            if (!entered.isEmpty()) {
+                listener.onGeofenceTransition(entered, Geofence.GEOFENCE_TRANSITION_ENTER);
+            }
+
+            return;
+        }
+
+        // the refresh boundary is not a region, its exit requests a new location
+        if (exited.remove(PlacesMonitorConstants.RefreshBoundary.IDENTIFIER)) {
+            PlacesMonitorDispatcher.dispatchRefreshBoundaryExit();
+        }
+
+        entered.remove(PlacesMonitorConstants.RefreshBoundary.IDENTIFIER);
+        PlacesMonitorDispatcher.dispatchRegionEvents(exited, PlacesMonitorConstants.EventDataKeys.GEOFENCE_TYPE_EXIT);
+        PlacesMonitorDispatcher.dispatchRegionEvents(entered, PlacesMonitorConstants.EventDataKeys.GEOFENCE_TYPE_ENTRY);
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorSoftwareGeofencer.java
+//
+
+package com.adobe.marketing.mobile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Evaluates region entry and exit in software, for the POIs that are not registered with the OS geofencing service.
+ * <p>
+ * The OS allows an app only {@value PlacesMonitorConstants#MAX_GEOFENCES_COUNT} geofences, so only the nearest POIs are
+ * registered there and the remaining cached POIs are evaluated against every location received by the
+ * {@link PlacesLocationBroadcastReceiver}.
+ * <p>
+ * The region boundaries take the accuracy of the location into account. A region is entered when the location is inside
+ * the region by at least half of its accuracy, and exited when the location is outside the region by more than its
+ * accuracy plus a hysteresis margin, so that a noisy location near the boundary does not produce repeated transitions.
+ * Locations that are less accurate than {@link PlacesMonitorConstants.SoftwareGeofencing#MAX_ACCURACY} are ignored.
+ * <p>
+ * Every fix of a location batch accepted by the {@link PlacesMonitorLocationFilter} is evaluated, so a stale fix or a
+ * jump does not move the regions in and out. The geofencer only sees the fixes delivered by the location request
+ * though, a region smaller than the smallest displacement of the active {@link PlacesMonitorLocationPolicy} tier can be
+ * crossed between two fixes without a transition.
+ * <p>
+ * A POI moves between the geofencer and the OS geofencing service as the nearest POIs change. The geofencer also keeps
+ * the inside state of the regions monitored by the OS, from their region events, so that the inside state follows a
+ * region in both directions: a region already inside is not entered again, and its exit is reported by whichever side
+ * monitors it when the device leaves.
+ * <p>
+ * The geofencer is shared between the location receiver and the extension thread, hence all the access is synchronized.
+ */
+class PlacesMonitorSoftwareGeofencer {
+
+    private static final double METERS_PER_DEGREE_LATITUDE = 111320.0;
+
+    private static final PlacesMonitorSoftwareGeofencer sharedInstance = new PlacesMonitorSoftwareGeofencer();
+
+    private PlacesMonitorPOIRTree tree;
+    private Set<String> evaluatedRegions;
+    private double maxRadius;
+    private final Map<String, PlacesMonitorPOI> insideRegions;
+    private final Set<String> osInsideRegions; // the regions monitored by the OS the device is inside of
+
+    PlacesMonitorSoftwareGeofencer() {
+        tree = PlacesMonitorPOIRTree.build(null);
+        evaluatedRegions = Collections.emptySet();
+        insideRegions = new HashMap<String, PlacesMonitorPOI>();
+        osInsideRegions = new HashSet<String>();
+    }
+
+    /**
+     * Returns the {@code PlacesMonitorSoftwareGeofencer} instance shared by the location receiver and the extension.
+     *
+     * @return the shared {@link PlacesMonitorSoftwareGeofencer} instance
+     */
+    static PlacesMonitorSoftwareGeofencer getSharedInstance() {
+        return sharedInstance;
+    }
+
+    /**
+     * Replaces the POIs evaluated by the geofencer, none of them monitored by the OS.
+     *
+     * @param pois the {@code List} of {@link PlacesMonitorPOI}s to be evaluated
+     * @see #setPOIs(List, Set)
+     */
+    synchronized void setPOIs(final List<PlacesMonitorPOI> pois) {
+        setPOIs(pois, Collections.<String>emptySet());
+    }
+
+    /**
+     * Replaces the POIs evaluated by the geofencer.
+     * <p>
+     * The inside state is handed over between the geofencer and the OS. A region the device is inside of keeps its inside
+     * state when it moves to the geofencer, so it is not entered again and its exit is reported, and when it moves to the
+     * OS, so that it is registered without an initial trigger, see {@link #getOSInsideRegions()}. The regions that are
+     * neither evaluated nor monitored by the OS any more are dropped without an exit transition.
+     *
+     * @param pois                   the {@code List} of {@link PlacesMonitorPOI}s to be evaluated
+     * @param osMonitoredIdentifiers the {@code Set} of the identifiers of the POIs monitored by the OS
+     */
+    synchronized void setPOIs(final List<PlacesMonitorPOI> pois, final Set<String> osMonitoredIdentifiers) {
+        final List<PlacesMonitorPOI> validPOIs = new ArrayList<PlacesMonitorPOI>();
+        final Map<String, PlacesMonitorPOI> poisById = new HashMap<String, PlacesMonitorPOI>();
+        double largestRadius = 0;
+
+        if (pois != null) {
+            for (PlacesMonitorPOI poi : pois) {
+                if (poi == null || poi.getIdentifier() == null) {
+                    continue;
+                }
+
+                validPOIs.add(poi);
+                poisById.put(poi.getIdentifier(), poi);
+                largestRadius = Math.max(largestRadius, poi.getRadius());
+            }
+        }
+
+        final Iterator<Map.Entry<String, PlacesMonitorPOI>> iterator = insideRegions.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            final Map.Entry<String, PlacesMonitorPOI> entry = iterator.next();
+            final PlacesMonitorPOI poi = poisById.get(entry.getKey());
+
+            if (poi != null) {
+                // the geometry of the region may have changed
+                entry.setValue(poi);
+                continue;
+            }
+
+            if (osMonitoredIdentifiers.contains(entry.getKey())) {
+                osInsideRegions.add(entry.getKey());
+            }
+
+            iterator.remove();
+        }
+
+        final Iterator<String> osIterator = osInsideRegions.iterator();
+
+        while (osIterator.hasNext()) {
+            final String identifier = osIterator.next();
+            final PlacesMonitorPOI poi = poisById.get(identifier);
+
+            if (poi != null) {
+                insideRegions.put(identifier, poi);
+                osIterator.remove();
+            } else if (!osMonitoredIdentifiers.contains(identifier)) {
+                osIterator.remove();
+            }
+        }
+
+        tree = PlacesMonitorPOIRTree.build(validPOIs);
+        evaluatedRegions = poisById.keySet();
+        maxRadius = largestRadius;
+    }
+
+    /**
+     * Evaluates the given location against the POIs and returns the regions that were entered and exited.
+     *
+     * @param latitude  the latitude of the location
+     * @param longitude the longitude of the location
+     * @param accuracy  the horizontal accuracy of the location in meters, negative if unknown, in which case
+     *                  {@link PlacesMonitorConstants.SoftwareGeofencing#UNKNOWN_ACCURACY} is assumed
+     * @return the {@link Transitions} caused by the location
+     */
+    synchronized Transitions evaluate(final double latitude, final double longitude, final float accuracy) {
+        final Transitions transitions = new Transitions();
+
+        if (accuracy > PlacesMonitorConstants.SoftwareGeofencing.MAX_ACCURACY) {
+            Log.debug(PlacesMonitorConstants.LOG_TAG, "Location accuracy " + accuracy + " is too low for software geofencing, ignoring");
+            return transitions;
+        }
+
+        // a location without accuracy is not taken as exact, it has to clear the hysteresis like a coarse fix
+        final double uncertainty = accuracy < 0 ? PlacesMonitorConstants.SoftwareGeofencing.UNKNOWN_ACCURACY : accuracy;
+
+        // exits first, every region the device is inside of is evaluated regardless of its distance
+        final Iterator<PlacesMonitorPOI> insideIterator = insideRegions.values().iterator();
+
+        while (insideIterator.hasNext()) {
+            final PlacesMonitorPOI poi = insideIterator.next();
+            final double distance = PlacesMonitorGeoUtil.distanceInMeters(latitude, longitude, poi.getLatitude(), poi.getLongitude());
+
+            if (distance > exitDistance(poi, uncertainty)) {
+                insideIterator.remove();
+                transitions.exited.add(poi.getIdentifier());
+            }
+        }
+
+        if (tree.size() == 0) {
+            return transitions;
+        }
+
+        // entries, only the regions whose bounding box can contain the location are evaluated
+        final double latitudeSpan = maxRadius / METERS_PER_DEGREE_LATITUDE;
+        final double longitudeSpan = latitudeSpan / Math.max(Math.cos(Math.toRadians(latitude)), 0.01);
+        final List<PlacesMonitorPOI> candidates = tree.search(latitude - latitudeSpan, longitude - longitudeSpan,
+                latitude + latitudeSpan, longitude + longitudeSpan);
+
+        for (PlacesMonitorPOI poi : candidates) {
+            if (insideRegions.containsKey(poi.getIdentifier()) || transitions.exited.contains(poi.getIdentifier())) {
+                continue;
+            }
+
+            final double distance = PlacesMonitorGeoUtil.distanceInMeters(latitude, longitude, poi.getLatitude(), poi.getLongitude());
+
+            if (distance <= entryDistance(poi, uncertainty)) {
+                insideRegions.put(poi.getIdentifier(), poi);
+                transitions.entered.add(poi.getIdentifier());
+            }
+        }
+
+        return transitions;
+    }
+
+    /**
+     * Records the region events reported by the OS, to hand the inside state of the regions over to the geofencer.
+     *
+     * @param identifiers     the {@code List} of the identifiers of the regions
+     * @param regionEventType the region event type, entry or exit
+     */
+    synchronized void onOSRegionEvents(final List<String> identifiers, final String regionEventType) {
+        if (identifiers == null) {
+            return;
+        }
+
+        final boolean entry = PlacesMonitorConstants.EventDataKeys.GEOFENCE_TYPE_ENTRY.equals(regionEventType);
+
+        if (!entry && !PlacesMonitorConstants.EventDataKeys.GEOFENCE_TYPE_EXIT.equals(regionEventType)) {
+            return;
+        }
+
+        for (String identifier : identifiers) {
+            // a late event of a region that was handed over to the geofencer is ignored
+            if (identifier == null || evaluatedRegions.contains(identifier)) {
+                continue;
+            }
+
+            if (entry) {
+                osInsideRegions.add(identifier);
+            } else {
+                osInsideRegions.remove(identifier);
+            }
+        }
+    }
+
+    /**
+     * Removes all the POIs and their inside state.
+     */
+    synchronized void clear() {
+        tree = PlacesMonitorPOIRTree.build(null);
+        evaluatedRegions = Collections.emptySet();
+        maxRadius = 0;
+        insideRegions.clear();
+        osInsideRegions.clear();
+    }
+
+    synchronized int getPOICount() {
+        return tree.size();
+    }
+
+    synchronized Set<String> getInsideRegions() {
+        return new HashSet<String>(insideRegions.keySet());
+    }
+
+    /**
+     * Returns the regions monitored by the OS the device is inside of, their geofences are registered without an
+     * initial trigger so they are not entered again.
+     *
+     * @return the {@code Set} of the identifiers of the regions
+     */
+    synchronized Set<String> getOSInsideRegions() {
+        return new HashSet<String>(osInsideRegions);
+    }
+
+    // ========================================================================================
+    // private methods
+    // ========================================================================================
+
+    private static double entryDistance(final PlacesMonitorPOI poi, final double uncertainty) {
+        // an uncertain location has to be further inside, but a low accuracy never prevents entering at the center
+        return poi.getRadius() - Math.min(uncertainty, poi.getRadius()) / 2;
+    }
+
+    private static double exitDistance(final PlacesMonitorPOI poi, final double uncertainty) {
+        final double hysteresis = Math.max(PlacesMonitorConstants.SoftwareGeofencing.MIN_HYSTERESIS,
+                                           poi.getRadius() * PlacesMonitorConstants.SoftwareGeofencing.HYSTERESIS_RATIO);
+        return poi.getRadius() + hysteresis + uncertainty;
+    }
+
+    /**
+     * The regions entered and exited on a location update.
+     */
+    static class Transitions {
+        private final List<String> entered = new ArrayList<String>();
+        private final List<String> exited = new ArrayList<String>();
+
+        List<String> getEntered() {
+            return entered;
+        }
+
+        List<String> getExited() {
+            return exited;
+        }
+
+        boolean isEmpty() {
+            return entered.isEmpty() && exited.isEmpty();
+        }
+    }
+}
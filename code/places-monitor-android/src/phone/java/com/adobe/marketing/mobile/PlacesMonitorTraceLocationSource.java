@@ -0,0 +1,673 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorTraceLocationSource.java
+//
+
+package com.adobe.marketing.mobile;
+
+import android.location.Location;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * A {@link PlacesMonitorLocationSource} replaying a recorded trajectory, read from a GPX track or from a CSV file with
+ * {@code time,latitude,longitude[,accuracy[,speed]]} lines, the time in milliseconds since the epoch.
+ * <p>
+ * The fixes are replayed on a background thread at the recorded pace divided by the speed factor, or back to back with
+ * a speed factor of 0 or less. {@link #replayAll()} replays the remaining fixes on the calling thread instead, so a
+ * benchmark is deterministic. The recorded times are shifted so the trajectory starts when the replay starts.
+ * <p>
+ * The fused location provider is emulated where it shapes the delivered fixes: in refresh boundary mode only single
+ * fixes are delivered, on start and on {@link #updateLocation()}, the fixes are batched up to the maximum wait time of
+ * the trajectory, and with the adaptive location request a fix is only delivered past the fastest interval and the
+ * smallest displacement of the {@link PlacesMonitorLocationPolicy} tier.
+ * <p>
+ * The fixes are handed to {@link PlacesLocationBroadcastReceiver#processLocations(List)}, unless a {@link Listener} is set.
+ */
+class PlacesMonitorTraceLocationSource implements PlacesMonitorLocationSource {
+
+    /**
+     * Receives the replayed fixes instead of the location pipeline.
+     */
+    interface Listener {
+        /**
+         * Called on the replay thread with each delivered batch of fixes.
+         *
+         * @param fixes the {@code List} of {@link Fix}es, from the oldest to the most recent
+         */
+        void onLocationFixes(final List<Fix> fixes);
+    }
+
+    /**
+     * Follows the device along the trajectory, including the fixes the emulated provider does not deliver, such as a
+     * simulated geofencing of the OS.
+     */
+    interface TrajectoryListener {
+        /**
+         * Called on the replay thread with each replayed fix, before the fixes it completes are delivered.
+         *
+         * @param fix the replayed {@link Fix}
+         */
+        void onFixReplayed(final Fix fix);
+    }
+
+    /**
+     * A recorded location fix.
+     */
+    static final class Fix {
+        private final long time;
+        private final double latitude;
+        private final double longitude;
+        private final float accuracy;
+        private final float speed;
+
+        /**
+         * @param time      the time of the fix in milliseconds
+         * @param latitude  the latitude of the fix
+         * @param longitude the longitude of the fix
+         * @param accuracy  the accuracy of the fix in meters, negative if unknown
+         * @param speed     the speed in meters per second, negative if unknown
+         */
+        Fix(final long time, final double latitude, final double longitude, final float accuracy, final float speed) {
+            this.time = time;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.accuracy = accuracy;
+            this.speed = speed;
+        }
+
+        long getTime() {
+            return time;
+        }
+
+        double getLatitude() {
+            return latitude;
+        }
+
+        double getLongitude() {
+            return longitude;
+        }
+
+        float getAccuracy() {
+            return accuracy;
+        }
+
+        float getSpeed() {
+            return speed;
+        }
+
+        private Fix shift(final long offset) {
+            return new Fix(time + offset, latitude, longitude, accuracy, speed);
+        }
+    }
+
+    private final List<Fix> fixes;
+    private final double speedFactor;
+    private final Object replayLock = new Object(); // serializes the replayed fixes of both threads
+
+    // guarded by this
+    private Listener listener;
+    private TrajectoryListener trajectoryListener;
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> scheduledReplay;
+    private boolean manualReplay;
+    private boolean monitoring;
+    private int nextIndex;
+    private long timeOffset;
+    private boolean refreshBoundaryEnabled;
+    private boolean singleFixRequested;
+    private long maxWaitTime;
+    private boolean adaptiveLocationEnabled;
+    private final List<Fix> batch = new ArrayList<Fix>();
+    private Fix lastReplayedFix;
+    private Fix lastDeliveredFix;
+    private int deliveredCount;
+
+    /**
+     * @param fixes       the recorded {@code List} of {@link Fix}es, sorted by time
+     * @param speedFactor how many times faster than recorded the fixes are replayed, 0 or less to replay them back to back
+     */
+    PlacesMonitorTraceLocationSource(final List<Fix> fixes, final double speedFactor) {
+        this.fixes = fixes == null ? new ArrayList<Fix>() : new ArrayList<Fix>(fixes);
+        this.speedFactor = speedFactor;
+    }
+
+    synchronized void setListener(final Listener listener) {
+        this.listener = listener;
+    }
+
+    synchronized void setTrajectoryListener(final TrajectoryListener trajectoryListener) {
+        this.trajectoryListener = trajectoryListener;
+    }
+
+    /**
+     * @return the number of fixes delivered since the source was created
+     */
+    synchronized int getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    /**
+     * @return true if every fix of the trajectory was replayed
+     */
+    synchronized boolean isComplete() {
+        return nextIndex >= fixes.size();
+    }
+
+    @Override
+    public synchronized void startMonitoring() {
+        if (monitoring) {
+            return;
+        }
+
+        monitoring = true;
+        manualReplay = false;
+        singleFixRequested = true;
+
+        if (nextIndex < fixes.size()) {
+            timeOffset = System.currentTimeMillis() - fixes.get(nextIndex).getTime();
+        }
+
+        scheduleNextFix(0);
+    }
+
+    @Override
+    public synchronized void stopMonitoring() {
+        monitoring = false;
+
+        if (scheduledReplay != null) {
+            scheduledReplay.cancel(false);
+            scheduledReplay = null;
+        }
+
+        batch.clear();
+    }
+
+    @Override
+    public void updateLocation() {
+        final List<Fix> delivery;
+
+        synchronized (this) {
+            if (!monitoring) {
+                Log.warning(PlacesMonitorConstants.LOG_TAG, "Trace replay is not started, cannot update the location");
+                return;
+            }
+
+            if (refreshBoundaryEnabled || lastReplayedFix == null) {
+                // the next replayed fix is the fresh one
+                singleFixRequested = true;
+                return;
+            }
+
+            delivery = Collections.singletonList(lastReplayedFix);
+            onDelivered(lastReplayedFix);
+        }
+
+        deliver(delivery);
+    }
+
+    @Override
+    public synchronized void setRefreshBoundaryEnabled(final boolean enabled) {
+        refreshBoundaryEnabled = enabled;
+    }
+
+    @Override
+    public synchronized void setMaxWaitTime(final long maxWaitTime) {
+        this.maxWaitTime = maxWaitTime;
+    }
+
+    @Override
+    public synchronized void setAdaptiveLocationEnabled(final boolean enabled) {
+        adaptiveLocationEnabled = enabled;
+    }
+
+    /**
+     * The selected tier is read again for each replayed fix, so nothing has to be replaced here.
+     *
+     * @param tier the selected {@link PlacesMonitorLocationPolicy.Tier}
+     */
+    @Override
+    public void onLocationTierChanged(final PlacesMonitorLocationPolicy.Tier tier) {
+    }
+
+    @Override
+    public void setFreshFixBudget(final long maxAge, final long timeout) {
+        // the replayed fixes are always fresh
+    }
+
+    /**
+     * Replays the remaining fixes on the calling thread, back to back, in place of the background replay. The source has
+     * to be started.
+     */
+    void replayAll() {
+        synchronized (replayLock) {
+            synchronized (this) {
+                manualReplay = true;
+
+                if (scheduledReplay != null) {
+                    scheduledReplay.cancel(false);
+                    scheduledReplay = null;
+                }
+            }
+
+            while (replayNextFix()) {
+                // replay until the end of the trajectory
+            }
+        }
+    }
+
+    /**
+     * Reads a trajectory of {@code time,latitude,longitude[,accuracy[,speed]]} lines. Empty lines, comments starting
+     * with {@code #} and lines that cannot be parsed, such as a header, are skipped.
+     *
+     * @param reader the {@link Reader} of the CSV content
+     * @return the {@code List} of {@link Fix}es sorted by time
+     * @throws IOException if the content cannot be read
+     */
+    static List<Fix> readCsv(final Reader reader) throws IOException {
+        final BufferedReader bufferedReader = new BufferedReader(reader);
+        final List<Fix> fixes = new ArrayList<Fix>();
+        String line;
+        int lineNumber = 0;
+
+        while ((line = bufferedReader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            final String[] fields = line.split(",");
+
+            try {
+                fixes.add(new Fix(Long.parseLong(fields[0].trim()),
+                                  Double.parseDouble(fields[1].trim()),
+                                  Double.parseDouble(fields[2].trim()),
+                                  fields.length > 3 && !fields[3].trim().isEmpty() ? Float.parseFloat(fields[3].trim()) : -1,
+                                  fields.length > 4 && !fields[4].trim().isEmpty() ? Float.parseFloat(fields[4].trim()) : -1));
+            } catch (NumberFormatException e) {
+                Log.debug(PlacesMonitorConstants.LOG_TAG, "Skipping line " + lineNumber + " of the trace: " + line);
+            } catch (ArrayIndexOutOfBoundsException e) {
+                Log.debug(PlacesMonitorConstants.LOG_TAG, "Skipping line " + lineNumber + " of the trace: " + line);
+            }
+        }
+
+        sortByTime(fixes);
+        return fixes;
+    }
+
+    /**
+     * Reads the track and route points of a GPX document. Points without time are
+     * {@link PlacesMonitorConstants.TraceReplay#DEFAULT_FIX_INTERVAL} apart from the previous point.
+     *
+     * @param inputStream the {@link InputStream} of the GPX document
+     * @return the {@code List} of {@link Fix}es sorted by time
+     * @throws IOException if the document cannot be read or parsed
+     */
+    static List<Fix> readGpx(final InputStream inputStream) throws IOException {
+        final GpxHandler handler = new GpxHandler();
+
+        try {
+            SAXParserFactory.newInstance().newSAXParser().parse(inputStream, handler);
+        } catch (SAXException e) {
+            throw new IOException("Invalid GPX document: " + e.getMessage());
+        } catch (ParserConfigurationException e) {
+            throw new IOException("Unable to parse the GPX document: " + e.getMessage());
+        }
+
+        sortByTime(handler.fixes);
+        return handler.fixes;
+    }
+
+    /**
+     * Parses an ISO 8601 time as used by GPX, such as {@code 2019-05-01T10:00:00Z} or
+     * {@code 2019-05-01T12:00:00.250+02:00}.
+     *
+     * @param value the time to be parsed
+     * @return the time in milliseconds since the epoch
+     * @throws ParseException if the time cannot be parsed
+     */
+    static long parseTime(final String value) throws ParseException {
+        String text = value.trim();
+        long offsetMillis = 0;
+
+        if (text.endsWith("Z")) {
+            text = text.substring(0, text.length() - 1);
+        } else {
+            final int signIndex = Math.max(text.lastIndexOf('+'), text.lastIndexOf('-'));
+
+            // the sign of an offset follows the time, the dashes of the date come before
+            if (signIndex > text.indexOf('T')) {
+                final String[] offset = text.substring(signIndex + 1).split(":");
+
+                try {
+                    offsetMillis = (Long.parseLong(offset[0]) * 60 + (offset.length > 1 ? Long.parseLong(offset[1]) : 0))
+                                   * 60 * 1000;
+                } catch (NumberFormatException e) {
+                    throw new ParseException("Invalid time offset: " + value, signIndex);
+                }
+
+                if (text.charAt(signIndex) == '-') {
+                    offsetMillis = -offsetMillis;
+                }
+
+                text = text.substring(0, signIndex);
+            }
+        }
+
+        long fractionMillis = 0;
+        final int dotIndex = text.indexOf('.');
+
+        if (dotIndex > 0) {
+            final String fraction = (text.substring(dotIndex + 1) + "00").substring(0, 3);
+
+            try {
+                fractionMillis = Long.parseLong(fraction);
+            } catch (NumberFormatException e) {
+                throw new ParseException("Invalid fraction of second: " + value, dotIndex);
+            }
+
+            text = text.substring(0, dotIndex);
+        }
+
+        final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.parse(text).getTime() + fractionMillis - offsetMillis;
+    }
+
+    // ========================================================================================
+    // private methods
+    // ========================================================================================
+
+    private static void sortByTime(final List<Fix> fixes) {
+        Collections.sort(fixes, new Comparator<Fix>() {
+            @Override
+            public int compare(final Fix fix1, final Fix fix2) {
+                return fix1.getTime() < fix2.getTime() ? -1 : (fix1.getTime() == fix2.getTime() ? 0 : 1);
+            }
+        });
+    }
+
+    /**
+     * Schedules the next fix on the replay thread, the caller holds the lock.
+     */
+    private void scheduleNextFix(final long delay) {
+        if (!monitoring || manualReplay || nextIndex >= fixes.size()) {
+            return;
+        }
+
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "PlacesMonitorTraceReplay");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        scheduledReplay = executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (replayLock) {
+                    synchronized (PlacesMonitorTraceLocationSource.this) {
+                        if (manualReplay) {
+                            return;
+                        }
+                    }
+
+                    if (!replayNextFix()) {
+                        return;
+                    }
+                }
+
+                synchronized (PlacesMonitorTraceLocationSource.this) {
+                    if (nextIndex < fixes.size()) {
+                        final long recordedDelay = fixes.get(nextIndex).getTime() - fixes.get(nextIndex - 1).getTime();
+                        scheduleNextFix(speedFactor > 0 ? (long) (recordedDelay / speedFactor) : 0);
+                    }
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Replays the next fix of the trajectory and delivers the fixes that the emulated provider would deliver.
+     *
+     * @return true if a fix was replayed
+     */
+    private boolean replayNextFix() {
+        final Fix fix;
+        final List<List<Fix>> deliveries;
+        final TrajectoryListener currentTrajectoryListener;
+
+        synchronized (this) {
+            if (!monitoring || nextIndex >= fixes.size()) {
+                return false;
+            }
+
+            fix = fixes.get(nextIndex++).shift(timeOffset);
+            lastReplayedFix = fix;
+            deliveries = collectDeliveries(fix);
+            currentTrajectoryListener = trajectoryListener;
+        }
+
+        if (currentTrajectoryListener != null) {
+            currentTrajectoryListener.onFixReplayed(fix);
+        }
+
+        if (deliveries != null) {
+            for (List<Fix> delivery : deliveries) {
+                deliver(delivery);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Applies the emulated location request to the replayed fix, the caller holds the lock.
+     *
+     * @return the batches of fixes to be delivered, or null if none
+     */
+    private List<List<Fix>> collectDeliveries(final Fix fix) {
+        if (refreshBoundaryEnabled) {
+            if (!singleFixRequested) {
+                return null;
+            }
+
+            singleFixRequested = false;
+            onDelivered(fix);
+            return Collections.singletonList(Collections.singletonList(fix));
+        }
+
+        if (adaptiveLocationEnabled && lastDeliveredFix != null) {
+            final PlacesMonitorLocationPolicy.Tier tier = PlacesMonitorLocationPolicy.getSharedInstance().getTier();
+            final double distance = PlacesMonitorGeoUtil.distanceInMeters(lastDeliveredFix.getLatitude(),
+                                    lastDeliveredFix.getLongitude(), fix.getLatitude(), fix.getLongitude());
+
+            if (fix.getTime() - lastDeliveredFix.getTime() < tier.getFastestInterval()
+                    || distance < tier.getSmallestDisplacement()) {
+                if (nextIndex >= fixes.size() && !batch.isEmpty()) {
+                    // the end of the trajectory, the pending batch is delivered without the rejected fix
+                    final List<Fix> delivery = new ArrayList<Fix>(batch);
+                    batch.clear();
+                    return Collections.singletonList(delivery);
+                }
+
+                return null;
+            }
+        }
+
+        onDelivered(fix);
+
+        if (maxWaitTime <= 0) {
+            return Collections.singletonList(Collections.singletonList(fix));
+        }
+
+        final List<List<Fix>> deliveries = new ArrayList<List<Fix>>();
+
+        // the batch is delivered once its oldest fix waited for the maximum wait time
+        if (!batch.isEmpty() && fix.getTime() - batch.get(0).getTime() >= maxWaitTime) {
+            deliveries.add(new ArrayList<Fix>(batch));
+            batch.clear();
+        }
+
+        batch.add(fix);
+
+        if (nextIndex >= fixes.size()) {
+            // the end of the trajectory
+            deliveries.add(new ArrayList<Fix>(batch));
+            batch.clear();
+        }
+
+        return deliveries;
+    }
+
+    private void onDelivered(final Fix fix) {
+        lastDeliveredFix = fix;
+        deliveredCount++;
+    }
+
+    private void deliver(final List<Fix> delivery) {
+        final Listener currentListener;
+
+        synchronized (this) {
+            currentListener = listener;
+        }
+
+        if (currentListener != null) {
+            currentListener.onLocationFixes(delivery);
+            return;
+        }
+
+        final List<Location> locations = new ArrayList<Location>(delivery.size());
+
+        for (Fix fix : delivery) {
+            final Location location = new Location(PlacesMonitorConstants.TraceReplay.PROVIDER);
+            location.setTime(fix.getTime());
+            location.setLatitude(fix.getLatitude());
+            location.setLongitude(fix.getLongitude());
+
+            if (fix.getAccuracy() >= 0) {
+                location.setAccuracy(fix.getAccuracy());
+            }
+
+            if (fix.getSpeed() >= 0) {
+                location.setSpeed(fix.getSpeed());
+            }
+
+            locations.add(location);
+        }
+
+        PlacesLocationBroadcastReceiver.processLocations(locations);
+    }
+
+    private static final class GpxHandler extends DefaultHandler {
+        private final List<Fix> fixes = new ArrayList<Fix>();
+        private final StringBuilder text = new StringBuilder();
+        private boolean inPoint;
+        private double latitude;
+        private double longitude;
+        private long time = -1;
+        private float speed = -1;
+
+        @Override
+        public void startElement(final String uri, final String localName, final String qName,
+                                 final Attributes attributes) throws SAXException {
+            final String name = elementName(localName, qName);
+            text.setLength(0);
+
+            if ("trkpt".equals(name) || "rtept".equals(name)) {
+                try {
+                    latitude = Double.parseDouble(attributes.getValue("lat"));
+                    longitude = Double.parseDouble(attributes.getValue("lon"));
+                } catch (RuntimeException e) {
+                    throw new SAXException("Invalid coordinates of a point");
+                }
+
+                inPoint = true;
+                time = -1;
+                speed = -1;
+            }
+        }
+
+        @Override
+        public void characters(final char[] characters, final int start, final int length) {
+            text.append(characters, start, length);
+        }
+
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+            final String name = elementName(localName, qName);
+
+            if (!inPoint) {
+                return;
+            }
+
+            if ("time".equals(name)) {
+                try {
+                    time = parseTime(text.toString());
+                } catch (ParseException e) {
+                    throw new SAXException("Invalid time of a point: " + text);
+                }
+            } else if ("speed".equals(name)) {
+                try {
+                    speed = Float.parseFloat(text.toString().trim());
+                } catch (NumberFormatException e) {
+                    speed = -1;
+                }
+            } else if ("trkpt".equals(name) || "rtept".equals(name)) {
+                if (time < 0) {
+                    time = fixes.isEmpty() ? 0 :
+                           fixes.get(fixes.size() - 1).getTime() + PlacesMonitorConstants.TraceReplay.DEFAULT_FIX_INTERVAL;
+                }
+
+                fixes.add(new Fix(time, latitude, longitude, -1, speed));
+                inPoint = false;
+            }
+        }
+
+        private static String elementName(final String localName, final String qName) {
+            final String name = localName == null || localName.isEmpty() ? qName : localName;
+            final int prefixIndex = name.indexOf(':');
+            return prefixIndex >= 0 ? name.substring(prefixIndex + 1) : name;
+        }
+    }
+}
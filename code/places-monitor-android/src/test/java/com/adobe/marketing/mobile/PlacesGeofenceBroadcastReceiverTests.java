@@ -25,6 +25,7 @@ import com.google.android.gms.location.GeofencingEvent;
 import com.google.android.gms.location.GeofencingRequest;
 import com.google.android.gms.location.LocationResult;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -37,6 +38,7 @@ import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -70,6 +72,14 @@ public class PlacesGeofenceBroadcastReceiverTests {
 
         receiver = new PlacesGeofenceBroadcastReceiver();
 
+        // process the broadcasts inline, on the test thread
+        PlacesMonitorBroadcastWorker.setExecutor(new Executor() {
+            @Override
+            public void execute(final Runnable runnable) {
+                runnable.run();
+            }
+        });
+
 
         geofenceList = new ArrayList<>();
         geofenceList.add(geofence1);
@@ -86,6 +96,11 @@ public class PlacesGeofenceBroadcastReceiverTests {
         when(mockIntent.getAction()).thenReturn(ACTION_GEOFENCE_UPDATE);
     }
 
+    @After
+    public void after() {
+        PlacesMonitorBroadcastWorker.setExecutor(null);
+    }
+
     // ========================================================================================
     // onReceive
     // ========================================================================================
@@ -127,6 +142,43 @@ public class PlacesGeofenceBroadcastReceiverTests {
         PlacesMonitorDispatcher.dispatchRegionEvent(any(List.class), anyString());
     }
 
+    @Test
+    public void test_OnReceive_of_refreshBoundaryExit() {
+        // setup
+        when(mockGeofencingEvent.getGeofenceTransition()).thenReturn(2);
+        when(geofence2.getRequestId()).thenReturn(PlacesMonitorTestConstants.RefreshBoundary.IDENTIFIER);
+        List<Geofence> regionList = new ArrayList<>();
+        regionList.add(geofence1);
+
+        // test
+        receiver.onReceive(mockContext, mockIntent);
+
+        // verify
+        verifyStatic(PlacesMonitorDispatcher.class, Mockito.times(1));
+        PlacesMonitorDispatcher.dispatchRefreshBoundaryExit();
+        verifyStatic(PlacesMonitorDispatcher.class, Mockito.times(1));
+        PlacesMonitorDispatcher.dispatchRegionEvent(regionList, "exit");
+    }
+
+    @Test
+    public void test_OnReceive_of_refreshBoundaryExitOnly() {
+        // setup
+        when(mockGeofencingEvent.getGeofenceTransition()).thenReturn(2);
+        when(geofence1.getRequestId()).thenReturn(PlacesMonitorTestConstants.RefreshBoundary.IDENTIFIER);
+        List<Geofence> boundaryList = new ArrayList<>();
+        boundaryList.add(geofence1);
+        when(mockGeofencingEvent.getTriggeringGeofences()).thenReturn(boundaryList);
+
+        // test
+        receiver.onReceive(mockContext, mockIntent);
+
+        // verify
+        verifyStatic(PlacesMonitorDispatcher.class, Mockito.times(1));
+        PlacesMonitorDispatcher.dispatchRefreshBoundaryExit();
+        verifyStatic(PlacesMonitorDispatcher.class, Mockito.times(0));
+        PlacesMonitorDispatcher.dispatchRegionEvent(any(List.class), anyString());
+    }
+
     @Test
     public void test_OnReceive_when_intentIsNull() {
         // test
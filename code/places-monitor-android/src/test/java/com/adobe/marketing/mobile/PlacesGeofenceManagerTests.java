@@ -44,8 +44,11 @@ import org.powermock.modules.junit4.PowerMockRunner;
 import org.powermock.reflect.Whitebox;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
@@ -62,6 +65,7 @@ import static org.mockito.Mockito.when;
 public class PlacesGeofenceManagerTests {
     static private String MONITOR_SHARED_PREFERENCE_KEY = "com.adobe.placesMonitor";
     static private String MONITORING_FENCES_KEY = "monitoringFences";
+    static private String MONITORING_FENCE_HASHES_KEY = "monitoringFenceHashes";
     private final String FINE_LOCATION = Manifest.permission.ACCESS_FINE_LOCATION;
     private PlacesGeofenceManager geofenceManager;
 
@@ -122,7 +126,7 @@ public class PlacesGeofenceManagerTests {
     @Test
     public void test_startMonitoringFences() {
         // initial setup with no pois being monitored
-        Whitebox.setInternalState(geofenceManager, "monitoringFences", new HashSet<String>());
+        setMonitoringFences(new HashMap<String, String>());
 
         // setup other captors
         final ArgumentCaptor<OnSuccessListener> onSuccessCallback = ArgumentCaptor.forClass(OnSuccessListener.class);
@@ -147,18 +151,40 @@ public class PlacesGeofenceManagerTests {
         onSuccessCallback.getValue().onSuccess(mockVoid);
 
         // verify the in-memory pois
-        Set<String> monitoringFences = Whitebox.getInternalState(geofenceManager, "monitoringFences");
+        Map<String, String> monitoringFences = getMonitoringFences();
         assertEquals("in memory list of poi should is correct",4, monitoringFences.size());
 
         // verify the persisted pois
-        verify(mockSharedPreferenceEditor, times(1)).putStringSet(eq(MONITORING_FENCES_KEY),persistedPOICaptor.capture());
+        verify(mockSharedPreferenceEditor, times(1)).putStringSet(eq(MONITORING_FENCE_HASHES_KEY),persistedPOICaptor.capture());
         assertEquals("persisted poi list should is correct",4, persistedPOICaptor.getValue().size());
     }
 
+    @Test
+    public void test_startMonitoringFences_when_insideRegions_then_registeredWithoutInitialTrigger() {
+        // initial setup with no pois being monitored
+        setMonitoringFences(new HashMap<String, String>());
+        final ArgumentCaptor<GeofencingRequest> addedFences = ArgumentCaptor.forClass(GeofencingRequest.class);
+        final Set<String> insideRegions = new HashSet<>();
+        insideRegions.add("id2");
+
+        // test
+        geofenceManager.startMonitoringFences(poiListA(), insideRegions);
+
+        // verify
+        verify(geofencingClient, times(2)).addGeofences(addedFences.capture(), eq(geofencePendingIntent));
+        final GeofencingRequest outsideRequest = addedFences.getAllValues().get(0);
+        final GeofencingRequest insideRequest = addedFences.getAllValues().get(1);
+        assertEquals(3, outsideRequest.getGeofences().size());
+        assertEquals(GeofencingRequest.INITIAL_TRIGGER_ENTER, outsideRequest.getInitialTrigger());
+        assertEquals(1, insideRequest.getGeofences().size());
+        assertEquals("id2", insideRequest.getGeofences().get(0).getRequestId());
+        assertEquals("the region already entered should not be entered again", 0, insideRequest.getInitialTrigger());
+    }
+
     @Test
     public void test_startMonitoringFences_when_samePOIList() {
         // initial setup with no pois being monitored
-        Whitebox.setInternalState(geofenceManager, "monitoringFences", poiSetA());
+        setMonitoringFences(poiMapA());
 
         // test
         geofenceManager.startMonitoringFences(poiListA());
@@ -168,17 +194,97 @@ public class PlacesGeofenceManagerTests {
         verify(geofencingClient, times(0)).removeGeofences(any(List.class));
 
         // verify the in-memory pois
-        Set<String> monitoringFences = Whitebox.getInternalState(geofenceManager, "monitoringFences");
+        Map<String, String> monitoringFences = getMonitoringFences();
         assertEquals("in memory list of poi should is correct",4, monitoringFences.size());
 
         // verify the persisted pois are untouched
-        verify(mockSharedPreferenceEditor, times(0)).putStringSet(eq(MONITORING_FENCES_KEY),ArgumentMatchers.<String>anySet());
+        verify(mockSharedPreferenceEditor, times(0)).putStringSet(eq(MONITORING_FENCE_HASHES_KEY),ArgumentMatchers.<String>anySet());
+    }
+
+    @Test
+    public void test_startMonitoringFences_when_samePOIListAgain_then_reconcileSkipped() {
+        // setup
+        setMonitoringFences(poiMapA());
+        geofenceManager.startMonitoringFences(poiListA());
+        setMonitoringFences(new HashMap<String, String>());
+        List<PlacesMonitorPOI> reordered = poiListA();
+        Collections.reverse(reordered);
+
+        // test
+        geofenceManager.startMonitoringFences(reordered);
+
+        // verify that the monitored fences are not compared again
+        verify(geofencingClient, times(0)).addGeofences(any(GeofencingRequest.class), eq(geofencePendingIntent));
+        verify(geofencingClient, times(0)).removeGeofences(any(List.class));
+        verify(mockSharedPreferenceEditor, times(0)).putStringSet(eq(MONITORING_FENCE_HASHES_KEY), ArgumentMatchers.<String>anySet());
+        assertEquals("reconcile should be skipped", 1, geofenceManager.getSkippedReconcileCount());
+    }
+
+    @Test
+    public void test_startMonitoringFences_when_differentPOIList_then_reconcileNotSkipped() {
+        // setup
+        setMonitoringFences(poiMapA());
+        geofenceManager.startMonitoringFences(poiListA());
+
+        // test
+        geofenceManager.startMonitoringFences(poiListB());
+
+        // verify
+        verify(geofencingClient, times(1)).addGeofences(any(GeofencingRequest.class), eq(geofencePendingIntent));
+        verify(geofencingClient, times(1)).removeGeofences(any(List.class));
+        assertEquals("reconcile should not be skipped", 0, geofenceManager.getSkippedReconcileCount());
+    }
+
+    @Test
+    public void test_startMonitoringFences_when_changesPending_then_reconcileNotSkipped() {
+        // setup
+        setMonitoringFences(new HashMap<String, String>());
+        geofenceManager.startMonitoringFences(poiListA());
+
+        // test
+        geofenceManager.startMonitoringFences(poiListA());
+
+        // verify that the fences are requested again as the first request did not succeed yet
+        verify(geofencingClient, times(2)).addGeofences(any(GeofencingRequest.class), eq(geofencePendingIntent));
+        assertEquals("reconcile should not be skipped", 0, geofenceManager.getSkippedReconcileCount());
+    }
+
+    @Test
+    public void test_startMonitoringFences_when_poiGeometryChanged() {
+        // setup
+        setMonitoringFences(poiMapA());
+        final ArgumentCaptor<OnSuccessListener> onSuccessCallback = ArgumentCaptor.forClass(OnSuccessListener.class);
+        final ArgumentCaptor<GeofencingRequest> addedFences = ArgumentCaptor.forClass(GeofencingRequest.class);
+        final ArgumentCaptor<Set<String>> persistedPOICaptor = ArgumentCaptor.forClass(Set.class);
+        List<PlacesMonitorPOI> pois = poiListA();
+        PlacesMonitorPOI movedPOI = new PlacesMonitorPOI("id2", "name2", 22.23, 33.33, 150);
+        pois.set(1, movedPOI);
+
+        // test
+        geofenceManager.startMonitoringFences(pois);
+
+        // verify that only the changed poi is registered again and nothing is removed
+        verify(geofencingClient, times(1)).addGeofences(addedFences.capture(), eq(geofencePendingIntent));
+        verify(geofencingClient, times(0)).removeGeofences(any(List.class));
+        verify(addTask, times(1)).addOnSuccessListener(onSuccessCallback.capture());
+        assertEquals("pois replaced should be correct", 1, addedFences.getValue().getGeofences().size());
+        assertEquals("id2", addedFences.getValue().getGeofences().get(0).getRequestId());
+
+        // trigger success callback
+        onSuccessCallback.getValue().onSuccess(mockVoid);
+
+        // verify the in-memory and persisted geometry hashes are updated
+        Map<String, String> monitoringFences = getMonitoringFences();
+        assertEquals("in memory list of poi should is correct", 4, monitoringFences.size());
+        assertEquals(PlacesMonitorFenceDiff.geometryHash(movedPOI), monitoringFences.get("id2"));
+        verify(mockSharedPreferenceEditor, times(1)).putStringSet(eq(MONITORING_FENCE_HASHES_KEY), persistedPOICaptor.capture());
+        assertTrue(persistedPOICaptor.getValue().contains(PlacesMonitorFenceDiff.geometryHash(movedPOI) + "id2"));
     }
 
     @Test
     public void test_startMonitoringFences_when_completelyDifferentPOIList() {
         // initial setup with no pois being monitored
-        Whitebox.setInternalState(geofenceManager, "monitoringFences", poiSetA());
+        setMonitoringFences(poiMapA());
 
         // setup other captors
         final ArgumentCaptor<OnSuccessListener> onSuccessCallbackAddFences = ArgumentCaptor.forClass(OnSuccessListener.class);
@@ -218,23 +324,23 @@ public class PlacesGeofenceManagerTests {
         onSuccessCallbackRemoveFences.getValue().onSuccess(mockVoid);
 
         // verify the in-memory pois
-        Set<String> monitoringFences = Whitebox.getInternalState(geofenceManager, "monitoringFences");
+        Map<String, String> monitoringFences = getMonitoringFences();
         assertEquals("in memory list of poi should is correct",2, monitoringFences.size());
-        assertTrue(monitoringFences.contains("id9"));
-        assertTrue(monitoringFences.contains("id10"));
+        assertTrue(monitoringFences.containsKey("id9"));
+        assertTrue(monitoringFences.containsKey("id10"));
 
         // verify the persisted pois
-        verify(mockSharedPreferenceEditor, times(2)).putStringSet(eq(MONITORING_FENCES_KEY),persistedPOICaptor.capture());
+        verify(mockSharedPreferenceEditor, times(2)).putStringSet(eq(MONITORING_FENCE_HASHES_KEY),persistedPOICaptor.capture());
         assertEquals("persisted poi list should is correct",2, persistedPOICaptor.getValue().size());
-        assertTrue(persistedPOICaptor.getValue().contains("id9"));
-        assertTrue(persistedPOICaptor.getValue().contains("id10"));
+        assertTrue(persistedIds(persistedPOICaptor.getValue()).contains("id9"));
+        assertTrue(persistedIds(persistedPOICaptor.getValue()).contains("id10"));
     }
 
 
     @Test
     public void test_startMonitoringFences_when_newPoiListWithFewSamePois() {
         // initial setup with no pois being monitored
-        Whitebox.setInternalState(geofenceManager, "monitoringFences", poiSetA());
+        setMonitoringFences(poiMapA());
 
         // setup other captors
         final ArgumentCaptor<OnSuccessListener> onSuccessCallbackAddFences = ArgumentCaptor.forClass(OnSuccessListener.class);
@@ -273,24 +379,24 @@ public class PlacesGeofenceManagerTests {
         onSuccessCallbackRemoveFences.getValue().onSuccess(mockVoid);
 
         // verify the in-memory pois
-        Set<String> monitoringFences = Whitebox.getInternalState(geofenceManager, "monitoringFences");
+        Map<String, String> monitoringFences = getMonitoringFences();
         assertEquals("in memory list of poi should is correct",3, monitoringFences.size());
-        assertTrue(monitoringFences.contains("id5"));
-        assertTrue(monitoringFences.contains("id6"));
-        assertTrue(monitoringFences.contains("id3"));
+        assertTrue(monitoringFences.containsKey("id5"));
+        assertTrue(monitoringFences.containsKey("id6"));
+        assertTrue(monitoringFences.containsKey("id3"));
 
         // verify the persisted pois
-        verify(mockSharedPreferenceEditor, times(2)).putStringSet(eq(MONITORING_FENCES_KEY),persistedPOICaptor.capture());
+        verify(mockSharedPreferenceEditor, times(2)).putStringSet(eq(MONITORING_FENCE_HASHES_KEY),persistedPOICaptor.capture());
         assertEquals("persisted poi list should is correct",3, persistedPOICaptor.getValue().size());
-        assertTrue(persistedPOICaptor.getValue().contains("id5"));
-        assertTrue(persistedPOICaptor.getValue().contains("id6"));
-        assertTrue(persistedPOICaptor.getValue().contains("id3"));
+        assertTrue(persistedIds(persistedPOICaptor.getValue()).contains("id5"));
+        assertTrue(persistedIds(persistedPOICaptor.getValue()).contains("id6"));
+        assertTrue(persistedIds(persistedPOICaptor.getValue()).contains("id3"));
     }
 
     @Test
     public void test_startMonitoringFences_when_noPoisReturned() {
         // initial setup with no pois being monitored
-        Whitebox.setInternalState(geofenceManager, "monitoringFences", poiSetC());
+        setMonitoringFences(poiMapC());
 
         // setup other captors
         final ArgumentCaptor<OnSuccessListener> onSuccessCallbackRemoveFences = ArgumentCaptor.forClass(OnSuccessListener.class);
@@ -316,18 +422,18 @@ public class PlacesGeofenceManagerTests {
         onSuccessCallbackRemoveFences.getValue().onSuccess(mockVoid);
 
         // verify the in-memory pois
-        Set<String> monitoringFences = Whitebox.getInternalState(geofenceManager, "monitoringFences");
+        Map<String, String> monitoringFences = getMonitoringFences();
         assertEquals("in memory list of poi should is correct",0, monitoringFences.size());
 
         // verify the persisted pois
-        verify(mockSharedPreferenceEditor, times(1)).putStringSet(eq(MONITORING_FENCES_KEY),persistedPOICaptor.capture());
+        verify(mockSharedPreferenceEditor, times(1)).putStringSet(eq(MONITORING_FENCE_HASHES_KEY),persistedPOICaptor.capture());
         assertEquals("persisted poi list should is correct",0, persistedPOICaptor.getValue().size());
     }
 
     @Test
     public void test_startMonitoringFences_when_FailedToAddFences() {
         // initial setup with no pois being monitored
-        Whitebox.setInternalState(geofenceManager, "monitoringFences", new HashSet<String>());
+        setMonitoringFences(new HashMap<String, String>());
 
         // setup other captors
         final ArgumentCaptor<OnFailureListener> onFailureCallback = ArgumentCaptor.forClass(OnFailureListener.class);
@@ -347,18 +453,18 @@ public class PlacesGeofenceManagerTests {
         onFailureCallback.getValue().onFailure(new Exception());
 
         // verify the in-memory pois
-        Set<String> monitoringFences = Whitebox.getInternalState(geofenceManager, "monitoringFences");
+        Map<String, String> monitoringFences = getMonitoringFences();
         assertEquals("in memory list of poi should is correct",0, monitoringFences.size());
 
         // verify the persisted pois
-        verify(mockSharedPreferenceEditor, times(0)).putStringSet(eq(MONITORING_FENCES_KEY),ArgumentMatchers.<String>anySet());
+        verify(mockSharedPreferenceEditor, times(0)).putStringSet(eq(MONITORING_FENCE_HASHES_KEY),ArgumentMatchers.<String>anySet());
     }
 
 
     @Test
     public void test_startMonitoringFences_when_FailureToRemoveFences() {
         // initial setup with no pois being monitored
-        Whitebox.setInternalState(geofenceManager, "monitoringFences", poiSetC());
+        setMonitoringFences(poiMapC());
 
         // setup other captors
         final ArgumentCaptor<OnFailureListener> onFailureCallbackRemoveFences = ArgumentCaptor.forClass(OnFailureListener.class);
@@ -375,17 +481,17 @@ public class PlacesGeofenceManagerTests {
         onFailureCallbackRemoveFences.getValue().onFailure(new Exception());
 
         // verify the in-memory pois
-        Set<String> monitoringFences = Whitebox.getInternalState(geofenceManager, "monitoringFences");
-        assertEquals("in memory list of poi should is correct",poiSetC().size(), monitoringFences.size());
+        Map<String, String> monitoringFences = getMonitoringFences();
+        assertEquals("in memory list of poi should is correct",poiMapC().size(), monitoringFences.size());
 
         // verify the persisted pois
-        verify(mockSharedPreferenceEditor, times(0)).putStringSet(eq(MONITORING_FENCES_KEY),ArgumentMatchers.<String>anySet());
+        verify(mockSharedPreferenceEditor, times(0)).putStringSet(eq(MONITORING_FENCE_HASHES_KEY),ArgumentMatchers.<String>anySet());
     }
 
     @Test
     public void test_startMonitoringFences_addFence_throwsSecurityExcpetion() {
         // initial setup with no pois being monitored
-        Whitebox.setInternalState(geofenceManager, "monitoringFences", new HashSet<String>());
+        setMonitoringFences(new HashMap<String, String>());
         Mockito.when(geofencingClient.addGeofences(any(GeofencingRequest.class), eq(geofencePendingIntent))).thenThrow(SecurityException.class);
 
         // setup other captors
@@ -400,11 +506,11 @@ public class PlacesGeofenceManagerTests {
 
 
         // verify the in-memory pois
-        Set<String> monitoringFences = Whitebox.getInternalState(geofenceManager, "monitoringFences");
+        Map<String, String> monitoringFences = getMonitoringFences();
         assertEquals("in memory list of poi should is correct",0, monitoringFences.size());
 
         // verify the persisted pois
-        verify(mockSharedPreferenceEditor, times(0)).putStringSet(eq(MONITORING_FENCES_KEY),ArgumentMatchers.<String>anySet());
+        verify(mockSharedPreferenceEditor, times(0)).putStringSet(eq(MONITORING_FENCE_HASHES_KEY),ArgumentMatchers.<String>anySet());
     }
 
 
@@ -426,11 +532,11 @@ public class PlacesGeofenceManagerTests {
         // verify the added pois are correct
 
         // verify the in-memory pois
-        Set<String> monitoringFences = Whitebox.getInternalState(geofenceManager, "monitoringFences");
+        Map<String, String> monitoringFences = getMonitoringFences();
         assertEquals("in memory list of poi should is correct",0, monitoringFences.size());
 
         // verify the persisted pois
-        verify(mockSharedPreferenceEditor, times(0)).putStringSet(eq(MONITORING_FENCES_KEY),ArgumentMatchers.<String>anySet());
+        verify(mockSharedPreferenceEditor, times(0)).putStringSet(eq(MONITORING_FENCE_HASHES_KEY),ArgumentMatchers.<String>anySet());
     }
 
     @Test
@@ -451,11 +557,11 @@ public class PlacesGeofenceManagerTests {
         // verify the added pois are correct
 
         // verify the in-memory pois
-        Set<String> monitoringFences = Whitebox.getInternalState(geofenceManager, "monitoringFences");
+        Map<String, String> monitoringFences = getMonitoringFences();
         assertEquals("in memory list of poi should is correct",0, monitoringFences.size());
 
         // verify the persisted pois
-        verify(mockSharedPreferenceEditor, times(0)).putStringSet(eq(MONITORING_FENCES_KEY),ArgumentMatchers.<String>anySet());
+        verify(mockSharedPreferenceEditor, times(0)).putStringSet(eq(MONITORING_FENCE_HASHES_KEY),ArgumentMatchers.<String>anySet());
     }
 
     @Test
@@ -476,11 +582,11 @@ public class PlacesGeofenceManagerTests {
         // verify the added pois are correct
 
         // verify the in-memory pois
-        Set<String> monitoringFences = Whitebox.getInternalState(geofenceManager, "monitoringFences");
+        Map<String, String> monitoringFences = getMonitoringFences();
         assertEquals("in memory list of poi should is correct",0, monitoringFences.size());
 
         // verify the persisted pois
-        verify(mockSharedPreferenceEditor, times(0)).putStringSet(eq(MONITORING_FENCES_KEY),ArgumentMatchers.<String>anySet());
+        verify(mockSharedPreferenceEditor, times(0)).putStringSet(eq(MONITORING_FENCE_HASHES_KEY),ArgumentMatchers.<String>anySet());
     }
 
     @Test
@@ -501,11 +607,58 @@ public class PlacesGeofenceManagerTests {
         // verify the added pois are correct
 
         // verify the in-memory pois
-        Set<String> monitoringFences = Whitebox.getInternalState(geofenceManager, "monitoringFences");
+        Map<String, String> monitoringFences = getMonitoringFences();
         assertEquals("in memory list of poi should is correct",0, monitoringFences.size());
 
         // verify the persisted pois
-        verify(mockSharedPreferenceEditor, times(0)).putStringSet(eq(MONITORING_FENCES_KEY),ArgumentMatchers.<String>anySet());
+        verify(mockSharedPreferenceEditor, times(0)).putStringSet(eq(MONITORING_FENCE_HASHES_KEY),ArgumentMatchers.<String>anySet());
+    }
+
+    @Test
+    public void test_startMonitoringFences_when_simulatedBackend() {
+        // setup
+        setMonitoringFences(poiMapC());
+        final PlacesMonitorSimulatedGeofencingBackend backend = new PlacesMonitorSimulatedGeofencingBackend(0, 0);
+
+        // test
+        geofenceManager.setBackend(backend);
+        geofenceManager.startMonitoringFences(poiListA());
+
+        // verify
+        verify(geofencingClient, times(0)).addGeofences(any(GeofencingRequest.class), eq(geofencePendingIntent));
+        assertEquals("the fences should be registered with the backend", 4, backend.getRegisteredCount());
+        assertEquals("the fences of the previous backend should be forgotten", poiMapA(), getMonitoringFences());
+    }
+
+    @Test
+    public void test_startMonitoringFences_when_backendQuotaExceeded() {
+        // setup
+        final PlacesMonitorSimulatedGeofencingBackend backend = new PlacesMonitorSimulatedGeofencingBackend(0, 0);
+        geofenceManager.setBackend(backend);
+
+        // test
+        geofenceManager.startMonitoringFences(manyPOIs(0, PlacesMonitorTestConstants.MAX_GEOFENCES_COUNT + 1));
+
+        // verify
+        assertEquals("no fence should be registered past the quota", 0, backend.getRegisteredCount());
+        assertTrue("the failed fences should not be stored", getMonitoringFences().isEmpty());
+    }
+
+    @Test
+    public void test_startMonitoringFences_when_nearQuota_then_fencesRemovedFirst() {
+        // setup
+        final PlacesMonitorSimulatedGeofencingBackend backend = new PlacesMonitorSimulatedGeofencingBackend(0, 0);
+        geofenceManager.setBackend(backend);
+        geofenceManager.startMonitoringFences(manyPOIs(0, PlacesMonitorTestConstants.MAX_GEOFENCES_COUNT - 1));
+
+        // test
+        geofenceManager.startMonitoringFences(manyPOIs(10, PlacesMonitorTestConstants.MAX_GEOFENCES_COUNT - 1));
+
+        // verify
+        assertEquals("the request should not go past the quota", 0, backend.getFailedRequestCount());
+        assertEquals(PlacesMonitorTestConstants.MAX_GEOFENCES_COUNT - 1, backend.getRegisteredCount());
+        assertEquals(PlacesMonitorTestConstants.MAX_GEOFENCES_COUNT - 1, getMonitoringFences().size());
+        assertTrue(getMonitoringFences().containsKey("id" + (PlacesMonitorTestConstants.MAX_GEOFENCES_COUNT + 8)));
     }
 
     // ========================================================================================
@@ -515,12 +668,11 @@ public class PlacesGeofenceManagerTests {
     @Test
     public void test_stopMonitoringFences() {
         // setup
-        Whitebox.setInternalState(geofenceManager, "monitoringFences", poiSetA());
+        setMonitoringFences(poiMapA());
         final ArgumentCaptor<OnSuccessListener> onSuccessCallback = ArgumentCaptor.forClass(OnSuccessListener.class);
         final ArgumentCaptor<OnFailureListener> onFailureCallback = ArgumentCaptor.forClass(OnFailureListener.class);
         final ArgumentCaptor<Set<String>> persistedPOICaptor = ArgumentCaptor.forClass(Set.class);
-        Whitebox.setInternalState(geofenceManager, "geofencingClient", geofencingClient);
-        Whitebox.setInternalState(geofenceManager, "geofencePendingIntent", geofencePendingIntent);
+        Whitebox.setInternalState(geofenceManager, "backend", new PlacesMonitorGmsGeofencingBackend(geofencingClient));
 
         // test
         geofenceManager.stopMonitoringFences();
@@ -534,11 +686,11 @@ public class PlacesGeofenceManagerTests {
         onSuccessCallback.getValue().onSuccess(mockVoid);
 
         // verify the in-memory pois
-        Set<String> monitoringFences = Whitebox.getInternalState(geofenceManager, "monitoringFences");
+        Map<String, String> monitoringFences = getMonitoringFences();
         assertEquals("in memory list of poi should is correct",0, monitoringFences.size());
 
         // verify the persisted pois
-        verify(mockSharedPreferenceEditor, times(1)).putStringSet(eq(MONITORING_FENCES_KEY),persistedPOICaptor.capture());
+        verify(mockSharedPreferenceEditor, times(1)).putStringSet(eq(MONITORING_FENCE_HASHES_KEY),persistedPOICaptor.capture());
         assertEquals("persisted poi list should is correct",0, persistedPOICaptor.getValue().size());
 
     }
@@ -600,6 +752,71 @@ public class PlacesGeofenceManagerTests {
         verify(geofencingClient, times(0)).removeGeofences(geofencePendingIntent);
     }
     
+    // ========================================================================================
+    // startMonitoringRefreshBoundary
+    // ========================================================================================
+
+    @Test
+    public void test_startMonitoringRefreshBoundary() {
+        // setup
+        setMonitoringFences(new HashMap<String, String>());
+        final ArgumentCaptor<OnSuccessListener> onSuccessCallback = ArgumentCaptor.forClass(OnSuccessListener.class);
+
+        // test
+        geofenceManager.startMonitoringRefreshBoundary(22.22, 33.33, 1000);
+
+        // verify
+        verify(geofencingClient, times(1)).addGeofences(any(GeofencingRequest.class), eq(geofencePendingIntent));
+        verify(addTask, times(1)).addOnSuccessListener(onSuccessCallback.capture());
+
+        // trigger success callback
+        onSuccessCallback.getValue().onSuccess(mockVoid);
+
+        // verify the boundary is not stored with the monitored pois
+        Map<String, String> monitoringFences = getMonitoringFences();
+        assertEquals("refresh boundary should not be a monitored poi", 0, monitoringFences.size());
+        verify(mockSharedPreferenceEditor, times(0)).putStringSet(eq(MONITORING_FENCE_HASHES_KEY), ArgumentMatchers.<String>anySet());
+    }
+
+    @Test
+    public void test_startMonitoringRefreshBoundary_when_permissionDenied() {
+        // setup
+        Mockito.when(ActivityCompat.checkSelfPermission(context, FINE_LOCATION)).thenReturn(PackageManager.PERMISSION_DENIED);
+
+        // test
+        geofenceManager.startMonitoringRefreshBoundary(22.22, 33.33, 1000);
+
+        // verify
+        verify(geofencingClient, times(0)).addGeofences(any(GeofencingRequest.class), eq(geofencePendingIntent));
+    }
+
+    @Test
+    public void test_startMonitoringRefreshBoundary_when_geofencingClient_isNull() {
+        // setup
+        Mockito.when(LocationServices.getGeofencingClient(context)).thenReturn(null);
+
+        // test
+        geofenceManager.startMonitoringRefreshBoundary(22.22, 33.33, 1000);
+
+        // verify
+        verify(geofencingClient, times(0)).addGeofences(any(GeofencingRequest.class), eq(geofencePendingIntent));
+    }
+
+    @Test
+    public void test_stopMonitoringRefreshBoundary() {
+        // setup
+        final ArgumentCaptor<List<String>> removedFences = ArgumentCaptor.forClass(List.class);
+
+        // test
+        geofenceManager.stopMonitoringRefreshBoundary();
+
+        // verify
+        verify(geofencingClient, times(1)).removeGeofences(removedFences.capture());
+        assertEquals("only the refresh boundary should be removed", 1, removedFences.getValue().size());
+        assertEquals("only the refresh boundary should be removed", PlacesMonitorTestConstants.RefreshBoundary.IDENTIFIER,
+                     removedFences.getValue().get(0));
+    }
+
     // ========================================================================================
     // loadMonitoringFences
     // ========================================================================================
@@ -607,34 +824,103 @@ public class PlacesGeofenceManagerTests {
     @Test
     public void test_loadMonitoringFences() {
         // setup
-        Set<String> pois = poiSetA();
-        Whitebox.setInternalState(geofenceManager, "monitoringFences", new HashSet<>());
+        Map<String, String> pois = poiMapA();
+        setMonitoringFences(new HashMap<String, String>());
+
+        when(mockSharedPreference.getStringSet(eq(MONITORING_FENCE_HASHES_KEY), nullable(Set.class))).thenReturn(persistedEntries(pois));
+
+        // test
+        geofenceManager.loadMonitoringFences();
+
+        // verify
+        verify(mockSharedPreference, times(1)).getStringSet(eq(MONITORING_FENCE_HASHES_KEY), nullable(Set.class));
+        verify(mockSharedPreference, times(0)).getStringSet(eq(MONITORING_FENCES_KEY), any(Set.class));
+        assertEquals(pois, getMonitoringFences());
+    }
+
+    @Test
+    public void test_loadMonitoringFences_when_legacyFencesPersisted() {
+        // setup
+        Set<String> legacyPois = new HashSet<>();
+        legacyPois.add("id1");
+        legacyPois.add("id2");
+        setMonitoringFences(new HashMap<String, String>());
 
-        when(mockSharedPreference.getStringSet(eq(MONITORING_FENCES_KEY), any(Set.class))).thenReturn(pois);
+        when(mockSharedPreference.getStringSet(eq(MONITORING_FENCE_HASHES_KEY), nullable(Set.class))).thenReturn(null);
+        when(mockSharedPreference.getStringSet(eq(MONITORING_FENCES_KEY), any(Set.class))).thenReturn(legacyPois);
 
         // test
         geofenceManager.loadMonitoringFences();
 
         // verify
-        verify(mockSharedPreference, times(1)).getStringSet(eq(MONITORING_FENCES_KEY), any(Set.class));
-        assertEquals(pois, Whitebox.getInternalState(geofenceManager, "monitoringFences"));
+        Map<String, String> loadedPois = getMonitoringFences();
+        assertEquals("legacy fences should be loaded", 2, loadedPois.size());
+        assertEquals("legacy fences should have the unknown geometry hash", PlacesMonitorFenceDiff.UNKNOWN_GEOMETRY_HASH,
+                     loadedPois.get("id1"));
+        assertEquals("legacy fences should have the unknown geometry hash", PlacesMonitorFenceDiff.UNKNOWN_GEOMETRY_HASH,
+                     loadedPois.get("id2"));
+    }
+
+    @Test
+    public void test_loadMonitoringFences_when_legacyFencesSaved_then_reloaded() {
+        // setup, an identifier of at most 16 characters and a longer one
+        Set<String> legacyPois = new HashSet<>();
+        legacyPois.add("id1");
+        legacyPois.add("a-legacy-identifier-longer-than-the-hash");
+        when(mockSharedPreference.getStringSet(eq(MONITORING_FENCE_HASHES_KEY), nullable(Set.class))).thenReturn(null);
+        when(mockSharedPreference.getStringSet(eq(MONITORING_FENCES_KEY), any(Set.class))).thenReturn(legacyPois);
+        geofenceManager.loadMonitoringFences();
+        final Map<String, String> loadedPois = getMonitoringFences();
+        final ArgumentCaptor<Set<String>> persistedPOICaptor = ArgumentCaptor.forClass(Set.class);
+
+        // test
+        geofenceManager.saveMonitoringFences();
+        verify(mockSharedPreferenceEditor, times(1)).putStringSet(eq(MONITORING_FENCE_HASHES_KEY), persistedPOICaptor.capture());
+        when(mockSharedPreference.getStringSet(eq(MONITORING_FENCE_HASHES_KEY), nullable(Set.class))).thenReturn(persistedPOICaptor.getValue());
+        geofenceManager.loadMonitoringFences();
+
+        // verify
+        assertEquals("the legacy fences should be reloaded with their identifiers", loadedPois, getMonitoringFences());
+    }
+
+    @Test
+    public void test_loadMonitoringFences_then_legacyFencesReplaced() {
+        // setup
+        Set<String> legacyPois = new HashSet<>();
+        legacyPois.add("id1");
+        when(mockSharedPreference.getStringSet(eq(MONITORING_FENCE_HASHES_KEY), nullable(Set.class))).thenReturn(null);
+        when(mockSharedPreference.getStringSet(eq(MONITORING_FENCES_KEY), any(Set.class))).thenReturn(legacyPois);
+        final ArgumentCaptor<GeofencingRequest> addedFences = ArgumentCaptor.forClass(GeofencingRequest.class);
+        geofenceManager.loadMonitoringFences();
+
+        List<PlacesMonitorPOI> pois = new ArrayList<>();
+        pois.add(new PlacesMonitorPOI("id1", "name1", 22.22, 33.33, 100));
+
+        // test
+        geofenceManager.startMonitoringFences(pois);
+
+        // verify the legacy fence is registered again with its geometry
+        verify(geofencingClient, times(1)).addGeofences(addedFences.capture(), eq(geofencePendingIntent));
+        verify(geofencingClient, times(0)).removeGeofences(any(List.class));
+        assertEquals("legacy fence should be replaced", 1, addedFences.getValue().getGeofences().size());
+        assertEquals("id1", addedFences.getValue().getGeofences().get(0).getRequestId());
     }
 
     @Test
     public void test_loadMonitoringFences_whenSharedPreference_isNull() {
         // setup
-        Set<String> pois = poiSetA();
-        Whitebox.setInternalState(geofenceManager, "monitoringFences", new HashSet<>());
+        Map<String, String> pois = poiMapA();
+        setMonitoringFences(new HashMap<String, String>());
         Mockito.when(context.getSharedPreferences(MONITOR_SHARED_PREFERENCE_KEY, 0)).thenReturn(null);
 
-        when(mockSharedPreference.getStringSet(eq(MONITORING_FENCES_KEY), any(Set.class))).thenReturn(pois);
+        when(mockSharedPreference.getStringSet(eq(MONITORING_FENCE_HASHES_KEY), nullable(Set.class))).thenReturn(persistedEntries(pois));
 
         // test
         geofenceManager.loadMonitoringFences();
 
         // verify
-        verify(mockSharedPreference, times(0)).getStringSet(eq(MONITORING_FENCES_KEY), any(Set.class));
-        HashSet<String> loadedPois = Whitebox.getInternalState(geofenceManager, "monitoringFences");
+        verify(mockSharedPreference, times(0)).getStringSet(eq(MONITORING_FENCE_HASHES_KEY), nullable(Set.class));
+        Map<String, String> loadedPois = getMonitoringFences();
         assertEquals(0,loadedPois.size());
     }
 
@@ -645,8 +931,8 @@ public class PlacesGeofenceManagerTests {
     @Test
     public void test_saveMonitoringFences() {
         // setup
-        Set<String> pois = poiSetA();
-        Whitebox.setInternalState(geofenceManager, "monitoringFences", pois);
+        Map<String, String> pois = poiMapA();
+        setMonitoringFences(pois);
         final ArgumentCaptor<Set<String>> persistedPOICaptor = ArgumentCaptor.forClass(Set.class);
 
         // test
@@ -654,17 +940,18 @@ public class PlacesGeofenceManagerTests {
 
         // verify
         verify(mockSharedPreference, times(1)).edit();
-        verify(mockSharedPreferenceEditor, times(1)).putStringSet(eq(MONITORING_FENCES_KEY), persistedPOICaptor.capture());
+        verify(mockSharedPreferenceEditor, times(1)).putStringSet(eq(MONITORING_FENCE_HASHES_KEY), persistedPOICaptor.capture());
+        verify(mockSharedPreferenceEditor, times(1)).remove(MONITORING_FENCES_KEY);
         verify(mockSharedPreferenceEditor, times(1)).commit();
-        assertEquals(pois, persistedPOICaptor.getValue());
+        assertEquals(persistedEntries(pois), persistedPOICaptor.getValue());
     }
 
 
     @Test
     public void test_saveMonitoringFences_when_sharedPreference_isNull() {
         // setup
-        Set<String> pois = poiSetA();
-        Whitebox.setInternalState(geofenceManager, "monitoringFences", pois);
+        Map<String, String> pois = poiMapA();
+        setMonitoringFences(pois);
         Mockito.when(context.getSharedPreferences(MONITOR_SHARED_PREFERENCE_KEY, 0)).thenReturn(null);
 
         // test
@@ -672,22 +959,22 @@ public class PlacesGeofenceManagerTests {
 
         // verify
         verify(mockSharedPreference, times(0)).edit();
-        verify(mockSharedPreferenceEditor, times(0)).putStringSet(eq(MONITORING_FENCES_KEY), ArgumentMatchers.<String>anySet());
+        verify(mockSharedPreferenceEditor, times(0)).putStringSet(eq(MONITORING_FENCE_HASHES_KEY), ArgumentMatchers.<String>anySet());
         verify(mockSharedPreferenceEditor, times(0)).commit();
     }
 
     @Test
     public void test_saveMonitoringFences_when_sharedPreferenceEditor_isNull() {
         // setup
-        Set<String> pois = poiSetA();
-        Whitebox.setInternalState(geofenceManager, "monitoringFences", pois);
+        Map<String, String> pois = poiMapA();
+        setMonitoringFences(pois);
         Mockito.when(mockSharedPreference.edit()).thenReturn(null);
 
         // test
         geofenceManager.saveMonitoringFences();
 
         // verify
-        verify(mockSharedPreferenceEditor, times(0)).putStringSet(eq(MONITORING_FENCES_KEY), ArgumentMatchers.<String>anySet());
+        verify(mockSharedPreferenceEditor, times(0)).putStringSet(eq(MONITORING_FENCE_HASHES_KEY), ArgumentMatchers.<String>anySet());
         verify(mockSharedPreferenceEditor, times(0)).commit();
     }
 
@@ -702,7 +989,7 @@ public class PlacesGeofenceManagerTests {
         Mockito.when(App.getAppContext()).thenReturn(null);
 
         // test
-        PendingIntent intent = Whitebox.invokeMethod(geofenceManager, "getGeofencePendingIntent");
+        PendingIntent intent = Whitebox.invokeMethod(new PlacesMonitorGmsGeofencingBackend(geofencingClient), "getGeofencePendingIntent");
 
         // verify
         assertNull(intent);
@@ -727,7 +1014,7 @@ public class PlacesGeofenceManagerTests {
         Mockito.when(App.getAppContext()).thenReturn(null);
 
         // test
-        Boolean permission = Whitebox.invokeMethod(geofenceManager, "checkPermissions");
+        Boolean permission = Whitebox.invokeMethod(new PlacesMonitorGmsGeofencingBackend(geofencingClient), "checkPermissions");
 
         // verify
         assertFalse(permission);
@@ -746,13 +1033,8 @@ public class PlacesGeofenceManagerTests {
         return pois;
     }
 
-    private Set<String> poiSetA() {
-        Set<String> pois = new HashSet<>();
-        pois.add("id1");
-        pois.add("id2");
-        pois.add("id3");
-        pois.add("id4");
-        return pois;
+    private Map<String, String> poiMapA() {
+        return fenceMap(poiListA());
     }
 
     // ========================================================================================
@@ -767,12 +1049,8 @@ public class PlacesGeofenceManagerTests {
         return pois;
     }
 
-    private Set<String> poiSetB() {
-        Set<String> pois = new HashSet<>();
-        pois.add("id3");
-        pois.add("id5");
-        pois.add("id6");
-        return pois;
+    private Map<String, String> poiMapB() {
+        return fenceMap(poiListB());
     }
 
     // ========================================================================================
@@ -786,12 +1064,53 @@ public class PlacesGeofenceManagerTests {
         return pois;
     }
 
-    private Set<String> poiSetC() {
-        Set<String> pois = new HashSet<>();
-        pois.add("id9");
-        pois.add("id10");
+    private Map<String, String> poiMapC() {
+        return fenceMap(poiListC());
+    }
+
+    // ========================================================================================
+    // helper methods
+    // ========================================================================================
+
+    private void setMonitoringFences(final Map<String, String> fences) {
+        PlacesMonitorFenceStore fenceStore = Whitebox.getInternalState(geofenceManager, "fenceStore");
+        fenceStore.load(fences);
+    }
+
+    private Map<String, String> getMonitoringFences() {
+        PlacesMonitorFenceStore fenceStore = Whitebox.getInternalState(geofenceManager, "fenceStore");
+        return fenceStore.getSnapshot();
+    }
+
+    private List<PlacesMonitorPOI> manyPOIs(final int first, final int count) {
+        List<PlacesMonitorPOI> pois = new ArrayList<>();
+        for (int i = first; i < first + count; i++) {
+            pois.add(new PlacesMonitorPOI("id" + i, "name" + i, 22.22, 33.33, 100));
+        }
         return pois;
     }
 
+    private Map<String, String> fenceMap(final List<PlacesMonitorPOI> pois) {
+        Map<String, String> fences = new HashMap<>();
+        for (PlacesMonitorPOI poi : pois) {
+            fences.put(poi.getIdentifier(), PlacesMonitorFenceDiff.geometryHash(poi));
+        }
+        return fences;
+    }
 
+    private Set<String> persistedEntries(final Map<String, String> fences) {
+        Set<String> entries = new HashSet<>();
+        for (Map.Entry<String, String> fence : fences.entrySet()) {
+            entries.add(fence.getValue() + fence.getKey());
+        }
+        return entries;
+    }
+
+    private Set<String> persistedIds(final Set<String> entries) {
+        Set<String> ids = new HashSet<>();
+        for (String entry : entries) {
+            ids.add(entry.substring(PlacesMonitorFenceDiff.GEOMETRY_HASH_LENGTH));
+        }
+        return ids;
+    }
 }
@@ -19,9 +19,11 @@ package com.adobe.marketing.mobile;
 import android.content.Context;
 import android.content.Intent;
 import android.location.Location;
+import android.os.SystemClock;
 
 import com.google.android.gms.location.LocationResult;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -42,9 +44,10 @@ import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 @RunWith(PowerMockRunner.class)
-@PrepareForTest({PlacesMonitorDispatcher.class, LocationResult.class})
+@PrepareForTest({PlacesMonitorDispatcher.class, LocationResult.class, SystemClock.class})
 public class PlacesLocationBroadcastReceiverTests {
 
     static final String ACTION_LOCATION_UPDATE =
@@ -68,6 +71,22 @@ public class PlacesLocationBroadcastReceiverTests {
         locationList.add(location2);
         locationResult = LocationResult.create(locationList);
         receiver = new PlacesLocationBroadcastReceiver();
+
+        // process the broadcasts inline, on the test thread
+        PlacesMonitorBroadcastWorker.setExecutor(new Executor() {
+            @Override
+            public void execute(final Runnable runnable) {
+                runnable.run();
+            }
+        });
+        PlacesMonitorSoftwareGeofencer.getSharedInstance().clear();
+        PlacesMonitorLocationFilter.getSharedInstance().reset();
+        PlacesMonitorLocationPolicy.getSharedInstance().reset();
+    }
+
+    @After
+    public void after() {
+        PlacesMonitorBroadcastWorker.setExecutor(null);
     }
 
     // ========================================================================================
@@ -91,6 +110,24 @@ public class PlacesLocationBroadcastReceiverTests {
     }
 
 
+    @Test
+    public void test_OnReceive_evaluatesSoftwareGeofences() throws Exception {
+        // setup
+        List<PlacesMonitorPOI> pois = new ArrayList<>();
+        pois.add(new PlacesMonitorPOI("softwareRegion", "softwareRegion", 0, 0, 100));
+        PlacesMonitorSoftwareGeofencer.getSharedInstance().setPOIs(pois);
+        initiateMocking();
+
+        // test
+        receiver.onReceive(mockContext, mockIntent);
+
+        // verify
+        List<String> enteredRegions = new ArrayList<>();
+        enteredRegions.add("softwareRegion");
+        verifyStatic(PlacesMonitorDispatcher.class, Mockito.times(1));
+        PlacesMonitorDispatcher.dispatchRegionEvents(enteredRegions, "entry");
+    }
+
     @Test
     public void test_OnReceive_when_intentIsNull() throws Exception {
         // setup
@@ -150,7 +187,7 @@ public class PlacesLocationBroadcastReceiverTests {
     }
 
     @Test
-    public void test_OnReceive_when_intentWithLocations() throws Exception {
+    public void test_OnReceive_when_intentWithNullLocation() throws Exception {
         // setup
         List<Location> locations = new ArrayList<Location>();
         locations.add(null);
@@ -162,8 +199,207 @@ public class PlacesLocationBroadcastReceiverTests {
         receiver.onReceive(mockContext, mockIntent);
 
         // verify
+        verifyStatic(PlacesMonitorDispatcher.class, Mockito.times(1));
+        PlacesMonitorDispatcher.dispatchLocation(location2);
+    }
+
+    @Test
+    public void test_OnReceive_when_intentWithOnlyNullLocations() throws Exception {
+        // setup
+        List<Location> locations = new ArrayList<Location>();
+        locations.add(null);
+        locationResult = LocationResult.create(locations);
+        initiateMocking();
+
+        // test
+        receiver.onReceive(mockContext, mockIntent);
+
+        // verify
+        verifyStatic(PlacesMonitorDispatcher.class, Mockito.times(0));
+        PlacesMonitorDispatcher.dispatchLocation(any(Location.class));
+    }
+
+    @Test
+    public void test_OnReceive_when_batchedLocations_then_mostAccurateRecentLocationDispatched() throws Exception {
+        // setup
+        final long now = System.currentTimeMillis();
+        mockFix(location1, now - 20000, 50);
+        mockFix(location2, now - 10000, 20);
+        List<Location> locations = new ArrayList<Location>();
+        locations.add(location1);
+        locations.add(location2);
+        locationResult = LocationResult.create(locations);
+        initiateMocking();
+
+        // test
+        receiver.onReceive(mockContext, mockIntent);
+
+        // verify
+        verifyStatic(PlacesMonitorDispatcher.class, Mockito.times(1));
+        PlacesMonitorDispatcher.dispatchLocation(location2);
+        verifyStatic(PlacesMonitorDispatcher.class, Mockito.times(0));
+        PlacesMonitorDispatcher.dispatchLocation(location1);
+    }
+
+    @Test
+    public void test_OnReceive_when_locationDroppedByFilter() throws Exception {
+        // setup
+        List<PlacesMonitorPOI> pois = new ArrayList<>();
+        pois.add(new PlacesMonitorPOI("softwareRegion", "softwareRegion", 0, 0, 100));
+        PlacesMonitorSoftwareGeofencer.getSharedInstance().setPOIs(pois);
+        mockFix(location1, System.currentTimeMillis() - PlacesMonitorTestConstants.LocationFilter.DEFAULT_MAX_AGE - 60000, 20);
+        List<Location> locations = new ArrayList<Location>();
+        locations.add(location1);
+        locationResult = LocationResult.create(locations);
+        initiateMocking();
+        final int staleCount = PlacesMonitorLocationFilter.getSharedInstance().getStaleCount();
+
+        // test
+        receiver.onReceive(mockContext, mockIntent);
+
+        // verify that the stale location is neither dispatched nor evaluated by the software geofencer
         verifyStatic(PlacesMonitorDispatcher.class, Mockito.times(0));
         PlacesMonitorDispatcher.dispatchLocation(any(Location.class));
+        verifyStatic(PlacesMonitorDispatcher.class, Mockito.times(1));
+        PlacesMonitorDispatcher.dispatchDroppedLocation(location1);
+        List<String> enteredRegions = new ArrayList<>();
+        enteredRegions.add("softwareRegion");
+        verifyStatic(PlacesMonitorDispatcher.class, Mockito.times(0));
+        PlacesMonitorDispatcher.dispatchRegionEvents(enteredRegions, "entry");
+        assertEquals("the stale location should be counted", 1, PlacesMonitorLocationFilter.getSharedInstance().getStaleCount()
+                     - staleCount);
+    }
+
+    @Test
+    public void test_OnReceive_when_jumpOutlier_then_noSoftwareRegionEvent() throws Exception {
+        // setup, the second fix is 10 kilometers away 10 seconds later
+        List<PlacesMonitorPOI> pois = new ArrayList<>();
+        pois.add(new PlacesMonitorPOI("softwareRegion", "softwareRegion", 0.09, 0, 100));
+        PlacesMonitorSoftwareGeofencer.getSharedInstance().setPOIs(pois);
+        PowerMockito.mockStatic(SystemClock.class);
+        when(SystemClock.elapsedRealtime()).thenReturn(24 * 60 * 60 * 1000L);
+        final long now = System.currentTimeMillis();
+        mockFix(location1, now - 20000, 20);
+        mockFix(location2, now - 10000, 20);
+        when(location2.getLatitude()).thenReturn(0.09);
+        List<Location> locations = new ArrayList<Location>();
+        locations.add(location1);
+        locations.add(location2);
+        locationResult = LocationResult.create(locations);
+        initiateMocking();
+        final int outlierCount = PlacesMonitorLocationFilter.getSharedInstance().getOutlierCount();
+
+        // test
+        receiver.onReceive(mockContext, mockIntent);
+
+        // verify that only the first location is dispatched and the jump enters no region
+        verifyStatic(PlacesMonitorDispatcher.class, Mockito.times(1));
+        PlacesMonitorDispatcher.dispatchLocation(location1);
+        List<String> enteredRegions = new ArrayList<>();
+        enteredRegions.add("softwareRegion");
+        verifyStatic(PlacesMonitorDispatcher.class, Mockito.times(0));
+        PlacesMonitorDispatcher.dispatchRegionEvents(enteredRegions, "entry");
+        assertEquals("the jump should be counted as an outlier", 1,
+                     PlacesMonitorLocationFilter.getSharedInstance().getOutlierCount() - outlierCount);
+    }
+
+    @Test
+    public void test_OnReceive_evaluatesSoftwareGeofencesForEveryBatchedLocation() throws Exception {
+        // setup
+        List<PlacesMonitorPOI> pois = new ArrayList<>();
+        pois.add(new PlacesMonitorPOI("softwareRegion", "softwareRegion", 0, 0, 100));
+        PlacesMonitorSoftwareGeofencer.getSharedInstance().setPOIs(pois);
+        final long now = System.currentTimeMillis();
+        mockFix(location1, now - 70000, 20);
+        mockFix(location2, now - 10000, 20);
+        when(location2.getLatitude()).thenReturn(0.01);
+        List<Location> locations = new ArrayList<Location>();
+        locations.add(location1);
+        locations.add(location2);
+        locationResult = LocationResult.create(locations);
+        initiateMocking();
+
+        // test
+        receiver.onReceive(mockContext, mockIntent);
+
+        // verify that the region crossed within the batch is entered and exited
+        List<String> regions = new ArrayList<>();
+        regions.add("softwareRegion");
+        verifyStatic(PlacesMonitorDispatcher.class, Mockito.times(1));
+        PlacesMonitorDispatcher.dispatchRegionEvents(regions, "entry");
+        verifyStatic(PlacesMonitorDispatcher.class, Mockito.times(1));
+        PlacesMonitorDispatcher.dispatchRegionEvents(regions, "exit");
+    }
+
+    // ========================================================================================
+    // selectBestLocation
+    // ========================================================================================
+
+    @Test
+    public void test_selectBestLocation_when_accurateLocationIsStale() {
+        // setup
+        mockFix(location1, 0, 5);
+        mockFix(location2, 10 * 60 * 1000, 100);
+        List<Location> locations = new ArrayList<Location>();
+        locations.add(location1);
+        locations.add(location2);
+
+        // test
+        Location selected = PlacesLocationBroadcastReceiver.selectBestLocation(locations);
+
+        // verify
+        assertSame("a stale location should not be selected for its accuracy", location2, selected);
+    }
+
+    @Test
+    public void test_selectBestLocation_when_sameAccuracy_then_mostRecent() {
+        // setup
+        mockFix(location1, 20000, 30);
+        mockFix(location2, 10000, 30);
+        List<Location> locations = new ArrayList<Location>();
+        locations.add(location1);
+        locations.add(location2);
+
+        // test
+        Location selected = PlacesLocationBroadcastReceiver.selectBestLocation(locations);
+
+        // verify
+        assertSame("the most recent location should be selected", location1, selected);
+    }
+
+    @Test
+    public void test_selectBestLocation_when_noAccuracy() {
+        // setup
+        mockFix(location1, 10000, 30);
+        when(location2.getTime()).thenReturn(20000L);
+        List<Location> locations = new ArrayList<Location>();
+        locations.add(location1);
+        locations.add(location2);
+
+        // test
+        Location selected = PlacesLocationBroadcastReceiver.selectBestLocation(locations);
+
+        // verify
+        assertSame("a location with accuracy should be preferred", location1, selected);
+    }
+
+    @Test
+    public void test_selectBestLocation_when_noLocation() {
+        // setup
+        List<Location> locations = new ArrayList<Location>();
+        locations.add(null);
+
+        // test
+        Location selected = PlacesLocationBroadcastReceiver.selectBestLocation(locations);
+
+        // verify
+        assertNull("no location should be selected", selected);
+    }
+
+    private void mockFix(final Location location, final long time, final float accuracy) {
+        when(location.getTime()).thenReturn(time);
+        when(location.hasAccuracy()).thenReturn(true);
+        when(location.getAccuracy()).thenReturn(accuracy);
     }
 
     private void initiateMocking() throws Exception {
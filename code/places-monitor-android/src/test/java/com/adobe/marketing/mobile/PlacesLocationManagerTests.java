@@ -23,12 +23,15 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.location.Location;
+import android.os.Looper;
 import android.support.v4.app.ActivityCompat;
 
 import com.google.android.gms.common.api.ApiException;
 import com.google.android.gms.common.api.Status;
 import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
 import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.location.LocationSettingsRequest;
 import com.google.android.gms.location.LocationSettingsResponse;
@@ -50,6 +53,9 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.powermock.reflect.Whitebox;
 
+import java.util.ArrayList;
+import java.util.List;
+
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.times;
@@ -58,7 +64,7 @@ import static org.powermock.api.mockito.PowerMockito.verifyStatic;
 import static org.junit.Assert.*;
 
 @RunWith(PowerMockRunner.class)
-@PrepareForTest({Context.class, App.class, LocationServices.class, PendingIntent.class, ActivityCompat.class, PlacesMonitorDispatcher.class})
+@PrepareForTest({Context.class, App.class, LocationServices.class, PendingIntent.class, ActivityCompat.class, PlacesMonitorDispatcher.class, LocationResult.class})
 public class PlacesLocationManagerTests {
     private final String FINE_LOCATION = Manifest.permission.ACCESS_FINE_LOCATION;
     private static final int REQUEST_PERMISSIONS_REQUEST_CODE = 34;
@@ -102,7 +108,16 @@ public class PlacesLocationManagerTests {
         PowerMockito.mockStatic(ActivityCompat.class);
         PowerMockito.mockStatic(PlacesMonitorDispatcher.class);
 
+        PlacesMonitorLocationPolicy.getSharedInstance().reset();
+        PlacesMonitorLocationFilter.getSharedInstance().setTierMaxAccuracy(0);
         locationManager = new PlacesLocationManager();
+        // the extension forwards the tier changes to its location source
+        PlacesMonitorLocationPolicy.getSharedInstance().setListener(new PlacesMonitorLocationPolicy.Listener() {
+            @Override
+            public void onTierChanged(final PlacesMonitorLocationPolicy.Tier tier) {
+                locationManager.onLocationTierChanged(tier);
+            }
+        });
 
         // mock static methods
         Mockito.when(App.getAppContext()).thenReturn(context);
@@ -154,6 +169,171 @@ public class PlacesLocationManagerTests {
     }
 
 
+    @Test
+    public void test_startMonitoring_when_refreshBoundaryEnabled() {
+        // setup
+        final ArgumentCaptor<OnSuccessListener> onSuccessCallback = ArgumentCaptor.forClass(OnSuccessListener.class);
+        final ArgumentCaptor<LocationRequest> locationRequestArgumentCaptor= ArgumentCaptor.forClass(LocationRequest.class);
+        locationManager.setRefreshBoundaryEnabled(true);
+
+        // test
+        locationManager.startMonitoring();
+
+        // verify
+        verify(mockTaskSettingsResponse, times(1)).addOnSuccessListener(onSuccessCallback.capture());
+
+        // trigger the success callback
+        onSuccessCallback.getValue().onSuccess(mockLocationSettingsResponse);
+
+        // verify that a single location update is requested
+        verify(locationProviderClient, times(1)).requestLocationUpdates(locationRequestArgumentCaptor.capture(), eq(pendingIntent));
+        assertEquals("a single location update should be requested", 1, locationRequestArgumentCaptor.getValue().getNumUpdates());
+        Boolean isRequestingLocationUpdates = Whitebox.getInternalState(locationManager, "isRequestingLocationUpdates");
+        assertTrue("The location update flag should be set to true" ,isRequestingLocationUpdates);
+    }
+
+    @Test
+    public void test_startMonitoring_when_maxWaitTimeSet() {
+        // setup
+        final ArgumentCaptor<OnSuccessListener> onSuccessCallback = ArgumentCaptor.forClass(OnSuccessListener.class);
+        final ArgumentCaptor<LocationRequest> locationRequestArgumentCaptor= ArgumentCaptor.forClass(LocationRequest.class);
+        final long maxWaitTime = PlacesMonitorTestConstants.Location.REQUEST_INTERVAL * 4;
+        locationManager.setMaxWaitTime(maxWaitTime);
+
+        // test
+        locationManager.startMonitoring();
+
+        // verify
+        verify(mockTaskSettingsResponse, times(1)).addOnSuccessListener(onSuccessCallback.capture());
+
+        // trigger the success callback
+        onSuccessCallback.getValue().onSuccess(mockLocationSettingsResponse);
+
+        // verify that the location updates are batched
+        verify(locationProviderClient, times(1)).requestLocationUpdates(locationRequestArgumentCaptor.capture(), eq(pendingIntent));
+        assertEquals("the location updates should be batched", maxWaitTime, locationRequestArgumentCaptor.getValue().getMaxWaitTime());
+    }
+
+    @Test
+    public void test_setMaxWaitTime_whileMonitoring() {
+        // setup
+        Whitebox.setInternalState(locationManager, "isRequestingLocationUpdates", true);
+
+        // test
+        locationManager.setMaxWaitTime(60000);
+        locationManager.setMaxWaitTime(60000);
+
+        // verify that the location request is replaced once
+        verify(mockSettingsClient, times(1)).checkLocationSettings(any(LocationSettingsRequest.class));
+    }
+
+    @Test
+    public void test_setMaxWaitTime_when_refreshBoundaryEnabled() {
+        // setup
+        locationManager.setRefreshBoundaryEnabled(true);
+        Whitebox.setInternalState(locationManager, "isRequestingLocationUpdates", true);
+
+        // test
+        locationManager.setMaxWaitTime(60000);
+
+        // verify that the single location requests are not replaced
+        verify(mockSettingsClient, times(0)).checkLocationSettings(any(LocationSettingsRequest.class));
+    }
+
+    @Test
+    public void test_setRefreshBoundaryEnabled_whileMonitoring() {
+        // setup
+        Whitebox.setInternalState(locationManager, "isRequestingLocationUpdates", true);
+
+        // test
+        locationManager.setRefreshBoundaryEnabled(true);
+        locationManager.setRefreshBoundaryEnabled(true);
+
+        // verify that the location request is replaced once
+        verify(mockSettingsClient, times(1)).checkLocationSettings(any(LocationSettingsRequest.class));
+    }
+
+    @Test
+    public void test_setRefreshBoundaryEnabled_whenNotMonitoring() {
+        // test
+        locationManager.setRefreshBoundaryEnabled(true);
+
+        // verify
+        verify(mockSettingsClient, times(0)).checkLocationSettings(any(LocationSettingsRequest.class));
+    }
+
+    @Test
+    public void test_startMonitoring_when_adaptiveLocationEnabled() {
+        // setup
+        final ArgumentCaptor<OnSuccessListener> onSuccessCallback = ArgumentCaptor.forClass(OnSuccessListener.class);
+        final ArgumentCaptor<LocationRequest> locationRequestArgumentCaptor= ArgumentCaptor.forClass(LocationRequest.class);
+        locationManager.setAdaptiveLocationEnabled(true);
+
+        // test
+        locationManager.startMonitoring();
+
+        // verify
+        verify(mockTaskSettingsResponse, times(1)).addOnSuccessListener(onSuccessCallback.capture());
+
+        // trigger the success callback
+        onSuccessCallback.getValue().onSuccess(mockLocationSettingsResponse);
+
+        // verify that the location request follows the selected tier
+        verify(locationProviderClient, times(1)).requestLocationUpdates(locationRequestArgumentCaptor.capture(), eq(pendingIntent));
+        assertEquals("the priority of the tier should be requested", LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY,
+                locationRequestArgumentCaptor.getValue().getPriority());
+        assertEquals("the interval of the tier should be requested", PlacesMonitorLocationPolicy.APPROACHING.getInterval(),
+                locationRequestArgumentCaptor.getValue().getInterval());
+    }
+
+    @Test
+    public void test_setAdaptiveLocationEnabled_whileMonitoring() {
+        // setup
+        Whitebox.setInternalState(locationManager, "isRequestingLocationUpdates", true);
+
+        // test
+        locationManager.setAdaptiveLocationEnabled(true);
+        locationManager.setAdaptiveLocationEnabled(true);
+
+        // verify that the location request is replaced once
+        verify(mockSettingsClient, times(1)).checkLocationSettings(any(LocationSettingsRequest.class));
+    }
+
+    @Test
+    public void test_locationTierChanged_whileMonitoring() {
+        // setup
+        final ArgumentCaptor<LocationRequest> locationRequestArgumentCaptor= ArgumentCaptor.forClass(LocationRequest.class);
+        final List<PlacesMonitorPOI> fences = new ArrayList<>();
+        fences.add(new PlacesMonitorPOI("id", "name", 37.33, -121.89, 100));
+        locationManager.setAdaptiveLocationEnabled(true);
+        Whitebox.setInternalState(locationManager, "isRequestingLocationUpdates", true);
+        PlacesMonitorLocationPolicy.getSharedInstance().setFences(fences);
+
+        // test
+        PlacesMonitorLocationPolicy.getSharedInstance().onLocation(37.331, -121.89, 20, -1, false);
+
+        // verify that the location request is replaced without checking the settings again
+        verify(locationProviderClient, times(1)).requestLocationUpdates(locationRequestArgumentCaptor.capture(), eq(pendingIntent));
+        assertEquals("the near tier should be requested", LocationRequest.PRIORITY_HIGH_ACCURACY,
+                locationRequestArgumentCaptor.getValue().getPriority());
+        verify(mockSettingsClient, times(0)).checkLocationSettings(any(LocationSettingsRequest.class));
+    }
+
+    @Test
+    public void test_locationTierChanged_when_adaptiveLocationDisabled() {
+        // setup
+        final List<PlacesMonitorPOI> fences = new ArrayList<>();
+        fences.add(new PlacesMonitorPOI("id", "name", 37.33, -121.89, 100));
+        Whitebox.setInternalState(locationManager, "isRequestingLocationUpdates", true);
+        PlacesMonitorLocationPolicy.getSharedInstance().setFences(fences);
+
+        // test
+        PlacesMonitorLocationPolicy.getSharedInstance().onLocation(37.331, -121.89, 20, -1, false);
+
+        // verify
+        verify(locationProviderClient, times(0)).requestLocationUpdates(any(LocationRequest.class), eq(pendingIntent));
+    }
+
     @Test
     public void test_startMonitoring_when_contextIsNull() {
         // setup
@@ -399,6 +579,114 @@ public class PlacesLocationManagerTests {
     }
 
 
+    @Test
+    public void test_updateLocation_when_lastLocationIsStale() {
+        // setup
+        final ArgumentCaptor<OnSuccessListener> onSuccessCallback = ArgumentCaptor.forClass(OnSuccessListener.class);
+        final ArgumentCaptor<LocationRequest> locationRequestArgumentCaptor= ArgumentCaptor.forClass(LocationRequest.class);
+        final ArgumentCaptor<LocationCallback> locationCallbackArgumentCaptor= ArgumentCaptor.forClass(LocationCallback.class);
+        Whitebox.setInternalState(locationManager, "isRequestingLocationUpdates", true);
+        Whitebox.setInternalState(locationManager, "fusedLocationClient", locationProviderClient);
+        Mockito.when(mockLocation.getTime()).thenReturn(System.currentTimeMillis() -
+                PlacesMonitorTestConstants.Location.FRESH_FIX_MAX_AGE - 60000);
+
+        // test
+        locationManager.updateLocation();
+
+        // verify
+        verify(mockTaskLocation, times(1)).addOnSuccessListener(onSuccessCallback.capture());
+
+        // trigger the success callback
+        onSuccessCallback.getValue().onSuccess(mockLocation);
+
+        // verify that the stale location is not dispatched and a single fresh fix is requested instead
+        verifyStatic(PlacesMonitorDispatcher.class, Mockito.times(0));
+        PlacesMonitorDispatcher.dispatchLocation(any(Location.class));
+        verify(locationProviderClient, times(1)).requestLocationUpdates(locationRequestArgumentCaptor.capture(),
+                locationCallbackArgumentCaptor.capture(), any(Looper.class));
+        assertEquals("a single location update should be requested", 1, locationRequestArgumentCaptor.getValue().getNumUpdates());
+        verify(locationProviderClient, times(0)).requestLocationUpdates(any(LocationRequest.class), eq(pendingIntent));
+    }
+
+    @Test
+    public void test_updateLocation_when_freshLocationReceived() {
+        // setup
+        final ArgumentCaptor<OnSuccessListener> onSuccessCallback = ArgumentCaptor.forClass(OnSuccessListener.class);
+        final ArgumentCaptor<LocationCallback> locationCallbackArgumentCaptor= ArgumentCaptor.forClass(LocationCallback.class);
+        final LocationResult locationResult = PowerMockito.mock(LocationResult.class);
+        Mockito.when(locationResult.getLastLocation()).thenReturn(mockLocation);
+        Whitebox.setInternalState(locationManager, "isRequestingLocationUpdates", true);
+        locationManager.updateLocation();
+        verify(mockTaskLocation, times(1)).addOnSuccessListener(onSuccessCallback.capture());
+        onSuccessCallback.getValue().onSuccess(null);
+        verify(locationProviderClient, times(1)).requestLocationUpdates(any(LocationRequest.class),
+                locationCallbackArgumentCaptor.capture(), any(Looper.class));
+
+        // test
+        locationCallbackArgumentCaptor.getValue().onLocationResult(locationResult);
+        locationCallbackArgumentCaptor.getValue().onLocationResult(locationResult);
+
+        // verify that the fresh location is dispatched once and the request is removed
+        verifyStatic(PlacesMonitorDispatcher.class, Mockito.times(1));
+        PlacesMonitorDispatcher.dispatchLocation(mockLocation);
+        verify(locationProviderClient, times(1)).removeLocationUpdates(locationCallbackArgumentCaptor.getValue());
+    }
+
+    @Test
+    public void test_updateLocation_when_freshLocationPending() {
+        // setup
+        final ArgumentCaptor<OnSuccessListener> onSuccessCallback = ArgumentCaptor.forClass(OnSuccessListener.class);
+        Whitebox.setInternalState(locationManager, "isRequestingLocationUpdates", true);
+
+        // test
+        locationManager.updateLocation();
+        locationManager.updateLocation();
+
+        // verify
+        verify(mockTaskLocation, times(2)).addOnSuccessListener(onSuccessCallback.capture());
+        onSuccessCallback.getAllValues().get(0).onSuccess(null);
+        onSuccessCallback.getAllValues().get(1).onSuccess(null);
+
+        // verify that the pending fresh location is not requested again
+        verify(locationProviderClient, times(1)).requestLocationUpdates(any(LocationRequest.class),
+                any(LocationCallback.class), any(Looper.class));
+    }
+
+    @Test
+    public void test_stopMonitoring_when_freshLocationPending() {
+        // setup
+        final ArgumentCaptor<OnSuccessListener> onSuccessCallback = ArgumentCaptor.forClass(OnSuccessListener.class);
+        final ArgumentCaptor<LocationCallback> locationCallbackArgumentCaptor= ArgumentCaptor.forClass(LocationCallback.class);
+        Whitebox.setInternalState(locationManager, "isRequestingLocationUpdates", true);
+        locationManager.updateLocation();
+        verify(mockTaskLocation, times(1)).addOnSuccessListener(onSuccessCallback.capture());
+        onSuccessCallback.getValue().onSuccess(null);
+        verify(locationProviderClient, times(1)).requestLocationUpdates(any(LocationRequest.class),
+                locationCallbackArgumentCaptor.capture(), any(Looper.class));
+
+        // test
+        locationManager.stopMonitoring();
+
+        // verify that the pending fresh location request is removed
+        verify(locationProviderClient, times(1)).removeLocationUpdates(locationCallbackArgumentCaptor.getValue());
+    }
+
+    @Test
+    public void test_updateLocation_when_refreshBoundaryEnabled() {
+        // setup
+        final ArgumentCaptor<LocationRequest> locationRequestArgumentCaptor= ArgumentCaptor.forClass(LocationRequest.class);
+        Whitebox.setInternalState(locationManager, "isRequestingLocationUpdates", true);
+        Whitebox.setInternalState(locationManager, "refreshBoundaryEnabled", true);
+
+        // test
+        locationManager.updateLocation();
+
+        // verify that a fresh location is requested instead of the last known location
+        verify(locationProviderClient, times(0)).getLastLocation();
+        verify(locationProviderClient, times(1)).requestLocationUpdates(locationRequestArgumentCaptor.capture(), eq(pendingIntent));
+        assertEquals("a single location update should be requested", 1, locationRequestArgumentCaptor.getValue().getNumUpdates());
+    }
+
     @Test
     public void test_updateLocation_when_successButNullLocation() {
         // setup
@@ -0,0 +1,178 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorBroadcastWorkerBenchmark.java
+//
+
+package com.adobe.marketing.mobile;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.location.Location;
+
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.location.GeofencingEvent;
+import com.google.android.gms.location.LocationResult;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Wall time of {@code onReceive} of the broadcast receivers, with the work processed inline as before and handed
+ * to {@link PlacesMonitorBroadcastWorker}.
+ * <p>
+ * The dispatch to the event hub is simulated with a {@value #DISPATCH_MILLIS} ms delay, the location receiver also
+ * evaluates {@value #SOFTWARE_REGION_COUNT} software geofences.
+ * <p>
+ * Benchmarks are skipped in the regular unit test run, run them with {@code ./gradlew test -Pbenchmark}.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({PlacesMonitorDispatcher.class, LocationResult.class, GeofencingEvent.class})
+public class PlacesMonitorBroadcastWorkerBenchmark {
+
+    private static final int BROADCAST_COUNT = 500;
+    private static final int DISPATCH_MILLIS = 2;
+    private static final int SOFTWARE_REGION_COUNT = 1000;
+
+    private final Semaphore processed = new Semaphore(0);
+
+    @Mock
+    Context mockContext;
+
+    @Mock
+    Intent mockLocationIntent, mockGeofenceIntent;
+
+    @Mock
+    Location location;
+
+    @Mock
+    GeofencingEvent mockGeofencingEvent;
+
+    @Mock
+    Geofence geofence;
+
+    @Before
+    public void before() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean(PlacesMonitorTestConstants.BENCHMARK_PROPERTY));
+
+        final Answer<Void> dispatch = new Answer<Void>() {
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable {
+                Thread.sleep(DISPATCH_MILLIS);
+                processed.release();
+                return null;
+            }
+        };
+
+        PowerMockito.mockStatic(PlacesMonitorDispatcher.class);
+        PowerMockito.doAnswer(dispatch).when(PlacesMonitorDispatcher.class);
+        PlacesMonitorDispatcher.dispatchLocation(any(Location.class));
+        PowerMockito.doAnswer(dispatch).when(PlacesMonitorDispatcher.class);
+        PlacesMonitorDispatcher.dispatchRegionEvent(anyList(), anyString());
+
+        final List<Location> locations = new ArrayList<>();
+        locations.add(location);
+        when(location.getLatitude()).thenReturn(37.3);
+        when(location.getLongitude()).thenReturn(-121.9);
+        when(location.getAccuracy()).thenReturn(50f);
+        PowerMockito.mockStatic(LocationResult.class);
+        PowerMockito.when(LocationResult.class, "extractResult", any(Intent.class)).thenReturn(LocationResult.create(locations));
+        when(mockLocationIntent.getAction()).thenReturn(PlacesLocationBroadcastReceiver.ACTION_LOCATION_UPDATE);
+
+        final List<Geofence> geofences = new ArrayList<>();
+        geofences.add(geofence);
+        when(geofence.getRequestId()).thenReturn("regionId");
+        when(mockGeofencingEvent.hasError()).thenReturn(false);
+        when(mockGeofencingEvent.getGeofenceTransition()).thenReturn(1);
+        when(mockGeofencingEvent.getTriggeringGeofences()).thenReturn(geofences);
+        PowerMockito.mockStatic(GeofencingEvent.class);
+        PowerMockito.when(GeofencingEvent.class, "fromIntent", any(Intent.class)).thenReturn(mockGeofencingEvent);
+        when(mockGeofenceIntent.getAction()).thenReturn(PlacesGeofenceBroadcastReceiver.ACTION_GEOFENCE_UPDATE);
+
+        PlacesMonitorSoftwareGeofencer.getSharedInstance().setPOIs(PlacesMonitorPOIRTreeTests.randomPOIs(SOFTWARE_REGION_COUNT,
+                SOFTWARE_REGION_COUNT));
+    }
+
+    @After
+    public void after() {
+        PlacesMonitorBroadcastWorker.setExecutor(null);
+        PlacesMonitorSoftwareGeofencer.getSharedInstance().clear();
+    }
+
+    @Test
+    public void benchmark_locationReceiver() throws Exception {
+        final PlacesLocationBroadcastReceiver receiver = new PlacesLocationBroadcastReceiver();
+        final double inlineMicros = runBenchmark(receiver, mockLocationIntent, true);
+        final double workerMicros = runBenchmark(receiver, mockLocationIntent, false);
+        print("PlacesLocationBroadcastReceiver", inlineMicros, workerMicros);
+    }
+
+    @Test
+    public void benchmark_geofenceReceiver() throws Exception {
+        final PlacesGeofenceBroadcastReceiver receiver = new PlacesGeofenceBroadcastReceiver();
+        final double inlineMicros = runBenchmark(receiver, mockGeofenceIntent, true);
+        final double workerMicros = runBenchmark(receiver, mockGeofenceIntent, false);
+        print("PlacesGeofenceBroadcastReceiver", inlineMicros, workerMicros);
+    }
+
+    private double runBenchmark(final BroadcastReceiver receiver, final Intent intent,
+                                final boolean inline) throws Exception {
+        PlacesMonitorBroadcastWorker.setExecutor(inline ? new Executor() {
+            @Override
+            public void execute(final Runnable runnable) {
+                runnable.run();
+            }
+        } : null);
+
+        long totalNanos = 0;
+
+        for (int i = 0; i < BROADCAST_COUNT; i++) {
+            final long start = System.nanoTime();
+            receiver.onReceive(mockContext, intent);
+            totalNanos += System.nanoTime() - start;
+
+            // wait for the worker, so the broadcasts never queue up
+            if (!processed.tryAcquire(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("broadcast was not processed");
+            }
+        }
+
+        return totalNanos / 1e3 / BROADCAST_COUNT;
+    }
+
+    private static void print(final String receiver, final double inlineMicros, final double workerMicros) {
+        System.out.println(String.format("%s onReceive: inline %.1f us/broadcast, goAsync + worker %.1f us/broadcast",
+                                         receiver, inlineMicros, workerMicros));
+    }
+}
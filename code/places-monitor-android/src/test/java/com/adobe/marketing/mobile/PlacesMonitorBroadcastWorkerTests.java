@@ -0,0 +1,301 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorBroadcastWorkerTests.java
+//
+
+package com.adobe.marketing.mobile;
+
+import android.content.BroadcastReceiver;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({BroadcastReceiver.PendingResult.class})
+public class PlacesMonitorBroadcastWorkerTests {
+
+    private BroadcastReceiver.PendingResult pendingResult;
+
+    @Before
+    public void before() {
+        pendingResult = PowerMockito.mock(BroadcastReceiver.PendingResult.class);
+        PlacesMonitorBroadcastWorker.setExecutor(null);
+    }
+
+    @After
+    public void after() {
+        PlacesMonitorBroadcastWorker.setExecutor(null);
+    }
+
+    @Test
+    public void test_execute_runsOffTheCallingThread() throws Exception {
+        // setup
+        final CountDownLatch done = new CountDownLatch(1);
+        final List<Thread> workThreads = Collections.synchronizedList(new ArrayList<Thread>());
+
+        // test
+        PlacesMonitorBroadcastWorker.execute(pendingResult, new Runnable() {
+            @Override
+            public void run() {
+                workThreads.add(Thread.currentThread());
+                done.countDown();
+            }
+        });
+
+        // verify
+        assertTrue("work should run", done.await(5, TimeUnit.SECONDS));
+        assertNotSame("work should not run on the calling thread", Thread.currentThread(), workThreads.get(0));
+        verify(pendingResult, timeout(5000).times(1)).finish();
+    }
+
+    @Test
+    public void test_execute_keepsTheBroadcastOrder() throws Exception {
+        // setup
+        final int broadcastCount = 50;
+        final CountDownLatch done = new CountDownLatch(broadcastCount);
+        final List<Integer> processed = Collections.synchronizedList(new ArrayList<Integer>());
+
+        // test
+        for (int i = 0; i < broadcastCount; i++) {
+            final int broadcast = i;
+            PlacesMonitorBroadcastWorker.execute(null, new Runnable() {
+                @Override
+                public void run() {
+                    processed.add(broadcast);
+                    done.countDown();
+                }
+            });
+        }
+
+        // verify
+        assertTrue("all broadcasts should be processed", done.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < broadcastCount; i++) {
+            assertEquals("broadcasts should be processed in order", Integer.valueOf(i), processed.get(i));
+        }
+    }
+
+    @Test
+    public void test_execute_when_workFails_then_pendingResultFinished() throws Exception {
+        // setup
+        final CountDownLatch done = new CountDownLatch(1);
+
+        // test
+        PlacesMonitorBroadcastWorker.execute(pendingResult, new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("failing work");
+            }
+        });
+        PlacesMonitorBroadcastWorker.execute(null, new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+
+        // verify
+        verify(pendingResult, timeout(5000).times(1)).finish();
+        assertTrue("the worker should keep processing broadcasts", done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void test_execute_when_workTimesOut_then_pendingResultFinishedOnce() throws Exception {
+        // setup
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        final int timedOutBefore = PlacesMonitorBroadcastWorker.getTimedOutCount();
+
+        // test
+        PlacesMonitorBroadcastWorker.execute(pendingResult, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                done.countDown();
+            }
+        }, 100);
+
+        // verify
+        verify(pendingResult, timeout(5000).times(1)).finish();
+        assertEquals("the timeout should be counted", 1, PlacesMonitorBroadcastWorker.getTimedOutCount() - timedOutBefore);
+
+        // test
+        release.countDown();
+
+        // verify
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        verify(pendingResult, times(1)).finish();
+    }
+
+    @Test
+    public void test_executeSheddable_when_queueFull_then_broadcastDropped() throws Exception {
+        // setup
+        final CountDownLatch release = blockWorker();
+
+        for (int i = 0; i < PlacesMonitorTestConstants.BroadcastWorker.QUEUE_CAPACITY; i++) {
+            PlacesMonitorBroadcastWorker.executeSheddable(null, new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+        }
+
+        final List<Thread> workThreads = Collections.synchronizedList(new ArrayList<Thread>());
+        final int droppedCount = PlacesMonitorBroadcastWorker.getDroppedCount();
+
+        // test
+        PlacesMonitorBroadcastWorker.executeSheddable(pendingResult, new Runnable() {
+            @Override
+            public void run() {
+                workThreads.add(Thread.currentThread());
+            }
+        });
+
+        // verify that the work does not run on the calling thread, and the broadcast is finished right away
+        assertTrue("work should not run inline once the queue is full", workThreads.isEmpty());
+        assertEquals("the broadcast should be counted as dropped", droppedCount + 1, PlacesMonitorBroadcastWorker.getDroppedCount());
+        verify(pendingResult, times(1)).finish();
+        release.countDown();
+        Thread.sleep(100);
+        assertTrue("dropped work should never run", workThreads.isEmpty());
+    }
+
+    @Test
+    public void test_execute_when_queueFullOfLocationWork_then_geofenceBroadcastProcessed() throws Exception {
+        // setup
+        final CountDownLatch release = blockWorker();
+        final List<String> processed = Collections.synchronizedList(new ArrayList<String>());
+        final BroadcastReceiver.PendingResult evictedResult = PowerMockito.mock(BroadcastReceiver.PendingResult.class);
+
+        for (int i = 0; i < PlacesMonitorTestConstants.BroadcastWorker.QUEUE_CAPACITY; i++) {
+            final String location = "location " + i;
+            PlacesMonitorBroadcastWorker.executeSheddable(i == 0 ? evictedResult : null, new Runnable() {
+                @Override
+                public void run() {
+                    processed.add(location);
+                }
+            });
+        }
+
+        final CountDownLatch done = new CountDownLatch(1);
+        final int droppedCount = PlacesMonitorBroadcastWorker.getDroppedCount();
+
+        // test
+        PlacesMonitorBroadcastWorker.execute(pendingResult, new Runnable() {
+            @Override
+            public void run() {
+                processed.add("geofence");
+                done.countDown();
+            }
+        });
+
+        // verify that the oldest location broadcast made room, finished right away
+        assertEquals(droppedCount + 1, PlacesMonitorBroadcastWorker.getDroppedCount());
+        verify(evictedResult, times(1)).finish();
+        release.countDown();
+        assertTrue("the geofence broadcast should be processed", done.await(5, TimeUnit.SECONDS));
+        verify(pendingResult, timeout(5000).times(1)).finish();
+        assertFalse("the oldest location broadcast should be dropped", processed.contains("location 0"));
+        assertEquals(PlacesMonitorTestConstants.BroadcastWorker.QUEUE_CAPACITY, processed.size());
+        assertEquals("the geofence broadcast should keep its order", "geofence", processed.get(processed.size() - 1));
+    }
+
+    @Test
+    public void test_execute_when_queueFullOfGeofenceWork_then_geofenceBroadcastQueued() throws Exception {
+        // setup
+        final CountDownLatch release = blockWorker();
+        final int broadcastCount = PlacesMonitorTestConstants.BroadcastWorker.QUEUE_CAPACITY + 1;
+        final CountDownLatch done = new CountDownLatch(broadcastCount);
+        final int droppedCount = PlacesMonitorBroadcastWorker.getDroppedCount();
+
+        // test
+        for (int i = 0; i < broadcastCount; i++) {
+            PlacesMonitorBroadcastWorker.execute(null, new Runnable() {
+                @Override
+                public void run() {
+                    done.countDown();
+                }
+            });
+        }
+
+        // verify
+        assertEquals("a geofence broadcast should never be dropped", droppedCount,
+                     PlacesMonitorBroadcastWorker.getDroppedCount());
+        release.countDown();
+        assertTrue("every geofence broadcast should be processed", done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void test_execute_when_noPendingResult() throws Exception {
+        // setup
+        final CountDownLatch done = new CountDownLatch(1);
+
+        // test
+        PlacesMonitorBroadcastWorker.execute(null, new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+
+        // verify
+        assertTrue("work should run without a pending result", done.await(5, TimeUnit.SECONDS));
+        verify(pendingResult, never()).finish();
+    }
+
+    /**
+     * Keeps the worker thread busy until the returned latch is released, so the next broadcasts stay queued.
+     */
+    private static CountDownLatch blockWorker() throws InterruptedException {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        PlacesMonitorBroadcastWorker.execute(null, new Runnable() {
+            @Override
+            public void run() {
+                blocked.countDown();
+
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        return release;
+    }
+}
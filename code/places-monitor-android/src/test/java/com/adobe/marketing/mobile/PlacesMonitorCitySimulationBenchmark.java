@@ -0,0 +1,448 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorCitySimulationBenchmark.java
+//
+
+package com.adobe.marketing.mobile;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Query volume and fence churn of the monitor driven through {@link PlacesMonitorInternal}, along commuter
+ * trajectories through synthetic city layouts: a dense downtown, a suburb and a highway corridor.
+ * <p>
+ * A {@link PlacesMonitorTraceLocationSource} replays the trajectory in place of {@link PlacesLocationManager}, one fix
+ * every {@value #FIX_INTERVAL} milliseconds, and a {@link PlacesMonitorSimulatedGeofencingBackend} registers the fences
+ * of {@link PlacesGeofenceManager} and notifies their transitions. The Places extension is stood in for by an
+ * {@link PlacesMonitorDispatcher.EventDispatcher} answering the nearby places requests with the nearest POIs of the
+ * layout. Every layout is driven with the fixed location request and with the adaptive location tiers.
+ * <p>
+ * The downtown walk is also driven with the batched region events, which the Places extension only processes when it
+ * handles {@code requestprocessregionevents}, to measure the region events dispatched to the event hub in both formats.
+ * <p>
+ * The replayed fixes go through the same steps as {@link PlacesLocationBroadcastReceiver#processLocations(List)}
+ * except the location filter, which needs the {@code Location} of the platform.
+ * <p>
+ * The Places queries per kilometer, the geofencing requests per hour and the allocation per location update are gated
+ * by budgets, about 1.5 times the measured counts and 3 times the measured allocation, which also covers the mocked
+ * {@link ExtensionApi}. A regression in the reconcile of the fences or in the location request fails the benchmark.
+ * <p>
+ * Benchmarks are skipped in the regular unit test run, run them with {@code ./gradlew test -Pbenchmark}.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ExtensionApi.class})
+public class PlacesMonitorCitySimulationBenchmark {
+
+    private static final long FIX_INTERVAL = 10 * 1000;
+    private static final int GEOFENCE_COUNT = 20;
+
+    // downtown, a dense grid of small places
+    private static final double[] DOWNTOWN = {37.7880, -122.4000};
+    private static final int DOWNTOWN_POI_COUNT = 3000;
+    private static final double DOWNTOWN_SIZE = 3000;
+
+    // a suburb, with the home and the office of the commuter
+    private static final double[] HOME = {37.3000, -121.9500};
+    private static final double[] OFFICE = {37.3900, -121.8600};
+    private static final int SUBURBAN_POI_COUNT = 1500;
+    private static final double SUBURBAN_SIZE = 20000;
+
+    // a highway corridor, gas stations and rest areas along a straight road
+    private static final double[] HIGHWAY_START = {37.0000, -121.5000};
+    private static final double[] HIGHWAY_END = {37.6000, -121.0000};
+    private static final int HIGHWAY_POI_COUNT = 400;
+    private static final double HIGHWAY_WIDTH = 1000;
+
+    private static final double METERS_PER_DEGREE_LATITUDE = 111320;
+
+    @Mock
+    ExtensionApi extensionApi;
+
+    @Before
+    public void before() {
+        Assume.assumeTrue(Boolean.getBoolean(PlacesMonitorTestConstants.BENCHMARK_PROPERTY));
+    }
+
+    @After
+    public void after() {
+        PlacesMonitorDispatcher.setEventDispatcher(null);
+        resetSharedState();
+    }
+
+    @Test
+    public void benchmark_downtown() {
+        final List<PlacesMonitorPOI> layout = gridLayout(DOWNTOWN, DOWNTOWN_SIZE, DOWNTOWN_POI_COUNT, 30, 100, 1);
+        final List<PlacesMonitorTraceLocationSource.Fix> trajectory = downtownWalk(2 * 60 * 60 * 1000L, 1);
+
+        gate(run("downtown, fixed request", layout, trajectory, false), 17, 175, 15000);
+        gate(run("downtown, adaptive tiers", layout, trajectory, true), 13.5, 135, 55000);
+    }
+
+    @Test
+    public void benchmark_regionEventBatching() {
+        final List<PlacesMonitorPOI> layout = gridLayout(DOWNTOWN, DOWNTOWN_SIZE, DOWNTOWN_POI_COUNT, 30, 100, 1);
+        final List<PlacesMonitorTraceLocationSource.Fix> trajectory = downtownWalk(2 * 60 * 60 * 1000L, 1);
+
+        final Result perRegion = run("downtown, region event per region", layout, trajectory, true, false);
+        final Result batched = run("downtown, batched region events", layout, trajectory, true, true);
+
+        assertTrue("the walk should trigger regions", perRegion.regionEvents > 0);
+        assertEquals(perRegion.regionEvents, perRegion.regionHubEvents);
+        assertEquals(perRegion.regionEvents, batched.regionEvents);
+        assertTrue("the batched region events should not load the event hub more",
+                   batched.regionHubEvents <= perRegion.regionHubEvents);
+    }
+
+    @Test
+    public void benchmark_suburban() {
+        final double[] center = {(HOME[0] + OFFICE[0]) / 2, (HOME[1] + OFFICE[1]) / 2};
+        final List<PlacesMonitorPOI> layout = gridLayout(center, SUBURBAN_SIZE, SUBURBAN_POI_COUNT, 80, 200, 2);
+        final List<PlacesMonitorTraceLocationSource.Fix> trajectory = new ArrayList<>();
+        stay(trajectory, HOME, 20);
+        travel(trajectory, HOME, OFFICE, 13);
+        stay(trajectory, OFFICE, 60);
+        travel(trajectory, OFFICE, HOME, 13);
+        stay(trajectory, HOME, 20);
+
+        gate(run("suburban, fixed request", layout, trajectory, false), 2.1, 60, 6000);
+        gate(run("suburban, adaptive tiers", layout, trajectory, true), 2, 50, 42000);
+    }
+
+    @Test
+    public void benchmark_highwayCorridor() {
+        final List<PlacesMonitorPOI> layout = corridorLayout(HIGHWAY_START, HIGHWAY_END, HIGHWAY_WIDTH, HIGHWAY_POI_COUNT,
+                                              150, 300, 3);
+        final List<PlacesMonitorTraceLocationSource.Fix> trajectory = new ArrayList<>();
+        travel(trajectory, HIGHWAY_START, HIGHWAY_END, 30);
+
+        gate(run("highway corridor, fixed request", layout, trajectory, false), 1.35, 245, 26000);
+        gate(run("highway corridor, adaptive tiers", layout, trajectory, true), 1.1, 195, 60000);
+    }
+
+    // ========================================================================================
+    // simulation
+    // ========================================================================================
+
+    private Result run(final String name, final List<PlacesMonitorPOI> layout,
+                       final List<PlacesMonitorTraceLocationSource.Fix> trajectory, final boolean adaptive) {
+        return run(name, layout, trajectory, adaptive, false);
+    }
+
+    private Result run(final String name, final List<PlacesMonitorPOI> layout,
+                       final List<PlacesMonitorTraceLocationSource.Fix> trajectory, final boolean adaptive,
+                       final boolean batchRegionEvents) {
+        resetSharedState();
+
+        final Map<String, Object> configData = new HashMap<>();
+        configData.put(PlacesMonitorTestConstants.Configuration.GEOFENCE_COUNT, GEOFENCE_COUNT);
+        configData.put(PlacesMonitorTestConstants.Configuration.COALESCING_WINDOW, 0L);
+        configData.put(PlacesMonitorTestConstants.Configuration.ADAPTIVE_LOCATION, adaptive);
+        configData.put(PlacesMonitorTestConstants.Configuration.BATCH_REGION_EVENTS, batchRegionEvents);
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class),
+                                              any(ExtensionErrorCallback.class))).thenReturn(configData);
+
+        final PlacesMonitorInternal monitorInternal = new PlacesMonitorInternal(extensionApi);
+        final PlacesMonitorSimulatedGeofencingBackend backend = new PlacesMonitorSimulatedGeofencingBackend(0, 0);
+        final PlacesMonitorTraceLocationSource source = new PlacesMonitorTraceLocationSource(trajectory, 0);
+        final PlacesStandIn places = new PlacesStandIn(monitorInternal, PlacesMonitorPOIRTree.build(layout));
+        monitorInternal.setGeofencingBackend(backend);
+        monitorInternal.setLocationSource(source);
+        PlacesMonitorDispatcher.setEventDispatcher(places);
+
+        // the OS follows the device along the whole trajectory, the app only gets the delivered fixes
+        source.setTrajectoryListener(new PlacesMonitorTraceLocationSource.TrajectoryListener() {
+            @Override
+            public void onFixReplayed(final PlacesMonitorTraceLocationSource.Fix fix) {
+                backend.onLocation(fix.getLatitude(), fix.getLongitude());
+            }
+        });
+        source.setListener(new PlacesMonitorTraceLocationSource.Listener() {
+            @Override
+            public void onLocationFixes(final List<PlacesMonitorTraceLocationSource.Fix> fixes) {
+                final PlacesMonitorTraceLocationSource.Fix fix = fixes.get(fixes.size() - 1);
+                PlacesMonitorLocationPolicy.getSharedInstance().onLocation(fix.getLatitude(), fix.getLongitude(),
+                        fix.getAccuracy(), fix.getSpeed(), false);
+                PlacesMonitorDispatcher.dispatchLocation(fix.getLatitude(), fix.getLongitude());
+                monitorInternal.processEvents();
+            }
+        });
+
+        monitorInternal.queueEvent(new Event.Builder(PlacesMonitorTestConstants.EVENTNAME_START,
+                                   PlacesMonitorTestConstants.EventType.MONITOR,
+                                   PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT).build());
+        monitorInternal.processEvents();
+
+        final long startBytes = allocatedBytes();
+        final long start = System.nanoTime();
+        source.replayAll();
+        final long nanos = System.nanoTime() - start;
+        final long bytes = allocatedBytes() - startBytes;
+
+        monitorInternal.queueEvent(new Event.Builder(PlacesMonitorTestConstants.EVENTNAME_STOP,
+                                   PlacesMonitorTestConstants.EventType.MONITOR,
+                                   PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT).build());
+        monitorInternal.processEvents();
+
+        final Result result = new Result();
+        result.kilometers = length(trajectory) / 1000;
+        result.hours = (double) (trajectory.get(trajectory.size() - 1).getTime() - trajectory.get(0).getTime())
+                       / (60 * 60 * 1000);
+        result.updates = source.getDeliveredCount();
+        result.queries = places.queryCount;
+        result.requests = backend.getRequestCount();
+        result.regionEvents = places.regionEventCount;
+        result.regionHubEvents = places.regionHubEventCount;
+        result.bytesPerUpdate = bytes < 0 ? -1 : bytes / Math.max(1, result.updates);
+
+        System.out.println(String.format("%s: %.1f km in %.1f h, %d updates in %.1f ms, %.2f Places queries per km, "
+                                         + "%.1f geofencing requests per hour (%d fences added, %d removed), "
+                                         + "%d region events in %d hub events, %d bytes allocated per update",
+                                         name, result.kilometers, result.hours, result.updates, nanos / 1e6,
+                                         result.queries / result.kilometers, result.requests / result.hours,
+                                         backend.getAddedFenceCount(), backend.getRemovedFenceCount(),
+                                         result.regionEvents, result.regionHubEvents, result.bytesPerUpdate));
+        return result;
+    }
+
+    private static void gate(final Result result, final double maxQueriesPerKilometer, final double maxRequestsPerHour,
+                             final long maxBytesPerUpdate) {
+        assertTrue("the Places queries per km should stay within the budget",
+                   result.queries / result.kilometers <= maxQueriesPerKilometer);
+        assertTrue("the geofencing requests per hour should stay within the budget",
+                   result.requests / result.hours <= maxRequestsPerHour);
+
+        // the allocation is not measured on every JVM
+        if (result.bytesPerUpdate >= 0) {
+            assertTrue("the allocation per location update should stay within the budget",
+                       result.bytesPerUpdate <= maxBytesPerUpdate);
+        }
+    }
+
+    private static void resetSharedState() {
+        PlacesMonitorPOICache.getSharedInstance().clear();
+        PlacesMonitorSoftwareGeofencer.getSharedInstance().clear();
+        PlacesMonitorLocationPolicy.getSharedInstance().reset();
+        PlacesMonitorLocationFilter.getSharedInstance().reset();
+        PlacesMonitorDispatcher.setCoverageSkipEnabled(true);
+        PlacesMonitorDispatcher.setRegionEventBatchingEnabled(false);
+    }
+
+    private static long allocatedBytes() {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return Long.MIN_VALUE;
+        }
+
+        return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // ========================================================================================
+    // layouts and trajectories
+    // ========================================================================================
+
+    private static List<PlacesMonitorPOI> gridLayout(final double[] center, final double size, final int count,
+            final int minRadius, final int radiusRange, final long seed) {
+        final Random random = new Random(seed);
+        final List<PlacesMonitorPOI> pois = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            final double[] position = offset(center, (random.nextDouble() - 0.5) * size, (random.nextDouble() - 0.5) * size);
+            pois.add(new PlacesMonitorPOI("id" + i, "name" + i, position[0], position[1], minRadius + random.nextInt(radiusRange)));
+        }
+
+        return pois;
+    }
+
+    private static List<PlacesMonitorPOI> corridorLayout(final double[] from, final double[] to, final double width,
+            final int count, final int minRadius, final int radiusRange, final long seed) {
+        final Random random = new Random(seed);
+        final List<PlacesMonitorPOI> pois = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            final double ratio = random.nextDouble();
+            final double[] position = offset(new double[] {from[0] + ratio * (to[0] - from[0]), from[1] + ratio * (to[1] - from[1])},
+                                             (random.nextDouble() - 0.5) * width, (random.nextDouble() - 0.5) * width);
+            pois.add(new PlacesMonitorPOI("id" + i, "name" + i, position[0], position[1], minRadius + random.nextInt(radiusRange)));
+        }
+
+        return pois;
+    }
+
+    /**
+     * @return a walk through the downtown grid at 1.4 meters per second, turning at random crossings every 100 meters
+     */
+    private static List<PlacesMonitorTraceLocationSource.Fix> downtownWalk(final long duration, final long seed) {
+        final Random random = new Random(seed);
+        final List<PlacesMonitorTraceLocationSource.Fix> fixes = new ArrayList<>();
+        final double speed = 1.4;
+        final double half = DOWNTOWN_SIZE / 2;
+        double north = 0;
+        double east = 0;
+        int direction = 0;
+        double sinceCrossing = 0;
+
+        for (long time = 0; time < duration; time += FIX_INTERVAL) {
+            final double step = speed * FIX_INTERVAL / 1000;
+            north += direction == 0 ? step : direction == 2 ? -step : 0;
+            east += direction == 1 ? step : direction == 3 ? -step : 0;
+            sinceCrossing += step;
+
+            if (Math.abs(north) > half || Math.abs(east) > half) {
+                // turn back into downtown
+                direction = (direction + 2) % 4;
+                sinceCrossing = 0;
+            } else if (sinceCrossing >= 100) {
+                direction = (direction + 3 + random.nextInt(3)) % 4;
+                sinceCrossing = 0;
+            }
+
+            final double[] position = offset(DOWNTOWN, north, east);
+            fixes.add(new PlacesMonitorTraceLocationSource.Fix(time, position[0], position[1], 10, (float) speed));
+        }
+
+        return fixes;
+    }
+
+    private static void stay(final List<PlacesMonitorTraceLocationSource.Fix> trajectory, final double[] place,
+                             final int minutes) {
+        for (long t = 0; t < minutes * 60 * 1000L; t += FIX_INTERVAL) {
+            trajectory.add(new PlacesMonitorTraceLocationSource.Fix(nextTime(trajectory), place[0], place[1], 10, 0));
+        }
+    }
+
+    private static void travel(final List<PlacesMonitorTraceLocationSource.Fix> trajectory, final double[] from,
+                               final double[] to, final double speed) {
+        final double distance = PlacesMonitorGeoUtil.distanceInMeters(from[0], from[1], to[0], to[1]);
+        final int steps = (int) Math.ceil(distance / speed / (FIX_INTERVAL / 1000.0));
+
+        for (int i = 0; i < steps; i++) {
+            final double ratio = (double) i / steps;
+            trajectory.add(new PlacesMonitorTraceLocationSource.Fix(nextTime(trajectory), from[0] + ratio * (to[0] - from[0]),
+                           from[1] + ratio * (to[1] - from[1]), 10, (float) speed));
+        }
+    }
+
+    private static long nextTime(final List<PlacesMonitorTraceLocationSource.Fix> trajectory) {
+        return trajectory.isEmpty() ? 0 : trajectory.get(trajectory.size() - 1).getTime() + FIX_INTERVAL;
+    }
+
+    private static double length(final List<PlacesMonitorTraceLocationSource.Fix> trajectory) {
+        double length = 0;
+
+        for (int i = 1; i < trajectory.size(); i++) {
+            length += PlacesMonitorGeoUtil.distanceInMeters(trajectory.get(i - 1).getLatitude(),
+                      trajectory.get(i - 1).getLongitude(), trajectory.get(i).getLatitude(), trajectory.get(i).getLongitude());
+        }
+
+        return length;
+    }
+
+    /**
+     * @return the position the given distances north and east of the origin
+     */
+    private static double[] offset(final double[] origin, final double north, final double east) {
+        return new double[] {origin[0] + north / METERS_PER_DEGREE_LATITUDE,
+                             origin[1] + east / (METERS_PER_DEGREE_LATITUDE * Math.cos(Math.toRadians(origin[0])))
+                            };
+    }
+
+    // ========================================================================================
+    // Places extension stand-in
+    // ========================================================================================
+
+    /**
+     * Answers the nearby places requests with the nearest POIs of the layout, hands the requests of the monitor back to
+     * it and counts the region events.
+     */
+    private static final class PlacesStandIn implements PlacesMonitorDispatcher.EventDispatcher {
+        private final PlacesMonitorInternal monitorInternal;
+        private final PlacesMonitorPOIRTree tree;
+        int queryCount;
+        int regionEventCount;
+        int regionHubEventCount;
+
+        PlacesStandIn(final PlacesMonitorInternal monitorInternal, final PlacesMonitorPOIRTree tree) {
+            this.monitorInternal = monitorInternal;
+            this.tree = tree;
+        }
+
+        @Override
+        public void dispatchEvent(final Event event, final ExtensionErrorCallback<ExtensionError> errorCallback) {
+            if (PlacesMonitorTestConstants.EventType.MONITOR.equalsIgnoreCase(event.getType())) {
+                monitorInternal.queueEvent(event);
+                return;
+            }
+
+            final EventData eventData = event.getData();
+            final String requestType = eventData.optString(PlacesMonitorTestConstants.EventDataKeys.REQUEST_TYPE, null);
+
+            if (PlacesMonitorTestConstants.EventDataKeys.REQUEST_TYPE_GET_NEARBY_PLACES.equals(requestType)) {
+                queryCount++;
+                // the monitor hears its own request on the hub before the response
+                monitorInternal.recordNearbyQuery(event);
+                final List<PlacesMonitorPOI> pois = tree.nearest(
+                        eventData.optDouble(PlacesMonitorTestConstants.EventDataKeys.LATITUDE, 0),
+                        eventData.optDouble(PlacesMonitorTestConstants.EventDataKeys.LONGITUDE, 0),
+                        eventData.optInteger(PlacesMonitorTestConstants.EventDataKeys.PLACES_COUNT,
+                                             PlacesMonitorTestConstants.NEARBY_GEOFENCES_COUNT));
+                final EventData responseData = new EventData();
+                responseData.putTypedList(PlacesMonitorTestConstants.EventDataKeys.NEAR_BY_PLACES_LIST, pois,
+                                          new PlacesMonitorPOIVariantSerializer());
+                monitorInternal.queueEvent(new Event.Builder("responsegetnearbyplaces",
+                                           PlacesMonitorTestConstants.EventType.PLACES,
+                                           PlacesMonitorTestConstants.EventSource.RESPONSE_CONTENT).setData(responseData).build());
+            } else if (PlacesMonitorTestConstants.EventDataKeys.REQUEST_TYPE_PROCESS_REGION_EVENT.equals(requestType)) {
+                regionEventCount++;
+                regionHubEventCount++;
+            } else if (PlacesMonitorTestConstants.EventDataKeys.REQUEST_TYPE_PROCESS_REGION_EVENTS.equals(requestType)) {
+                regionEventCount += eventData.optStringList(PlacesMonitorTestConstants.EventDataKeys.REGION_IDS,
+                                    new ArrayList<String>()).size();
+                regionHubEventCount++;
+            }
+        }
+    }
+
+    private static final class Result {
+        double kilometers;
+        double hours;
+        int updates;
+        int queries;
+        int requests;
+        int regionEvents;
+        int regionHubEvents;
+        long bytesPerUpdate;
+    }
+}
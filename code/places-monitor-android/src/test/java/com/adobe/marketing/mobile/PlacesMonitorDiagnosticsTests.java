@@ -0,0 +1,245 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorDiagnosticsTests.java
+//
+
+package com.adobe.marketing.mobile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PlacesMonitorDiagnosticsTests {
+
+    @Before
+    public void before() {
+        PlacesMonitorDiagnostics.configureSinks(null);
+        PlacesMonitorDiagnostics.setSinks(null);
+    }
+
+    @After
+    public void after() {
+        PlacesMonitorDiagnostics.configureSinks(null);
+        PlacesMonitorDiagnostics.setSinks(null);
+    }
+
+    // ========================================================================================
+    // record
+    // ========================================================================================
+
+    @Test
+    public void test_record_deliversToSinksAsynchronously() throws Exception {
+        // setup
+        final CountDownLatch delivered = new CountDownLatch(2);
+        final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+        final Thread callerThread = Thread.currentThread();
+        final List<Thread> deliveryThreads = Collections.synchronizedList(new ArrayList<Thread>());
+        List<PlacesMonitorDiagnostics.Sink> sinks = new ArrayList<>();
+        sinks.add(new PlacesMonitorDiagnostics.Sink() {
+            @Override
+            public void onDiagnostic(final long timestamp, final String title, final String message) {
+                messages.add(title + "|" + message);
+                deliveryThreads.add(Thread.currentThread());
+                delivered.countDown();
+            }
+        });
+        PlacesMonitorDiagnostics.setSinks(sinks);
+
+        // test
+        PlacesMonitorDiagnostics.record("title1", "message1");
+        PlacesMonitorDiagnostics.record("title2", "message2");
+
+        // verify
+        assertTrue("messages should be delivered", delivered.await(5, TimeUnit.SECONDS));
+        assertEquals("messages should be delivered in order", "title1|message1", messages.get(0));
+        assertEquals("messages should be delivered in order", "title2|message2", messages.get(1));
+        assertNotSame("messages should not be delivered on the caller thread", callerThread, deliveryThreads.get(0));
+    }
+
+    @Test
+    public void test_record_when_sinkFails_then_otherSinksStillCalled() throws Exception {
+        // setup
+        final CountDownLatch delivered = new CountDownLatch(1);
+        List<PlacesMonitorDiagnostics.Sink> sinks = new ArrayList<>();
+        sinks.add(new PlacesMonitorDiagnostics.Sink() {
+            @Override
+            public void onDiagnostic(final long timestamp, final String title, final String message) {
+                throw new IllegalStateException("failing sink");
+            }
+        });
+        sinks.add(new PlacesMonitorDiagnostics.Sink() {
+            @Override
+            public void onDiagnostic(final long timestamp, final String title, final String message) {
+                delivered.countDown();
+            }
+        });
+        PlacesMonitorDiagnostics.setSinks(sinks);
+
+        // test
+        PlacesMonitorDiagnostics.record("title", "message");
+
+        // verify
+        assertTrue("second sink should be called", delivered.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void test_record_when_queueFull_then_messagesDropped() throws Exception {
+        // setup
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        List<PlacesMonitorDiagnostics.Sink> sinks = new ArrayList<>();
+        sinks.add(new PlacesMonitorDiagnostics.Sink() {
+            @Override
+            public void onDiagnostic(final long timestamp, final String title, final String message) {
+                blocked.countDown();
+
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        PlacesMonitorDiagnostics.setSinks(sinks);
+        PlacesMonitorDiagnostics.record("blocking", "message");
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        final int droppedBefore = PlacesMonitorDiagnostics.getDroppedCount();
+
+        // test
+        for (int i = 0; i < PlacesMonitorTestConstants.Diagnostics.QUEUE_CAPACITY + 10; i++) {
+            PlacesMonitorDiagnostics.record("title", "message" + i);
+        }
+
+        // verify
+        assertEquals("messages beyond the queue capacity should be dropped", 10,
+                     PlacesMonitorDiagnostics.getDroppedCount() - droppedBefore);
+        release.countDown();
+    }
+
+    // ========================================================================================
+    // configureSinks
+    // ========================================================================================
+
+    @Test
+    public void test_configureSinks() {
+        // test
+        PlacesMonitorDiagnostics.configureSinks(" notification, ringbuffer ,unknown");
+
+        // verify
+        List<PlacesMonitorDiagnostics.Sink> sinks = PlacesMonitorDiagnostics.getSinks();
+        assertEquals("known sinks should be configured", 2, sinks.size());
+        assertTrue(sinks.get(0) instanceof PlacesMonitorDiagnostics.LocalNotificationSink);
+        assertTrue(sinks.get(1) instanceof PlacesMonitorDiagnostics.RingBufferSink);
+    }
+
+    @Test
+    public void test_configureSinks_when_sameConfiguration_then_sinksKept() {
+        // setup
+        PlacesMonitorDiagnostics.configureSinks(PlacesMonitorTestConstants.Diagnostics.SINK_RING_BUFFER);
+        List<PlacesMonitorDiagnostics.Sink> sinks = PlacesMonitorDiagnostics.getSinks();
+
+        // test
+        PlacesMonitorDiagnostics.configureSinks(PlacesMonitorTestConstants.Diagnostics.SINK_RING_BUFFER);
+
+        // verify
+        assertSame("the ring buffer should be kept", sinks.get(0), PlacesMonitorDiagnostics.getSinks().get(0));
+    }
+
+    @Test
+    public void test_configureSinks_when_disabled() {
+        // setup
+        PlacesMonitorDiagnostics.configureSinks(PlacesMonitorTestConstants.Diagnostics.SINK_RING_BUFFER);
+
+        // test
+        PlacesMonitorDiagnostics.configureSinks(null);
+
+        // verify
+        assertTrue("no sink should be configured", PlacesMonitorDiagnostics.getSinks().isEmpty());
+    }
+
+    // ========================================================================================
+    // RingBufferSink
+    // ========================================================================================
+
+    @Test
+    public void test_ringBufferSink_keepsMostRecentEntries() {
+        // setup
+        PlacesMonitorDiagnostics.RingBufferSink sink = new PlacesMonitorDiagnostics.RingBufferSink(3);
+
+        // test
+        for (int i = 0; i < 5; i++) {
+            sink.onDiagnostic(i, "title", "message" + i);
+        }
+
+        // verify
+        List<String> entries = sink.getEntries();
+        assertEquals("only the capacity should be retained", 3, entries.size());
+        assertEquals("oldest entries should be dropped", "2 title: message2", entries.get(0));
+        assertEquals("4 title: message4", entries.get(2));
+    }
+
+    // ========================================================================================
+    // FileSink
+    // ========================================================================================
+
+    @Test
+    public void test_fileSink_appendsAndStartsOver() throws Exception {
+        // setup
+        File file = File.createTempFile("diagnostics", ".log");
+        file.deleteOnExit();
+        PlacesMonitorDiagnostics.FileSink sink = new PlacesMonitorDiagnostics.FileSink(file, 30);
+
+        // test
+        sink.onDiagnostic(1, "title", "message1");
+        sink.onDiagnostic(2, "title", "message2");
+
+        // verify
+        assertEquals("messages should be appended", 2, readLines(file).size());
+
+        // test
+        sink.onDiagnostic(3, "title", "message3");
+
+        // verify
+        List<String> lines = readLines(file);
+        assertEquals("file should start over once full", 1, lines.size());
+        assertEquals("3 title: message3", lines.get(0));
+    }
+
+    private List<String> readLines(final File file) throws Exception {
+        List<String> lines = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+
+        return lines;
+    }
+}
@@ -43,6 +43,11 @@ public class PlacesMonitorDispatcherTests {
     @Before
     public void before() {
         PowerMockito.mockStatic(MobileCore.class);
+        PlacesMonitorPOICache.getSharedInstance().clear();
+        PlacesMonitorDispatcher.setNearbyPlacesCount(PlacesMonitorTestConstants.NEARBY_GEOFENCES_COUNT);
+        PlacesMonitorDispatcher.setRegionEventBatchingEnabled(false);
+        PlacesMonitorDispatcher.setCoverageSkipEnabled(true);
+        PlacesMonitorDispatcher.setEventDispatcher(null);
     }
 
 
@@ -88,6 +93,50 @@ public class PlacesMonitorDispatcherTests {
         assertNotNull("the extension error callback should not be null", extensionErrorCallback);
     }
 
+    @Test
+    public void test_dispatchLocation_withConfiguredPlacesCount() throws VariantException {
+        // setup
+        Location location = new Location("testProvider");
+        Mockito.when(MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(true);
+        PlacesMonitorDispatcher.setNearbyPlacesCount(50);
+
+        // setup argument captors
+        final ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+
+        // test
+        PlacesMonitorDispatcher.dispatchLocation(location);
+
+        // verify
+        verifyStatic(MobileCore.class, Mockito.times(1));
+        MobileCore.dispatchEvent(eventCaptor.capture(), any(ExtensionErrorCallback.class));
+        assertEquals("the event data should contain the configured poi count" , 50,
+                     eventCaptor.getValue().getData().getInteger(PlacesMonitorTestConstants.EventDataKeys.PLACES_COUNT));
+    }
+
+    @Test
+    public void test_dispatchLocation_when_eventDispatcherSet() throws VariantException {
+        // setup
+        final List<Event> events = new ArrayList<>();
+        PlacesMonitorDispatcher.setEventDispatcher(new PlacesMonitorDispatcher.EventDispatcher() {
+            @Override
+            public void dispatchEvent(final Event event, final ExtensionErrorCallback<ExtensionError> errorCallback) {
+                events.add(event);
+            }
+        });
+
+        // test
+        PlacesMonitorDispatcher.dispatchLocation(37.82, -121.34);
+
+        // verify
+        verifyStatic(MobileCore.class, Mockito.times(0));
+        MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class));
+        assertEquals("the event should be handed to the event dispatcher", 1, events.size());
+        assertEquals("the event data should contain correct latitude", 37.82,
+                     events.get(0).getData().getDouble(PlacesMonitorTestConstants.EventDataKeys.LATITUDE), 0.0);
+        assertEquals("the event data should contain correct longitude", -121.34,
+                     events.get(0).getData().getDouble(PlacesMonitorTestConstants.EventDataKeys.LONGITUDE), 0.0);
+    }
+
     @Test
     public void test_dispatchLocation_when_locationIsNull() throws Exception{
         // setup
@@ -101,6 +150,62 @@ public class PlacesMonitorDispatcherTests {
         MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class));
     }
 
+    @Test
+    public void test_dispatchLocation_when_locationCoveredByCache() throws VariantException {
+        // setup
+        Location location = new Location("testProvider");
+        Mockito.when(MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(true);
+
+        // cache a response for the query around the location
+        List<PlacesMonitorPOI> pois = new ArrayList<>();
+        pois.add(new PlacesMonitorPOI("nearId", "near", location.getLatitude() + 0.001, location.getLongitude(), 100));
+        pois.add(new PlacesMonitorPOI("farId", "far", location.getLatitude() + 0.08, location.getLongitude(), 100));
+        PlacesMonitorPOICache.getSharedInstance().addPendingQuery(location.getLatitude(), location.getLongitude());
+        PlacesMonitorPOICache.getSharedInstance().cachePOIs(pois);
+
+        // the locations inside the last coverage are not skipped in refresh boundary mode
+        PlacesMonitorDispatcher.setCoverageSkipEnabled(false);
+        // the cache holds the nearest poi, the next ones may be outside the covered area
+        PlacesMonitorDispatcher.setNearbyPlacesCount(1);
+
+        // setup argument captors
+        final ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+
+        // test
+        PlacesMonitorDispatcher.dispatchLocation(location);
+
+        // verify that the cached nearby places event is dispatched instead of the places request
+        verifyStatic(MobileCore.class, Mockito.times(1));
+        MobileCore.dispatchEvent(eventCaptor.capture(), any(ExtensionErrorCallback.class));
+
+        Event event = eventCaptor.getValue();
+        assertEquals("the event name should be correct" , PlacesMonitorTestConstants.EVENTNAME_CACHED_NEARBY_PLACES, event.getName());
+        assertEquals("the event type should be correct" , PlacesMonitorTestConstants.EventType.MONITOR, event.getType());
+        assertEquals("the event source should be correct" , PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT, event.getSource());
+        List<PlacesMonitorPOI> cachedPOIs = event.getData().getTypedList(PlacesMonitorTestConstants.EventDataKeys.NEAR_BY_PLACES_LIST,
+                new PlacesMonitorPOIVariantSerializer());
+        assertEquals("the event data should contain the cached pois around the location", 1, cachedPOIs.size());
+        assertEquals("the event data should contain the cached pois around the location", "nearId", cachedPOIs.get(0).getIdentifier());
+    }
+
+    @Test
+    public void test_dispatchLocation_when_insideLastCoverage() {
+        // setup
+        Location location = new Location("testProvider");
+        List<PlacesMonitorPOI> pois = new ArrayList<>();
+        pois.add(new PlacesMonitorPOI("nearId", "near", location.getLatitude() + 0.001, location.getLongitude(), 100));
+        pois.add(new PlacesMonitorPOI("farId", "far", location.getLatitude() + 0.08, location.getLongitude(), 100));
+        PlacesMonitorPOICache.getSharedInstance().addPendingQuery(location.getLatitude(), location.getLongitude());
+        PlacesMonitorPOICache.getSharedInstance().cachePOIs(pois);
+
+        // test
+        PlacesMonitorDispatcher.dispatchLocation(location);
+
+        // verify that no event is dispatched
+        verifyStatic(MobileCore.class, Mockito.times(0));
+        MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class));
+    }
+
     // ========================================================================================
     // dispatchLocation's Callback
     // ========================================================================================
@@ -132,6 +237,82 @@ public class PlacesMonitorDispatcherTests {
     }
 
 
+    // ========================================================================================
+    // dispatchRefreshBoundaryExit
+    // ========================================================================================
+    @Test
+    public void test_dispatchRefreshBoundaryExit() {
+        // setup
+        Mockito.when(MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(true);
+        final ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+
+        // test
+        PlacesMonitorDispatcher.dispatchRefreshBoundaryExit();
+
+        // verify
+        verifyStatic(MobileCore.class, Mockito.times(1));
+        MobileCore.dispatchEvent(eventCaptor.capture(), any(ExtensionErrorCallback.class));
+
+        Event event = eventCaptor.getValue();
+        assertEquals("the event name should be correct" , PlacesMonitorTestConstants.EVENTNAME_UPDATE, event.getName());
+        assertEquals("the event type should be correct" , PlacesMonitorTestConstants.EventType.MONITOR, event.getType());
+        assertEquals("the event source should be correct" , PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT, event.getSource());
+    }
+
+    // ========================================================================================
+    // dispatchDroppedLocation
+    // ========================================================================================
+    @Test
+    public void test_dispatchDroppedLocation_when_refreshBoundaryMode_then_retriedThenDispatched() throws VariantException {
+        // setup
+        final List<Event> events = new ArrayList<>();
+        PlacesMonitorDispatcher.setEventDispatcher(new PlacesMonitorDispatcher.EventDispatcher() {
+            @Override
+            public void dispatchEvent(final Event event, final ExtensionErrorCallback<ExtensionError> errorCallback) {
+                events.add(event);
+            }
+        });
+        PlacesMonitorDispatcher.setCoverageSkipEnabled(false);
+        final Location location = new Location("testProvider");
+
+        // test
+        for (int i = 0; i <= PlacesMonitorTestConstants.RefreshBoundary.MAX_DROPPED_FIX_RETRIES; i++) {
+            PlacesMonitorDispatcher.dispatchDroppedLocation(location);
+        }
+
+        // verify
+        assertEquals("a new location should be requested for each retry, then the location dispatched",
+                     PlacesMonitorTestConstants.RefreshBoundary.MAX_DROPPED_FIX_RETRIES + 1, events.size());
+
+        for (int i = 0; i < PlacesMonitorTestConstants.RefreshBoundary.MAX_DROPPED_FIX_RETRIES; i++) {
+            assertEquals("a new location should be requested", PlacesMonitorTestConstants.EVENTNAME_UPDATE, events.get(i).getName());
+        }
+
+        final Event event = events.get(PlacesMonitorTestConstants.RefreshBoundary.MAX_DROPPED_FIX_RETRIES);
+        assertEquals("the dropped location should be dispatched to Places", PlacesMonitorTestConstants.EventType.PLACES, event.getType());
+        assertEquals("the dropped location should be dispatched to Places",
+                     PlacesMonitorTestConstants.EventDataKeys.REQUEST_TYPE_GET_NEARBY_PLACES,
+                     event.getData().getString2(PlacesMonitorTestConstants.EventDataKeys.REQUEST_TYPE));
+    }
+
+    @Test
+    public void test_dispatchDroppedLocation_when_coverageSkipEnabled_then_ignored() {
+        // setup
+        final List<Event> events = new ArrayList<>();
+        PlacesMonitorDispatcher.setEventDispatcher(new PlacesMonitorDispatcher.EventDispatcher() {
+            @Override
+            public void dispatchEvent(final Event event, final ExtensionErrorCallback<ExtensionError> errorCallback) {
+                events.add(event);
+            }
+        });
+
+        // test
+        PlacesMonitorDispatcher.dispatchDroppedLocation(new Location("testProvider"));
+
+        // verify, the next location update replaces the dropped location
+        assertTrue("no event should be dispatched", events.isEmpty());
+    }
+
     // ========================================================================================
     // dispatchRegionEvent
     // ========================================================================================
@@ -199,6 +380,88 @@ public class PlacesMonitorDispatcherTests {
     }
 
 
+    @Test
+    public void test_dispatchRegionEvent_when_batchingEnabled() throws VariantException {
+        // setup
+        PlacesMonitorDispatcher.setRegionEventBatchingEnabled(true);
+        Mockito.when(MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(true);
+        final ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+
+        // a dense venue triggering 12 geofences at once
+        List<Geofence> geofences = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            geofences.add(new Geofence.Builder().setRequestId("geofenceId" + i).setCircularRegion(15.0,15.0, 50).setTransitionTypes(1).setExpirationDuration(200).build());
+        }
+        geofences.add(null);
+
+        // test
+        PlacesMonitorDispatcher.dispatchRegionEvent(geofences, "entry");
+
+        // verify a single event carries all the regions
+        verifyStatic(MobileCore.class, Mockito.times(1));
+        MobileCore.dispatchEvent(eventCaptor.capture(), any(ExtensionErrorCallback.class));
+        Event event = eventCaptor.getValue();
+        assertEquals("the event type should be correct" , PlacesMonitorTestConstants.EventType.PLACES, event.getType());
+        assertEquals("the event source should be correct" , PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT, event.getSource());
+        EventData eventData = event.getData();
+        List<String> regionIds = eventData.getStringList(PlacesMonitorTestConstants.EventDataKeys.REGION_IDS);
+        assertEquals("the event data should contain all the regions", 12, regionIds.size());
+        assertEquals("the event data should contain the regions in order", "geofenceId0", regionIds.get(0));
+        assertEquals("the event data should contain correct regionEventType" , "entry" , eventData.getString2(PlacesMonitorTestConstants.EventDataKeys.REGION_EVENT_TYPE));
+        assertEquals("the event data should contain correct requestType" , PlacesMonitorTestConstants.EventDataKeys.REQUEST_TYPE_PROCESS_REGION_EVENTS, eventData.getString2(PlacesMonitorConstants.EventDataKeys.REQUEST_TYPE));
+    }
+
+    @Test
+    public void test_dispatchRegionEvents_when_batchingEnabled() throws VariantException {
+        // setup
+        PlacesMonitorDispatcher.setRegionEventBatchingEnabled(true);
+        Mockito.when(MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(true);
+        final ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+        List<String> regionIds = new ArrayList<>();
+        regionIds.add("regionId1");
+        regionIds.add("regionId2");
+
+        // test
+        PlacesMonitorDispatcher.dispatchRegionEvents(regionIds, "exit");
+
+        // verify
+        verifyStatic(MobileCore.class, Mockito.times(1));
+        MobileCore.dispatchEvent(eventCaptor.capture(), any(ExtensionErrorCallback.class));
+        EventData eventData = eventCaptor.getValue().getData();
+        assertEquals("the event data should contain all the regions", regionIds, eventData.getStringList(PlacesMonitorTestConstants.EventDataKeys.REGION_IDS));
+        assertEquals("the event data should contain correct regionEventType" , "exit" , eventData.getString2(PlacesMonitorTestConstants.EventDataKeys.REGION_EVENT_TYPE));
+    }
+
+    @Test
+    public void test_dispatchRegionEvents() throws VariantException {
+        // setup
+        Mockito.when(MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(true);
+        final ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+        List<String> regionIds = new ArrayList<>();
+        regionIds.add("regionId1");
+        regionIds.add("regionId2");
+
+        // test
+        PlacesMonitorDispatcher.dispatchRegionEvents(regionIds, "exit");
+
+        // verify
+        verifyStatic(MobileCore.class, Mockito.times(2));
+        MobileCore.dispatchEvent(eventCaptor.capture(), any(ExtensionErrorCallback.class));
+        EventData eventData = eventCaptor.getAllValues().get(0).getData();
+        assertEquals("the event data should contain correct regionId" , "regionId1", eventData.getString2(PlacesMonitorTestConstants.EventDataKeys.REGION_ID));
+        assertEquals("the event data should contain correct regionEventType" , "exit" , eventData.getString2(PlacesMonitorTestConstants.EventDataKeys.REGION_EVENT_TYPE));
+    }
+
+    @Test
+    public void test_dispatchRegionEvents_when_emptyRegions() {
+        // test
+        PlacesMonitorDispatcher.dispatchRegionEvents(new ArrayList<String>(), "entry");
+
+        // verify dispatch is not called
+        verifyStatic(MobileCore.class, Mockito.times(0));
+        MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class));
+    }
+
     @Test
     public void test_dispatchRegionEvent_when_nullGeofences() {
         // setup
@@ -0,0 +1,220 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorEventLaneTests.java
+//
+
+package com.adobe.marketing.mobile;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PlacesMonitorEventLaneTests {
+
+    private PlacesMonitorEventLane lane;
+
+    @Before
+    public void before() {
+        lane = new PlacesMonitorEventLane(3);
+    }
+
+    // ========================================================================================
+    // add, peek and poll
+    // ========================================================================================
+
+    @Test
+    public void test_poll_when_empty() {
+        // verify
+        assertTrue(lane.isEmpty());
+        assertNull(lane.peek());
+        assertNull(lane.poll());
+    }
+
+    @Test
+    public void test_poll_then_queueOrderKept() {
+        // setup
+        lane.add(entry(1));
+        lane.add(entry(2));
+
+        // test
+        final PlacesMonitorEventLane.Entry peeked = lane.peek();
+        final PlacesMonitorEventLane.Entry first = lane.poll();
+        final PlacesMonitorEventLane.Entry second = lane.poll();
+
+        // verify
+        assertSame("peek should not remove the entry", peeked, first);
+        assertEquals(1, first.getSequence());
+        assertEquals(2, second.getSequence());
+        assertTrue(lane.isEmpty());
+    }
+
+    // ========================================================================================
+    // load shedding
+    // ========================================================================================
+
+    @Test
+    public void test_add_when_full_then_sameKeySuperseded() {
+        // setup
+        lane.add(entry(1, "update"));
+        lane.add(entry(2, "start"));
+        lane.add(entry(3, "update"));
+
+        // test
+        final int droppedCount = lane.add(entry(4, "update"));
+
+        // verify
+        assertEquals("the queued entries with the same key should be dropped", 2, droppedCount);
+        assertEquals(2, lane.size());
+        assertEquals(2, lane.poll().getSequence());
+        assertEquals("the newest entry should win", 4, lane.poll().getSequence());
+        assertEquals(2, lane.getDroppedCount());
+    }
+
+    @Test
+    public void test_add_when_full_and_noSameKey_then_oldestDropped() {
+        // setup
+        lane.add(entry(1, "update"));
+        lane.add(entry(2, null));
+        lane.add(entry(3, "start"));
+
+        // test
+        final int droppedCount = lane.add(entry(4, null));
+
+        // verify
+        assertEquals(1, droppedCount);
+        assertEquals("the lane should stay at its capacity", 3, lane.size());
+        assertEquals(2, lane.peek().getSequence());
+        assertEquals(1, lane.getDroppedCount());
+    }
+
+    @Test
+    public void test_add_when_notFull_then_nothingDropped() {
+        // test
+        lane.add(entry(1, "update"));
+        final int droppedCount = lane.add(entry(2, "update"));
+
+        // verify
+        assertEquals("the entries should only be superseded in a full lane", 0, droppedCount);
+        assertEquals(2, lane.size());
+        assertEquals(0, lane.getDroppedCount());
+    }
+
+    // ========================================================================================
+    // fold
+    // ========================================================================================
+
+    @Test
+    public void test_fold_then_replacedEntryRemovedAndNewestQueuedLast() {
+        // setup
+        lane.add(entry(1, "start"));
+        lane.add(entry(2, "update"));
+
+        // test
+        final boolean folded = lane.fold(entry(3, "start"), null);
+
+        // verify
+        assertTrue(folded);
+        assertEquals(2, lane.size());
+        assertEquals("the entries queued in between should run first", 2, lane.poll().getSequence());
+        assertEquals("the folded entry should be queued last", 3, lane.poll().getSequence());
+        assertEquals(1, lane.getFoldedCount());
+        assertEquals(0, lane.getDroppedCount());
+    }
+
+    @Test
+    public void test_fold_when_barrierQueuedAfter_then_notFolded() {
+        // setup
+        lane.add(entry(1, "update"));
+        lane.add(entry(2, "start"));
+
+        // test
+        final boolean folded = lane.fold(entry(3, "update"), "start");
+
+        // verify
+        assertFalse("the entry should not be moved across the barrier", folded);
+        assertEquals(2, lane.size());
+        assertEquals(1, lane.peek().getSequence());
+        assertEquals(0, lane.getFoldedCount());
+    }
+
+    @Test
+    public void test_fold_when_noSameKey() {
+        // setup
+        lane.add(entry(1, "start"));
+
+        // test
+        final boolean folded = lane.fold(entry(2, null), null);
+        final boolean foldedUpdate = lane.fold(entry(3, "update"), null);
+
+        // verify
+        assertFalse(folded);
+        assertFalse(foldedUpdate);
+        assertEquals(1, lane.size());
+    }
+
+    // ========================================================================================
+    // removeOlderThan
+    // ========================================================================================
+
+    @Test
+    public void test_removeOlderThan() {
+        // setup
+        lane.add(entry(1));
+        lane.add(entry(3));
+        lane.add(entry(6));
+
+        // test
+        final int removedCount = lane.removeOlderThan(4);
+
+        // verify
+        assertEquals("the entries queued before the sequence should be removed", 2, removedCount);
+        assertEquals(1, lane.size());
+        assertEquals(6, lane.peek().getSequence());
+    }
+
+    @Test
+    public void test_removeOlderThan_when_noOlderEntry() {
+        // setup
+        lane.add(entry(5));
+
+        // test
+        final int removedCount = lane.removeOlderThan(5);
+
+        // verify
+        assertEquals(0, removedCount);
+        assertEquals(1, lane.size());
+    }
+
+    @Test
+    public void test_removeOlderThan_then_notCountedAsDropped() {
+        // setup
+        lane.add(entry(1));
+
+        // test
+        lane.removeOlderThan(2);
+
+        // verify
+        assertEquals(0, lane.getDroppedCount());
+    }
+
+    private static PlacesMonitorEventLane.Entry entry(final long sequence) {
+        return entry(sequence, "event " + sequence);
+    }
+
+    private static PlacesMonitorEventLane.Entry entry(final long sequence, final String sheddingKey) {
+        return new PlacesMonitorEventLane.Entry(new Event.Builder("event " + sequence, "eventType", "eventSource").build(),
+                                                sheddingKey, 0, sequence);
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorEventRouterBenchmark.java
+//
+
+package com.adobe.marketing.mobile;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Routing cost per event of {@link PlacesMonitorEventRouter}, against the chain of {@code equalsIgnoreCase} comparisons
+ * on the type, source and name that it replaced.
+ * <p>
+ * Both include the classification of the event when it is queued, its lane and shedding key, and the stop check when it
+ * is processed. The table looks the event up once, the chain compared the type and source again at every step.
+ * <p>
+ * The events are a mix of mostly Places responses and update requests, with a few start, stop and unknown requests.
+ * <p>
+ * Benchmarks are skipped in the regular unit test run, run them with {@code ./gradlew test -Pbenchmark}.
+ */
+public class PlacesMonitorEventRouterBenchmark {
+
+    private static final int EVENT_COUNT = 1000000;
+    private static final int ROUNDS = 5;
+
+    // budget of the table routing, well above the measured cost
+    private static final double MAX_NANOS_PER_EVENT = 100;
+    private static final double MAX_BYTES_PER_EVENT = 1;
+
+    private final int[] handledCounts = new int[6];
+    private final PlacesMonitorEventLane controlLane = new PlacesMonitorEventLane(1);
+    private final PlacesMonitorEventLane responseLane = new PlacesMonitorEventLane(1);
+    private int controlCount;
+    private int keyedCount;
+    private int stopCount;
+    private PlacesMonitorEventRouter.Destination stopDestination;
+    private Event[] events;
+
+    @Before
+    public void before() {
+        Assume.assumeTrue(Boolean.getBoolean(PlacesMonitorTestConstants.BENCHMARK_PROPERTY));
+
+        final Event[] mix = new Event[] {
+            event(null, PlacesMonitorTestConstants.EventType.PLACES, PlacesMonitorTestConstants.EventSource.RESPONSE_CONTENT),
+            event(null, PlacesMonitorTestConstants.EventType.PLACES, PlacesMonitorTestConstants.EventSource.RESPONSE_CONTENT),
+            event(null, PlacesMonitorTestConstants.EventType.PLACES, PlacesMonitorTestConstants.EventSource.RESPONSE_CONTENT),
+            event(PlacesMonitorTestConstants.EVENTNAME_UPDATE, PlacesMonitorTestConstants.EventType.MONITOR,
+                  PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT),
+            event(PlacesMonitorTestConstants.EVENTNAME_UPDATE, PlacesMonitorTestConstants.EventType.MONITOR,
+                  PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT),
+            event(PlacesMonitorTestConstants.EVENTNAME_CACHED_NEARBY_PLACES, PlacesMonitorTestConstants.EventType.MONITOR,
+                  PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT),
+            event(PlacesMonitorTestConstants.EVENTNAME_START, PlacesMonitorTestConstants.EventType.MONITOR,
+                  PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT),
+            event(PlacesMonitorTestConstants.EVENTNAME_STOP, PlacesMonitorTestConstants.EventType.MONITOR,
+                  PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT),
+            event("Invalid API", PlacesMonitorTestConstants.EventType.MONITOR,
+                  PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT)
+        };
+
+        events = new Event[EVENT_COUNT];
+
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            events[i] = mix[(i * 7) % mix.length];
+        }
+    }
+
+    @Test
+    public void benchmark_routing() {
+        final PlacesMonitorEventRouter router = createRouter();
+        long tableNanos = Long.MAX_VALUE;
+        long chainNanos = Long.MAX_VALUE;
+        long tableBytes = Long.MAX_VALUE;
+
+        for (int round = 0; round < ROUNDS; round++) {
+            final long startBytes = allocatedBytes();
+            long start = System.nanoTime();
+
+            for (Event event : events) {
+                routeByTable(router, event);
+            }
+
+            tableNanos = Math.min(tableNanos, System.nanoTime() - start);
+            tableBytes = Math.min(tableBytes, allocatedBytes() - startBytes);
+
+            start = System.nanoTime();
+
+            for (Event event : events) {
+                routeByChain(event);
+            }
+
+            chainNanos = Math.min(chainNanos, System.nanoTime() - start);
+        }
+
+        final double tableNanosPerEvent = (double) tableNanos / EVENT_COUNT;
+        final double tableBytesPerEvent = (double) tableBytes / EVENT_COUNT;
+        System.out.println(String.format("event routing: table %.1f ns/event, %.2f bytes/event, if/else chain %.1f ns/event "
+                                         + "(%d events handled, %d control, %d keyed, %d stop)", tableNanosPerEvent,
+                                         tableBytesPerEvent, (double) chainNanos / EVENT_COUNT, handledCount(),
+                                         controlCount, keyedCount, stopCount));
+
+        assertTrue("routing an event should stay within " + MAX_NANOS_PER_EVENT + " ns",
+                   tableNanosPerEvent <= MAX_NANOS_PER_EVENT);
+
+        if (tableBytes >= 0) {
+            assertTrue("routing an event should not allocate", tableBytesPerEvent <= MAX_BYTES_PER_EVENT);
+        }
+    }
+
+    /**
+     * @return a router with the routes of {@link PlacesMonitorInternal}
+     */
+    private PlacesMonitorEventRouter createRouter() {
+        final PlacesMonitorEventRouter router = new PlacesMonitorEventRouter();
+        router.register(PlacesMonitorTestConstants.EventType.MONITOR, PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT,
+                        PlacesMonitorTestConstants.EVENTNAME_START, controlLane, PlacesMonitorTestConstants.EVENTNAME_START,
+                        handler(0));
+        stopDestination = router.register(PlacesMonitorTestConstants.EventType.MONITOR,
+                                          PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT,
+                                          PlacesMonitorTestConstants.EVENTNAME_STOP, controlLane,
+                                          PlacesMonitorTestConstants.EVENTNAME_START, handler(1));
+        router.register(PlacesMonitorTestConstants.EventType.MONITOR, PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT,
+                        PlacesMonitorTestConstants.EVENTNAME_UPDATE, controlLane, PlacesMonitorTestConstants.EVENTNAME_UPDATE,
+                        handler(2));
+        router.register(PlacesMonitorTestConstants.EventType.MONITOR, PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT,
+                        PlacesMonitorTestConstants.EVENTNAME_CACHED_NEARBY_PLACES, responseLane,
+                        PlacesMonitorTestConstants.EVENTNAME_CACHED_NEARBY_PLACES, handler(3));
+        router.register(PlacesMonitorTestConstants.EventType.MONITOR, PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT,
+                        null, controlLane, null, handler(4));
+        router.register(PlacesMonitorTestConstants.EventType.PLACES, PlacesMonitorTestConstants.EventSource.RESPONSE_CONTENT,
+                        null, responseLane, null, handler(5));
+        return router;
+    }
+
+    /**
+     * The routing of {@code PlacesMonitorInternal}, the event is looked up once when queued.
+     */
+    private void routeByTable(final PlacesMonitorEventRouter router, final Event event) {
+        final PlacesMonitorEventRouter.Destination destination = router.find(event);
+
+        if (destination.getLane() == controlLane) {
+            controlCount++;
+        }
+
+        if (destination.getSheddingKey(event) != null) {
+            keyedCount++;
+        }
+
+        if (destination == stopDestination) {
+            stopCount++;
+        }
+
+        destination.getHandler().handle(event);
+    }
+
+    /**
+     * The routing of {@code PlacesMonitorInternal} before the routing table: the lane, the shedding key and the stop
+     * check each compared the type and source again.
+     */
+    private void routeByChain(final Event event) {
+        if (isControlEvent(event)) {
+            controlCount++;
+        }
+
+        if (sheddingKeyByChain(event) != null) {
+            keyedCount++;
+        }
+
+        if (isControlEvent(event) && PlacesMonitorTestConstants.EVENTNAME_STOP.equals(event.getName())) {
+            stopCount++;
+        }
+
+        if (PlacesMonitorTestConstants.EventType.MONITOR.equalsIgnoreCase(event.getType()) &&
+                PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT.equalsIgnoreCase(event.getSource())) {
+            final String eventName = event.getName();
+
+            if (PlacesMonitorTestConstants.EVENTNAME_START.equals(eventName)) {
+                handledCounts[0]++;
+            } else if (PlacesMonitorTestConstants.EVENTNAME_STOP.equals(eventName)) {
+                handledCounts[1]++;
+            } else if (PlacesMonitorTestConstants.EVENTNAME_UPDATE.equals(eventName)) {
+                handledCounts[2]++;
+            } else if (PlacesMonitorTestConstants.EVENTNAME_CACHED_NEARBY_PLACES.equals(eventName)) {
+                handledCounts[3]++;
+            } else {
+                handledCounts[4]++;
+            }
+        } else if (PlacesMonitorTestConstants.EventType.PLACES.equalsIgnoreCase(event.getType()) &&
+                   PlacesMonitorTestConstants.EventSource.RESPONSE_CONTENT.equalsIgnoreCase(event.getSource())) {
+            handledCounts[5]++;
+        }
+    }
+
+    private static String sheddingKeyByChain(final Event event) {
+        if (isControlEvent(event) && PlacesMonitorTestConstants.EVENTNAME_STOP.equals(event.getName())) {
+            return PlacesMonitorTestConstants.EVENTNAME_START;
+        }
+
+        return event.getName();
+    }
+
+    private static boolean isControlEvent(final Event event) {
+        return PlacesMonitorTestConstants.EventType.MONITOR.equalsIgnoreCase(event.getType())
+               && PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT.equalsIgnoreCase(event.getSource())
+               && !PlacesMonitorTestConstants.EVENTNAME_CACHED_NEARBY_PLACES.equals(event.getName());
+    }
+
+    private PlacesMonitorEventRouter.Handler handler(final int index) {
+        return new PlacesMonitorEventRouter.Handler() {
+            @Override
+            public void handle(final Event event) {
+                handledCounts[index]++;
+            }
+        };
+    }
+
+    private int handledCount() {
+        int count = 0;
+
+        for (int handledCount : handledCounts) {
+            count += handledCount;
+        }
+
+        return count;
+    }
+
+    private static Event event(final String name, final String type, final String source) {
+        // a distinct copy of the strings, as the events received from the hub
+        return new Event.Builder(name == null ? null : new String(name), new String(type), new String(source)).build();
+    }
+
+    private static long allocatedBytes() {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return Long.MIN_VALUE;
+        }
+
+        return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
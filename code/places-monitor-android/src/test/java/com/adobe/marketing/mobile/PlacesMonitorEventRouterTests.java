@@ -0,0 +1,200 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorEventRouterTests.java
+//
+
+package com.adobe.marketing.mobile;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PlacesMonitorEventRouterTests {
+
+    private PlacesMonitorEventRouter router;
+    private List<String> handled;
+
+    @Before
+    public void before() {
+        router = new PlacesMonitorEventRouter();
+        handled = new ArrayList<>();
+        router.register(PlacesMonitorTestConstants.EventType.MONITOR, PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT,
+                        PlacesMonitorTestConstants.EVENTNAME_START, handler("start"));
+        router.register(PlacesMonitorTestConstants.EventType.MONITOR, PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT,
+                        null, handler("unknown request"));
+        router.register(PlacesMonitorTestConstants.EventType.PLACES, PlacesMonitorTestConstants.EventSource.RESPONSE_CONTENT,
+                        null, handler("response"));
+    }
+
+    // ========================================================================================
+    // dispatch
+    // ========================================================================================
+
+    @Test
+    public void test_dispatch_when_nameRegistered() {
+        // test
+        final boolean dispatched = router.dispatch(event(PlacesMonitorTestConstants.EVENTNAME_START,
+                                   PlacesMonitorTestConstants.EventType.MONITOR, PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT));
+
+        // verify
+        assertTrue(dispatched);
+        assertEquals(Arrays.asList("start"), handled);
+    }
+
+    @Test
+    public void test_dispatch_when_nameNotRegistered_then_defaultHandler() {
+        // test
+        router.dispatch(event("Invalid API", PlacesMonitorTestConstants.EventType.MONITOR,
+                              PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT));
+        router.dispatch(event(null, PlacesMonitorTestConstants.EventType.MONITOR,
+                              PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT));
+        router.dispatch(event("Near by Event", PlacesMonitorTestConstants.EventType.PLACES,
+                              PlacesMonitorTestConstants.EventSource.RESPONSE_CONTENT));
+
+        // verify
+        assertEquals(Arrays.asList("unknown request", "unknown request", "response"), handled);
+    }
+
+    @Test
+    public void test_dispatch_when_typeAndSourceNotLowerCase() {
+        // test
+        router.dispatch(event(PlacesMonitorTestConstants.EVENTNAME_START,
+                              PlacesMonitorTestConstants.EventType.MONITOR.toUpperCase(),
+                              PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT.toUpperCase()));
+
+        // verify
+        assertEquals("the type and source should be matched ignoring case", Arrays.asList("start"), handled);
+    }
+
+    @Test
+    public void test_dispatch_when_nameNotSameCase() {
+        // test
+        router.dispatch(event(PlacesMonitorTestConstants.EVENTNAME_START.toUpperCase(),
+                              PlacesMonitorTestConstants.EventType.MONITOR, PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT));
+
+        // verify
+        assertEquals("the name should be matched exactly", Arrays.asList("unknown request"), handled);
+    }
+
+    @Test
+    public void test_dispatch_when_noRoute() {
+        // test
+        final boolean dispatched = router.dispatch(event(PlacesMonitorTestConstants.EVENTNAME_START,
+                                   PlacesMonitorTestConstants.EventType.PLACES, PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT));
+        final boolean dispatchedNull = router.dispatch(null);
+
+        // verify
+        assertFalse(dispatched);
+        assertFalse(dispatchedNull);
+        assertTrue(handled.isEmpty());
+    }
+
+    // ========================================================================================
+    // register
+    // ========================================================================================
+
+    @Test
+    public void test_register_then_handlerReplaced() {
+        // setup
+        router.register(PlacesMonitorTestConstants.EventType.MONITOR, PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT,
+                        PlacesMonitorTestConstants.EVENTNAME_START, handler("new start"));
+
+        // test
+        router.dispatch(event(PlacesMonitorTestConstants.EVENTNAME_START, PlacesMonitorTestConstants.EventType.MONITOR,
+                              PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT));
+
+        // verify
+        assertEquals(Arrays.asList("new start"), handled);
+    }
+
+    @Test
+    public void test_register_when_invalid() {
+        // test
+        router.register(null, PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT, "name", handler("invalid"));
+        router.register(PlacesMonitorTestConstants.EventType.HUB, null, "name", handler("invalid"));
+        router.register(PlacesMonitorTestConstants.EventType.HUB, PlacesMonitorTestConstants.EventSource.SHARED_STATE,
+                        "name", null);
+
+        // verify
+        assertNull(router.route(event("name", PlacesMonitorTestConstants.EventType.HUB,
+                                      PlacesMonitorTestConstants.EventSource.SHARED_STATE)));
+    }
+
+    // ========================================================================================
+    // find
+    // ========================================================================================
+
+    @Test
+    public void test_find_when_laneRegistered() {
+        // setup
+        final PlacesMonitorEventLane lane = new PlacesMonitorEventLane(4);
+        final PlacesMonitorEventRouter.Destination registered = router.register(PlacesMonitorTestConstants.EventType.MONITOR,
+                PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT, PlacesMonitorTestConstants.EVENTNAME_STOP, lane,
+                PlacesMonitorTestConstants.EVENTNAME_START, handler("stop"));
+        final Event event = event(PlacesMonitorTestConstants.EVENTNAME_STOP, PlacesMonitorTestConstants.EventType.MONITOR,
+                                  PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT);
+
+        // test
+        final PlacesMonitorEventRouter.Destination destination = router.find(event);
+
+        // verify
+        assertSame(registered, destination);
+        assertSame(lane, destination.getLane());
+        assertEquals("the registered shedding key should be used", PlacesMonitorTestConstants.EVENTNAME_START,
+                     destination.getSheddingKey(event));
+        destination.getHandler().handle(event);
+        assertEquals(Arrays.asList("stop"), handled);
+    }
+
+    @Test
+    public void test_find_when_noSheddingKeyRegistered_then_eventNameUsed() {
+        // setup
+        final Event event = event("Near by Event", PlacesMonitorTestConstants.EventType.PLACES,
+                                  PlacesMonitorTestConstants.EventSource.RESPONSE_CONTENT);
+
+        // test
+        final PlacesMonitorEventRouter.Destination destination = router.find(event);
+
+        // verify
+        assertNotNull(destination);
+        assertNull(destination.getLane());
+        assertEquals("Near by Event", destination.getSheddingKey(event));
+    }
+
+    @Test
+    public void test_find_when_notRegistered() {
+        // verify
+        assertNull(router.find(event("name", PlacesMonitorTestConstants.EventType.HUB,
+                                     PlacesMonitorTestConstants.EventSource.SHARED_STATE)));
+        assertNull(router.find(null));
+    }
+
+    static Event event(final String name, final String type, final String source) {
+        return new Event.Builder(name, type, source).build();
+    }
+
+    private PlacesMonitorEventRouter.Handler handler(final String label) {
+        return new PlacesMonitorEventRouter.Handler() {
+            @Override
+            public void handle(final Event event) {
+                handled.add(label);
+            }
+        };
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorFenceDiffTests.java
+//
+
+package com.adobe.marketing.mobile;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PlacesMonitorFenceDiffTests {
+
+    // ========================================================================================
+    // geometryHash
+    // ========================================================================================
+
+    @Test
+    public void test_geometryHash_isStable() {
+        // setup
+        PlacesMonitorPOI poi1 = new PlacesMonitorPOI("id1", "name1", 22.22, 33.33, 100);
+        PlacesMonitorPOI poi2 = new PlacesMonitorPOI("id2", "other name", 22.22, 33.33, 100);
+
+        // verify
+        assertEquals("hash should have a fixed length", PlacesMonitorFenceDiff.GEOMETRY_HASH_LENGTH,
+                     PlacesMonitorFenceDiff.geometryHash(poi1).length());
+        assertEquals("hash should only depend on the geometry", PlacesMonitorFenceDiff.geometryHash(poi1),
+                     PlacesMonitorFenceDiff.geometryHash(poi2));
+    }
+
+    @Test
+    public void test_geometryHash_changesWithGeometry() {
+        // setup
+        String hash = PlacesMonitorFenceDiff.geometryHash(new PlacesMonitorPOI("id1", "name1", 22.22, 33.33, 100));
+
+        // verify
+        assertNotEquals("latitude should change the hash", hash,
+                        PlacesMonitorFenceDiff.geometryHash(new PlacesMonitorPOI("id1", "name1", 22.2201, 33.33, 100)));
+        assertNotEquals("longitude should change the hash", hash,
+                        PlacesMonitorFenceDiff.geometryHash(new PlacesMonitorPOI("id1", "name1", 22.22, 33.3301, 100)));
+        assertNotEquals("radius should change the hash", hash,
+                        PlacesMonitorFenceDiff.geometryHash(new PlacesMonitorPOI("id1", "name1", 22.22, 33.33, 101)));
+        assertNotEquals("swapped coordinates should change the hash", hash,
+                        PlacesMonitorFenceDiff.geometryHash(new PlacesMonitorPOI("id1", "name1", 33.33, 22.22, 100)));
+    }
+
+    // ========================================================================================
+    // fingerprint
+    // ========================================================================================
+
+    @Test
+    public void test_fingerprint_isOrderIndependent() {
+        // setup
+        List<PlacesMonitorPOI> reversed = poiList();
+        Collections.reverse(reversed);
+
+        // verify
+        assertEquals("fingerprint should not depend on the order", PlacesMonitorFenceDiff.fingerprint(poiList()),
+                     PlacesMonitorFenceDiff.fingerprint(reversed));
+    }
+
+    @Test
+    public void test_fingerprint_changesWithContent() {
+        // setup
+        long fingerprint = PlacesMonitorFenceDiff.fingerprint(poiList());
+        List<PlacesMonitorPOI> moved = poiList();
+        moved.set(0, new PlacesMonitorPOI("id1", "name1", 22.22, 33.33, 150));
+        List<PlacesMonitorPOI> renamed = poiList();
+        renamed.set(0, new PlacesMonitorPOI("id9", "name1", 22.22, 33.33, 100));
+        List<PlacesMonitorPOI> fewer = poiList();
+        fewer.remove(2);
+
+        // verify
+        assertNotEquals("geometry should change the fingerprint", fingerprint, PlacesMonitorFenceDiff.fingerprint(moved));
+        assertNotEquals("identifier should change the fingerprint", fingerprint, PlacesMonitorFenceDiff.fingerprint(renamed));
+        assertNotEquals("count should change the fingerprint", fingerprint, PlacesMonitorFenceDiff.fingerprint(fewer));
+        assertNotEquals("empty list should have a different fingerprint", fingerprint,
+                        PlacesMonitorFenceDiff.fingerprint(new ArrayList<PlacesMonitorPOI>()));
+    }
+
+    @Test
+    public void test_fingerprint_ignoresNullPOIs() {
+        // setup
+        List<PlacesMonitorPOI> pois = poiList();
+        pois.add(null);
+
+        // verify
+        assertEquals(PlacesMonitorFenceDiff.fingerprint(poiList()), PlacesMonitorFenceDiff.fingerprint(pois));
+        assertEquals(PlacesMonitorFenceDiff.fingerprint(new ArrayList<PlacesMonitorPOI>()), PlacesMonitorFenceDiff.fingerprint(null));
+    }
+
+    // ========================================================================================
+    // compute
+    // ========================================================================================
+
+    @Test
+    public void test_compute_when_nothingMonitored() {
+        // test
+        PlacesMonitorFenceDiff diff = PlacesMonitorFenceDiff.compute(new HashMap<String, String>(), poiList());
+
+        // verify
+        assertEquals("all pois should be added", 3, diff.getAdded().size());
+        assertTrue("no poi should be replaced", diff.getReplaced().isEmpty());
+        assertTrue("no fence should be removed", diff.getRemoved().isEmpty());
+        assertFalse(diff.isEmpty());
+    }
+
+    @Test
+    public void test_compute_when_sameFences() {
+        // test
+        PlacesMonitorFenceDiff diff = PlacesMonitorFenceDiff.compute(fenceMap(poiList()), poiList());
+
+        // verify
+        assertTrue("diff should be empty", diff.isEmpty());
+    }
+
+    @Test
+    public void test_compute_addReplaceAndRemove() {
+        // setup
+        Map<String, String> monitored = fenceMap(poiList());
+        List<PlacesMonitorPOI> nearby = new ArrayList<>();
+        nearby.add(new PlacesMonitorPOI("id1", "name1", 22.22, 33.33, 100));
+        nearby.add(new PlacesMonitorPOI("id2", "name2", 22.25, 33.33, 100));
+        nearby.add(new PlacesMonitorPOI("id4", "name4", 22.26, 33.33, 100));
+
+        // test
+        PlacesMonitorFenceDiff diff = PlacesMonitorFenceDiff.compute(monitored, nearby);
+
+        // verify
+        assertEquals("new poi should be added", 1, diff.getAdded().size());
+        assertEquals("id4", diff.getAdded().get(0).getIdentifier());
+        assertEquals("moved poi should be replaced", 1, diff.getReplaced().size());
+        assertEquals("id2", diff.getReplaced().get(0).getIdentifier());
+        assertEquals("poi no longer nearby should be removed", 1, diff.getRemoved().size());
+        assertEquals("id3", diff.getRemoved().get(0));
+    }
+
+    @Test
+    public void test_compute_when_monitoredWithoutHash() {
+        // setup
+        Map<String, String> monitored = new HashMap<>();
+        monitored.put("id1", "");
+
+        // test
+        PlacesMonitorFenceDiff diff = PlacesMonitorFenceDiff.compute(monitored, poiList());
+
+        // verify
+        assertEquals("fence without hash should be replaced", 1, diff.getReplaced().size());
+        assertEquals("id1", diff.getReplaced().get(0).getIdentifier());
+        assertEquals(2, diff.getAdded().size());
+    }
+
+    @Test
+    public void test_compute_when_nearbyIsNull() {
+        // test
+        PlacesMonitorFenceDiff diff = PlacesMonitorFenceDiff.compute(fenceMap(poiList()), null);
+
+        // verify
+        assertEquals("all fences should be removed", 3, diff.getRemoved().size());
+        assertTrue(diff.getAdded().isEmpty());
+        assertTrue(diff.getReplaced().isEmpty());
+    }
+
+    @Test
+    public void test_compute_ignoresNullAndDuplicatePOIs() {
+        // setup
+        List<PlacesMonitorPOI> nearby = new ArrayList<>();
+        nearby.add(null);
+        nearby.add(new PlacesMonitorPOI(null, "noId", 22.22, 33.33, 100));
+        nearby.add(new PlacesMonitorPOI("id1", "name1", 22.22, 33.33, 100));
+        nearby.add(new PlacesMonitorPOI("id1", "name1", 40.0, 33.33, 100));
+
+        // test
+        PlacesMonitorFenceDiff diff = PlacesMonitorFenceDiff.compute(new HashMap<String, String>(), nearby);
+
+        // verify
+        assertEquals("only the first occurrence should be added", 1, diff.getAdded().size());
+        assertEquals(22.22, diff.getAdded().get(0).getLatitude(), 0);
+    }
+
+    // ========================================================================================
+    // helper methods
+    // ========================================================================================
+
+    private List<PlacesMonitorPOI> poiList() {
+        List<PlacesMonitorPOI> pois = new ArrayList<>();
+        pois.add(new PlacesMonitorPOI("id1", "name1", 22.22, 33.33, 100));
+        pois.add(new PlacesMonitorPOI("id2", "name2", 22.23, 33.33, 100));
+        pois.add(new PlacesMonitorPOI("id3", "name3", 22.24, 33.33, 100));
+        return pois;
+    }
+
+    private Map<String, String> fenceMap(final List<PlacesMonitorPOI> pois) {
+        Map<String, String> fences = new HashMap<>();
+        for (PlacesMonitorPOI poi : pois) {
+            fences.put(poi.getIdentifier(), PlacesMonitorFenceDiff.geometryHash(poi));
+        }
+        return fences;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorFenceSelectorTests.java
+//
+
+package com.adobe.marketing.mobile;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PlacesMonitorFenceSelectorTests {
+
+    private static final double LATITUDE = 37.3309;
+    private static final double LONGITUDE = -121.8939;
+
+    @Test
+    public void test_selectNearest_ordersByEdgeDistance() {
+        // setup
+        List<PlacesMonitorPOI> pois = new ArrayList<>();
+        pois.add(new PlacesMonitorPOI("far", "far", LATITUDE + 0.05, LONGITUDE, 100));
+        pois.add(new PlacesMonitorPOI("near", "near", LATITUDE + 0.01, LONGITUDE, 100));
+        // center is farther than "near", but the large radius brings its edge closer
+        pois.add(new PlacesMonitorPOI("large", "large", LATITUDE + 0.02, LONGITUDE, 2000));
+
+        // test
+        List<PlacesMonitorPOI> selected = PlacesMonitorFenceSelector.selectNearest(pois, LATITUDE, LONGITUDE, 2);
+
+        // verify
+        assertEquals("selection should be limited to the count", 2, selected.size());
+        assertEquals("nearest edge should be first", "large", selected.get(0).getIdentifier());
+        assertEquals("second nearest edge should be second", "near", selected.get(1).getIdentifier());
+    }
+
+    @Test
+    public void test_selectNearest_matchesFullSort() {
+        // setup
+        List<PlacesMonitorPOI> pois = PlacesMonitorPOIRTreeTests.randomPOIs(5000, 42);
+
+        // test
+        List<PlacesMonitorPOI> selected = PlacesMonitorFenceSelector.selectNearest(pois, 0, 0, 100);
+
+        // verify
+        List<PlacesMonitorPOI> sorted = new ArrayList<>(pois);
+        Collections.sort(sorted, new Comparator<PlacesMonitorPOI>() {
+            @Override
+            public int compare(final PlacesMonitorPOI poi1, final PlacesMonitorPOI poi2) {
+                return Double.compare(PlacesMonitorGeoUtil.distanceToEdgeInMeters(0, 0, poi1),
+                                      PlacesMonitorGeoUtil.distanceToEdgeInMeters(0, 0, poi2));
+            }
+        });
+        assertEquals("selection should be limited to the count", 100, selected.size());
+
+        for (int i = 0; i < selected.size(); i++) {
+            assertSame("selection should match the fully sorted candidates", sorted.get(i), selected.get(i));
+        }
+    }
+
+    @Test
+    public void test_selectNearest_whenFewerCandidatesThanCount() {
+        // setup
+        List<PlacesMonitorPOI> pois = new ArrayList<>();
+        pois.add(new PlacesMonitorPOI("id1", "name1", LATITUDE + 0.01, LONGITUDE, 100));
+        pois.add(null);
+
+        // test
+        List<PlacesMonitorPOI> selected = PlacesMonitorFenceSelector.selectNearest(pois, LATITUDE, LONGITUDE, 20);
+
+        // verify
+        assertEquals("all the non null candidates should be selected", 1, selected.size());
+    }
+
+    @Test
+    public void test_selectNearest_invalidInput() {
+        assertTrue("null candidates should select nothing",
+                   PlacesMonitorFenceSelector.selectNearest(null, LATITUDE, LONGITUDE, 20).isEmpty());
+        assertTrue("zero count should select nothing",
+                   PlacesMonitorFenceSelector.selectNearest(new ArrayList<PlacesMonitorPOI>(), LATITUDE, LONGITUDE, 0).isEmpty());
+    }
+
+    @Test
+    public void test_refreshBoundaryRadius() {
+        // setup, edge of the farthest monitored poi is about 1 kilometer away
+        List<PlacesMonitorPOI> pois = new ArrayList<>();
+        pois.add(new PlacesMonitorPOI("id1", "name1", LATITUDE + 0.005, LONGITUDE, 100));
+        pois.add(new PlacesMonitorPOI("id2", "name2", LATITUDE + 0.01, LONGITUDE, 100));
+
+        // test
+        float radius = PlacesMonitorFenceSelector.refreshBoundaryRadius(pois, LATITUDE, LONGITUDE);
+
+        // verify
+        assertEquals("radius should stop short of the farthest monitored edge",
+                     1012 - PlacesMonitorTestConstants.RefreshBoundary.RESPONSIVENESS_MARGIN, radius, 5);
+    }
+
+    @Test
+    public void test_refreshBoundaryRadius_excludesUnmonitoredRegions() {
+        // setup, the unmonitored poi is a large region with its edge just beyond the edge of the second poi
+        List<PlacesMonitorPOI> pois = new ArrayList<>();
+        pois.add(new PlacesMonitorPOI("id1", "name1", LATITUDE + 0.005, LONGITUDE, 100));
+        pois.add(new PlacesMonitorPOI("id2", "name2", LATITUDE + 0.01, LONGITUDE, 100));
+        PlacesMonitorPOI unmonitored = new PlacesMonitorPOI("id3", "name3", LATITUDE - 0.02, LONGITUDE, 1200);
+        pois.add(unmonitored);
+        List<PlacesMonitorPOI> monitored = PlacesMonitorFenceSelector.selectNearest(pois, LATITUDE, LONGITUDE, 2);
+        assertFalse("the large region should not be monitored", monitored.contains(unmonitored));
+
+        // test
+        float radius = PlacesMonitorFenceSelector.refreshBoundaryRadius(monitored, LATITUDE, LONGITUDE);
+
+        // verify
+        assertTrue("the boundary should be exited before the unmonitored region is entered",
+                   radius < PlacesMonitorGeoUtil.distanceToEdgeInMeters(LATITUDE, LONGITUDE, unmonitored));
+    }
+
+    @Test
+    public void test_refreshBoundaryRadius_isBounded() {
+        // setup
+        List<PlacesMonitorPOI> nearPOIs = new ArrayList<>();
+        nearPOIs.add(new PlacesMonitorPOI("near", "near", LATITUDE + 0.0001, LONGITUDE, 100));
+        List<PlacesMonitorPOI> farPOIs = new ArrayList<>();
+        farPOIs.add(new PlacesMonitorPOI("far", "far", LATITUDE + 1, LONGITUDE, 100));
+
+        // verify
+        assertEquals("radius below the minimum should not be usable", 0,
+                     PlacesMonitorFenceSelector.refreshBoundaryRadius(nearPOIs, LATITUDE, LONGITUDE), 0.0);
+        assertEquals("radius should not be above the maximum", PlacesMonitorTestConstants.RefreshBoundary.MAX_RADIUS,
+                     PlacesMonitorFenceSelector.refreshBoundaryRadius(farPOIs, LATITUDE, LONGITUDE), 0.0);
+        assertEquals("radius without monitored pois should be the maximum", PlacesMonitorTestConstants.RefreshBoundary.MAX_RADIUS,
+                     PlacesMonitorFenceSelector.refreshBoundaryRadius(new ArrayList<PlacesMonitorPOI>(), LATITUDE, LONGITUDE), 0.0);
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorFenceStoreTests.java
+//
+
+package com.adobe.marketing.mobile;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class PlacesMonitorFenceStoreTests {
+
+    private PlacesMonitorFenceStore fenceStore;
+    private List<Map<String, String>> notifiedFences;
+
+    @Before
+    public void before() {
+        notifiedFences = Collections.synchronizedList(new ArrayList<Map<String, String>>());
+        fenceStore = new PlacesMonitorFenceStore(new PlacesMonitorFenceStore.Listener() {
+            @Override
+            public void onFencesChanged(final Map<String, String> fences) {
+                notifiedFences.add(fences);
+            }
+        });
+    }
+
+    @Test
+    public void test_put() {
+        // test
+        fenceStore.put(fences("id1", "id2"));
+
+        // verify
+        assertEquals("fences should be added", fences("id1", "id2"), fenceStore.getSnapshot());
+        assertEquals("listener should be notified", 1, notifiedFences.size());
+        assertEquals(fences("id1", "id2"), notifiedFences.get(0));
+    }
+
+    @Test
+    public void test_put_updatesHash() {
+        // setup
+        fenceStore.put(fences("id1", "id2"));
+        Map<String, String> updated = new HashMap<>();
+        updated.put("id1", "newHash");
+
+        // test
+        fenceStore.put(updated);
+
+        // verify
+        assertEquals("hash should be updated", "newHash", fenceStore.getSnapshot().get("id1"));
+        assertEquals(2, fenceStore.getSnapshot().size());
+    }
+
+    @Test
+    public void test_remove() {
+        // setup
+        fenceStore.put(fences("id1", "id2", "id3"));
+
+        // test
+        fenceStore.remove(ids("id1", "id3", "unknown"));
+
+        // verify
+        assertEquals("fences should be removed", fences("id2"), fenceStore.getSnapshot());
+        assertEquals("listener should be notified", 2, notifiedFences.size());
+    }
+
+    @Test
+    public void test_clear() {
+        // setup
+        fenceStore.put(fences("id1", "id2"));
+
+        // test
+        fenceStore.clear();
+
+        // verify
+        assertTrue("fences should be removed", fenceStore.getSnapshot().isEmpty());
+        assertTrue("listener should be notified", notifiedFences.get(notifiedFences.size() - 1).isEmpty());
+    }
+
+    @Test
+    public void test_load_doesNotNotify() {
+        // setup
+        fenceStore.put(fences("id9"));
+
+        // test
+        fenceStore.load(fences("id1", "id2"));
+
+        // verify
+        assertEquals("fences should be replaced", fences("id1", "id2"), fenceStore.getSnapshot());
+        assertEquals("listener should not be notified", 1, notifiedFences.size());
+    }
+
+    @Test
+    public void test_snapshot_isImmutable() {
+        // setup
+        fenceStore.put(fences("id1"));
+        Map<String, String> snapshot = fenceStore.getSnapshot();
+
+        // test
+        fenceStore.put(fences("id2"));
+
+        // verify
+        assertEquals("published snapshot should not change", fences("id1"), snapshot);
+
+        try {
+            snapshot.put("id3", "hash");
+            fail("snapshot should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void test_submittedMap_isCopied() {
+        // setup
+        Map<String, String> fences = fences("id1");
+        fenceStore.put(fences);
+
+        // test
+        fences.put("id2", "hash");
+
+        // verify
+        assertEquals("store should not see later changes of the submitted map", 1, fenceStore.getSnapshot().size());
+    }
+
+    @Test
+    public void test_concurrentReconcilesAndCompletions() throws Exception {
+        // setup
+        final int reconcileCount = 500;
+        final ExecutorService extensionThread = Executors.newSingleThreadExecutor();
+        final ExecutorService callbackThreads = Executors.newFixedThreadPool(4);
+        final CountDownLatch done = new CountDownLatch(reconcileCount * 2);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final AtomicInteger concurrentNotifications = new AtomicInteger();
+        final AtomicInteger maxConcurrentNotifications = new AtomicInteger();
+        final List<Map<String, String>> persisted = Collections.synchronizedList(new ArrayList<Map<String, String>>());
+
+        fenceStore = new PlacesMonitorFenceStore(new PlacesMonitorFenceStore.Listener() {
+            @Override
+            public void onFencesChanged(final Map<String, String> fences) {
+                final int concurrent = concurrentNotifications.incrementAndGet();
+                maxConcurrentNotifications.set(Math.max(maxConcurrentNotifications.get(), concurrent));
+                persisted.add(fences);
+                Thread.yield();
+                concurrentNotifications.decrementAndGet();
+            }
+        });
+
+        // test
+        for (int i = 0; i < reconcileCount; i++) {
+            final int reconcile = i;
+
+            extensionThread.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        // reconcile on the extension thread, reading the snapshot while the callbacks modify the fences
+                        final List<PlacesMonitorPOI> nearby = new ArrayList<>();
+                        nearby.add(new PlacesMonitorPOI("keep" + reconcile, "name", 22.22, 33.33, 100));
+                        nearby.add(new PlacesMonitorPOI("drop" + reconcile, "name", 22.22, 33.33, 100));
+                        final PlacesMonitorFenceDiff diff = PlacesMonitorFenceDiff.compute(fenceStore.getSnapshot(), nearby);
+
+                        // the task completions arrive on other threads
+                        callbackThreads.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    final Map<String, String> added = new HashMap<>();
+
+                                    for (PlacesMonitorPOI poi : diff.getAdded()) {
+                                        added.put(poi.getIdentifier(), PlacesMonitorFenceDiff.geometryHash(poi));
+                                    }
+
+                                    fenceStore.put(added);
+                                    fenceStore.remove(ids("drop" + reconcile));
+                                } catch (Throwable t) {
+                                    failure.compareAndSet(null, t);
+                                } finally {
+                                    done.countDown();
+                                }
+                            }
+                        });
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+
+        // verify
+        assertTrue("all reconciles and completions should finish", done.await(30, TimeUnit.SECONDS));
+        extensionThread.shutdown();
+        callbackThreads.shutdown();
+        assertNull("no exception should be thrown", failure.get());
+
+        final Map<String, String> snapshot = fenceStore.getSnapshot();
+        assertEquals("no update should be lost", reconcileCount, snapshot.size());
+
+        for (int i = 0; i < reconcileCount; i++) {
+            assertTrue("kept fence should be monitored", snapshot.containsKey("keep" + i));
+            assertFalse("dropped fence should be removed", snapshot.containsKey("drop" + i));
+        }
+
+        assertEquals("notifications should never be concurrent", 1, maxConcurrentNotifications.get());
+        assertEquals("last notified snapshot should be the final state", snapshot, persisted.get(persisted.size() - 1));
+    }
+
+    // ========================================================================================
+    // helper methods
+    // ========================================================================================
+
+    private Map<String, String> fences(final String... identifiers) {
+        Map<String, String> fences = new HashMap<>();
+        for (String identifier : identifiers) {
+            fences.put(identifier, "hash" + identifier);
+        }
+        return fences;
+    }
+
+    private List<String> ids(final String... identifiers) {
+        List<String> ids = new ArrayList<>();
+        Collections.addAll(ids, identifiers);
+        return ids;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorGeoUtilTests.java
+//
+
+package com.adobe.marketing.mobile;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PlacesMonitorGeoUtilTests {
+
+    @Test
+    public void test_distanceInMeters_samePoint() {
+        assertEquals("distance to the same point should be zero", 0.0,
+                     PlacesMonitorGeoUtil.distanceInMeters(37.33, -121.89, 37.33, -121.89), 0.0);
+    }
+
+    @Test
+    public void test_distanceInMeters() {
+        // San Jose to San Francisco is about 68 kilometers
+        assertEquals("distance should be correct", 68000,
+                     PlacesMonitorGeoUtil.distanceInMeters(37.3382, -121.8863, 37.7749, -122.4194), 1000);
+
+        // one degree of latitude is about 111 kilometers
+        assertEquals("distance should be correct", 111195,
+                     PlacesMonitorGeoUtil.distanceInMeters(0, 0, 1, 0), 10);
+    }
+
+    @Test
+    public void test_distanceInMeters_acrossAntimeridian() {
+        assertEquals("distance across the antimeridian should be correct", 22239,
+                     PlacesMonitorGeoUtil.distanceInMeters(0, 179.9, 0, -179.9), 10);
+    }
+
+    @Test
+    public void test_distanceToEdgeInMeters() {
+        PlacesMonitorPOI poi = new PlacesMonitorPOI("id", "name", 0, 0, 1000);
+
+        assertEquals("distance to edge should subtract the radius", 110195,
+                     PlacesMonitorGeoUtil.distanceToEdgeInMeters(1, 0, poi), 10);
+        assertTrue("distance to edge should be negative inside the region",
+                   PlacesMonitorGeoUtil.distanceToEdgeInMeters(0.001, 0, poi) < 0);
+    }
+}
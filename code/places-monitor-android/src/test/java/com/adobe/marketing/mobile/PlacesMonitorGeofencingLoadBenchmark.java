@@ -0,0 +1,143 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorGeofencingLoadBenchmark.java
+//
+
+package com.adobe.marketing.mobile;
+
+import com.google.android.gms.location.GeofenceStatusCodes;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reconcile throughput and fence churn of {@link PlacesGeofenceManager} against a
+ * {@link PlacesMonitorSimulatedGeofencingBackend}, along a replayed drive through a large POI catalog.
+ * <p>
+ * The nearest fences are reconciled every {@value #RECONCILE_EVERY_FIXES} fixes, as on a nearby POI response, and the
+ * simulated OS evaluates every fix against the registered fences. A share of the requests fails to exercise the retry
+ * of the reconcile.
+ * <p>
+ * Benchmarks are skipped in the regular unit test run, run them with {@code ./gradlew test -Pbenchmark}.
+ */
+public class PlacesMonitorGeofencingLoadBenchmark {
+
+    private static final int POI_COUNT = 100000;
+    private static final int FIX_COUNT = 200000;
+    private static final int RECONCILE_EVERY_FIXES = 30;
+    private static final double FAILURE_RATE = 0.01;
+
+    @Before
+    public void before() {
+        Assume.assumeTrue(Boolean.getBoolean(PlacesMonitorTestConstants.BENCHMARK_PROPERTY));
+    }
+
+    @Test
+    public void benchmark_20Fences() {
+        runBenchmark(20);
+    }
+
+    @Test
+    public void benchmark_99Fences() {
+        runBenchmark(PlacesMonitorTestConstants.MAX_GEOFENCES_COUNT - 1);
+    }
+
+    private void runBenchmark(final int fenceCount) {
+        // the nearest POIs, as returned by the Places extension
+        final PlacesMonitorPOIRTree tree = PlacesMonitorPOIRTree.build(PlacesMonitorPOIRTreeTests.randomPOIs(POI_COUNT,
+                                           POI_COUNT));
+
+        final PlacesMonitorSimulatedGeofencingBackend backend = new PlacesMonitorSimulatedGeofencingBackend(0, fenceCount);
+        backend.setFailureRate(FAILURE_RATE, GeofenceStatusCodes.GEOFENCE_NOT_AVAILABLE);
+        backend.setListener(new PlacesMonitorSimulatedGeofencingBackend.Listener() {
+            @Override
+            public void onGeofenceTransition(final List<String> identifiers, final int transition) {
+            }
+        });
+
+        final PlacesGeofenceManager geofenceManager = new PlacesGeofenceManager();
+        geofenceManager.setBackend(backend);
+
+        final long[] reconcileNanos = new long[1];
+        final int[] reconciles = new int[1];
+        final PlacesMonitorTraceLocationSource source = new PlacesMonitorTraceLocationSource(drive(FIX_COUNT, fenceCount), 0);
+        source.setListener(new PlacesMonitorTraceLocationSource.Listener() {
+            private int fixes;
+
+            @Override
+            public void onLocationFixes(final List<PlacesMonitorTraceLocationSource.Fix> batch) {
+                for (PlacesMonitorTraceLocationSource.Fix fix : batch) {
+                    if (fixes++ % RECONCILE_EVERY_FIXES == 0) {
+                        final long start = System.nanoTime();
+                        geofenceManager.startMonitoringFences(tree.nearest(fix.getLatitude(), fix.getLongitude(), fenceCount));
+                        reconcileNanos[0] += System.nanoTime() - start;
+                        reconciles[0]++;
+                    }
+
+                    backend.onLocation(fix.getLatitude(), fix.getLongitude());
+                }
+            }
+        });
+
+        final long start = System.nanoTime();
+        source.startMonitoring();
+        source.replayAll();
+        source.stopMonitoring();
+        final long nanos = System.nanoTime() - start;
+
+        System.out.println(String.format("%d fences: %d fixes in %.1f ms, %d reconciles at %.1f us each, "
+                                         + "%d skipped, %.1f fences added and %.1f removed per reconcile, "
+                                         + "%d of %d requests failed, %d transitions",
+                                         fenceCount, source.getDeliveredCount(), nanos / 1e6, reconciles[0],
+                                         reconcileNanos[0] / 1e3 / reconciles[0], geofenceManager.getSkippedReconcileCount(),
+                                         (double) backend.getAddedFenceCount() / reconciles[0],
+                                         (double) backend.getRemovedFenceCount() / reconciles[0],
+                                         backend.getFailedRequestCount(), backend.getRequestCount(),
+                                         backend.getTransitionCount()));
+    }
+
+    /**
+     * @return a drive at about 15 meters per second within the area of the random POIs, one fix per second
+     */
+    private static List<PlacesMonitorTraceLocationSource.Fix> drive(final int count, final long seed) {
+        final Random random = new Random(seed);
+        final List<PlacesMonitorTraceLocationSource.Fix> fixes = new ArrayList<>(count);
+        double latitude = 37.5;
+        double longitude = -121.5;
+        double heading = 0;
+
+        for (int i = 0; i < count; i++) {
+            heading += (random.nextDouble() - 0.5) * 0.2;
+            latitude += Math.cos(heading) * 0.000135;
+            longitude += Math.sin(heading) * 0.00017;
+
+            // turn back into the area of the POIs
+            if (latitude < 37 || latitude > 38 || longitude < -122 || longitude > -121) {
+                heading += Math.PI;
+                latitude = Math.min(38, Math.max(37, latitude));
+                longitude = Math.min(-121, Math.max(-122, longitude));
+            }
+
+            fixes.add(new PlacesMonitorTraceLocationSource.Fix(i * PlacesMonitorTestConstants.TraceReplay.DEFAULT_FIX_INTERVAL,
+                      latitude, longitude, 10, 15));
+        }
+
+        return fixes;
+    }
+}
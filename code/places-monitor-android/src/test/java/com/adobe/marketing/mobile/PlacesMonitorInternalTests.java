@@ -25,16 +25,21 @@ import static org.mockito.Mockito.verify;
 
 import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
+import org.mockito.InOrder;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.when;
@@ -75,6 +80,10 @@ public class PlacesMonitorInternalTests {
     public void before() throws Exception {
         PowerMockito.whenNew(PlacesGeofenceManager.class).withNoArguments().thenReturn(geofenceManager);
         PowerMockito.whenNew(PlacesLocationManager.class).withNoArguments().thenReturn(locationManager);
+        PlacesMonitorPOICache.getSharedInstance().clear();
+        PlacesMonitorSoftwareGeofencer.getSharedInstance().clear();
+        PlacesMonitorDiagnostics.configureSinks(null);
+        PlacesMonitorDispatcher.setCoverageSkipEnabled(true);
         monitorInternal = new PlacesMonitorInternal(extensionApi);
     }
 
@@ -87,11 +96,13 @@ public class PlacesMonitorInternalTests {
         final ArgumentCaptor<ExtensionErrorCallback> callbackCaptor1 = ArgumentCaptor.forClass(ExtensionErrorCallback.class);
         final ArgumentCaptor<ExtensionErrorCallback> callbackCaptor2 = ArgumentCaptor.forClass(ExtensionErrorCallback.class);
         final ArgumentCaptor<ExtensionErrorCallback> callbackCaptor3 = ArgumentCaptor.forClass(ExtensionErrorCallback.class);
+        final ArgumentCaptor<ExtensionErrorCallback> callbackCaptor4 = ArgumentCaptor.forClass(ExtensionErrorCallback.class);
 
-        // verify 3 listeners are registered
+        // verify 4 listeners are registered
         verify(extensionApi, times(1)).registerEventListener(eq(PlacesMonitorConstants.EventType.HUB), eq(PlacesMonitorConstants.EventSource.SHARED_STATE), eq(PlacesMonitorListenerHubSharedState.class), callbackCaptor1.capture());
         verify(extensionApi, times(1)).registerEventListener(eq(PlacesMonitorConstants.EventType.PLACES), eq(PlacesMonitorConstants.EventSource.RESPONSE_CONTENT), eq(PlacesMonitorListenerPlacesResponseContent.class), callbackCaptor2.capture());
         verify(extensionApi, times(1)).registerEventListener(eq(PlacesMonitorTestConstants.EventType.MONITOR), eq(PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT), eq(PlacesMonitorListenerMonitorRequestContent.class), callbackCaptor3.capture());
+        verify(extensionApi, times(1)).registerEventListener(eq(PlacesMonitorConstants.EventType.PLACES), eq(PlacesMonitorConstants.EventSource.REQUEST_CONTENT), eq(PlacesMonitorListenerPlacesRequestContent.class), callbackCaptor4.capture());
 
         // verify that loadFences is called
         verify(geofenceManager, times(1)).loadMonitoringFences();
@@ -100,11 +111,13 @@ public class PlacesMonitorInternalTests {
         assertNotNull("The register listener error callback should not be null", callbackCaptor1.getValue());
         assertNotNull("The register listener error callback should not be null", callbackCaptor2.getValue());
         assertNotNull("The register listener error callback should not be null", callbackCaptor3.getValue());
+        assertNotNull("The register listener error callback should not be null", callbackCaptor4.getValue());
 
         // calling the callback should not crash
         callbackCaptor1.getValue().error(ExtensionError.UNEXPECTED_ERROR);
         callbackCaptor2.getValue().error(ExtensionError.UNEXPECTED_ERROR);
         callbackCaptor3.getValue().error(ExtensionError.UNEXPECTED_ERROR);
+        callbackCaptor4.getValue().error(ExtensionError.UNEXPECTED_ERROR);
     }
 
     // ========================================================================================
@@ -137,27 +150,39 @@ public class PlacesMonitorInternalTests {
         verify(extensionApi,times(1)).clearSharedEventStates(null);
     }
 
+    @Test
+    public void test_onUnregistered_then_scheduledExecutorShutDown() {
+        // setup
+        final ScheduledExecutorService scheduledExecutorService = monitorInternal.getScheduledExecutor();
+
+        // test
+        monitorInternal.onUnregistered();
+
+        // verify
+        assertTrue("the scheduled executor should be shut down", scheduledExecutorService.isShutdown());
+    }
+
     // ========================================================================================
     // queueEvent
     // ========================================================================================
     @Test
     public void test_QueueEvent() {
         // test 1
-        assertNotNull("EventQueue instance is should never be null",monitorInternal.getEventQueue());
+        assertEquals("The event lanes should be empty", 0, monitorInternal.getQueuedEventCount());
 
         // test 2
         Event sampleEvent = new Event.Builder("event 1", "eventType", "eventSource").build();
         monitorInternal.queueEvent(sampleEvent);
-        assertEquals("The size of the eventQueue should be correct", 1,monitorInternal.getEventQueue().size());
+        assertEquals("The size of the eventQueue should be correct", 1,monitorInternal.getQueuedEventCount());
 
         // test 3
         monitorInternal.queueEvent(null);
-        assertEquals("The size of the eventQueue should be correct", 1, monitorInternal.getEventQueue().size());
+        assertEquals("The size of the eventQueue should be correct", 1, monitorInternal.getQueuedEventCount());
 
         // test 4
         Event anotherEvent = new Event.Builder("event 2", "eventType", "eventSource").build();
         monitorInternal.queueEvent(anotherEvent);
-        assertEquals("The size of the eventQueue should be correct", 2, monitorInternal.getEventQueue().size());
+        assertEquals("The size of the eventQueue should be correct", 2, monitorInternal.getQueuedEventCount());
 
     }
 
@@ -177,6 +202,38 @@ public class PlacesMonitorInternalTests {
         verify(geofenceManager, times(0)).startMonitoringFences(ArgumentMatchers.<PlacesMonitorPOI>anyList());
     }
 
+    @Test
+    public void test_setLocationSource() {
+        // setup
+        final PlacesMonitorLocationSource locationSource = Mockito.mock(PlacesMonitorLocationSource.class);
+        Map<String,Object> configData = new HashMap<>();
+        when(extensionApi.getSharedEventState(anyString(),any(Event.class),any(ExtensionErrorCallback.class))).thenReturn(configData);
+
+        // test
+        monitorInternal.setLocationSource(locationSource);
+        monitorInternal.queueEvent(startMonitoringEvent);
+        monitorInternal.processEvents();
+
+        // verify that the previous source is stopped and the new one is started
+        verify(locationManager, times(1)).stopMonitoring();
+        verify(locationManager, times(0)).startMonitoring();
+        verify(locationSource, times(1)).setRefreshBoundaryEnabled(false);
+        verify(locationSource, times(1)).startMonitoring();
+    }
+
+    @Test
+    public void test_setGeofencingBackend() {
+        // setup
+        final PlacesMonitorSimulatedGeofencingBackend backend = new PlacesMonitorSimulatedGeofencingBackend(0, 0);
+
+        // test
+        monitorInternal.setGeofencingBackend(backend);
+        monitorInternal.setGeofencingBackend(null);
+
+        // verify
+        verify(geofenceManager, times(1)).setBackend(backend);
+    }
+
     @Test
     public void test_processEvents_when_startEvent() {
         // setup configuration
@@ -200,6 +257,8 @@ public class PlacesMonitorInternalTests {
         // setup configuration
         Map<String,Object> configData = new HashMap<>();
         when(extensionApi.getSharedEventState(anyString(),any(Event.class),any(ExtensionErrorCallback.class))).thenReturn(configData);
+        PlacesMonitorPOICache.getSharedInstance().addPendingQuery(37.33, -121.89);
+        PlacesMonitorPOICache.getSharedInstance().cachePOIs(samplePOIList());
 
         // test
         monitorInternal.queueEvent(stopMonitoringEvent);
@@ -211,6 +270,8 @@ public class PlacesMonitorInternalTests {
         verify(locationManager, times(0)).updateLocation();
         verify(geofenceManager, times(1)).stopMonitoringFences();
         verify(geofenceManager, times(0)).startMonitoringFences(ArgumentMatchers.<PlacesMonitorPOI>anyList());
+        assertFalse("the next location should be queried again",
+                    PlacesMonitorPOICache.getSharedInstance().isInsideLastCoverage(37.33, -121.89));
     }
 
     @Test
@@ -249,6 +310,31 @@ public class PlacesMonitorInternalTests {
         verify(geofenceManager, times(0)).startMonitoringFences(ArgumentMatchers.<PlacesMonitorPOI>anyList());
     }
 
+    @Test
+    public void test_processEvents_when_eventHandlerRegistered() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        when(extensionApi.getSharedEventState(anyString(),any(Event.class),any(ExtensionErrorCallback.class))).thenReturn(configData);
+        final List<Event> handledEvents = new ArrayList<>();
+        monitorInternal.registerEventHandler(PlacesMonitorTestConstants.EventType.MONITOR,
+                                             PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT, "Invalid API", new PlacesMonitorEventRouter.Handler() {
+            @Override
+            public void handle(final Event event) {
+                handledEvents.add(event);
+            }
+        });
+
+        // test
+        monitorInternal.queueEvent(invalidMonitorRequestEvent);
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.processEvents();
+
+        // verify
+        assertEquals("the registered handler should process the event", 1, handledEvents.size());
+        assertSame(invalidMonitorRequestEvent, handledEvents.get(0));
+        verify(locationManager, times(1)).updateLocation();
+    }
+
     @Test
     public void test_processEvents_when_multipleEvents() {
         // setup configuration
@@ -312,121 +398,1016 @@ public class PlacesMonitorInternalTests {
         callbackCaptor.getValue().error(ExtensionError.UNEXPECTED_ERROR);
     }
 
-
     @Test
-    public void test_processEvents_when_nearByPlacesResponse_withEmptyEventData() {
+    public void test_processEvents_when_severalEvents_then_configurationLookedUpOnce() {
         // setup configuration
         Map<String,Object> configData = new HashMap<>();
         when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
 
         // test
-        monitorInternal.queueEvent(nearByPlacesEvent(new EventData()));
+        monitorInternal.queueEvent(startMonitoringEvent);
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.processEvents();
+        monitorInternal.queueEvent(updateLocationEvent);
         monitorInternal.processEvents();
 
         // verify
-        verify(geofenceManager, times(0)).startMonitoringFences(ArgumentMatchers.<PlacesMonitorPOI>anyList());
+        verify(extensionApi, times(1)).getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class));
+        verify(locationManager, times(2)).updateLocation();
+        assertEquals("every event should be processed", 0, monitorInternal.getQueuedEventCount());
     }
 
     @Test
-    public void test_processEvents_when_nearByPlacesResponse_withNullEventData() {
+    public void test_processEvents_when_configurationInvalidated_then_configurationLookedUpAgain() {
         // setup configuration
         Map<String,Object> configData = new HashMap<>();
-        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+        configData.put(PlacesMonitorTestConstants.Configuration.BATCH_REGION_EVENTS, true);
+        Map<String,Object> newConfigData = new HashMap<>();
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class)))
+        .thenReturn(configData, newConfigData);
 
         // test
-        monitorInternal.queueEvent(nearByPlacesEvent(null));
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.invalidateConfigurationSnapshot();
+        monitorInternal.queueEvent(updateLocationEvent);
         monitorInternal.processEvents();
 
         // verify
-        verify(geofenceManager, times(0)).startMonitoringFences(ArgumentMatchers.<PlacesMonitorPOI>anyList());
+        verify(extensionApi, times(2)).getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class));
+        assertFalse("the new configuration should be used", PlacesMonitorDispatcher.isRegionEventBatchingEnabled());
     }
 
     @Test
-    public void test_processEvents_when_nearByPlacesResponse_withPOIS() {
-        // setup configuration
+    public void test_processEvents_when_eventHeardBeforeConfigurationChange_then_newConfigurationApplied() {
+        // setup configuration, the event heard before the change gets the old configuration
         Map<String,Object> configData = new HashMap<>();
-        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
-        // setup argument captors
-        final ArgumentCaptor<List> callbackCaptor = ArgumentCaptor.forClass(List.class);
+        configData.put(PlacesMonitorTestConstants.Configuration.BATCH_REGION_EVENTS, true);
+        Map<String,Object> newConfigData = new HashMap<>();
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class)))
+        .thenReturn(configData, newConfigData);
+
+        // test, the event is heard, the configuration changes, then the event is queued
+        final int heardVersion = monitorInternal.getConfigurationVersion();
+        monitorInternal.invalidateConfigurationSnapshot();
+        monitorInternal.queueEvent(updateLocationEvent, heardVersion);
+        monitorInternal.processEvents();
+        monitorInternal.queueEvent(startMonitoringEvent, monitorInternal.getConfigurationVersion());
+        monitorInternal.processEvents();
 
-        EventData eventData = new EventData();
-        eventData.putTypedList(PlacesMonitorConstants.EventDataKeys.NEAR_BY_PLACES_LIST,samplePOIList(), new PlacesMonitorPOIVariantSerializer());
+        // verify
+        verify(extensionApi, times(2)).getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class));
+        assertFalse("the new configuration should be applied", PlacesMonitorDispatcher.isRegionEventBatchingEnabled());
+    }
+
+    @Test
+    public void test_processEvents_when_configurationPending_then_notCached() {
+        // setup
+        Map<String,Object> configData = new HashMap<>();
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class)))
+        .thenReturn(null, configData);
+        monitorInternal.queueEvent(startMonitoringEvent);
+        monitorInternal.processEvents();
 
         // test
-        monitorInternal.queueEvent(nearByPlacesEvent(eventData));
         monitorInternal.processEvents();
 
         // verify
-        verify(geofenceManager, times(1)).startMonitoringFences(callbackCaptor.capture());
+        verify(extensionApi, times(2)).getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class));
+        verify(locationManager, times(1)).startMonitoring();
+    }
 
-        List<PlacesMonitorPOI> poisPassed = callbackCaptor.getValue();
-        assertNotNull("The pois passed should not be null", poisPassed);
-        assertEquals("The pois passed should have the correct size", 3,poisPassed.size());
+    @Test
+    public void test_QueueEvent_then_routedToLanes() {
+        // test
+        monitorInternal.queueEvent(startMonitoringEvent);
+        monitorInternal.queueEvent(nearByPlacesEvent(new EventData()));
+        monitorInternal.queueEvent(cachedNearbyPlacesEvent(new EventData()));
+        monitorInternal.queueEvent(updateLocationEvent);
+
+        // verify
+        assertEquals("the monitor requests should be queued in the control lane", 2, monitorInternal.getControlLane().size());
+        assertEquals("the responses should be queued in the response lane", 2, monitorInternal.getResponseLane().size());
+        assertEquals(4, monitorInternal.getQueuedEventCount());
     }
 
     @Test
-    public void test_processEvents_when_nearByPlacesResponse_withFewInvalidPOIS() {
+    public void test_QueueEvent_then_routeKeptWithEntry() {
+        // test
+        monitorInternal.queueEvent(stopMonitoringEvent);
+        monitorInternal.queueEvent(nearByPlacesEvent(new EventData()));
+
+        // verify
+        final PlacesMonitorEventLane.Entry stopEntry = monitorInternal.getControlLane().peek();
+        assertNotNull("the destination should be looked up when queued", stopEntry.getDestination());
+        assertEquals("the stop request should supersede the start requests", PlacesMonitorTestConstants.EVENTNAME_START,
+                     stopEntry.getSheddingKey());
+        final PlacesMonitorEventLane.Entry responseEntry = monitorInternal.getResponseLane().peek();
+        assertNotNull(responseEntry.getDestination());
+        assertEquals("Near by Event", responseEntry.getSheddingKey());
+    }
+
+    @Test
+    public void test_processEvents_when_responsesBackedUp_then_controlRequestProcessedFirst() {
         // setup configuration
         Map<String,Object> configData = new HashMap<>();
         when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
-        // setup argument captors
-        final ArgumentCaptor<List> callbackCaptor = ArgumentCaptor.forClass(List.class);
 
         EventData eventData = new EventData();
-        List pois = samplePOIList();
-        pois.add("BadPOI");
-        pois.add(null);
-        eventData.putTypedList(PlacesMonitorConstants.EventDataKeys.NEAR_BY_PLACES_LIST, pois, new PlacesMonitorPOIVariantSerializer());
+        eventData.putTypedList(PlacesMonitorConstants.EventDataKeys.NEAR_BY_PLACES_LIST, samplePOIList(), new PlacesMonitorPOIVariantSerializer());
+
+        for (int i = 0; i < 50; i++) {
+            monitorInternal.queueEvent(nearByPlacesEvent(eventData));
+        }
 
         // test
-        monitorInternal.queueEvent(nearByPlacesEvent(eventData));
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.processEvents();
+
+        // verify that the update did not wait for any of the responses queued before it
+        InOrder inOrder = Mockito.inOrder(locationManager, geofenceManager);
+        inOrder.verify(locationManager, times(1)).updateLocation();
+        inOrder.verify(geofenceManager, times(50)).startMonitoringFences(ArgumentMatchers.<PlacesMonitorPOI>anyList());
+        assertEquals("every event should be processed", 0, monitorInternal.getQueuedEventCount());
+    }
+
+    @Test
+    public void test_processEvents_when_configurationPending_then_stopProcessed() {
+        // setup
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(null);
+        monitorInternal.queueEvent(nearByPlacesEvent(new EventData()));
+
+        // test
+        monitorInternal.queueEvent(stopMonitoringEvent);
         monitorInternal.processEvents();
 
         // verify
-        verify(geofenceManager, times(1)).startMonitoringFences(callbackCaptor.capture());
+        verify(locationManager, times(1)).stopMonitoring();
+        verify(geofenceManager, times(1)).stopMonitoringFences();
+        assertEquals("the response queued before the stop should be dropped", 0, monitorInternal.getQueuedEventCount());
+    }
 
-        List<PlacesMonitorPOI> poisPassed = callbackCaptor.getValue();
-        assertNotNull("The pois passed should not be null", poisPassed);
-        assertEquals("The pois passed should have the correct size", 4, poisPassed.size());
+    @Test
+    public void test_processEvents_when_stopEvent_then_newerResponsesKept() {
+        // setup
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(null);
+        monitorInternal.queueEvent(nearByPlacesEvent(new EventData()));
+        monitorInternal.queueEvent(stopMonitoringEvent);
+
+        // test
+        monitorInternal.queueEvent(nearByPlacesEvent(new EventData()));
+        monitorInternal.processEvents();
+
+        // verify
+        verify(geofenceManager, times(1)).stopMonitoringFences();
+        assertEquals("the response queued after the stop should wait for the configuration", 1,
+                     monitorInternal.getResponseLane().size());
     }
 
     @Test
-    public void test_processEvents_when_nearByPlacesResponse_withNullPOIS() {
-        // setup configuration
+    public void test_QueueEvent_when_responseLaneFull_then_newestResponseWins() {
+        // setup
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(null);
+
+        for (int i = 0; i < PlacesMonitorTestConstants.EventQueue.RESPONSE_CAPACITY; i++) {
+            monitorInternal.queueEvent(nearByPlacesEvent(new EventData()));
+        }
+
+        // test
+        final Event newestResponse = nearByPlacesEvent(new EventData());
+        monitorInternal.queueEvent(newestResponse);
+
+        // verify
+        assertEquals("only the newest response should be kept", 1, monitorInternal.getResponseLane().size());
+        assertSame(newestResponse, monitorInternal.getResponseLane().peek().getEvent());
+        assertEquals(PlacesMonitorTestConstants.EventQueue.RESPONSE_CAPACITY, monitorInternal.getDroppedEventCount());
+    }
+
+    @Test
+    public void test_QueueEvent_when_controlLaneFull_then_oldestRequestDropped() {
+        // setup
+        for (int i = 0; i < PlacesMonitorTestConstants.EventQueue.CONTROL_CAPACITY; i++) {
+            monitorInternal.queueEvent(new Event.Builder("Invalid API " + i,
+                                       PlacesMonitorTestConstants.EventType.MONITOR,
+                                       PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT).build());
+        }
+
+        // test
+        monitorInternal.queueEvent(startMonitoringEvent);
+
+        // verify
+        assertEquals("the lane should stay at its capacity", PlacesMonitorTestConstants.EventQueue.CONTROL_CAPACITY,
+                     monitorInternal.getControlLane().size());
+        assertEquals("Invalid API 1", monitorInternal.getControlLane().peek().getEvent().getName());
+        assertEquals(1, monitorInternal.getDroppedEventCount());
+    }
+
+    // ========================================================================================
+    // control request folding
+    // ========================================================================================
+
+    @Test
+    public void test_QueueEvent_when_startStopStart_then_foldedIntoSingleStart() {
+        // setup
         Map<String,Object> configData = new HashMap<>();
         when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
 
-        EventData eventData = new EventData();
-        eventData.putTypedList(PlacesMonitorConstants.EventDataKeys.NEAR_BY_PLACES_LIST,null, new PlacesMonitorPOIVariantSerializer());
+        // test
+        monitorInternal.queueEvent(startMonitoringEvent);
+        monitorInternal.queueEvent(stopMonitoringEvent);
+        monitorInternal.queueEvent(startMonitoringEvent);
+
+        // verify
+        assertEquals("only the final monitoring state should be kept", 1, monitorInternal.getControlLane().size());
+        assertEquals(2, monitorInternal.getFoldedRequestCount());
 
         // test
-        monitorInternal.queueEvent(nearByPlacesEvent(eventData));
         monitorInternal.processEvents();
 
         // verify
-        verify(geofenceManager, times(0)).startMonitoringFences(ArgumentMatchers.<PlacesMonitorPOI>anyList());
+        verify(locationManager, times(1)).startMonitoring();
+        verify(locationManager, times(0)).stopMonitoring();
+        verify(geofenceManager, times(0)).stopMonitoringFences();
     }
 
+    @Test
+    public void test_QueueEvent_when_startStop_then_foldedIntoStop() {
+        // setup
+        Map<String,Object> configData = new HashMap<>();
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+        monitorInternal.queueEvent(startMonitoringEvent);
+        monitorInternal.queueEvent(nearByPlacesEvent(new EventData()));
+
+        // test
+        monitorInternal.queueEvent(stopMonitoringEvent);
+        monitorInternal.processEvents();
+
+        // verify
+        verify(locationManager, times(0)).startMonitoring();
+        verify(locationManager, times(1)).stopMonitoring();
+        assertEquals("the response queued before the stop should be dropped", 0, monitorInternal.getQueuedEventCount());
+    }
 
-    // ========================================================================================
-    // getExecutor
-    // ========================================================================================
     @Test
-    public void test_getExecutor_NeverReturnsNull() {
+    public void test_QueueEvent_when_updatesPending_then_foldedIntoSingleUpdate() {
+        // setup
+        Map<String,Object> configData = new HashMap<>();
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+
         // test
-        ExecutorService executorService= monitorInternal.getExecutor();
-        assertNotNull("The executor should not return null", executorService);
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.processEvents();
 
         // verify
-        assertEquals("Gets the same excecutor instance on the next get", executorService , monitorInternal.getExecutor());
+        verify(locationManager, times(1)).updateLocation();
+        assertEquals(2, monitorInternal.getFoldedRequestCount());
     }
 
+    @Test
+    public void test_QueueEvent_when_startUpdateStop_then_stopKeptAfterUpdate() {
+        // test
+        monitorInternal.queueEvent(startMonitoringEvent);
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.queueEvent(stopMonitoringEvent);
 
+        // verify
+        assertEquals(2, monitorInternal.getControlLane().size());
+        assertSame("the update should not be moved after the stop", updateLocationEvent,
+                   monitorInternal.getControlLane().poll().getEvent());
+        assertSame(stopMonitoringEvent, monitorInternal.getControlLane().poll().getEvent());
+        assertEquals(1, monitorInternal.getFoldedRequestCount());
+    }
 
-    private Event nearByPlacesEvent (final EventData eventData) {
-        return new Event.Builder("Near by Event",
-                PlacesMonitorTestConstants.EventType.PLACES,
-                PlacesMonitorTestConstants.EventSource.RESPONSE_CONTENT).setData(eventData).build();
+    @Test
+    public void test_QueueEvent_when_startBetweenUpdates_then_updateNotFoldedAcrossStart() {
+        // test
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.queueEvent(startMonitoringEvent);
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.queueEvent(updateLocationEvent);
+
+        // verify
+        assertEquals(3, monitorInternal.getControlLane().size());
+        assertSame(updateLocationEvent, monitorInternal.getControlLane().poll().getEvent());
+        assertSame(startMonitoringEvent, monitorInternal.getControlLane().poll().getEvent());
+        assertSame(updateLocationEvent, monitorInternal.getControlLane().poll().getEvent());
+        assertEquals(1, monitorInternal.getFoldedRequestCount());
+    }
+
+    @Test
+    public void test_processEvents_when_configurationPending_then_startWaits() {
+        // setup
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(null);
+
+        // test
+        monitorInternal.queueEvent(startMonitoringEvent);
+        monitorInternal.queueEvent(nearByPlacesEvent(new EventData()));
+        monitorInternal.processEvents();
+
+        // verify
+        verify(locationManager, times(0)).startMonitoring();
+        assertEquals(1, monitorInternal.getControlLane().size());
+        assertEquals(1, monitorInternal.getResponseLane().size());
+    }
+
+
+    @Test
+    public void test_processEvents_when_nearByPlacesResponse_withEmptyEventData() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+
+        // test
+        monitorInternal.queueEvent(nearByPlacesEvent(new EventData()));
+        monitorInternal.processEvents();
+
+        // verify
+        verify(geofenceManager, times(0)).startMonitoringFences(ArgumentMatchers.<PlacesMonitorPOI>anyList());
+    }
+
+    @Test
+    public void test_processEvents_when_nearByPlacesResponse_withNullEventData() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+
+        // test
+        monitorInternal.queueEvent(nearByPlacesEvent(null));
+        monitorInternal.processEvents();
+
+        // verify
+        verify(geofenceManager, times(0)).startMonitoringFences(ArgumentMatchers.<PlacesMonitorPOI>anyList());
+    }
+
+    @Test
+    public void test_processEvents_when_nearByPlacesResponse_withPOIS() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+        // setup argument captors
+        final ArgumentCaptor<List> callbackCaptor = ArgumentCaptor.forClass(List.class);
+
+        EventData eventData = new EventData();
+        eventData.putTypedList(PlacesMonitorConstants.EventDataKeys.NEAR_BY_PLACES_LIST,samplePOIList(), new PlacesMonitorPOIVariantSerializer());
+
+        // test
+        monitorInternal.queueEvent(nearByPlacesEvent(eventData));
+        monitorInternal.processEvents();
+
+        // verify
+        verify(geofenceManager, times(1)).startMonitoringFences(callbackCaptor.capture());
+
+        List<PlacesMonitorPOI> poisPassed = callbackCaptor.getValue();
+        assertNotNull("The pois passed should not be null", poisPassed);
+        assertEquals("The pois passed should have the correct size", 3,poisPassed.size());
+    }
+
+    @Test
+    public void test_processEvents_when_nearByPlacesResponse_cachesPOIs() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+
+        EventData eventData = new EventData();
+        eventData.putTypedList(PlacesMonitorConstants.EventDataKeys.NEAR_BY_PLACES_LIST,samplePOIList(), new PlacesMonitorPOIVariantSerializer());
+
+        // test
+        monitorInternal.queueEvent(nearByPlacesEvent(eventData));
+        monitorInternal.processEvents();
+
+        // verify
+        assertEquals("The pois in the response should be cached", 3, PlacesMonitorPOICache.getSharedInstance().getPOICount());
+    }
+
+    @Test
+    public void test_processEvents_when_cachedNearbyPlacesEvent() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+        // setup argument captors
+        final ArgumentCaptor<List> callbackCaptor = ArgumentCaptor.forClass(List.class);
+
+        EventData eventData = new EventData();
+        eventData.putTypedList(PlacesMonitorConstants.EventDataKeys.NEAR_BY_PLACES_LIST,samplePOIList(), new PlacesMonitorPOIVariantSerializer());
+
+        // test
+        monitorInternal.queueEvent(cachedNearbyPlacesEvent(eventData));
+        monitorInternal.processEvents();
+
+        // verify
+        verify(geofenceManager, times(1)).startMonitoringFences(callbackCaptor.capture());
+        assertEquals("The cached pois should be monitored", 3, callbackCaptor.getValue().size());
+        assertEquals("The cached pois should not be cached again", 0, PlacesMonitorPOICache.getSharedInstance().getPOICount());
+        verify(locationManager, times(0)).startMonitoring();
+        verify(locationManager, times(0)).updateLocation();
+    }
+
+    @Test
+    public void test_processEvents_when_cachedNearbyPlacesEvent_selectsNearestPOIs() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        configData.put(PlacesMonitorTestConstants.Configuration.GEOFENCE_COUNT, 2);
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+        // setup argument captors
+        final ArgumentCaptor<List> callbackCaptor = ArgumentCaptor.forClass(List.class);
+
+        EventData eventData = new EventData();
+        eventData.putTypedList(PlacesMonitorConstants.EventDataKeys.NEAR_BY_PLACES_LIST,samplePOIList(), new PlacesMonitorPOIVariantSerializer());
+        eventData.putDouble(PlacesMonitorTestConstants.EventDataKeys.LATITUDE, 65.0);
+        eventData.putDouble(PlacesMonitorTestConstants.EventDataKeys.LONGITUDE, -75.0);
+
+        // test
+        monitorInternal.queueEvent(cachedNearbyPlacesEvent(eventData));
+        monitorInternal.processEvents();
+
+        // verify
+        verify(geofenceManager, times(1)).startMonitoringFences(callbackCaptor.capture());
+        List<PlacesMonitorPOI> poisPassed = callbackCaptor.getValue();
+        assertEquals("The configured count of pois should be monitored", 2, poisPassed.size());
+        assertEquals("The nearest poi should be monitored first", "poiID3", poisPassed.get(0).getIdentifier());
+        assertEquals("The second nearest poi should be monitored", "poiID2", poisPassed.get(1).getIdentifier());
+    }
+
+    @Test
+    public void test_processEvents_when_refreshBoundaryEnabled() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        configData.put(PlacesMonitorTestConstants.Configuration.REFRESH_BOUNDARY, true);
+        configData.put(PlacesMonitorTestConstants.Configuration.GEOFENCE_COUNT, 500);
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+
+        EventData eventData = new EventData();
+        eventData.putTypedList(PlacesMonitorConstants.EventDataKeys.NEAR_BY_PLACES_LIST,samplePOIList(), new PlacesMonitorPOIVariantSerializer());
+        eventData.putDouble(PlacesMonitorTestConstants.EventDataKeys.LATITUDE, 65.0);
+        eventData.putDouble(PlacesMonitorTestConstants.EventDataKeys.LONGITUDE, -75.0);
+
+        // test
+        monitorInternal.queueEvent(cachedNearbyPlacesEvent(eventData));
+        monitorInternal.processEvents();
+
+        // verify
+        verify(locationManager, times(1)).setRefreshBoundaryEnabled(true);
+        assertFalse("locations inside the last coverage should not be skipped", PlacesMonitorDispatcher.isCoverageSkipEnabled());
+        verify(geofenceManager, times(1)).startMonitoringFences(ArgumentMatchers.<PlacesMonitorPOI>anyList());
+        verify(geofenceManager, times(1)).startMonitoringRefreshBoundary(eq(65.0), eq(-75.0), anyFloat());
+        assertEquals("The refresh boundary should take one of the available geofences",
+                     PlacesMonitorTestConstants.MAX_GEOFENCES_COUNT - 1, PlacesMonitorDispatcher.getNearbyPlacesCount());
+    }
+
+    @Test
+    public void test_processEvents_when_refreshBoundaryTooSmall_then_followsLocationUpdates() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        configData.put(PlacesMonitorTestConstants.Configuration.REFRESH_BOUNDARY, true);
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+
+        // the only poi surrounds the location, no boundary fits inside its edge
+        List<PlacesMonitorPOI> pois = new ArrayList<>();
+        pois.add(new PlacesMonitorPOI("poiID1", "inside", 65.0, -75.0, 100));
+        EventData eventData = new EventData();
+        eventData.putTypedList(PlacesMonitorConstants.EventDataKeys.NEAR_BY_PLACES_LIST, pois, new PlacesMonitorPOIVariantSerializer());
+        eventData.putDouble(PlacesMonitorTestConstants.EventDataKeys.LATITUDE, 65.0);
+        eventData.putDouble(PlacesMonitorTestConstants.EventDataKeys.LONGITUDE, -75.0);
+
+        // test
+        monitorInternal.queueEvent(cachedNearbyPlacesEvent(eventData));
+        monitorInternal.processEvents();
+
+        // verify
+        verify(locationManager, times(1)).setRefreshBoundaryEnabled(true);
+        verify(geofenceManager, times(0)).startMonitoringRefreshBoundary(anyDouble(), anyDouble(), anyFloat());
+        verify(geofenceManager, times(1)).stopMonitoringRefreshBoundary();
+        verify(locationManager, times(1)).setRefreshBoundaryEnabled(false);
+        assertTrue("locations inside the last coverage should be skipped while following the location updates",
+                   PlacesMonitorDispatcher.isCoverageSkipEnabled());
+    }
+
+    @Test
+    public void test_processEvents_when_refreshBoundaryDisabled() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        configData.put(PlacesMonitorTestConstants.Configuration.REFRESH_BOUNDARY, true);
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.processEvents();
+
+        // test
+        configData.put(PlacesMonitorTestConstants.Configuration.REFRESH_BOUNDARY, false);
+        monitorInternal.invalidateConfigurationSnapshot();
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.processEvents();
+
+        // verify
+        verify(locationManager, times(1)).setRefreshBoundaryEnabled(false);
+        verify(geofenceManager, times(1)).stopMonitoringRefreshBoundary();
+        assertTrue("locations inside the last coverage should be skipped again", PlacesMonitorDispatcher.isCoverageSkipEnabled());
+    }
+
+    @Test
+    public void test_processEvents_when_locationMaxWaitTimeConfigured() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        configData.put(PlacesMonitorTestConstants.Configuration.LOCATION_MAX_WAIT_TIME, 600000);
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+
+        // test
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.processEvents();
+
+        // verify
+        verify(locationManager, times(1)).setMaxWaitTime(600000L);
+
+        // test
+        configData.put(PlacesMonitorTestConstants.Configuration.LOCATION_MAX_WAIT_TIME, Long.MAX_VALUE);
+        monitorInternal.invalidateConfigurationSnapshot();
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.processEvents();
+
+        // verify
+        verify(locationManager, times(1)).setMaxWaitTime(PlacesMonitorTestConstants.Location.MAX_BATCH_WAIT_TIME);
+    }
+
+    @Test
+    public void test_processEvents_when_locationFreshnessConfigured() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        configData.put(PlacesMonitorTestConstants.Configuration.LOCATION_FRESHNESS, 30000);
+        configData.put(PlacesMonitorTestConstants.Configuration.LOCATION_TIMEOUT, 20000);
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+
+        // test
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.processEvents();
+
+        // verify
+        verify(locationManager, times(1)).setFreshFixBudget(30000L, 20000L);
+
+        // test
+        configData.put(PlacesMonitorTestConstants.Configuration.LOCATION_TIMEOUT, Long.MAX_VALUE);
+        monitorInternal.invalidateConfigurationSnapshot();
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.processEvents();
+
+        // verify
+        verify(locationManager, times(1)).setFreshFixBudget(30000L, PlacesMonitorTestConstants.Location.MAX_SINGLE_FIX_TIMEOUT);
+    }
+
+    @Test
+    public void test_processEvents_when_adaptiveLocationConfigured() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        configData.put(PlacesMonitorTestConstants.Configuration.ADAPTIVE_LOCATION, true);
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+
+        // test
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.processEvents();
+
+        // verify
+        verify(locationManager, times(1)).setAdaptiveLocationEnabled(true);
+    }
+
+    @Test
+    public void test_locationTierChanged_when_farTier_then_filterAcceptsLowPowerAccuracy() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        configData.put(PlacesMonitorTestConstants.Configuration.ADAPTIVE_LOCATION, true);
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+        PlacesMonitorLocationPolicy.getSharedInstance().reset();
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.processEvents();
+
+        final List<PlacesMonitorPOI> fences = new ArrayList<>();
+        fences.add(new PlacesMonitorPOI("id", "name", 37.33, -121.89, 100));
+        PlacesMonitorLocationPolicy.getSharedInstance().setFences(fences);
+
+        // test, about 22 kilometers from the fence
+        PlacesMonitorLocationPolicy.getSharedInstance().onLocation(37.53, -121.89, 20, -1, false);
+
+        // verify
+        verify(locationManager, times(1)).onLocationTierChanged(PlacesMonitorLocationPolicy.FAR);
+        assertEquals("the filter should accept the accuracy of the far tier", PlacesMonitorLocationPolicy.FAR.getMaxAccuracy(),
+                     PlacesMonitorLocationFilter.getSharedInstance().getEffectiveMaxAccuracy(), 0);
+
+        // test
+        configData.remove(PlacesMonitorTestConstants.Configuration.ADAPTIVE_LOCATION);
+        monitorInternal.invalidateConfigurationSnapshot();
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.processEvents();
+
+        // verify
+        assertEquals("the filter should not accept the tier accuracy without the adaptive location request",
+                     PlacesMonitorTestConstants.LocationFilter.DEFAULT_MAX_ACCURACY,
+                     PlacesMonitorLocationFilter.getSharedInstance().getEffectiveMaxAccuracy(), 0);
+        PlacesMonitorLocationPolicy.getSharedInstance().reset();
+    }
+
+    @Test
+    public void test_processEvents_when_locationFilterConfigured() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        configData.put(PlacesMonitorTestConstants.Configuration.LOCATION_MAX_ACCURACY, 50);
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+
+        // test
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.processEvents();
+
+        // verify
+        assertEquals("the configured accuracy should be used", PlacesMonitorLocationFilter.DROPPED_INACCURATE,
+                     PlacesMonitorLocationFilter.getSharedInstance().filter(37.33, -121.89, 100, 0, 0));
+
+        // test
+        configData.remove(PlacesMonitorTestConstants.Configuration.LOCATION_MAX_ACCURACY);
+        monitorInternal.invalidateConfigurationSnapshot();
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.processEvents();
+
+        // verify
+        assertEquals("the default accuracy should be used", PlacesMonitorLocationFilter.ACCEPTED,
+                     PlacesMonitorLocationFilter.getSharedInstance().filter(37.33, -121.89, 100, 0, 0));
+    }
+
+    @Test
+    public void test_recordNearbyQuery() {
+        // setup
+        EventData eventData = new EventData();
+        eventData.putString(PlacesMonitorTestConstants.EventDataKeys.REQUEST_TYPE,
+                            PlacesMonitorTestConstants.EventDataKeys.REQUEST_TYPE_GET_NEARBY_PLACES);
+        eventData.putDouble(PlacesMonitorTestConstants.EventDataKeys.LATITUDE, 37.33);
+        eventData.putDouble(PlacesMonitorTestConstants.EventDataKeys.LONGITUDE, -121.89);
+        Event requestEvent = new Event.Builder("requestgetnearbyplaces", PlacesMonitorTestConstants.EventType.PLACES,
+                                               PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT).setData(eventData).build();
+
+        // test
+        monitorInternal.recordNearbyQuery(requestEvent);
+
+        // verify
+        double[] queryLocation = PlacesMonitorPOICache.getSharedInstance().getLastQueryLocation();
+        assertNotNull("the nearby query should be recorded", queryLocation);
+        assertEquals(37.33, queryLocation[0], 0.0);
+        assertEquals(-121.89, queryLocation[1], 0.0);
+    }
+
+    @Test
+    public void test_recordNearbyQuery_when_otherRequestType() {
+        // setup
+        EventData eventData = new EventData();
+        eventData.putString(PlacesMonitorTestConstants.EventDataKeys.REQUEST_TYPE,
+                            PlacesMonitorTestConstants.EventDataKeys.REQUEST_TYPE_PROCESS_REGION_EVENT);
+        eventData.putDouble(PlacesMonitorTestConstants.EventDataKeys.LATITUDE, 37.33);
+        eventData.putDouble(PlacesMonitorTestConstants.EventDataKeys.LONGITUDE, -121.89);
+        Event requestEvent = new Event.Builder("requestprocessregionevent", PlacesMonitorTestConstants.EventType.PLACES,
+                                               PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT).setData(eventData).build();
+
+        // test
+        monitorInternal.recordNearbyQuery(requestEvent);
+
+        // verify
+        assertNull("only the nearby queries should be recorded", PlacesMonitorPOICache.getSharedInstance().getLastQueryLocation());
+    }
+
+    @Test
+    public void test_processEvents_when_softwareGeofencingEnabled() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        configData.put(PlacesMonitorTestConstants.Configuration.SOFTWARE_GEOFENCING, true);
+        configData.put(PlacesMonitorTestConstants.Configuration.GEOFENCE_COUNT, 1);
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+        PlacesMonitorPOICache.getSharedInstance().cachePOIs(samplePOIList());
+
+        EventData eventData = new EventData();
+        eventData.putTypedList(PlacesMonitorConstants.EventDataKeys.NEAR_BY_PLACES_LIST,samplePOIList(), new PlacesMonitorPOIVariantSerializer());
+        eventData.putDouble(PlacesMonitorTestConstants.EventDataKeys.LATITUDE, 65.0);
+        eventData.putDouble(PlacesMonitorTestConstants.EventDataKeys.LONGITUDE, -75.0);
+
+        // test
+        monitorInternal.queueEvent(cachedNearbyPlacesEvent(eventData));
+        monitorInternal.processEvents();
+
+        // verify
+        assertEquals("The cached pois not monitored by the OS should be software geofenced", 2,
+                     PlacesMonitorSoftwareGeofencer.getSharedInstance().getPOICount());
+    }
+
+    @Test
+    public void test_processEvents_when_softwareGeofencedRegionInsideHandedToOS_then_noInitialEntry() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        configData.put(PlacesMonitorTestConstants.Configuration.SOFTWARE_GEOFENCING, true);
+        configData.put(PlacesMonitorTestConstants.Configuration.GEOFENCE_COUNT, 1);
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+        PlacesMonitorPOICache.getSharedInstance().cachePOIs(samplePOIList());
+
+        EventData eventData = new EventData();
+        eventData.putTypedList(PlacesMonitorConstants.EventDataKeys.NEAR_BY_PLACES_LIST,samplePOIList(), new PlacesMonitorPOIVariantSerializer());
+        eventData.putDouble(PlacesMonitorTestConstants.EventDataKeys.LATITUDE, 65.0);
+        eventData.putDouble(PlacesMonitorTestConstants.EventDataKeys.LONGITUDE, -75.0);
+        monitorInternal.queueEvent(cachedNearbyPlacesEvent(eventData));
+        monitorInternal.processEvents();
+        PlacesMonitorSoftwareGeofencer.getSharedInstance().evaluate(44.44, -55.55, 10);
+
+        // test, the device is now nearest to the software geofenced region it is inside of
+        EventData nearbyEventData = new EventData();
+        nearbyEventData.putTypedList(PlacesMonitorConstants.EventDataKeys.NEAR_BY_PLACES_LIST,samplePOIList(), new PlacesMonitorPOIVariantSerializer());
+        nearbyEventData.putDouble(PlacesMonitorTestConstants.EventDataKeys.LATITUDE, 44.44);
+        nearbyEventData.putDouble(PlacesMonitorTestConstants.EventDataKeys.LONGITUDE, -55.55);
+        monitorInternal.queueEvent(cachedNearbyPlacesEvent(nearbyEventData));
+        monitorInternal.processEvents();
+
+        // verify
+        verify(geofenceManager, times(1)).startMonitoringFences(ArgumentMatchers.<PlacesMonitorPOI>anyList(),
+                eq(Collections.singleton("poiID2")));
+        assertFalse("the inside state should move to the OS",
+                    PlacesMonitorSoftwareGeofencer.getSharedInstance().getInsideRegions().contains("poiID2"));
+    }
+
+    @Test
+    public void test_processEvents_when_softwareGeofencingDisabled() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+        PlacesMonitorPOICache.getSharedInstance().cachePOIs(samplePOIList());
+
+        EventData eventData = new EventData();
+        eventData.putTypedList(PlacesMonitorConstants.EventDataKeys.NEAR_BY_PLACES_LIST,samplePOIList(), new PlacesMonitorPOIVariantSerializer());
+
+        // test
+        monitorInternal.queueEvent(cachedNearbyPlacesEvent(eventData));
+        monitorInternal.processEvents();
+
+        // verify
+        assertEquals("No pois should be software geofenced", 0, PlacesMonitorSoftwareGeofencer.getSharedInstance().getPOICount());
+    }
+
+    @Test
+    public void test_processEvents_when_cachedNearbyPlacesEvent_withNullEventData() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+
+        // test
+        monitorInternal.queueEvent(cachedNearbyPlacesEvent(null));
+        monitorInternal.processEvents();
+
+        // verify
+        verify(geofenceManager, times(0)).startMonitoringFences(ArgumentMatchers.<PlacesMonitorPOI>anyList());
+    }
+
+    @Test
+    public void test_processEvents_when_nearByPlacesResponse_withFewInvalidPOIS() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+        // setup argument captors
+        final ArgumentCaptor<List> callbackCaptor = ArgumentCaptor.forClass(List.class);
+
+        EventData eventData = new EventData();
+        List pois = samplePOIList();
+        pois.add("BadPOI");
+        pois.add(null);
+        eventData.putTypedList(PlacesMonitorConstants.EventDataKeys.NEAR_BY_PLACES_LIST, pois, new PlacesMonitorPOIVariantSerializer());
+
+        // test
+        monitorInternal.queueEvent(nearByPlacesEvent(eventData));
+        monitorInternal.processEvents();
+
+        // verify
+        verify(geofenceManager, times(1)).startMonitoringFences(callbackCaptor.capture());
+
+        List<PlacesMonitorPOI> poisPassed = callbackCaptor.getValue();
+        assertNotNull("The pois passed should not be null", poisPassed);
+        assertEquals("The pois passed should have the correct size", 4, poisPassed.size());
+    }
+
+    @Test
+    public void test_processEvents_when_nearByPlacesResponse_withConfiguredGeofenceCount() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        configData.put(PlacesMonitorTestConstants.Configuration.GEOFENCE_COUNT, 1);
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+        // setup argument captors
+        final ArgumentCaptor<List> callbackCaptor = ArgumentCaptor.forClass(List.class);
+
+        EventData eventData = new EventData();
+        eventData.putTypedList(PlacesMonitorConstants.EventDataKeys.NEAR_BY_PLACES_LIST,samplePOIList(), new PlacesMonitorPOIVariantSerializer());
+
+        // test
+        monitorInternal.queueEvent(nearByPlacesEvent(eventData));
+        monitorInternal.processEvents();
+
+        // verify
+        verify(geofenceManager, times(1)).startMonitoringFences(callbackCaptor.capture());
+        assertEquals("The configured count of pois should be monitored", 1, callbackCaptor.getValue().size());
+        assertEquals("The configured count should be requested from places", 1, PlacesMonitorDispatcher.getNearbyPlacesCount());
+    }
+
+    @Test
+    public void test_processEvents_when_geofenceCountAboveLimit() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        configData.put(PlacesMonitorTestConstants.Configuration.GEOFENCE_COUNT, 500);
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+
+        // test
+        monitorInternal.queueEvent(nearByPlacesEvent(new EventData()));
+        monitorInternal.processEvents();
+
+        // verify
+        assertEquals("The geofence count should be limited", PlacesMonitorTestConstants.MAX_GEOFENCES_COUNT,
+                     PlacesMonitorDispatcher.getNearbyPlacesCount());
+    }
+
+    @Test
+    public void test_processEvents_when_batchRegionEventsConfigured() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        configData.put(PlacesMonitorTestConstants.Configuration.BATCH_REGION_EVENTS, true);
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+
+        // test
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.processEvents();
+
+        // verify
+        assertTrue("region event batching should be enabled", PlacesMonitorDispatcher.isRegionEventBatchingEnabled());
+
+        // test
+        configData.remove(PlacesMonitorTestConstants.Configuration.BATCH_REGION_EVENTS);
+        monitorInternal.invalidateConfigurationSnapshot();
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.processEvents();
+
+        // verify
+        assertFalse("region event batching should be disabled by default", PlacesMonitorDispatcher.isRegionEventBatchingEnabled());
+    }
+
+    @Test
+    public void test_processEvents_when_diagnosticSinksConfigured() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        configData.put(PlacesMonitorTestConstants.Configuration.DIAGNOSTIC_SINKS, PlacesMonitorTestConstants.Diagnostics.SINK_RING_BUFFER);
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+
+        // test
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.processEvents();
+
+        // verify
+        assertEquals("the configured sink should be used", 1, PlacesMonitorDiagnostics.getSinks().size());
+
+        // test
+        configData.remove(PlacesMonitorTestConstants.Configuration.DIAGNOSTIC_SINKS);
+        monitorInternal.invalidateConfigurationSnapshot();
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.processEvents();
+
+        // verify
+        assertTrue("the diagnostics should be off by default", PlacesMonitorDiagnostics.getSinks().isEmpty());
+    }
+
+    @Test
+    public void test_processEvents_when_coalescingWindow_then_newestResponseMonitored() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        configData.put(PlacesMonitorTestConstants.Configuration.COALESCING_WINDOW, 5000);
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+        final ArgumentCaptor<List> callbackCaptor = ArgumentCaptor.forClass(List.class);
+
+        EventData firstEventData = new EventData();
+        firstEventData.putTypedList(PlacesMonitorConstants.EventDataKeys.NEAR_BY_PLACES_LIST, samplePOIList(), new PlacesMonitorPOIVariantSerializer());
+        EventData secondEventData = new EventData();
+        secondEventData.putTypedList(PlacesMonitorConstants.EventDataKeys.NEAR_BY_PLACES_LIST, samplePOIList().subList(0, 1), new PlacesMonitorPOIVariantSerializer());
+
+        // test
+        monitorInternal.queueEvent(nearByPlacesEvent(firstEventData));
+        monitorInternal.queueEvent(nearByPlacesEvent(firstEventData));
+        monitorInternal.queueEvent(nearByPlacesEvent(secondEventData));
+        monitorInternal.processEvents();
+
+        // verify that nothing is monitored inside the window
+        verify(geofenceManager, times(0)).startMonitoringFences(ArgumentMatchers.<PlacesMonitorPOI>anyList());
+        assertEquals("The responses should be coalesced", 2, monitorInternal.getCoalescedResponseCount());
+        assertEquals("All the responses should be cached", 3, PlacesMonitorPOICache.getSharedInstance().getPOICount());
+
+        // test
+        monitorInternal.flushPendingReconcile();
+
+        // verify that the newest pois are monitored once
+        verify(geofenceManager, times(1)).startMonitoringFences(callbackCaptor.capture());
+        assertEquals("The newest pois should be monitored", 1, callbackCaptor.getValue().size());
+
+        // verify a second flush does nothing
+        monitorInternal.flushPendingReconcile();
+        verify(geofenceManager, times(1)).startMonitoringFences(ArgumentMatchers.<PlacesMonitorPOI>anyList());
+    }
+
+    @Test
+    public void test_processEvents_when_coalescingWindow_then_stopDropsPendingReconcile() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        configData.put(PlacesMonitorTestConstants.Configuration.COALESCING_WINDOW, 5000);
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+
+        EventData eventData = new EventData();
+        eventData.putTypedList(PlacesMonitorConstants.EventDataKeys.NEAR_BY_PLACES_LIST, samplePOIList(), new PlacesMonitorPOIVariantSerializer());
+
+        monitorInternal.queueEvent(nearByPlacesEvent(eventData));
+        monitorInternal.processEvents();
+        final ScheduledFuture<?> flush = monitorInternal.getPendingReconcileFlush();
+
+        // test
+        monitorInternal.queueEvent(stopMonitoringEvent);
+        monitorInternal.processEvents();
+        monitorInternal.flushPendingReconcile();
+
+        // verify
+        verify(geofenceManager, times(1)).stopMonitoringFences();
+        verify(geofenceManager, times(0)).startMonitoringFences(ArgumentMatchers.<PlacesMonitorPOI>anyList());
+        assertNotNull("the flush should be scheduled with the window", flush);
+        assertTrue("the scheduled flush should be cancelled", flush.isCancelled());
+        assertNull(monitorInternal.getPendingReconcileFlush());
+    }
+
+    @Test
+    public void test_processEvents_when_coalescingWindowDisabled_then_pendingReconcileFlushed() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        configData.put(PlacesMonitorTestConstants.Configuration.COALESCING_WINDOW, 5000);
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+
+        EventData eventData = new EventData();
+        eventData.putTypedList(PlacesMonitorConstants.EventDataKeys.NEAR_BY_PLACES_LIST, samplePOIList(), new PlacesMonitorPOIVariantSerializer());
+        monitorInternal.queueEvent(nearByPlacesEvent(eventData));
+        monitorInternal.processEvents();
+        final ScheduledFuture<?> flush = monitorInternal.getPendingReconcileFlush();
+
+        // test
+        configData.put(PlacesMonitorTestConstants.Configuration.COALESCING_WINDOW, 0);
+        monitorInternal.invalidateConfigurationSnapshot();
+        monitorInternal.queueEvent(updateLocationEvent);
+        monitorInternal.processEvents();
+
+        // verify
+        verify(geofenceManager, times(1)).startMonitoringFences(ArgumentMatchers.<PlacesMonitorPOI>anyList());
+        assertTrue("the scheduled flush should be cancelled", flush.isCancelled());
+    }
+
+    @Test
+    public void test_processEvents_when_nearByPlacesResponse_withNullPOIS() {
+        // setup configuration
+        Map<String,Object> configData = new HashMap<>();
+        when(extensionApi.getSharedEventState(anyString(), any(Event.class), any(ExtensionErrorCallback.class))).thenReturn(configData);
+
+        EventData eventData = new EventData();
+        eventData.putTypedList(PlacesMonitorConstants.EventDataKeys.NEAR_BY_PLACES_LIST,null, new PlacesMonitorPOIVariantSerializer());
+
+        // test
+        monitorInternal.queueEvent(nearByPlacesEvent(eventData));
+        monitorInternal.processEvents();
+
+        // verify
+        verify(geofenceManager, times(0)).startMonitoringFences(ArgumentMatchers.<PlacesMonitorPOI>anyList());
+    }
+
+
+    // ========================================================================================
+    // getExecutor
+    // ========================================================================================
+    @Test
+    public void test_getExecutor_NeverReturnsNull() {
+        // test
+        ExecutorService executorService= monitorInternal.getExecutor();
+        assertNotNull("The executor should not return null", executorService);
+
+        // verify
+        assertEquals("Gets the same excecutor instance on the next get", executorService , monitorInternal.getExecutor());
+    }
+
+    @Test
+    public void test_getScheduledExecutor_NeverReturnsNull() {
+        // test
+        ScheduledExecutorService scheduledExecutorService = monitorInternal.getScheduledExecutor();
+        assertNotNull("The scheduled executor should not return null", scheduledExecutorService);
+
+        // verify
+        assertEquals("Gets the same scheduled executor instance on the next get", scheduledExecutorService, monitorInternal.getScheduledExecutor());
+    }
+
+
+
+    private Event nearByPlacesEvent (final EventData eventData) {
+        return new Event.Builder("Near by Event",
+                PlacesMonitorTestConstants.EventType.PLACES,
+                PlacesMonitorTestConstants.EventSource.RESPONSE_CONTENT).setData(eventData).build();
+    }
+
+    private Event cachedNearbyPlacesEvent(final EventData eventData) {
+        return new Event.Builder(PlacesMonitorTestConstants.EVENTNAME_CACHED_NEARBY_PLACES,
+                PlacesMonitorTestConstants.EventType.MONITOR,
+                PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT).setData(eventData).build();
     }
 
     private List<PlacesMonitorPOI> samplePOIList() {
@@ -67,6 +67,7 @@ public class PlacesMonitorListenerHubSharedStateTests {
         waitForExecutor();
 
         // verify
+        verify(mockPlacesMonitorInternal, times(1)).invalidateConfigurationSnapshot();
         verify(mockPlacesMonitorInternal, times(1)).processEvents();
     }
 
@@ -111,6 +112,7 @@ public class PlacesMonitorListenerHubSharedStateTests {
         waitForExecutor();
 
         // verify
+        verify(mockPlacesMonitorInternal, times(0)).invalidateConfigurationSnapshot();
         verify(mockPlacesMonitorInternal, times(0)).processEvents();
     }
 
@@ -96,10 +96,28 @@ public class PlacesMonitorListenerMonitorRequestContentTests {
         waitForExecutor();
 
         // verify
-        verify(mockPlacesMonitorInternal, times(1)).queueEvent(event);
+        verify(mockPlacesMonitorInternal, times(1)).queueEvent(event, 0);
         verify(mockPlacesMonitorInternal, times(1)).processEvents();
     }
 
+    @Test
+    public void testHear_ValidEvent_Then_QueuedWithConfigurationVersionWhenHeard() {
+        // setup
+        EventData eventData = new EventData();
+        eventData.putString("dummyKey", "dummyValue");
+        Event event = new Event.Builder("testEvent", PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT, PlacesMonitorTestConstants.EventType.MONITOR).setData(eventData).build();
+
+        when(mockPlacesMonitorInternal.getConfigurationVersion()).thenReturn(3);
+
+        // test
+        listener.hear(event);
+        when(mockPlacesMonitorInternal.getConfigurationVersion()).thenReturn(4);
+        waitForExecutor();
+
+        // verify
+        verify(mockPlacesMonitorInternal, times(1)).queueEvent(event, 3);
+    }
+
     void waitForExecutor() {
         Future<?> future = executor.submit(new Runnable() {
             @Override
@@ -0,0 +1,90 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorListenerPlacesRequestContentTests.java
+//
+
+package com.adobe.marketing.mobile;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({PlacesMonitorInternal.class, ExtensionApi.class})
+public class PlacesMonitorListenerPlacesRequestContentTests {
+
+    @Mock
+    PlacesMonitorInternal mockPlacesMonitorInternal;
+
+    @Mock
+    ExtensionApi extensionApi;
+
+    private PlacesMonitorListenerPlacesRequestContent listener;
+
+    @Before
+    public void beforeEach() {
+        listener = new PlacesMonitorListenerPlacesRequestContent(extensionApi, PlacesMonitorTestConstants.EventType.PLACES, PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT);
+        when(extensionApi.getExtension()).thenReturn(mockPlacesMonitorInternal);
+    }
+
+    @Test
+    public void testHear_WithNullEventData() {
+        // setup
+        Event event = new Event.Builder("testEvent", PlacesMonitorTestConstants.EventType.PLACES, PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT).setData(null).build();
+
+        // test
+        listener.hear(event);
+
+        // verify
+        verify(mockPlacesMonitorInternal, times(0)).recordNearbyQuery(any(Event.class));
+    }
+
+    @Test
+    public void testHear_WithNullParentExtension() {
+        // setup
+        EventData eventData = new EventData();
+        eventData.putString("dummyKey", "dummyValue");
+        Event event = new Event.Builder("testEvent", PlacesMonitorTestConstants.EventType.PLACES, PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT).setData(eventData).build();
+        when(extensionApi.getExtension()).thenReturn(null);
+
+        // test
+        listener.hear(event);
+
+        // verify
+        verify(mockPlacesMonitorInternal, times(0)).recordNearbyQuery(any(Event.class));
+    }
+
+    @Test
+    public void testHear_ValidEvent_Then_RecordsQueryRightAway() {
+        // setup
+        EventData eventData = new EventData();
+        eventData.putString("dummyKey", "dummyValue");
+        Event event = new Event.Builder("testEvent", PlacesMonitorTestConstants.EventType.PLACES, PlacesMonitorTestConstants.EventSource.REQUEST_CONTENT).setData(eventData).build();
+
+        // test
+        listener.hear(event);
+
+        // verify, on the thread that hears the event
+        verify(mockPlacesMonitorInternal, times(1)).recordNearbyQuery(event);
+        verify(mockPlacesMonitorInternal, times(0)).getExecutor();
+    }
+}
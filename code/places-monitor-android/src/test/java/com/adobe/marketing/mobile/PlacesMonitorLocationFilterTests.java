@@ -0,0 +1,288 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorLocationFilterTests.java
+//
+
+package com.adobe.marketing.mobile;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PlacesMonitorLocationFilterTests {
+
+    // about 111 meters
+    private static final double ONE_THOUSANDTH_DEGREE = 0.001;
+    private static final long NOW = 1000000000L;
+
+    private PlacesMonitorLocationFilter filter;
+
+    @Before
+    public void before() {
+        filter = new PlacesMonitorLocationFilter();
+        filter.configure(PlacesMonitorTestConstants.LocationFilter.DEFAULT_MAX_ACCURACY,
+                         PlacesMonitorTestConstants.LocationFilter.DEFAULT_MAX_AGE,
+                         PlacesMonitorTestConstants.LocationFilter.DEFAULT_MAX_SPEED, false);
+    }
+
+    // ========================================================================================
+    // accuracy
+    // ========================================================================================
+
+    @Test
+    public void test_filter_when_inaccurate() {
+        // test
+        int verdict = filter.filter(37.33, -121.89, PlacesMonitorTestConstants.LocationFilter.DEFAULT_MAX_ACCURACY + 1, NOW, NOW);
+
+        // verify
+        assertEquals("an inaccurate fix should be dropped", PlacesMonitorLocationFilter.DROPPED_INACCURATE, verdict);
+        assertEquals(1, filter.getInaccurateCount());
+        assertEquals(0, filter.getAcceptedCount());
+    }
+
+    @Test
+    public void test_filter_when_accuracyUnknown() {
+        // test
+        int verdict = filter.filter(37.33, -121.89, -1, NOW, NOW);
+
+        // verify
+        assertEquals("a fix without accuracy should be accepted", PlacesMonitorLocationFilter.ACCEPTED, verdict);
+    }
+
+    @Test
+    public void test_filter_when_accuracyCheckDisabled() {
+        // setup
+        filter.configure(0, 0, 0, false);
+
+        // test
+        int verdict = filter.filter(37.33, -121.89, 50000, NOW, NOW);
+
+        // verify
+        assertEquals("any accuracy should be accepted", PlacesMonitorLocationFilter.ACCEPTED, verdict);
+    }
+
+    @Test
+    public void test_filter_when_farTierFixWith1500MetersAccuracy_then_accepted() {
+        // setup
+        filter.setTierMaxAccuracy(PlacesMonitorLocationPolicy.FAR.getMaxAccuracy());
+
+        // test, a low power fix
+        int verdict = filter.filter(37.33, -121.89, 1500, NOW, NOW);
+
+        // verify
+        assertEquals("a far tier fix should be accepted", PlacesMonitorLocationFilter.ACCEPTED, verdict);
+        assertEquals(0, filter.getInaccurateCount());
+    }
+
+    @Test
+    public void test_filter_when_nearTierFixWith1500MetersAccuracy_then_dropped() {
+        // setup
+        filter.setTierMaxAccuracy(PlacesMonitorLocationPolicy.NEAR.getMaxAccuracy());
+
+        // test
+        int verdict = filter.filter(37.33, -121.89, 1500, NOW, NOW);
+
+        // verify
+        assertEquals("a near tier fix should be held to the configured accuracy", PlacesMonitorLocationFilter.DROPPED_INACCURATE,
+                     verdict);
+    }
+
+    @Test
+    public void test_filter_when_accuracyCheckDisabled_then_tierIgnored() {
+        // setup
+        filter.configure(0, 0, 0, false);
+        filter.setTierMaxAccuracy(PlacesMonitorLocationPolicy.FAR.getMaxAccuracy());
+
+        // test
+        int verdict = filter.filter(37.33, -121.89, 50000, NOW, NOW);
+
+        // verify
+        assertEquals("the tier should not enable the disabled accuracy check", PlacesMonitorLocationFilter.ACCEPTED, verdict);
+    }
+
+    // ========================================================================================
+    // age
+    // ========================================================================================
+
+    @Test
+    public void test_filter_when_stale() {
+        // test
+        int verdict = filter.filter(37.33, -121.89, 20, NOW - PlacesMonitorTestConstants.LocationFilter.DEFAULT_MAX_AGE - 1, NOW);
+
+        // verify
+        assertEquals("a stale fix should be dropped", PlacesMonitorLocationFilter.DROPPED_STALE, verdict);
+        assertEquals(1, filter.getStaleCount());
+    }
+
+    @Test
+    public void test_filter_when_timeUnknown() {
+        // test
+        int verdict = filter.filter(37.33, -121.89, 20, 0, NOW);
+
+        // verify
+        assertEquals("a fix without time should be accepted", PlacesMonitorLocationFilter.ACCEPTED, verdict);
+    }
+
+    // ========================================================================================
+    // outliers
+    // ========================================================================================
+
+    @Test
+    public void test_filter_when_jump() {
+        // setup
+        filter.filter(37.33, -121.89, 20, NOW, NOW);
+
+        // test, about 11 kilometers in 10 seconds
+        int verdict = filter.filter(37.33 + 100 * ONE_THOUSANDTH_DEGREE, -121.89, 20, NOW + 10000, NOW + 10000);
+
+        // verify
+        assertEquals("a jump should be dropped", PlacesMonitorLocationFilter.DROPPED_OUTLIER, verdict);
+        assertEquals(1, filter.getOutlierCount());
+    }
+
+    @Test
+    public void test_filter_when_plausibleMovement() {
+        // setup
+        filter.filter(37.33, -121.89, 20, NOW, NOW);
+
+        // test, about 1.1 kilometers in 60 seconds
+        int verdict = filter.filter(37.33 + 10 * ONE_THOUSANDTH_DEGREE, -121.89, 20, NOW + 60000, NOW + 60000);
+
+        // verify
+        assertEquals("a plausible movement should be accepted", PlacesMonitorLocationFilter.ACCEPTED, verdict);
+    }
+
+    @Test
+    public void test_filter_when_jumpWithinAccuracy() {
+        // setup
+        filter.filter(37.33, -121.89, 500, NOW, NOW);
+
+        // test, about 555 meters in 1 second, within the accuracy of both fixes
+        int verdict = filter.filter(37.33 + 5 * ONE_THOUSANDTH_DEGREE, -121.89, 100, NOW + 1000, NOW + 1000);
+
+        // verify
+        assertEquals("a jump within the accuracy should be accepted", PlacesMonitorLocationFilter.ACCEPTED, verdict);
+    }
+
+    @Test
+    public void test_filter_when_consecutiveOutliers_then_accepted() {
+        // setup
+        filter.filter(37.33, -121.89, 20, NOW, NOW);
+        final double jumpedLatitude = 37.33 + 100 * ONE_THOUSANDTH_DEGREE;
+
+        for (int i = 1; i <= PlacesMonitorTestConstants.LocationFilter.MAX_CONSECUTIVE_OUTLIERS; i++) {
+            assertEquals(PlacesMonitorLocationFilter.DROPPED_OUTLIER,
+                         filter.filter(jumpedLatitude, -121.89, 20, NOW + i * 1000, NOW + i * 1000));
+        }
+
+        // test
+        int verdict = filter.filter(jumpedLatitude, -121.89, 20, NOW + 10000, NOW + 10000);
+
+        // verify
+        assertEquals("the location should be accepted after consecutive outliers", PlacesMonitorLocationFilter.ACCEPTED, verdict);
+        assertEquals(PlacesMonitorTestConstants.LocationFilter.MAX_CONSECUTIVE_OUTLIERS, filter.getOutlierCount());
+    }
+
+    @Test
+    public void test_filter_when_wallClockFixThenElapsedRealtimeFix_then_jumpDetected() {
+        // setup, a fix with only a wall clock time, taken now
+        final long wallClock = 1500000000000L;
+        filter.filter(37.33, -121.89, 20, PlacesMonitorLocationFilter.toElapsedRealtime(0, wallClock, NOW, wallClock), NOW);
+
+        // test, about 11 kilometers 10 seconds later, with an elapsed realtime
+        final long fixTime = PlacesMonitorLocationFilter.toElapsedRealtime((NOW + 10000) * 1000000, wallClock + 10000,
+                             NOW + 10000, wallClock + 10000);
+        int verdict = filter.filter(37.33 + 100 * ONE_THOUSANDTH_DEGREE, -121.89, 20, fixTime, NOW + 10000);
+
+        // verify
+        assertEquals("a jump should be dropped across the time bases", PlacesMonitorLocationFilter.DROPPED_OUTLIER, verdict);
+    }
+
+    @Test
+    public void test_reset_forgetsLastFix() {
+        // setup
+        filter.filter(37.33, -121.89, 20, NOW, NOW);
+
+        // test
+        filter.reset();
+        int verdict = filter.filter(37.33 + 100 * ONE_THOUSANDTH_DEGREE, -121.89, 20, NOW + 10000, NOW + 10000);
+
+        // verify
+        assertEquals("the fix should not be compared to a forgotten fix", PlacesMonitorLocationFilter.ACCEPTED, verdict);
+    }
+
+    // ========================================================================================
+    // toElapsedRealtime
+    // ========================================================================================
+
+    @Test
+    public void test_toElapsedRealtime() {
+        // verify
+        assertEquals("the elapsed realtime should be used", 5000, PlacesMonitorLocationFilter.toElapsedRealtime(5000000000L,
+                     1500000000000L, NOW, 1500000000000L));
+        assertEquals("the wall clock time should be moved through its age", NOW - 3000,
+                     PlacesMonitorLocationFilter.toElapsedRealtime(0, 1500000000000L - 3000, NOW, 1500000000000L));
+        assertEquals("a fix older than the boot should be placed before the boot", NOW - 1500000000000L + 1000,
+                     PlacesMonitorLocationFilter.toElapsedRealtime(0, 1000, NOW, 1500000000000L));
+        assertEquals("a fix without time should stay without time", 0,
+                     PlacesMonitorLocationFilter.toElapsedRealtime(0, 0, NOW, 1500000000000L));
+    }
+
+    // ========================================================================================
+    // smoothing
+    // ========================================================================================
+
+    @Test
+    public void test_filter_when_smoothingEnabled() {
+        // setup
+        filter.configure(PlacesMonitorTestConstants.LocationFilter.DEFAULT_MAX_ACCURACY,
+                         PlacesMonitorTestConstants.LocationFilter.DEFAULT_MAX_AGE,
+                         PlacesMonitorTestConstants.LocationFilter.DEFAULT_MAX_SPEED, true);
+        filter.filter(37.33, -121.89, 20, NOW, NOW);
+
+        // test, an equally accurate fix at the same time
+        filter.filter(37.33 + ONE_THOUSANDTH_DEGREE, -121.89, 20, NOW, NOW);
+
+        // verify
+        assertEquals("the smoothed location should be in between", 37.33 + ONE_THOUSANDTH_DEGREE / 2,
+                     filter.getSmoothedLatitude(), 1e-9);
+        assertTrue("the smoothed location should be more accurate", filter.getSmoothedAccuracy() < 20);
+    }
+
+    @Test
+    public void test_filter_when_smoothingEnabled_then_accurateFixWeighsMore() {
+        // setup
+        filter.configure(PlacesMonitorTestConstants.LocationFilter.DEFAULT_MAX_ACCURACY,
+                         PlacesMonitorTestConstants.LocationFilter.DEFAULT_MAX_AGE,
+                         PlacesMonitorTestConstants.LocationFilter.DEFAULT_MAX_SPEED, true);
+        filter.filter(37.33, -121.89, 200, NOW, NOW);
+
+        // test
+        filter.filter(37.33 + ONE_THOUSANDTH_DEGREE, -121.89, 10, NOW + 1000, NOW + 1000);
+
+        // verify
+        assertTrue("the accurate fix should weigh more",
+                   filter.getSmoothedLatitude() > 37.33 + 0.9 * ONE_THOUSANDTH_DEGREE);
+    }
+
+    @Test
+    public void test_filter_when_smoothingDisabled() {
+        // test
+        filter.filter(37.33, -121.89, 20, NOW, NOW);
+
+        // verify
+        assertTrue("nothing should be smoothed", filter.getSmoothedAccuracy() < 0);
+    }
+}
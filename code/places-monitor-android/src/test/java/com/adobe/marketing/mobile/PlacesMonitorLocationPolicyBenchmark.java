@@ -0,0 +1,236 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorLocationPolicyBenchmark.java
+//
+
+package com.adobe.marketing.mobile;
+
+import com.google.android.gms.location.LocationRequest;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Simulated location cost of a day of a commuter, with the fixed location request and with the tiers of
+ * {@link PlacesMonitorLocationPolicy}.
+ * <p>
+ * The fused location provider is modelled as computing one fix per interval of the active request, each fix costing
+ * {@value #HIGH_ACCURACY_FIX_COST}, {@value #BALANCED_FIX_COST} or {@value #LOW_POWER_FIX_COST} units for high accuracy,
+ * balanced and low power priority, and delivering it when the device moved past the smallest displacement. The costs
+ * are relative, GPS against Wi-Fi and cell positioning, so only the ratios between the policies are meaningful.
+ * A visit to a place counts as detected when a delivered fix falls within the place while the device is there.
+ * <p>
+ * Benchmarks are skipped in the regular unit test run, run them with {@code ./gradlew test -Pbenchmark}.
+ */
+public class PlacesMonitorLocationPolicyBenchmark {
+
+    private static final long STEP_MILLIS = 10 * 1000;
+    private static final double HIGH_ACCURACY_FIX_COST = 1.0;
+    private static final double BALANCED_FIX_COST = 0.2;
+    private static final double LOW_POWER_FIX_COST = 0.05;
+    private static final int RANDOM_POI_COUNT = 40;
+
+    // home, office, a lunch place and a store on the way home
+    private static final double[] HOME = {37.30, -121.95};
+    private static final double[] OFFICE = {37.52, -121.70};
+    private static final double[] LUNCH = {37.525, -121.695};
+    private static final double[] STORE = {37.40, -121.83};
+
+    @Before
+    public void before() {
+        Assume.assumeTrue(Boolean.getBoolean(PlacesMonitorTestConstants.BENCHMARK_PROPERTY));
+    }
+
+    @Test
+    public void benchmark_commuterDay() {
+        final List<PlacesMonitorPOI> pois = PlacesMonitorPOIRTreeTests.randomPOIs(RANDOM_POI_COUNT, RANDOM_POI_COUNT);
+        pois.add(new PlacesMonitorPOI("lunch", "lunch", LUNCH[0], LUNCH[1], 100));
+        pois.add(new PlacesMonitorPOI("store", "store", STORE[0], STORE[1], 100));
+
+        final List<double[]> trajectory = commuterDay();
+
+        final Result current = simulate(trajectory, pois, null, LocationRequest.PRIORITY_HIGH_ACCURACY,
+                                        PlacesMonitorTestConstants.Location.REQUEST_INTERVAL,
+                                        PlacesMonitorTestConstants.Location.REQUEST_SMALLEST_DISPLACEMENT);
+        final Result hourly = simulate(trajectory, pois, null, LocationRequest.PRIORITY_HIGH_ACCURACY,
+                                       PlacesMonitorTestConstants.LocationPolicy.FAR_INTERVAL,
+                                       PlacesMonitorTestConstants.Location.REQUEST_SMALLEST_DISPLACEMENT);
+        final Result adaptive = simulate(trajectory, pois, new PlacesMonitorLocationPolicy(), 0, 0, 0);
+
+        print("fixed request", current, current);
+        print("high accuracy hourly", hourly, current);
+        print("adaptive tiers", adaptive, current);
+        System.out.println(String.format("adaptive tiers save %.1f%% against the fixed request, cost %.1f times high "
+                                         + "accuracy hourly, %d tier changes",
+                                         100 * (1 - adaptive.cost / current.cost), adaptive.cost / hourly.cost,
+                                         adaptive.tierChanges));
+    }
+
+    /**
+     * @return the position and speed of the device for every step of the day, as {latitude, longitude, speed}
+     */
+    private static List<double[]> commuterDay() {
+        final List<double[]> trajectory = new ArrayList<>();
+        stay(trajectory, HOME, 8 * 60);
+        travel(trajectory, HOME, OFFICE, 15);
+        stay(trajectory, OFFICE, 4 * 60);
+        travel(trajectory, OFFICE, LUNCH, 1.4);
+        stay(trajectory, LUNCH, 40);
+        travel(trajectory, LUNCH, OFFICE, 1.4);
+        stay(trajectory, OFFICE, 4 * 60);
+        travel(trajectory, OFFICE, STORE, 15);
+        stay(trajectory, STORE, 20);
+        travel(trajectory, STORE, HOME, 15);
+        stay(trajectory, HOME, 6 * 60);
+        return trajectory;
+    }
+
+    private static void stay(final List<double[]> trajectory, final double[] place, final int minutes) {
+        for (long t = 0; t < minutes * 60 * 1000L; t += STEP_MILLIS) {
+            trajectory.add(new double[] {place[0], place[1], 0});
+        }
+    }
+
+    private static void travel(final List<double[]> trajectory, final double[] from, final double[] to,
+                               final double speed) {
+        final double distance = PlacesMonitorGeoUtil.distanceInMeters(from[0], from[1], to[0], to[1]);
+        final int steps = (int) Math.ceil(distance / speed / (STEP_MILLIS / 1000.0));
+
+        for (int i = 0; i < steps; i++) {
+            final double ratio = (double) i / steps;
+            trajectory.add(new double[] {from[0] + ratio * (to[0] - from[0]), from[1] + ratio * (to[1] - from[1]), speed});
+        }
+    }
+
+    private static Result simulate(final List<double[]> trajectory, final List<PlacesMonitorPOI> pois,
+                                   final PlacesMonitorLocationPolicy policy, final int fixedPriority,
+                                   final long fixedInterval, final float fixedDisplacement) {
+        final Result result = new Result();
+        final boolean[] requestReplaced = new boolean[1];
+
+        if (policy != null) {
+            policy.setListener(new PlacesMonitorLocationPolicy.Listener() {
+                @Override
+                public void onTierChanged(final PlacesMonitorLocationPolicy.Tier tier) {
+                    requestReplaced[0] = true;
+                }
+            });
+            policy.setFences(pois);
+        }
+
+        long nextFixTime = 0;
+        double[] lastDelivered = null;
+        final boolean[] inside = new boolean[pois.size()];
+        final boolean[] detected = new boolean[pois.size()];
+
+        for (int step = 0; step < trajectory.size(); step++) {
+            final long time = step * STEP_MILLIS;
+            final double[] position = trajectory.get(step);
+
+            for (int i = 0; i < pois.size(); i++) {
+                final boolean nowInside = PlacesMonitorGeoUtil.distanceToEdgeInMeters(position[0], position[1],
+                                          pois.get(i)) <= 0;
+
+                if (nowInside && !inside[i]) {
+                    result.visits++;
+                    detected[i] = false;
+                }
+
+                inside[i] = nowInside;
+            }
+
+            if (time < nextFixTime) {
+                continue;
+            }
+
+            final int priority = policy == null ? fixedPriority : policy.getTier().getPriority();
+            final long interval = policy == null ? fixedInterval : policy.getTier().getInterval();
+            final float displacement = policy == null ? fixedDisplacement : policy.getTier().getSmallestDisplacement();
+            result.cost += fixCost(priority);
+            result.fixes++;
+            nextFixTime = time + interval;
+
+            if (lastDelivered != null && PlacesMonitorGeoUtil.distanceInMeters(lastDelivered[0], lastDelivered[1],
+                    position[0], position[1]) < displacement) {
+                continue;
+            }
+
+            lastDelivered = position;
+
+            for (int i = 0; i < pois.size(); i++) {
+                if (inside[i] && !detected[i]) {
+                    detected[i] = true;
+                    result.detectedVisits++;
+                }
+            }
+
+            if (policy != null) {
+                requestReplaced[0] = false;
+                policy.onLocation(position[0], position[1], fixAccuracy(priority), (float) position[2], false);
+
+                if (requestReplaced[0]) {
+                    // a replaced request fixes the location right away
+                    nextFixTime = time + STEP_MILLIS;
+                }
+            }
+        }
+
+        result.tierChanges = policy == null ? 0 : policy.getTierChangeCount();
+        return result;
+    }
+
+    private static double fixCost(final int priority) {
+        switch (priority) {
+            case LocationRequest.PRIORITY_HIGH_ACCURACY:
+                return HIGH_ACCURACY_FIX_COST;
+
+            case LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY:
+                return BALANCED_FIX_COST;
+
+            default:
+                return LOW_POWER_FIX_COST;
+        }
+    }
+
+    private static float fixAccuracy(final int priority) {
+        switch (priority) {
+            case LocationRequest.PRIORITY_HIGH_ACCURACY:
+                return 10;
+
+            case LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY:
+                return 100;
+
+            default:
+                return 1000;
+        }
+    }
+
+    private static void print(final String name, final Result result, final Result baseline) {
+        System.out.println(String.format("%s: %d fixes, cost %.1f (%.1f%% of the fixed request), %d of %d visits detected",
+                                         name, result.fixes, result.cost, 100 * result.cost / baseline.cost,
+                                         result.detectedVisits, result.visits));
+    }
+
+    private static final class Result {
+        int fixes;
+        double cost;
+        int visits;
+        int detectedVisits;
+        int tierChanges;
+    }
+}
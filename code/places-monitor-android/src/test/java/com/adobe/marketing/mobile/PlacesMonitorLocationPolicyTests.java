@@ -0,0 +1,286 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorLocationPolicyTests.java
+//
+
+package com.adobe.marketing.mobile;
+
+import com.google.android.gms.location.LocationRequest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PlacesMonitorLocationPolicyTests {
+
+    // about 111 meters
+    private static final double ONE_THOUSANDTH_DEGREE = 0.001;
+
+    private PlacesMonitorLocationPolicy policy;
+    private List<PlacesMonitorPOI> fences;
+    private List<PlacesMonitorLocationPolicy.Tier> notifiedTiers;
+
+    @Before
+    public void before() {
+        policy = new PlacesMonitorLocationPolicy();
+        fences = new ArrayList<>();
+        fences.add(new PlacesMonitorPOI("id", "name", 37.33, -121.89, 100));
+        notifiedTiers = new ArrayList<>();
+        policy.setListener(new PlacesMonitorLocationPolicy.Listener() {
+            @Override
+            public void onTierChanged(final PlacesMonitorLocationPolicy.Tier tier) {
+                notifiedTiers.add(tier);
+            }
+        });
+    }
+
+    // ========================================================================================
+    // selectTier
+    // ========================================================================================
+
+    @Test
+    public void test_selectTier_when_far() {
+        // test
+        PlacesMonitorLocationPolicy.Tier tier = PlacesMonitorLocationPolicy.selectTier(20000, -1, -1, false,
+                                                PlacesMonitorLocationPolicy.APPROACHING);
+
+        // verify
+        assertEquals("a far fence should select the far tier", PlacesMonitorLocationPolicy.FAR, tier);
+        assertEquals(LocationRequest.PRIORITY_LOW_POWER, tier.getPriority());
+    }
+
+    @Test
+    public void test_selectTier_when_approaching() {
+        // test
+        PlacesMonitorLocationPolicy.Tier tier = PlacesMonitorLocationPolicy.selectTier(3000, -1, -1, false,
+                                                PlacesMonitorLocationPolicy.FAR);
+
+        // verify
+        assertEquals(PlacesMonitorLocationPolicy.APPROACHING, tier);
+    }
+
+    @Test
+    public void test_selectTier_when_near() {
+        // test
+        PlacesMonitorLocationPolicy.Tier tier = PlacesMonitorLocationPolicy.selectTier(500, -1, -1, false,
+                                                PlacesMonitorLocationPolicy.FAR);
+
+        // verify
+        assertEquals("a near fence should select the near tier", PlacesMonitorLocationPolicy.NEAR, tier);
+        assertEquals(LocationRequest.PRIORITY_HIGH_ACCURACY, tier.getPriority());
+    }
+
+    @Test
+    public void test_selectTier_when_justPastTheDistance_then_tierKept() {
+        // test
+        PlacesMonitorLocationPolicy.Tier tier = PlacesMonitorLocationPolicy.selectTier(
+                PlacesMonitorTestConstants.LocationPolicy.NEAR_DISTANCE + 100, -1, -1, false, PlacesMonitorLocationPolicy.NEAR);
+
+        // verify
+        assertEquals("the near tier should be kept on its edge", PlacesMonitorLocationPolicy.NEAR, tier);
+    }
+
+    @Test
+    public void test_selectTier_when_clearlyPastTheDistance_then_tierLeft() {
+        // test
+        PlacesMonitorLocationPolicy.Tier tier = PlacesMonitorLocationPolicy.selectTier(
+                PlacesMonitorTestConstants.LocationPolicy.NEAR_DISTANCE * 2, -1, -1, false, PlacesMonitorLocationPolicy.NEAR);
+
+        // verify
+        assertEquals(PlacesMonitorLocationPolicy.APPROACHING, tier);
+    }
+
+    @Test
+    public void test_selectTier_when_inaccurate_then_accuracyCapped() {
+        // test, 7 kilometers away a low power fix accurate to 3 kilometers
+        PlacesMonitorLocationPolicy.Tier tier = PlacesMonitorLocationPolicy.selectTier(7000, 3000, -1, false,
+                                                PlacesMonitorLocationPolicy.FAR);
+
+        // verify
+        assertEquals("only the displacement of the far tier should be counted", PlacesMonitorLocationPolicy.FAR, tier);
+    }
+
+    @Test
+    public void test_selectTier_when_inaccurate_then_fixDistanceLeavesTier() {
+        // test, the fix is clearly past the approaching distance, the device may not be
+        PlacesMonitorLocationPolicy.Tier tier = PlacesMonitorLocationPolicy.selectTier(
+                PlacesMonitorTestConstants.LocationPolicy.APPROACHING_DISTANCE * 1.3, 250, -1, false,
+                PlacesMonitorLocationPolicy.APPROACHING);
+
+        // verify
+        assertEquals(PlacesMonitorLocationPolicy.FAR, tier);
+    }
+
+    @Test
+    public void test_selectTier_when_fast() {
+        // test, 20 kilometers at 30 meters per second is reached within the interval of the far tier
+        PlacesMonitorLocationPolicy.Tier tier = PlacesMonitorLocationPolicy.selectTier(20000, -1, 30, false,
+                                                PlacesMonitorLocationPolicy.FAR);
+
+        // verify
+        assertEquals("a fast device should get the next tier", PlacesMonitorLocationPolicy.APPROACHING, tier);
+    }
+
+    @Test
+    public void test_selectTier_when_slow() {
+        // test
+        PlacesMonitorLocationPolicy.Tier tier = PlacesMonitorLocationPolicy.selectTier(20000, -1, 1, false,
+                                                PlacesMonitorLocationPolicy.FAR);
+
+        // verify
+        assertEquals(PlacesMonitorLocationPolicy.FAR, tier);
+    }
+
+    @Test
+    public void test_selectTier_when_foreground() {
+        // test
+        PlacesMonitorLocationPolicy.Tier tier = PlacesMonitorLocationPolicy.selectTier(20000, -1, -1, true,
+                                                PlacesMonitorLocationPolicy.FAR);
+
+        // verify
+        assertEquals("an app in the foreground should not use the far tier", PlacesMonitorLocationPolicy.APPROACHING, tier);
+    }
+
+    @Test
+    public void test_selectTier_when_noFenceNearby() {
+        // test
+        PlacesMonitorLocationPolicy.Tier tier = PlacesMonitorLocationPolicy.selectTier(Double.POSITIVE_INFINITY, -1, 30, false,
+                                                PlacesMonitorLocationPolicy.APPROACHING);
+
+        // verify
+        assertEquals(PlacesMonitorLocationPolicy.FAR, tier);
+    }
+
+    // ========================================================================================
+    // onLocation and setFences
+    // ========================================================================================
+
+    @Test
+    public void test_onLocation_when_fencesUnknown() {
+        // test
+        policy.onLocation(37.33 + 100 * ONE_THOUSANDTH_DEGREE, -121.89, 20, -1, false);
+
+        // verify
+        assertEquals("the tier should be kept until the fences are known", PlacesMonitorLocationPolicy.APPROACHING,
+                     policy.getTier());
+        assertTrue(notifiedTiers.isEmpty());
+    }
+
+    @Test
+    public void test_onLocation_when_tierChanges_then_notifiedOnce() {
+        // setup
+        policy.setFences(fences);
+
+        // test
+        policy.onLocation(37.33 + ONE_THOUSANDTH_DEGREE, -121.89, 20, -1, false);
+        policy.onLocation(37.33 + 2 * ONE_THOUSANDTH_DEGREE, -121.89, 20, -1, false);
+
+        // verify
+        assertEquals(PlacesMonitorLocationPolicy.NEAR, policy.getTier());
+        assertEquals("the listener should be notified once", Collections.singletonList(PlacesMonitorLocationPolicy.NEAR),
+                     notifiedTiers);
+        assertEquals(1, policy.getTierChangeCount());
+    }
+
+    @Test
+    public void test_onLocation_when_inaccurate_then_nearestPossibleDistanceUsed() {
+        // setup, about 1.1 kilometers to the edge of the fence
+        policy.setFences(fences);
+
+        // test
+        policy.onLocation(37.33 + 11 * ONE_THOUSANDTH_DEGREE, -121.89, 200, -1, false);
+
+        // verify
+        assertEquals("the device may be within the accuracy of the fix", PlacesMonitorLocationPolicy.NEAR, policy.getTier());
+    }
+
+    @Test
+    public void test_onLocation_when_veryInaccurate_then_accuracyCapped() {
+        // setup, about 1.9 kilometers to the edge of the fence
+        policy.setFences(fences);
+
+        // test
+        policy.onLocation(37.33 + 18 * ONE_THOUSANDTH_DEGREE, -121.89, 1500, -1, false);
+
+        // verify
+        assertEquals("only the displacement of the approaching tier should be counted",
+                     PlacesMonitorLocationPolicy.APPROACHING, policy.getTier());
+        assertTrue(notifiedTiers.isEmpty());
+    }
+
+    @Test
+    public void test_onLocation_when_coarseAndFineFixesAlternate_then_tierKept() {
+        // setup, about 7 kilometers to the edge of the fence
+        policy.setFences(fences);
+        policy.onLocation(37.33 + 64 * ONE_THOUSANDTH_DEGREE, -121.89, 100, -1, false);
+        assertEquals(PlacesMonitorLocationPolicy.FAR, policy.getTier());
+
+        // test, low power fixes accurate to 3 kilometers between accurate ones at the same place
+        for (int i = 0; i < 5; i++) {
+            policy.onLocation(37.33 + 64 * ONE_THOUSANDTH_DEGREE, -121.89, 3000, -1, false);
+            policy.onLocation(37.33 + 64 * ONE_THOUSANDTH_DEGREE, -121.89, 100, -1, false);
+        }
+
+        // verify
+        assertEquals(PlacesMonitorLocationPolicy.FAR, policy.getTier());
+        assertEquals("the tier should not flip with the accuracy of the fixes",
+                     Collections.singletonList(PlacesMonitorLocationPolicy.FAR), notifiedTiers);
+        assertEquals(1, policy.getTierChangeCount());
+    }
+
+    @Test
+    public void test_setFences_then_tierSelectedAgainstLastLocation() {
+        // setup
+        policy.onLocation(37.33 + ONE_THOUSANDTH_DEGREE, -121.89, 20, -1, false);
+
+        // test
+        policy.setFences(fences);
+
+        // verify
+        assertEquals(PlacesMonitorLocationPolicy.NEAR, policy.getTier());
+        assertEquals(1, notifiedTiers.size());
+    }
+
+    @Test
+    public void test_setFences_when_empty() {
+        // setup
+        policy.onLocation(37.33, -121.89, 20, -1, false);
+
+        // test
+        policy.setFences(new ArrayList<PlacesMonitorPOI>());
+
+        // verify
+        assertEquals("without fences nearby the far tier should be selected", PlacesMonitorLocationPolicy.FAR,
+                     policy.getTier());
+    }
+
+    @Test
+    public void test_reset() {
+        // setup
+        policy.setFences(fences);
+        policy.onLocation(37.33, -121.89, 20, -1, false);
+
+        // test
+        policy.reset();
+        policy.onLocation(37.33, -121.89, 20, -1, false);
+
+        // verify
+        assertEquals("the fences should be forgotten", PlacesMonitorLocationPolicy.APPROACHING, policy.getTier());
+    }
+}
@@ -0,0 +1,471 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorPOICacheTests.java
+//
+
+package com.adobe.marketing.mobile;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PlacesMonitorPOICacheTests {
+
+    private static final double QUERY_LATITUDE = 37.3309;
+    private static final double QUERY_LONGITUDE = -121.8939;
+    // size of the geohash cells of the cache, 15 bits of latitude and longitude
+    private static final double LATITUDE_STEP = 180.0 / (1 << 15);
+    private static final double LONGITUDE_STEP = 360.0 / (1 << 15);
+
+    private PlacesMonitorPOICache poiCache;
+
+    @Before
+    public void before() {
+        poiCache = new PlacesMonitorPOICache();
+    }
+
+    // ========================================================================================
+    // geohash
+    // ========================================================================================
+
+    @Test
+    public void test_geohash() {
+        assertEquals("geohash should be correct", "u4pruy", PlacesMonitorPOICache.geohash(57.64911, 10.40744));
+        assertEquals("geohash should be correct", "s00000", PlacesMonitorPOICache.geohash(0.0, 0.0));
+    }
+
+    // ========================================================================================
+    // getNearbyPOIs
+    // ========================================================================================
+
+    @Test
+    public void test_getNearbyPOIs_when_emptyCache() {
+        assertNull("an empty cache should not cover any location", poiCache.getNearbyPOIs(QUERY_LATITUDE, QUERY_LONGITUDE, 20));
+    }
+
+    @Test
+    public void test_getNearbyPOIs_when_locationIsCovered() {
+        // setup
+        poiCache.addPendingQuery(QUERY_LATITUDE, QUERY_LONGITUDE);
+        poiCache.cachePOIs(poisAroundQueryLocation());
+
+        // test
+        List<PlacesMonitorPOI> nearbyPOIs = poiCache.getNearbyPOIs(QUERY_LATITUDE + 0.001, QUERY_LONGITUDE, 3);
+
+        // verify
+        assertNotNull("location inside the covered area should be answered from cache", nearbyPOIs);
+        assertEquals("the nearest pois should be returned", 3, nearbyPOIs.size());
+        assertEquals("pois should be ordered by distance", "near1", nearbyPOIs.get(0).getIdentifier());
+        assertEquals("pois should be ordered by distance", "near3", nearbyPOIs.get(1).getIdentifier());
+        assertEquals("pois should be ordered by distance", "near2", nearbyPOIs.get(2).getIdentifier());
+    }
+
+    @Test
+    public void test_getNearbyPOIs_limitsCount() {
+        // setup
+        poiCache.addPendingQuery(QUERY_LATITUDE, QUERY_LONGITUDE);
+        poiCache.cachePOIs(poisAroundQueryLocation());
+
+        // test
+        List<PlacesMonitorPOI> nearbyPOIs = poiCache.getNearbyPOIs(QUERY_LATITUDE, QUERY_LONGITUDE, 1);
+
+        // verify
+        assertEquals("returned pois should be limited to the count", 1, nearbyPOIs.size());
+        assertEquals("the nearest poi should be returned", "near1", nearbyPOIs.get(0).getIdentifier());
+    }
+
+    @Test
+    public void test_getNearbyPOIs_when_locationOutsideCoverage() {
+        // setup
+        poiCache.addPendingQuery(QUERY_LATITUDE, QUERY_LONGITUDE);
+        poiCache.cachePOIs(poisAroundQueryLocation());
+
+        // test, about 30 kilometers north of the query location
+        assertNull("location outside the covered area should not be answered from cache",
+                   poiCache.getNearbyPOIs(QUERY_LATITUDE + 0.3, QUERY_LONGITUDE, 20));
+    }
+
+    @Test
+    public void test_getNearbyPOIs_when_notEnoughPOIsInCoveredArea() {
+        // setup
+        poiCache.addPendingQuery(QUERY_LATITUDE, QUERY_LONGITUDE);
+        poiCache.cachePOIs(poisAroundQueryLocation());
+
+        // test, about 4 kilometers west of the query location, the nearest pois may be outside the covered area
+        List<PlacesMonitorPOI> nearbyPOIs = poiCache.getNearbyPOIs(QUERY_LATITUDE, QUERY_LONGITUDE - 0.045, 20);
+
+        // verify
+        assertNull("the location should be queried", nearbyPOIs);
+    }
+
+    @Test
+    public void test_getNearbyPOIs_when_nearestPOIBeyondNeighbouringCells() {
+        // setup, the location is at the center of its cell
+        final double latitude = (Math.floor((QUERY_LATITUDE + 90) / LATITUDE_STEP) + 0.5) * LATITUDE_STEP - 90;
+        final double longitude = (Math.floor((QUERY_LONGITUDE + 180) / LONGITUDE_STEP) + 0.5) * LONGITUDE_STEP - 180;
+        List<PlacesMonitorPOI> pois = new ArrayList<>();
+        // in the diagonal neighbouring cell, about 1150 meters away
+        pois.add(new PlacesMonitorPOI("diagonal", "diagonal", latitude + LATITUDE_STEP, longitude + LONGITUDE_STEP, 100));
+        // two cells north, about 1000 meters away
+        pois.add(new PlacesMonitorPOI("north", "north", latitude + 1.65 * LATITUDE_STEP, longitude, 100));
+        pois.add(new PlacesMonitorPOI("far", "far", latitude + 0.08, longitude, 100));
+        poiCache.addPendingQuery(latitude, longitude);
+        poiCache.cachePOIs(pois);
+
+        // test
+        List<PlacesMonitorPOI> nearbyPOIs = poiCache.getNearbyPOIs(latitude, longitude, 1);
+
+        // verify
+        assertEquals(1, nearbyPOIs.size());
+        assertEquals("the nearest poi should be found beyond the neighbouring cells", "north", nearbyPOIs.get(0).getIdentifier());
+    }
+
+    @Test
+    public void test_getNearbyPOIs_when_ringNotCovered() {
+        // setup, the coverage of the response is about 1 kilometer
+        List<PlacesMonitorPOI> pois = new ArrayList<>();
+        pois.add(new PlacesMonitorPOI("near", "near", QUERY_LATITUDE + 0.001, QUERY_LONGITUDE, 100));
+        pois.add(new PlacesMonitorPOI("edge", "edge", QUERY_LATITUDE + 0.009, QUERY_LONGITUDE, 100));
+        poiCache.addPendingQuery(QUERY_LATITUDE, QUERY_LONGITUDE);
+        poiCache.cachePOIs(pois);
+
+        // test
+        List<PlacesMonitorPOI> nearbyPOIs = poiCache.getNearbyPOIs(QUERY_LATITUDE, QUERY_LONGITUDE, 2);
+
+        // verify
+        assertNull("the pois outside the proven radius should not be trusted", nearbyPOIs);
+    }
+
+    @Test
+    public void test_getNearbyPOIs_when_largeEmptyAreaIsCovered() {
+        // setup, responses around the location cover an area without pois up to the maximum coverage radius,
+        // each with a single poi 15 kilometers further out
+        final double[] northOffsets = {0, -6, 6};
+        final double[] eastOffsets = {0, -12, -6, 6, 12};
+
+        for (double north : northOffsets) {
+            for (double east : eastOffsets) {
+                final double length = Math.max(Math.hypot(north, east), 1);
+                final double poiNorth = north == 0 && east == 0 ? 15 : north + 15 * north / length;
+                final double poiEast = east + 15 * east / length;
+                List<PlacesMonitorPOI> pois = new ArrayList<>();
+                pois.add(new PlacesMonitorPOI("poi" + north + east, "poi", QUERY_LATITUDE + toLatitude(poiNorth),
+                                              QUERY_LONGITUDE + toLongitude(poiEast), 100));
+                poiCache.addPendingQuery(QUERY_LATITUDE + toLatitude(north), QUERY_LONGITUDE + toLongitude(east));
+                poiCache.cachePOIs(pois);
+            }
+        }
+
+        // test
+        List<PlacesMonitorPOI> nearbyPOIs = poiCache.getNearbyPOIs(QUERY_LATITUDE, QUERY_LONGITUDE, 20);
+
+        // verify, the search reaches about 17 rings, every cell is visited once
+        assertNotNull("the covered area should be answered from cache", nearbyPOIs);
+        assertTrue("no poi should be found in the empty area", nearbyPOIs.isEmpty());
+        assertTrue("every cell should be visited at most once", poiCache.getSearchedCellCount() <= 35 * 35);
+    }
+
+    @Test
+    public void test_cachePOIs_withoutQueryLocation() {
+        // test
+        poiCache.cachePOIs(poisAroundQueryLocation());
+
+        // verify
+        assertEquals("pois should be indexed", 4, poiCache.getPOICount());
+        assertNull("location should not be covered without a query location", poiCache.getNearbyPOIs(QUERY_LATITUDE, QUERY_LONGITUDE, 20));
+    }
+
+    @Test
+    public void test_cachePOIs_queryLocationIsConsumed() {
+        // setup
+        poiCache.addPendingQuery(QUERY_LATITUDE, QUERY_LONGITUDE);
+        poiCache.cachePOIs(new ArrayList<PlacesMonitorPOI>());
+
+        // test, the second response is not attributed to the first query
+        poiCache.cachePOIs(poisAroundQueryLocation());
+
+        // verify
+        assertNull("location should not be covered", poiCache.getNearbyPOIs(QUERY_LATITUDE, QUERY_LONGITUDE, 20));
+    }
+
+    @Test
+    public void test_cachePOIs_when_queriesOverlap_then_notCovered() {
+        // setup, the response may answer either query
+        poiCache.addPendingQuery(QUERY_LATITUDE, QUERY_LONGITUDE);
+        poiCache.addPendingQuery(QUERY_LATITUDE + 0.1, QUERY_LONGITUDE);
+
+        // test
+        poiCache.cachePOIs(poisAroundQueryLocation());
+        poiCache.cachePOIs(poisAroundQueryLocation());
+
+        // verify
+        assertEquals("pois should be indexed", 4, poiCache.getPOICount());
+        assertNull("location should not be covered", poiCache.getNearbyPOIs(QUERY_LATITUDE, QUERY_LONGITUDE, 20));
+        assertEquals("neither response should be matched to a query", 2, poiCache.getUnmatchedResponseCount());
+    }
+
+    @Test
+    public void test_cachePOIs_when_responseUnmatched_then_cachedPOIsKept() {
+        // setup
+        poiCache.addPendingQuery(QUERY_LATITUDE, QUERY_LONGITUDE);
+        poiCache.cachePOIs(poisAroundQueryLocation());
+
+        // test, the response to a query of the app that was not heard, about 20 kilometers north
+        List<PlacesMonitorPOI> pois = new ArrayList<>();
+        pois.add(new PlacesMonitorPOI("other", "other", QUERY_LATITUDE + 0.2, QUERY_LONGITUDE, 100));
+        poiCache.cachePOIs(pois);
+
+        // verify
+        assertEquals("no cached poi should be evicted", 5, poiCache.getPOICount());
+        List<PlacesMonitorPOI> nearbyPOIs = poiCache.getNearbyPOIs(QUERY_LATITUDE + 0.001, QUERY_LONGITUDE, 3);
+        assertNotNull("the covered location should still be answered from cache", nearbyPOIs);
+        assertEquals("near1", nearbyPOIs.get(0).getIdentifier());
+        assertEquals(1, poiCache.getUnmatchedResponseCount());
+    }
+
+    @Test
+    public void test_cachePOIs_removesPOIsMissingFromCoveredArea() {
+        // setup
+        poiCache.addPendingQuery(QUERY_LATITUDE, QUERY_LONGITUDE);
+        poiCache.cachePOIs(poisAroundQueryLocation());
+
+        // test, near2 is deleted from the server
+        List<PlacesMonitorPOI> pois = poisAroundQueryLocation();
+        pois.remove(1);
+        poiCache.addPendingQuery(QUERY_LATITUDE, QUERY_LONGITUDE);
+        poiCache.cachePOIs(pois);
+
+        // verify
+        List<PlacesMonitorPOI> nearbyPOIs = poiCache.getNearbyPOIs(QUERY_LATITUDE, QUERY_LONGITUDE, 2);
+        assertEquals("near1", nearbyPOIs.get(0).getIdentifier());
+        assertEquals("deleted poi should be removed from the cache", "near3", nearbyPOIs.get(1).getIdentifier());
+        assertEquals("poi count should be correct", 3, poiCache.getPOICount());
+    }
+
+    @Test
+    public void test_cachePOIs_movedPOI() {
+        // setup
+        poiCache.addPendingQuery(QUERY_LATITUDE, QUERY_LONGITUDE);
+        poiCache.cachePOIs(poisAroundQueryLocation());
+
+        // test, move near1 to the far away cell
+        List<PlacesMonitorPOI> pois = new ArrayList<>();
+        pois.add(new PlacesMonitorPOI("near1", "near1", QUERY_LATITUDE + 0.05, QUERY_LONGITUDE, 100));
+        poiCache.cachePOIs(pois);
+
+        // verify
+        List<PlacesMonitorPOI> nearbyPOIs = poiCache.getNearbyPOIs(QUERY_LATITUDE, QUERY_LONGITUDE, 2);
+        assertEquals("moved poi should not be returned in its old cell", "near2", nearbyPOIs.get(0).getIdentifier());
+        assertEquals("near3", nearbyPOIs.get(1).getIdentifier());
+        assertEquals("poi count should be correct", 4, poiCache.getPOICount());
+    }
+
+    @Test
+    public void test_cachePOIs_withNullAndInvalidPOIs() {
+        // setup
+        List<PlacesMonitorPOI> pois = poisAroundQueryLocation();
+        pois.add(null);
+        pois.add(new PlacesMonitorPOI(null, "noIdentifier", QUERY_LATITUDE, QUERY_LONGITUDE, 100));
+
+        // test
+        poiCache.addPendingQuery(QUERY_LATITUDE, QUERY_LONGITUDE);
+        poiCache.cachePOIs(pois);
+        poiCache.cachePOIs(null);
+
+        // verify
+        assertEquals("only valid pois should be indexed", 4, poiCache.getPOICount());
+    }
+
+    @Test
+    public void test_cachePOIs_evictsLeastRecentlyUsedCells() {
+        // test, every poi in its own cell
+        List<PlacesMonitorPOI> pois = new ArrayList<>();
+
+        for (int i = 0; i < PlacesMonitorConstants.POICache.MAX_CACHED_POIS + 10; i++) {
+            pois.add(new PlacesMonitorPOI("id" + i, "name" + i, i * 0.01, 0, 100));
+        }
+
+        poiCache.cachePOIs(pois);
+
+        // verify
+        assertEquals("poi count should be bounded", PlacesMonitorConstants.POICache.MAX_CACHED_POIS, poiCache.getPOICount());
+    }
+
+    @Test
+    public void test_getPOIs() {
+        // setup
+        poiCache.cachePOIs(poisAroundQueryLocation());
+
+        // test
+        List<PlacesMonitorPOI> pois = poiCache.getPOIs();
+
+        // verify
+        assertEquals("all the cached pois should be returned", 4, pois.size());
+    }
+
+    @Test
+    public void test_getLastQueryLocation() {
+        // setup
+        assertNull("no query location should be recorded", poiCache.getLastQueryLocation());
+        poiCache.addPendingQuery(QUERY_LATITUDE, QUERY_LONGITUDE);
+        poiCache.cachePOIs(poisAroundQueryLocation());
+
+        // test
+        double[] lastQueryLocation = poiCache.getLastQueryLocation();
+
+        // verify
+        assertNotNull("last query location should not be consumed by the response", lastQueryLocation);
+        assertEquals("latitude should be correct", QUERY_LATITUDE, lastQueryLocation[0], 0.0);
+        assertEquals("longitude should be correct", QUERY_LONGITUDE, lastQueryLocation[1], 0.0);
+    }
+
+    // ========================================================================================
+    // isInsideLastCoverage
+    // ========================================================================================
+
+    @Test
+    public void test_isInsideLastCoverage() {
+        // setup
+        poiCache.addPendingQuery(QUERY_LATITUDE, QUERY_LONGITUDE);
+        poiCache.cachePOIs(poisAroundQueryLocation());
+
+        // test, about 110 meters from the query location
+        boolean inside = poiCache.isInsideLastCoverage(QUERY_LATITUDE + 0.001, QUERY_LONGITUDE);
+
+        // verify
+        assertTrue("location near the query location should be inside the coverage", inside);
+        assertEquals("the skipped query should be counted", 1, poiCache.getSkippedQueryCount());
+    }
+
+    @Test
+    public void test_isInsideLastCoverage_when_outsideSafetyMargin() {
+        // setup
+        poiCache.addPendingQuery(QUERY_LATITUDE, QUERY_LONGITUDE);
+        poiCache.cachePOIs(poisAroundQueryLocation());
+
+        // test, about 5.5 kilometers from the query location, inside the coverage radius but outside the safety margin
+        boolean inside = poiCache.isInsideLastCoverage(QUERY_LATITUDE - 0.05, QUERY_LONGITUDE);
+
+        // verify
+        assertFalse("location outside the safety margin should not be inside the coverage", inside);
+        assertEquals(0, poiCache.getSkippedQueryCount());
+    }
+
+    @Test
+    public void test_isInsideLastCoverage_when_noResponse() {
+        // setup
+        poiCache.addPendingQuery(QUERY_LATITUDE, QUERY_LONGITUDE);
+
+        // verify
+        assertFalse("there should be no coverage before the response", poiCache.isInsideLastCoverage(QUERY_LATITUDE, QUERY_LONGITUDE));
+    }
+
+    @Test
+    public void test_isInsideLastCoverage_when_responseWithoutQueryLocation() {
+        // setup
+        poiCache.cachePOIs(poisAroundQueryLocation());
+
+        // verify
+        assertFalse("a response without query location should not cover any location",
+                    poiCache.isInsideLastCoverage(QUERY_LATITUDE, QUERY_LONGITUDE));
+    }
+
+    @Test
+    public void test_isInsideLastCoverage_when_responseUnmatched() {
+        // setup
+        poiCache.addPendingQuery(QUERY_LATITUDE, QUERY_LONGITUDE);
+        poiCache.cachePOIs(poisAroundQueryLocation());
+
+        // test, the response may answer either of the overlapping queries about 30 kilometers north
+        poiCache.addPendingQuery(QUERY_LATITUDE + 0.3, QUERY_LONGITUDE);
+        poiCache.addPendingQuery(QUERY_LATITUDE + 0.31, QUERY_LONGITUDE);
+        List<PlacesMonitorPOI> pois = new ArrayList<>();
+        pois.add(new PlacesMonitorPOI("north", "north", QUERY_LATITUDE + 0.38, QUERY_LONGITUDE, 100));
+        poiCache.cachePOIs(pois);
+
+        // verify
+        assertFalse("the unmatched response should not cover its locations",
+                    poiCache.isInsideLastCoverage(QUERY_LATITUDE + 0.3, QUERY_LONGITUDE));
+        assertTrue("the coverage of the last matched response should be kept",
+                   poiCache.isInsideLastCoverage(QUERY_LATITUDE, QUERY_LONGITUDE));
+    }
+
+    @Test
+    public void test_isInsideLastCoverage_when_emptyResponse() {
+        // setup
+        poiCache.addPendingQuery(QUERY_LATITUDE, QUERY_LONGITUDE);
+        poiCache.cachePOIs(new ArrayList<PlacesMonitorPOI>());
+
+        // verify
+        assertFalse("an empty response should not cover any location", poiCache.isInsideLastCoverage(QUERY_LATITUDE, QUERY_LONGITUDE));
+    }
+
+    @Test
+    public void test_clearLastCoverage() {
+        // setup
+        poiCache.addPendingQuery(QUERY_LATITUDE, QUERY_LONGITUDE);
+        poiCache.cachePOIs(poisAroundQueryLocation());
+
+        // test
+        poiCache.clearLastCoverage();
+
+        // verify
+        assertFalse("the coverage should be cleared", poiCache.isInsideLastCoverage(QUERY_LATITUDE, QUERY_LONGITUDE));
+        assertEquals("the cached pois should be kept", 4, poiCache.getPOICount());
+    }
+
+    @Test
+    public void test_clear() {
+        // setup
+        poiCache.addPendingQuery(QUERY_LATITUDE, QUERY_LONGITUDE);
+        poiCache.cachePOIs(poisAroundQueryLocation());
+
+        // test
+        poiCache.clear();
+
+        // verify
+        assertEquals("cache should be empty", 0, poiCache.getPOICount());
+        assertNull("location should not be covered", poiCache.getNearbyPOIs(QUERY_LATITUDE, QUERY_LONGITUDE, 20));
+        assertNull("last query location should be cleared", poiCache.getLastQueryLocation());
+        assertFalse("last coverage should be cleared", poiCache.isInsideLastCoverage(QUERY_LATITUDE, QUERY_LONGITUDE));
+    }
+
+    @Test
+    public void test_getSharedInstance() {
+        assertNotNull("shared instance should not be null", PlacesMonitorPOICache.getSharedInstance());
+        assertSame("shared instance should be the same", PlacesMonitorPOICache.getSharedInstance(), PlacesMonitorPOICache.getSharedInstance());
+    }
+
+    private static double toLatitude(final double kilometers) {
+        return kilometers / 111.32;
+    }
+
+    private static double toLongitude(final double kilometers) {
+        return kilometers / (111.32 * Math.cos(Math.toRadians(QUERY_LATITUDE)));
+    }
+
+    private List<PlacesMonitorPOI> poisAroundQueryLocation() {
+        List<PlacesMonitorPOI> pois = new ArrayList<>();
+        pois.add(new PlacesMonitorPOI("near1", "near1", QUERY_LATITUDE + 0.0015, QUERY_LONGITUDE, 100));
+        pois.add(new PlacesMonitorPOI("near2", "near2", QUERY_LATITUDE - 0.002, QUERY_LONGITUDE + 0.001, 100));
+        pois.add(new PlacesMonitorPOI("near3", "near3", QUERY_LATITUDE + 0.003, QUERY_LONGITUDE - 0.002, 100));
+        // about 9 kilometers away, sets the covered radius of the response
+        pois.add(new PlacesMonitorPOI("far", "far", QUERY_LATITUDE + 0.08, QUERY_LONGITUDE, 100));
+        return pois;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorPOIRTreeBenchmark.java
+//
+
+package com.adobe.marketing.mobile;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Query latency and heap use of {@link PlacesMonitorPOIRTree} for large catalogs.
+ * <p>
+ * Benchmarks are skipped in the regular unit test run, run them with {@code ./gradlew test -Pbenchmark}.
+ */
+public class PlacesMonitorPOIRTreeBenchmark {
+
+    private static final int QUERY_COUNT = 10000;
+
+    @Before
+    public void before() {
+        Assume.assumeTrue(Boolean.getBoolean(PlacesMonitorTestConstants.BENCHMARK_PROPERTY));
+    }
+
+    @Test
+    public void benchmark_10k() {
+        runBenchmark(10000);
+    }
+
+    @Test
+    public void benchmark_100k() {
+        runBenchmark(100000);
+    }
+
+    @Test
+    public void benchmark_1M() {
+        runBenchmark(1000000);
+    }
+
+    private void runBenchmark(final int poiCount) {
+        final List<PlacesMonitorPOI> pois = PlacesMonitorPOIRTreeTests.randomPOIs(poiCount, poiCount);
+
+        final long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        PlacesMonitorPOIRTree tree = PlacesMonitorPOIRTree.build(pois);
+        final long buildNanos = System.nanoTime() - start;
+        final long heapAfter = usedHeap();
+
+        final Random random = new Random(poiCount);
+        int results = 0;
+
+        // warm up
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            results += tree.nearest(37 + random.nextDouble(), -122 + random.nextDouble(), 20).size();
+        }
+
+        start = System.nanoTime();
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            results += tree.nearest(37 + random.nextDouble(), -122 + random.nextDouble(), 20).size();
+        }
+        final long nearestNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            // about 1 x 1 kilometer
+            final double latitude = 37 + random.nextDouble();
+            final double longitude = -122 + random.nextDouble();
+            results += tree.search(latitude, longitude, latitude + 0.009, longitude + 0.011).size();
+        }
+        final long searchNanos = System.nanoTime() - start;
+
+        System.out.println(String.format("PlacesMonitorPOIRTree %d pois: build %.1f ms, kNN(20) %.2f us/query, " +
+                                         "bbox(1 km) %.2f us/query, tree heap %.1f MB (%d results)",
+                                         poiCount, buildNanos / 1e6, nearestNanos / 1e3 / QUERY_COUNT, searchNanos / 1e3 / QUERY_COUNT,
+                                         (heapAfter - heapBefore) / (1024.0 * 1024.0), results));
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
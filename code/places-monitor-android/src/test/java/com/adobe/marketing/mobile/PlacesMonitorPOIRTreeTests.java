@@ -0,0 +1,205 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorPOIRTreeTests.java
+//
+
+package com.adobe.marketing.mobile;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class PlacesMonitorPOIRTreeTests {
+
+    // ========================================================================================
+    // build
+    // ========================================================================================
+
+    @Test
+    public void test_build_when_nullOrEmpty() {
+        assertEquals("tree should be empty", 0, PlacesMonitorPOIRTree.build(null).size());
+        assertEquals("tree should be empty", 0, PlacesMonitorPOIRTree.build(new ArrayList<PlacesMonitorPOI>()).size());
+        assertTrue("empty tree should return no pois", PlacesMonitorPOIRTree.build(null).nearest(0, 0, 10).isEmpty());
+        assertTrue("empty tree should return no pois", PlacesMonitorPOIRTree.build(null).search(-90, -180, 90, 180).isEmpty());
+    }
+
+    @Test
+    public void test_build_ignoresNullPOIs() {
+        // setup
+        List<PlacesMonitorPOI> pois = randomPOIs(10, 1);
+        pois.add(null);
+
+        // test
+        PlacesMonitorPOIRTree tree = PlacesMonitorPOIRTree.build(pois);
+
+        // verify
+        assertEquals("null pois should be ignored", 10, tree.size());
+    }
+
+    @Test
+    public void test_build_singlePOI() {
+        // setup
+        List<PlacesMonitorPOI> pois = new ArrayList<>();
+        pois.add(new PlacesMonitorPOI("id1", "name1", 22.22, 33.33, 100));
+
+        // test
+        PlacesMonitorPOIRTree tree = PlacesMonitorPOIRTree.build(pois);
+
+        // verify
+        assertEquals("nearest should return the only poi", "id1", tree.nearest(0, 0, 5).get(0).getIdentifier());
+        assertEquals("search should return the only poi", 1, tree.search(22, 33, 23, 34).size());
+        assertEquals("search should not return pois outside the box", 0, tree.search(20, 30, 21, 31).size());
+    }
+
+    // ========================================================================================
+    // search
+    // ========================================================================================
+
+    @Test
+    public void test_search_matchesLinearScan() {
+        // setup
+        List<PlacesMonitorPOI> pois = randomPOIs(5000, 2);
+        PlacesMonitorPOIRTree tree = PlacesMonitorPOIRTree.build(new ArrayList<>(pois));
+        Random random = new Random(3);
+
+        for (int i = 0; i < 50; i++) {
+            double minLatitude = 37 + random.nextDouble();
+            double minLongitude = -122 + random.nextDouble();
+            double maxLatitude = minLatitude + random.nextDouble() * 0.2;
+            double maxLongitude = minLongitude + random.nextDouble() * 0.2;
+
+            // expected
+            Set<String> expected = new HashSet<>();
+            for (PlacesMonitorPOI poi : pois) {
+                if (poi.getLatitude() >= minLatitude && poi.getLatitude() <= maxLatitude &&
+                        poi.getLongitude() >= minLongitude && poi.getLongitude() <= maxLongitude) {
+                    expected.add(poi.getIdentifier());
+                }
+            }
+
+            // test
+            Set<String> actual = new HashSet<>();
+            for (PlacesMonitorPOI poi : tree.search(minLatitude, minLongitude, maxLatitude, maxLongitude)) {
+                actual.add(poi.getIdentifier());
+            }
+
+            // verify
+            assertEquals("search result should match the linear scan", expected, actual);
+        }
+    }
+
+    // ========================================================================================
+    // nearest
+    // ========================================================================================
+
+    @Test
+    public void test_nearest_matchesLinearScan() {
+        // setup
+        final List<PlacesMonitorPOI> pois = randomPOIs(5000, 4);
+        PlacesMonitorPOIRTree tree = PlacesMonitorPOIRTree.build(new ArrayList<>(pois));
+        Random random = new Random(5);
+
+        for (int i = 0; i < 50; i++) {
+            final double latitude = 37 + random.nextDouble();
+            final double longitude = -122 + random.nextDouble();
+
+            // expected
+            List<PlacesMonitorPOI> sorted = new ArrayList<>(pois);
+            Collections.sort(sorted, new Comparator<PlacesMonitorPOI>() {
+                @Override
+                public int compare(PlacesMonitorPOI poi1, PlacesMonitorPOI poi2) {
+                    return Double.compare(PlacesMonitorGeoUtil.distanceInMeters(latitude, longitude, poi1.getLatitude(), poi1.getLongitude()),
+                                          PlacesMonitorGeoUtil.distanceInMeters(latitude, longitude, poi2.getLatitude(), poi2.getLongitude()));
+                }
+            });
+
+            // test
+            List<PlacesMonitorPOI> nearest = tree.nearest(latitude, longitude, 20);
+
+            // verify
+            assertEquals("nearest should return the requested count", 20, nearest.size());
+            for (int j = 0; j < 20; j++) {
+                assertEquals("nearest should match the linear scan", sorted.get(j).getIdentifier(), nearest.get(j).getIdentifier());
+            }
+        }
+    }
+
+    @Test
+    public void test_nearest_when_highLatitude_then_matchesLinearScan() {
+        // setup, sparse POIs near the pole, so the bounding boxes span tens of degrees of longitude
+        final Random random = new Random(7);
+        final List<PlacesMonitorPOI> pois = new ArrayList<>();
+
+        for (int i = 0; i < 2000; i++) {
+            pois.add(new PlacesMonitorPOI("id" + i, "name" + i, 70 + 19 * random.nextDouble(), -179 + 358 * random.nextDouble(),
+                                          100));
+        }
+
+        PlacesMonitorPOIRTree tree = PlacesMonitorPOIRTree.build(new ArrayList<>(pois));
+
+        for (int i = 0; i < 200; i++) {
+            final double latitude = 65 + 25 * random.nextDouble();
+            final double longitude = -180 + 360 * random.nextDouble();
+
+            // expected
+            List<PlacesMonitorPOI> sorted = new ArrayList<>(pois);
+            Collections.sort(sorted, new Comparator<PlacesMonitorPOI>() {
+                @Override
+                public int compare(PlacesMonitorPOI poi1, PlacesMonitorPOI poi2) {
+                    return Double.compare(PlacesMonitorGeoUtil.distanceInMeters(latitude, longitude, poi1.getLatitude(), poi1.getLongitude()),
+                                          PlacesMonitorGeoUtil.distanceInMeters(latitude, longitude, poi2.getLatitude(), poi2.getLongitude()));
+                }
+            });
+
+            // test
+            List<PlacesMonitorPOI> nearest = tree.nearest(latitude, longitude, 20);
+
+            // verify
+            for (int j = 0; j < 20; j++) {
+                assertEquals("nearest should match the linear scan near the pole", sorted.get(j).getIdentifier(),
+                             nearest.get(j).getIdentifier());
+            }
+        }
+    }
+
+    @Test
+    public void test_nearest_when_countLargerThanTree() {
+        // setup
+        PlacesMonitorPOIRTree tree = PlacesMonitorPOIRTree.build(randomPOIs(7, 6));
+
+        // verify
+        assertEquals("nearest should return all the pois", 7, tree.nearest(37.5, -121.5, 20).size());
+        assertTrue("nearest should return no pois for zero count", tree.nearest(37.5, -121.5, 0).isEmpty());
+    }
+
+    static List<PlacesMonitorPOI> randomPOIs(final int count, final long seed) {
+        Random random = new Random(seed);
+        List<PlacesMonitorPOI> pois = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            pois.add(new PlacesMonitorPOI("id" + i, "name" + i, 37 + random.nextDouble(), -122 + random.nextDouble(),
+                                          50 + random.nextInt(500)));
+        }
+
+        return pois;
+    }
+}
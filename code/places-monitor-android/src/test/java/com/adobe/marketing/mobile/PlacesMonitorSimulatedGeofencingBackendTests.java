@@ -0,0 +1,290 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorSimulatedGeofencingBackendTests.java
+//
+
+package com.adobe.marketing.mobile;
+
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.location.GeofenceStatusCodes;
+import com.google.android.gms.location.GeofencingRequest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PlacesMonitorSimulatedGeofencingBackendTests {
+
+    // about 111 meters
+    private static final double ONE_THOUSANDTH_DEGREE = 0.001;
+    private static final int ENTER_EXIT = Geofence.GEOFENCE_TRANSITION_ENTER | Geofence.GEOFENCE_TRANSITION_EXIT;
+
+    private PlacesMonitorSimulatedGeofencingBackend backend;
+    private RecordingCallback callback;
+    private List<String> transitions;
+
+    @Before
+    public void before() {
+        backend = new PlacesMonitorSimulatedGeofencingBackend(0, 0);
+        callback = new RecordingCallback();
+        transitions = new ArrayList<>();
+        backend.setListener(new PlacesMonitorSimulatedGeofencingBackend.Listener() {
+            @Override
+            public void onGeofenceTransition(final List<String> identifiers, final int transition) {
+                for (String identifier : identifiers) {
+                    transitions.add((transition == Geofence.GEOFENCE_TRANSITION_ENTER ? "enter " : "exit ") + identifier);
+                }
+            }
+        });
+    }
+
+    // ========================================================================================
+    // addGeofences and removeGeofences
+    // ========================================================================================
+
+    @Test
+    public void test_addGeofences() {
+        // test
+        backend.addGeofences(fences(3), GeofencingRequest.INITIAL_TRIGGER_ENTER, callback);
+
+        // verify
+        assertEquals(1, callback.successCount);
+        assertEquals(3, backend.getRegisteredCount());
+        assertTrue(backend.isRegistered("id1"));
+        assertEquals(3, backend.getAddedFenceCount());
+    }
+
+    @Test
+    public void test_addGeofences_when_sameIdentifier_then_replaced() {
+        // setup
+        backend.addGeofences(fences(3), GeofencingRequest.INITIAL_TRIGGER_ENTER, callback);
+
+        // test
+        backend.addGeofences(fences(2), GeofencingRequest.INITIAL_TRIGGER_ENTER, callback);
+
+        // verify
+        assertEquals("replaced fences should not be counted twice", 3, backend.getRegisteredCount());
+        assertEquals(2, callback.successCount);
+    }
+
+    @Test
+    public void test_addGeofences_when_quotaExceeded() {
+        // setup
+        backend.addGeofences(fences(PlacesMonitorTestConstants.MAX_GEOFENCES_COUNT - 1),
+                             GeofencingRequest.INITIAL_TRIGGER_ENTER, callback);
+
+        // test
+        backend.addGeofences(Arrays.asList(fence("new1", 0, 0), fence("new2", 0, 0)),
+                             GeofencingRequest.INITIAL_TRIGGER_ENTER, callback);
+
+        // verify
+        assertEquals("the whole request should fail", Collections.singletonList(GeofenceStatusCodes.GEOFENCE_TOO_MANY_GEOFENCES),
+                     callback.failures);
+        assertEquals(PlacesMonitorTestConstants.MAX_GEOFENCES_COUNT - 1, backend.getRegisteredCount());
+        assertFalse(backend.isRegistered("new1"));
+        assertEquals(1, backend.getFailedRequestCount());
+    }
+
+    @Test
+    public void test_addGeofences_when_quotaReached() {
+        // test
+        backend.addGeofences(fences(PlacesMonitorTestConstants.MAX_GEOFENCES_COUNT),
+                             GeofencingRequest.INITIAL_TRIGGER_ENTER, callback);
+
+        // verify
+        assertEquals(1, callback.successCount);
+        assertEquals(PlacesMonitorTestConstants.MAX_GEOFENCES_COUNT, backend.getRegisteredCount());
+    }
+
+    @Test
+    public void test_removeGeofences() {
+        // setup
+        backend.addGeofences(fences(3), GeofencingRequest.INITIAL_TRIGGER_ENTER, callback);
+
+        // test
+        backend.removeGeofences(Arrays.asList("id0", "unknown"), callback);
+
+        // verify
+        assertEquals("unknown identifiers should be ignored", 2, callback.successCount);
+        assertEquals(2, backend.getRegisteredCount());
+        assertEquals(1, backend.getRemovedFenceCount());
+    }
+
+    @Test
+    public void test_removeAllGeofences() {
+        // setup
+        backend.addGeofences(fences(3), GeofencingRequest.INITIAL_TRIGGER_ENTER, callback);
+
+        // test
+        backend.removeAllGeofences(callback);
+
+        // verify
+        assertEquals(0, backend.getRegisteredCount());
+        assertEquals(3, backend.getRemovedFenceCount());
+        assertEquals(2, backend.getRequestCount());
+    }
+
+    @Test
+    public void test_failNextRequests() {
+        // setup
+        backend.failNextRequests(1, GeofenceStatusCodes.GEOFENCE_NOT_AVAILABLE);
+
+        // test
+        backend.addGeofences(fences(3), GeofencingRequest.INITIAL_TRIGGER_ENTER, callback);
+        backend.addGeofences(fences(3), GeofencingRequest.INITIAL_TRIGGER_ENTER, callback);
+
+        // verify
+        assertEquals(Collections.singletonList(GeofenceStatusCodes.GEOFENCE_NOT_AVAILABLE), callback.failures);
+        assertEquals("only the next request should fail", 1, callback.successCount);
+        assertEquals(3, backend.getRegisteredCount());
+    }
+
+    @Test
+    public void test_setFailureRate() {
+        // setup
+        backend.setFailureRate(1, GeofenceStatusCodes.GEOFENCE_TOO_MANY_PENDING_INTENTS);
+
+        // test
+        backend.removeAllGeofences(callback);
+
+        // verify
+        assertEquals(Collections.singletonList(GeofenceStatusCodes.GEOFENCE_TOO_MANY_PENDING_INTENTS), callback.failures);
+    }
+
+    @Test
+    public void test_addGeofences_when_latency() throws Exception {
+        // setup
+        final PlacesMonitorSimulatedGeofencingBackend delayedBackend = new PlacesMonitorSimulatedGeofencingBackend(50, 0);
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        // test
+        delayedBackend.addGeofences(fences(3), GeofencingRequest.INITIAL_TRIGGER_ENTER,
+        new PlacesMonitorGeofencingBackend.Callback() {
+            @Override
+            public void onSuccess() {
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(final int statusCode, final String message) {
+            }
+        });
+
+        // verify
+        assertEquals("the request should not be applied before the latency", 0, delayedBackend.getRegisteredCount());
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(3, delayedBackend.getRegisteredCount());
+    }
+
+    // ========================================================================================
+    // onLocation
+    // ========================================================================================
+
+    @Test
+    public void test_onLocation_then_enterAndExit() {
+        // setup
+        backend.addGeofences(Collections.singletonList(fence("id", 37.33, -121.89)), GeofencingRequest.INITIAL_TRIGGER_ENTER,
+                             callback);
+
+        // test
+        backend.onLocation(37.33 + 10 * ONE_THOUSANDTH_DEGREE, -121.89);
+        backend.onLocation(37.33, -121.89);
+        backend.onLocation(37.33, -121.89);
+        backend.onLocation(37.33 + 10 * ONE_THOUSANDTH_DEGREE, -121.89);
+
+        // verify
+        assertEquals(Arrays.asList("enter id", "exit id"), transitions);
+        assertEquals(2, backend.getTransitionCount());
+    }
+
+    @Test
+    public void test_addGeofences_when_insideAndInitialTriggerEnter() {
+        // setup
+        backend.onLocation(37.33, -121.89);
+
+        // test
+        backend.addGeofences(Collections.singletonList(fence("id", 37.33, -121.89)), GeofencingRequest.INITIAL_TRIGGER_ENTER,
+                             callback);
+
+        // verify
+        assertEquals("the initial trigger should notify the entry", Collections.singletonList("enter id"), transitions);
+    }
+
+    @Test
+    public void test_addGeofences_when_outsideAndInitialTriggerExit() {
+        // setup, a boundary only notifying its exit
+        backend.onLocation(37.33 + 10 * ONE_THOUSANDTH_DEGREE, -121.89);
+
+        // test
+        backend.addGeofences(Collections.singletonList(new PlacesMonitorGeofencingBackend.Fence("boundary", 37.33, -121.89,
+                             100, Geofence.GEOFENCE_TRANSITION_EXIT)), GeofencingRequest.INITIAL_TRIGGER_EXIT, callback);
+        backend.onLocation(37.33, -121.89);
+
+        // verify
+        assertEquals("the entry should not be notified", Collections.singletonList("exit boundary"), transitions);
+    }
+
+    @Test
+    public void test_onLocation_when_removed_then_noTransition() {
+        // setup
+        backend.addGeofences(Collections.singletonList(fence("id", 37.33, -121.89)), GeofencingRequest.INITIAL_TRIGGER_ENTER,
+                             callback);
+        backend.onLocation(37.33 + 10 * ONE_THOUSANDTH_DEGREE, -121.89);
+        backend.removeAllGeofences(callback);
+
+        // test
+        backend.onLocation(37.33, -121.89);
+
+        // verify
+        assertTrue(transitions.isEmpty());
+    }
+
+    private static PlacesMonitorGeofencingBackend.Fence fence(final String identifier, final double latitude,
+            final double longitude) {
+        return new PlacesMonitorGeofencingBackend.Fence(identifier, latitude, longitude, 100, ENTER_EXIT);
+    }
+
+    private static List<PlacesMonitorGeofencingBackend.Fence> fences(final int count) {
+        final List<PlacesMonitorGeofencingBackend.Fence> fences = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            fences.add(fence("id" + i, 37.33, -121.89 + i * ONE_THOUSANDTH_DEGREE));
+        }
+
+        return fences;
+    }
+
+    private static final class RecordingCallback implements PlacesMonitorGeofencingBackend.Callback {
+        int successCount;
+        final List<Integer> failures = new ArrayList<>();
+
+        @Override
+        public void onSuccess() {
+            successCount++;
+        }
+
+        @Override
+        public void onFailure(final int statusCode, final String message) {
+            failures.add(statusCode);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorSoftwareGeofencerTests.java
+//
+
+package com.adobe.marketing.mobile;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class PlacesMonitorSoftwareGeofencerTests {
+
+    private static final double LATITUDE = 37.3309;
+    private static final double LONGITUDE = -121.8939;
+    // about 1 meter of latitude
+    private static final double METER = 1 / 111195.0;
+
+    private PlacesMonitorSoftwareGeofencer geofencer;
+
+    @Before
+    public void before() {
+        geofencer = new PlacesMonitorSoftwareGeofencer();
+        List<PlacesMonitorPOI> pois = new ArrayList<>();
+        pois.add(new PlacesMonitorPOI("region", "region", LATITUDE, LONGITUDE, 100));
+        geofencer.setPOIs(pois);
+    }
+
+    @Test
+    public void test_evaluate_entry() {
+        // test
+        PlacesMonitorSoftwareGeofencer.Transitions transitions = geofencer.evaluate(LATITUDE + 50 * METER, LONGITUDE, 10);
+
+        // verify
+        assertEquals("region should be entered", 1, transitions.getEntered().size());
+        assertEquals("region should be entered", "region", transitions.getEntered().get(0));
+        assertTrue("no region should be exited", transitions.getExited().isEmpty());
+        assertTrue("region should be inside", geofencer.getInsideRegions().contains("region"));
+    }
+
+    @Test
+    public void test_evaluate_entryIsReportedOnce() {
+        // test
+        geofencer.evaluate(LATITUDE, LONGITUDE, 10);
+        PlacesMonitorSoftwareGeofencer.Transitions transitions = geofencer.evaluate(LATITUDE + 10 * METER, LONGITUDE, 10);
+
+        // verify
+        assertTrue("no transition should be reported while inside", transitions.isEmpty());
+    }
+
+    @Test
+    public void test_evaluate_inaccurateLocationNearBoundary_doesNotEnter() {
+        // test, 80 meters from the center with 60 meters accuracy may be outside the region
+        PlacesMonitorSoftwareGeofencer.Transitions transitions = geofencer.evaluate(LATITUDE + 80 * METER, LONGITUDE, 60);
+
+        // verify
+        assertTrue("region should not be entered", transitions.isEmpty());
+    }
+
+    @Test
+    public void test_evaluate_locationWithoutAccuracyNearBoundary_doesNotEnter() {
+        // test, a location without accuracy is not taken as exact
+        PlacesMonitorSoftwareGeofencer.Transitions transitions = geofencer.evaluate(LATITUDE + 80 * METER, LONGITUDE, -1);
+
+        // verify
+        assertTrue("region should not be entered", transitions.isEmpty());
+    }
+
+    @Test
+    public void test_evaluate_locationWithoutAccuracyJustOutside_doesNotExit() {
+        // setup
+        geofencer.evaluate(LATITUDE, LONGITUDE, 10);
+
+        // test, outside the hysteresis of an exact location, but within the assumed accuracy
+        PlacesMonitorSoftwareGeofencer.Transitions transitions = geofencer.evaluate(LATITUDE + 150 * METER, LONGITUDE, -1);
+
+        // verify
+        assertTrue("region should not be exited", transitions.isEmpty());
+    }
+
+    @Test
+    public void test_evaluate_inaccurateLocationAtCenter_enters() {
+        // test
+        PlacesMonitorSoftwareGeofencer.Transitions transitions = geofencer.evaluate(LATITUDE, LONGITUDE, 400);
+
+        // verify
+        assertEquals("region should be entered", 1, transitions.getEntered().size());
+    }
+
+    @Test
+    public void test_evaluate_hysteresis() {
+        // setup
+        geofencer.evaluate(LATITUDE, LONGITUDE, 10);
+
+        // test, locations jittering just outside the boundary
+        for (int i = 0; i < 10; i++) {
+            PlacesMonitorSoftwareGeofencer.Transitions transitions = geofencer.evaluate(LATITUDE + (105 + i % 3 * 5) * METER,
+                    LONGITUDE, 10);
+
+            // verify
+            assertTrue("no transition should be reported near the boundary", transitions.isEmpty());
+        }
+    }
+
+    @Test
+    public void test_evaluate_exit() {
+        // setup
+        geofencer.evaluate(LATITUDE, LONGITUDE, 10);
+
+        // test, beyond the radius, the hysteresis and the accuracy
+        PlacesMonitorSoftwareGeofencer.Transitions transitions = geofencer.evaluate(LATITUDE + 200 * METER, LONGITUDE, 10);
+
+        // verify
+        assertEquals("region should be exited", 1, transitions.getExited().size());
+        assertEquals("region should be exited", "region", transitions.getExited().get(0));
+        assertTrue("region should not be inside", geofencer.getInsideRegions().isEmpty());
+    }
+
+    @Test
+    public void test_evaluate_ignoresInaccurateLocation() {
+        // setup
+        geofencer.evaluate(LATITUDE, LONGITUDE, 10);
+
+        // test
+        PlacesMonitorSoftwareGeofencer.Transitions transitions = geofencer.evaluate(LATITUDE + 0.1, LONGITUDE,
+                PlacesMonitorTestConstants.SoftwareGeofencing.MAX_ACCURACY + 1);
+
+        // verify
+        assertTrue("inaccurate location should be ignored", transitions.isEmpty());
+        assertTrue("region should still be inside", geofencer.getInsideRegions().contains("region"));
+    }
+
+    @Test
+    public void test_setPOIs_keepsInsideState() {
+        // setup
+        geofencer.evaluate(LATITUDE, LONGITUDE, 10);
+        List<PlacesMonitorPOI> pois = new ArrayList<>();
+        pois.add(new PlacesMonitorPOI("region", "region", LATITUDE, LONGITUDE, 100));
+        pois.add(new PlacesMonitorPOI("other", "other", LATITUDE + 0.1, LONGITUDE, 100));
+
+        // test
+        geofencer.setPOIs(pois);
+        PlacesMonitorSoftwareGeofencer.Transitions transitions = geofencer.evaluate(LATITUDE, LONGITUDE, 10);
+
+        // verify
+        assertTrue("region should not be entered again", transitions.isEmpty());
+        assertEquals("poi count should be correct", 2, geofencer.getPOICount());
+    }
+
+    @Test
+    public void test_setPOIs_dropsRemovedPOIs() {
+        // setup
+        geofencer.evaluate(LATITUDE, LONGITUDE, 10);
+
+        // test
+        geofencer.setPOIs(new ArrayList<PlacesMonitorPOI>());
+
+        // verify
+        assertTrue("removed region should not be inside", geofencer.getInsideRegions().isEmpty());
+        assertTrue("removed region should not be exited", geofencer.evaluate(LATITUDE + 0.1, LONGITUDE, 10).isEmpty());
+    }
+
+    @Test
+    public void test_setPOIs_when_insideRegionHandedToOS_then_insideStateKept() {
+        // setup
+        geofencer.evaluate(LATITUDE, LONGITUDE, 10);
+        final Set<String> osMonitored = new HashSet<>();
+        osMonitored.add("region");
+
+        // test
+        geofencer.setPOIs(new ArrayList<PlacesMonitorPOI>(), osMonitored);
+
+        // verify
+        assertTrue("the region should not be software geofenced", geofencer.getInsideRegions().isEmpty());
+        assertTrue("the OS should be told the region is inside", geofencer.getOSInsideRegions().contains("region"));
+        assertTrue("the OS reports the exit", geofencer.evaluate(LATITUDE + 0.1, LONGITUDE, 10).isEmpty());
+    }
+
+    @Test
+    public void test_setPOIs_when_insideRegionHandedBackFromOS_then_noEntryAndExitReported() {
+        // setup, the region is monitored by the OS, which reported its entry
+        final PlacesMonitorPOI poi = new PlacesMonitorPOI("region", "region", LATITUDE, LONGITUDE, 100);
+        final Set<String> osMonitored = new HashSet<>();
+        osMonitored.add("region");
+        geofencer.setPOIs(new ArrayList<PlacesMonitorPOI>(), osMonitored);
+        geofencer.onOSRegionEvents(Collections.singletonList("region"), PlacesMonitorTestConstants.EventDataKeys.GEOFENCE_TYPE_ENTRY);
+
+        // test
+        geofencer.setPOIs(Collections.singletonList(poi), new HashSet<String>());
+        final PlacesMonitorSoftwareGeofencer.Transitions inside = geofencer.evaluate(LATITUDE, LONGITUDE, 10);
+        final PlacesMonitorSoftwareGeofencer.Transitions outside = geofencer.evaluate(LATITUDE + 0.1, LONGITUDE, 10);
+
+        // verify
+        assertTrue("the region should not be entered again", inside.getEntered().isEmpty());
+        assertEquals("the exit should be reported", Collections.singletonList("region"), outside.getExited());
+        assertTrue(geofencer.getOSInsideRegions().isEmpty());
+    }
+
+    @Test
+    public void test_onOSRegionEvents_when_exit_then_notInside() {
+        // setup
+        final Set<String> osMonitored = new HashSet<>();
+        osMonitored.add("os region");
+        geofencer.setPOIs(new ArrayList<PlacesMonitorPOI>(), osMonitored);
+        geofencer.onOSRegionEvents(Collections.singletonList("os region"), PlacesMonitorTestConstants.EventDataKeys.GEOFENCE_TYPE_ENTRY);
+
+        // test
+        geofencer.onOSRegionEvents(Collections.singletonList("os region"), PlacesMonitorTestConstants.EventDataKeys.GEOFENCE_TYPE_EXIT);
+
+        // verify
+        assertTrue(geofencer.getOSInsideRegions().isEmpty());
+    }
+
+    @Test
+    public void test_onOSRegionEvents_when_regionSoftwareGeofenced_then_ignored() {
+        // test, a late event of the geofence removed from the OS
+        geofencer.onOSRegionEvents(Collections.singletonList("region"), PlacesMonitorTestConstants.EventDataKeys.GEOFENCE_TYPE_ENTRY);
+
+        // verify
+        assertTrue(geofencer.getOSInsideRegions().isEmpty());
+    }
+
+    @Test
+    public void test_evaluate_matchesLinearScan() {
+        // setup
+        List<PlacesMonitorPOI> pois = PlacesMonitorPOIRTreeTests.randomPOIs(5000, 7);
+        geofencer.setPOIs(pois);
+
+        for (int i = 0; i < pois.size(); i += 50) {
+            PlacesMonitorPOI target = pois.get(i);
+            PlacesMonitorSoftwareGeofencer geofencer = new PlacesMonitorSoftwareGeofencer();
+            geofencer.setPOIs(pois);
+
+            // test
+            PlacesMonitorSoftwareGeofencer.Transitions transitions = geofencer.evaluate(target.getLatitude(), target.getLongitude(), 0);
+
+            // verify
+            Set<String> expected = new HashSet<>();
+
+            for (PlacesMonitorPOI poi : pois) {
+                if (PlacesMonitorGeoUtil.distanceInMeters(target.getLatitude(), target.getLongitude(), poi.getLatitude(),
+                        poi.getLongitude()) <= poi.getRadius()) {
+                    expected.add(poi.getIdentifier());
+                }
+            }
+
+            assertEquals("entered regions should match the linear scan", expected, new HashSet<>(transitions.getEntered()));
+        }
+    }
+
+    @Test
+    public void test_clear() {
+        // setup
+        geofencer.evaluate(LATITUDE, LONGITUDE, 10);
+
+        // test
+        geofencer.clear();
+
+        // verify
+        assertEquals("poi count should be zero", 0, geofencer.getPOICount());
+        assertTrue("no region should be inside", geofencer.getInsideRegions().isEmpty());
+    }
+}
@@ -27,12 +27,110 @@ final class PlacesMonitorTestConstants {
     static final String EVENTNAME_START = "start monitoring";
     static final String EVENTNAME_STOP = "stop monitoring";
     static final String EVENTNAME_UPDATE = "update location";
+    static final String EVENTNAME_CACHED_NEARBY_PLACES = "cached nearby places";
     static final int NEARBY_GEOFENCES_COUNT = 20;
+    static final int MAX_GEOFENCES_COUNT = 100;
+
+    // system property enabling the benchmark tests, set by running the tests with -Pbenchmark
+    static final String BENCHMARK_PROPERTY = "placesmonitor.benchmark";
+
+    static final class Configuration {
+        static final String GEOFENCE_COUNT = "placesmonitor.geofencecount";
+        static final String REFRESH_BOUNDARY = "placesmonitor.refreshboundary";
+        static final String SOFTWARE_GEOFENCING = "placesmonitor.softwaregeofencing";
+        static final String COALESCING_WINDOW = "placesmonitor.coalescingwindow";
+        static final String BATCH_REGION_EVENTS = "placesmonitor.batchregionevents";
+        static final String DIAGNOSTIC_SINKS = "placesmonitor.diagnosticsinks";
+        static final String LOCATION_MAX_WAIT_TIME = "placesmonitor.locationmaxwaittime";
+        static final String LOCATION_MAX_ACCURACY = "placesmonitor.locationmaxaccuracy";
+        static final String LOCATION_MAX_AGE = "placesmonitor.locationmaxage";
+        static final String LOCATION_MAX_SPEED = "placesmonitor.locationmaxspeed";
+        static final String LOCATION_SMOOTHING = "placesmonitor.locationsmoothing";
+        static final String ADAPTIVE_LOCATION = "placesmonitor.adaptivelocation";
+        static final String LOCATION_FRESHNESS = "placesmonitor.locationfreshness";
+        static final String LOCATION_TIMEOUT = "placesmonitor.locationtimeout";
+
+        private Configuration() {
+        }
+    }
+
+    static final class RefreshBoundary {
+        static final String IDENTIFIER = "com.adobe.placesMonitor.refreshBoundary";
+        static final float MIN_RADIUS = 200;
+        static final float RESPONSIVENESS_MARGIN = 100;
+        static final float MAX_RADIUS = 2000;
+        static final int MAX_DROPPED_FIX_RETRIES = 2;
+
+        private RefreshBoundary() {
+        }
+    }
+
+    static final class Diagnostics {
+        static final String SINK_RING_BUFFER = "ringbuffer";
+        static final int QUEUE_CAPACITY = 256;
+
+        private Diagnostics() {
+        }
+    }
+
+    static final class LocationFilter {
+        static final float DEFAULT_MAX_ACCURACY = 1000;
+        static final long DEFAULT_MAX_AGE = 10 * 60 * 1000;
+        static final float DEFAULT_MAX_SPEED = 100;
+        static final int MAX_CONSECUTIVE_OUTLIERS = 3;
+
+        private LocationFilter() {
+        }
+    }
+
+    static final class LocationPolicy {
+        static final double NEAR_DISTANCE = 1000;
+        static final double APPROACHING_DISTANCE = 5000;
+        static final long NEAR_INTERVAL = 2 * 60 * 1000;
+        static final long FAR_INTERVAL = 60 * 60 * 1000;
+
+        private LocationPolicy() {
+        }
+    }
+
+    static final class TraceReplay {
+        static final long DEFAULT_FIX_INTERVAL = 1000;
+
+        private TraceReplay() {
+        }
+    }
+
+    static final class EventQueue {
+        static final int CONTROL_CAPACITY = 16;
+        static final int RESPONSE_CAPACITY = 64;
+
+        private EventQueue() {
+        }
+    }
+
+    static final class BroadcastWorker {
+        static final int QUEUE_CAPACITY = 64;
+
+        private BroadcastWorker() {
+        }
+    }
+
+    static final class SoftwareGeofencing {
+        static final float MAX_ACCURACY = 500;
+        static final float UNKNOWN_ACCURACY = 100;
+
+        private SoftwareGeofencing() {
+        }
+    }
 
     static final class Location {
         static final int REQUEST_INTERVAL = 3600;				// 1 hour
         static final int REQUEST_FASTEST_INTERVAL = 1800;    	// 30 minutes
         static final int REQUEST_SMALLEST_DISPLACEMENT = 2000;   // 2 kilometer
+        static final long SINGLE_FIX_TIMEOUT = 60 * 1000;		// 1 minute
+        static final long MAX_SINGLE_FIX_TIMEOUT = 5 * 60 * 1000;	// 5 minutes
+        static final long FRESH_FIX_MAX_AGE = 2 * 60 * 1000;	// 2 minutes
+        static final long MAX_BATCH_WAIT_TIME = 60 * 60 * 1000;	// 1 hour
 
         private Location() {
         }
@@ -53,6 +151,7 @@ final class PlacesMonitorTestConstants {
         static final String REQUEST_TYPE = "requesttype";
         static final String REQUEST_TYPE_GET_NEARBY_PLACES = "requestgetnearbyplaces";
         static final String REQUEST_TYPE_PROCESS_REGION_EVENT = "requestprocessregionevent";
+        static final String REQUEST_TYPE_PROCESS_REGION_EVENTS = "requestprocessregionevents";
 
         static final String PLACES_COUNT = "count";
         static final String LATITUDE = "latitude";
@@ -63,6 +162,7 @@ final class PlacesMonitorTestConstants {
         static final String GEOFENCE_TYPE_EXIT  = "exit";
 
         static final String REGION_ID = "regionid";
+        static final String REGION_IDS = "regionids";
         static final String REGION_EVENT_TYPE = "regioneventtype";
 
         private EventDataKeys() {
@@ -0,0 +1,323 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorTraceLocationSourceTests.java
+//
+
+package com.adobe.marketing.mobile;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PlacesMonitorTraceLocationSourceTests {
+
+    private static final String CSV = "time,latitude,longitude,accuracy,speed\n"
+                                      + "# recorded on a walk\n"
+                                      + "1000,37.330,-121.890,10,1.5\n"
+                                      + "3000,37.332,-121.890\n"
+                                      + "not,a,fix\n"
+                                      + "\n"
+                                      + "2000,37.331,-121.890,20,\n";
+
+    private static final String GPX = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                                      + "<gpx version=\"1.1\" xmlns=\"http://www.topografix.com/GPX/1/1\""
+                                      + " xmlns:gpxtpx=\"http://www.garmin.com/xmlschemas/TrackPointExtension/v2\">\n"
+                                      + "  <metadata><time>2019-01-01T00:00:00Z</time></metadata>\n"
+                                      + "  <trk><trkseg>\n"
+                                      + "    <trkpt lat=\"37.330\" lon=\"-121.890\"><time>2019-05-01T10:00:00Z</time>"
+                                      + "<extensions><gpxtpx:TrackPointExtension><gpxtpx:speed>2.5</gpxtpx:speed>"
+                                      + "</gpxtpx:TrackPointExtension></extensions></trkpt>\n"
+                                      + "    <trkpt lat=\"37.331\" lon=\"-121.890\"><time>2019-05-01T10:00:05.500Z</time></trkpt>\n"
+                                      + "    <trkpt lat=\"37.332\" lon=\"-121.890\"></trkpt>\n"
+                                      + "  </trkseg></trk>\n"
+                                      + "</gpx>\n";
+
+    private List<List<PlacesMonitorTraceLocationSource.Fix>> deliveries;
+
+    @Before
+    public void before() {
+        deliveries = new ArrayList<>();
+        PlacesMonitorLocationPolicy.getSharedInstance().reset();
+    }
+
+    // ========================================================================================
+    // readCsv, readGpx and parseTime
+    // ========================================================================================
+
+    @Test
+    public void test_readCsv() throws IOException {
+        // test
+        List<PlacesMonitorTraceLocationSource.Fix> fixes = PlacesMonitorTraceLocationSource.readCsv(new StringReader(CSV));
+
+        // verify
+        assertEquals("the header, comments and invalid lines should be skipped", 3, fixes.size());
+        assertEquals("the fixes should be sorted by time", 2000, fixes.get(1).getTime());
+        assertEquals(37.330, fixes.get(0).getLatitude(), 1e-9);
+        assertEquals(-121.890, fixes.get(0).getLongitude(), 1e-9);
+        assertEquals(10, fixes.get(0).getAccuracy(), 0);
+        assertEquals(1.5, fixes.get(0).getSpeed(), 0);
+        assertEquals("a missing speed should be unknown", -1, fixes.get(1).getSpeed(), 0);
+        assertEquals("a missing accuracy should be unknown", -1, fixes.get(2).getAccuracy(), 0);
+    }
+
+    @Test
+    public void test_readGpx() throws IOException {
+        // test
+        List<PlacesMonitorTraceLocationSource.Fix> fixes = PlacesMonitorTraceLocationSource.readGpx(
+                    new ByteArrayInputStream(GPX.getBytes("UTF-8")));
+
+        // verify
+        assertEquals("every track point should be read", 3, fixes.size());
+        assertEquals(37.331, fixes.get(1).getLatitude(), 1e-9);
+        assertEquals("the speed extension should be read", 2.5, fixes.get(0).getSpeed(), 0);
+        assertEquals(5500, fixes.get(1).getTime() - fixes.get(0).getTime());
+        assertEquals("a point without time should follow the previous point",
+                     PlacesMonitorTestConstants.TraceReplay.DEFAULT_FIX_INTERVAL, fixes.get(2).getTime() - fixes.get(1).getTime());
+    }
+
+    @Test(expected = IOException.class)
+    public void test_readGpx_when_invalid() throws IOException {
+        // test
+        PlacesMonitorTraceLocationSource.readGpx(new ByteArrayInputStream("<gpx><trkpt lat=\"a\"".getBytes("UTF-8")));
+    }
+
+    @Test
+    public void test_parseTime() throws Exception {
+        // test
+        final long utc = PlacesMonitorTraceLocationSource.parseTime("2019-05-01T10:00:00Z");
+        final long fraction = PlacesMonitorTraceLocationSource.parseTime("2019-05-01T10:00:00.25Z");
+        final long offset = PlacesMonitorTraceLocationSource.parseTime("2019-05-01T12:00:00+02:00");
+
+        // verify
+        assertEquals(1556704800000L, utc);
+        assertEquals(250, fraction - utc);
+        assertEquals("the offset should be applied", utc, offset);
+    }
+
+    // ========================================================================================
+    // replay
+    // ========================================================================================
+
+    @Test
+    public void test_replayAll() throws IOException {
+        // setup
+        final PlacesMonitorTraceLocationSource source = createSource();
+        source.startMonitoring();
+
+        // test
+        source.replayAll();
+
+        // verify
+        assertEquals("every fix should be delivered", 3, deliveries.size());
+        assertEquals(37.332, deliveries.get(2).get(0).getLatitude(), 1e-9);
+        assertEquals("the recorded intervals should be kept", 1000,
+                     deliveries.get(1).get(0).getTime() - deliveries.get(0).get(0).getTime());
+        assertTrue("the trajectory should start now",
+                   Math.abs(System.currentTimeMillis() - deliveries.get(0).get(0).getTime()) < 60000);
+        assertTrue(source.isComplete());
+    }
+
+    @Test
+    public void test_replayAll_when_notStarted() throws IOException {
+        // setup
+        final PlacesMonitorTraceLocationSource source = createSource();
+
+        // test
+        source.replayAll();
+
+        // verify
+        assertTrue(deliveries.isEmpty());
+        assertFalse(source.isComplete());
+    }
+
+    @Test
+    public void test_replayAll_when_refreshBoundaryEnabled() throws IOException {
+        // setup
+        final PlacesMonitorTraceLocationSource source = createSource();
+        source.setRefreshBoundaryEnabled(true);
+        source.startMonitoring();
+
+        // test
+        source.replayAll();
+
+        // verify
+        assertEquals("only the fix on start should be delivered", 1, deliveries.size());
+        assertEquals(37.330, deliveries.get(0).get(0).getLatitude(), 1e-9);
+    }
+
+    @Test
+    public void test_replayAll_then_trajectoryListenerNotifiedOfUndeliveredFixes() throws IOException {
+        // setup
+        final List<Double> latitudes = new ArrayList<>();
+        final PlacesMonitorTraceLocationSource source = createSource();
+        source.setTrajectoryListener(new PlacesMonitorTraceLocationSource.TrajectoryListener() {
+            @Override
+            public void onFixReplayed(final PlacesMonitorTraceLocationSource.Fix fix) {
+                latitudes.add(fix.getLatitude());
+            }
+        });
+        source.setRefreshBoundaryEnabled(true);
+        source.startMonitoring();
+
+        // test
+        source.replayAll();
+
+        // verify
+        assertEquals(1, deliveries.size());
+        assertEquals("every fix should be followed", Arrays.asList(37.330, 37.331, 37.332), latitudes);
+    }
+
+    @Test
+    public void test_updateLocation_when_refreshBoundaryEnabled() throws IOException {
+        // setup
+        final PlacesMonitorTraceLocationSource source = createSource();
+        source.setRefreshBoundaryEnabled(true);
+        source.startMonitoring();
+        source.replayAll();
+        source.stopMonitoring();
+        source.startMonitoring();
+
+        // test
+        source.updateLocation();
+
+        // verify
+        assertEquals("the trajectory is over, no fresh fix should be delivered", 1, deliveries.size());
+    }
+
+    @Test
+    public void test_updateLocation_when_stopped() throws IOException {
+        // setup
+        final PlacesMonitorTraceLocationSource source = createSource();
+        source.startMonitoring();
+        source.replayAll();
+        source.stopMonitoring();
+
+        // test
+        source.updateLocation();
+
+        // verify
+        assertEquals("a stopped source should not deliver", 3, deliveries.size());
+    }
+
+    @Test
+    public void test_updateLocation_then_lastFixDeliveredAgain() throws IOException {
+        // setup
+        final PlacesMonitorTraceLocationSource source = createSource();
+        source.startMonitoring();
+        source.replayAll();
+
+        // test
+        source.updateLocation();
+
+        // verify
+        assertEquals(4, deliveries.size());
+        assertEquals(37.332, deliveries.get(3).get(0).getLatitude(), 1e-9);
+        assertEquals(4, source.getDeliveredCount());
+    }
+
+    @Test
+    public void test_replayAll_when_maxWaitTimeSet() throws IOException {
+        // setup
+        final PlacesMonitorTraceLocationSource source = createSource();
+        source.setMaxWaitTime(1500);
+        source.startMonitoring();
+
+        // test
+        source.replayAll();
+
+        // verify
+        assertEquals("the fixes should be batched", 2, deliveries.size());
+        assertEquals(2, deliveries.get(0).size());
+        assertEquals(1, deliveries.get(1).size());
+    }
+
+    @Test
+    public void test_replayAll_when_adaptiveLocationEnabled() throws IOException {
+        // setup, the fixes are closer than the smallest displacement of the tier
+        final PlacesMonitorTraceLocationSource source = createSource();
+        source.setAdaptiveLocationEnabled(true);
+        source.startMonitoring();
+
+        // test
+        source.replayAll();
+
+        // verify
+        assertEquals("only the first fix should be delivered", 1, deliveries.size());
+    }
+
+    @Test
+    public void test_replayAll_when_lastFixRejectedByAdaptiveLocation_then_batchDelivered() {
+        // setup, the last fix comes sooner than the fastest interval of the tier
+        final PlacesMonitorTraceLocationSource source = createSource(Arrays.asList(
+                    new PlacesMonitorTraceLocationSource.Fix(0, 37.330, -121.890, 10, -1),
+                    new PlacesMonitorTraceLocationSource.Fix(10 * 60 * 1000, 37.340, -121.890, 10, -1),
+                    new PlacesMonitorTraceLocationSource.Fix(10 * 60 * 1000 + 10 * 1000, 37.341, -121.890, 10, -1)));
+        source.setAdaptiveLocationEnabled(true);
+        source.setMaxWaitTime(30 * 60 * 1000);
+        source.startMonitoring();
+
+        // test
+        source.replayAll();
+
+        // verify
+        assertEquals("the pending batch should be delivered at the end of the trajectory", 1, deliveries.size());
+        assertEquals("the rejected fix should not be delivered", 2, deliveries.get(0).size());
+    }
+
+    @Test
+    public void test_startMonitoring_then_replayedInBackground() throws Exception {
+        // setup
+        final CountDownLatch latch = new CountDownLatch(3);
+        final PlacesMonitorTraceLocationSource source = new PlacesMonitorTraceLocationSource(
+                    PlacesMonitorTraceLocationSource.readCsv(new StringReader(CSV)), 100);
+        source.setListener(new PlacesMonitorTraceLocationSource.Listener() {
+            @Override
+            public void onLocationFixes(final List<PlacesMonitorTraceLocationSource.Fix> fixes) {
+                latch.countDown();
+            }
+        });
+
+        // test
+        source.startMonitoring();
+
+        // verify
+        assertTrue("every fix should be replayed", latch.await(5, TimeUnit.SECONDS));
+        source.stopMonitoring();
+    }
+
+    private PlacesMonitorTraceLocationSource createSource() throws IOException {
+        return createSource(PlacesMonitorTraceLocationSource.readCsv(new StringReader(CSV)));
+    }
+
+    private PlacesMonitorTraceLocationSource createSource(final List<PlacesMonitorTraceLocationSource.Fix> fixes) {
+        final PlacesMonitorTraceLocationSource source = new PlacesMonitorTraceLocationSource(fixes, 0);
+        source.setListener(new PlacesMonitorTraceLocationSource.Listener() {
+            @Override
+            public void onLocationFixes(final List<PlacesMonitorTraceLocationSource.Fix> fixes) {
+                deliveries.add(fixes);
+            }
+        });
+        return source;
+    }
+}
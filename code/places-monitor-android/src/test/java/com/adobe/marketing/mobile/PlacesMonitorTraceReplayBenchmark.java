@@ -0,0 +1,123 @@
+/*
+ Copyright 2019 Adobe. All rights reserved.
+ This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License. You may obtain a copy
+ of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under
+ the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ OF ANY KIND, either express or implied. See the License for the specific language
+ governing permissions and limitations under the License.
+*/
+
+//
+// PlacesMonitorTraceReplayBenchmark.java
+//
+
+package com.adobe.marketing.mobile;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Throughput of the fence evaluation of the monitor, fed by a {@link PlacesMonitorTraceLocationSource} replaying a
+ * synthetic trajectory back to back.
+ * <p>
+ * Every replayed fix selects the nearest fences out of the cached POIs, as on a fence refresh, and is evaluated by the
+ * {@link PlacesMonitorSoftwareGeofencer}, so the entry and exit events of a trajectory are reproducible offline.
+ * <p>
+ * Benchmarks are skipped in the regular unit test run, run them with {@code ./gradlew test -Pbenchmark}.
+ */
+public class PlacesMonitorTraceReplayBenchmark {
+
+    private static final int FIX_COUNT = 100000;
+    private static final int NEAREST_COUNT = 20;
+
+    @Before
+    public void before() {
+        Assume.assumeTrue(Boolean.getBoolean(PlacesMonitorTestConstants.BENCHMARK_PROPERTY));
+    }
+
+    @Test
+    public void benchmark_10k() {
+        runBenchmark(10000);
+    }
+
+    @Test
+    public void benchmark_100k() {
+        runBenchmark(100000);
+    }
+
+    private void runBenchmark(final int poiCount) {
+        final List<PlacesMonitorPOI> pois = PlacesMonitorPOIRTreeTests.randomPOIs(poiCount, poiCount);
+        final PlacesMonitorPOICache poiCache = new PlacesMonitorPOICache();
+        poiCache.cachePOIs(pois);
+
+        final PlacesMonitorSoftwareGeofencer geofencer = new PlacesMonitorSoftwareGeofencer();
+        geofencer.setPOIs(pois);
+
+        final int[] events = new int[1];
+        final PlacesMonitorTraceLocationSource.Listener listener = new PlacesMonitorTraceLocationSource.Listener() {
+            @Override
+            public void onLocationFixes(final List<PlacesMonitorTraceLocationSource.Fix> fixes) {
+                for (PlacesMonitorTraceLocationSource.Fix fix : fixes) {
+                    final List<PlacesMonitorPOI> nearby = poiCache.getNearbyPOIs(fix.getLatitude(), fix.getLongitude(),
+                                                          NEAREST_COUNT);
+                    PlacesMonitorFenceSelector.selectNearest(nearby, fix.getLatitude(), fix.getLongitude(), NEAREST_COUNT);
+
+                    final PlacesMonitorSoftwareGeofencer.Transitions transitions = geofencer.evaluate(fix.getLatitude(),
+                            fix.getLongitude(), fix.getAccuracy());
+                    events[0] += transitions.getEntered().size() + transitions.getExited().size();
+                }
+            }
+        };
+
+        // warm up
+        replay(randomWalk(FIX_COUNT, poiCount + 1), listener);
+        geofencer.setPOIs(pois);
+        events[0] = 0;
+
+        final long start = System.nanoTime();
+        final int delivered = replay(randomWalk(FIX_COUNT, poiCount), listener);
+        final long nanos = System.nanoTime() - start;
+
+        System.out.println(String.format("%d POIs: %d fixes replayed in %.1f ms, %.0f fixes/s, %d fence events",
+                                         poiCount, delivered, nanos / 1e6, delivered / (nanos / 1e9), events[0]));
+    }
+
+    private static int replay(final List<PlacesMonitorTraceLocationSource.Fix> trajectory,
+                              final PlacesMonitorTraceLocationSource.Listener listener) {
+        final PlacesMonitorTraceLocationSource source = new PlacesMonitorTraceLocationSource(trajectory, 0);
+        source.setListener(listener);
+        source.startMonitoring();
+        source.replayAll();
+        source.stopMonitoring();
+        return source.getDeliveredCount();
+    }
+
+    /**
+     * @return a walk at about 1.5 meters per second within the area of the random POIs, one fix per second
+     */
+    private static List<PlacesMonitorTraceLocationSource.Fix> randomWalk(final int count, final long seed) {
+        final Random random = new Random(seed);
+        final List<PlacesMonitorTraceLocationSource.Fix> fixes = new ArrayList<>(count);
+        double latitude = 37.5;
+        double longitude = -121.5;
+        double heading = 0;
+
+        for (int i = 0; i < count; i++) {
+            heading += (random.nextDouble() - 0.5) * 0.5;
+            latitude = Math.min(38, Math.max(37, latitude + Math.cos(heading) * 0.0000135));
+            longitude = Math.min(-121, Math.max(-122, longitude + Math.sin(heading) * 0.000017));
+            fixes.add(new PlacesMonitorTraceLocationSource.Fix(i * PlacesMonitorTestConstants.TraceReplay.DEFAULT_FIX_INTERVAL,
+                      latitude, longitude, 5 + random.nextInt(20), 1.5f));
+        }
+
+        return fixes;
+    }
+}